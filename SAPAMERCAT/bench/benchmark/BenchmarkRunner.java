@@ -0,0 +1,30 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punt d'entrada per executar tots els benchmarks de SAPAMERCAT amb el perfilador d'assignacions de memòria (equivalent a -prof gc).
+ * Opcionalment es pot indicar una expressió regular per executar només els benchmarks que hi coincideixin.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Executa els benchmarks.
+     *
+     * @param args Opcionalment, una expressió regular amb els benchmarks a executar.
+     * @throws RunnerException Si hi ha un error en executar els benchmarks.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options opcions = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "benchmark\\..*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(opcions).run();
+    }
+}
@@ -0,0 +1,234 @@
+package benchmark;
+
+import exceptions.LimitProductesException;
+import model.CarretCompra;
+import model.CodiBarres;
+import model.ContextPreu;
+import model.PreusAlimentacio;
+import model.Product;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import utils.RodaTemporitzadors;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de les operacions de CarretCompra: afegir productes, cercar, mostrar el carret, calcular els preus i generar el tiquet.
+ * Es parametritzen per la mida del carret (nombre de productes diferents) i per la proporció d'escanejos que repeteixen un codi de barres.
+ * 
+ * @author Joan Miralles Carmona
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarretBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    private int midaCarret;
+
+    @Param({"0.0", "0.5", "0.9"})
+    private double proporcioRepetits;
+
+    private Product[] escanejos;
+    private List<Product> lotEscanejos;
+    private CodiBarres[] codis;
+    private CarretCompra carret;
+    private CarretCompra carretPrecalculat;
+    private RodaTemporitzadors roda;
+    private PreusAlimentacio preusAlimentacio;
+    private PrintStream sortidaOriginal;
+    private int seguent;
+    private ContextPreu context;
+    private long total;
+
+    /**
+     * Genera els escanejos i omple el carret utilitzat per les cerques i la visualització, i un segon carret que llegeix
+     * els preus d'alimentació d'una taula precalculada amb tots els productes.
+     * La sortida estàndard es redirigeix a una sortida nul·la perquè mostrarCarret() no escrigui a la consola.
+     *
+     * @throws LimitProductesException Si el carret no admet tots els productes (no hauria de passar).
+     */
+    @Setup(Level.Trial)
+    public void preparar() throws LimitProductesException {
+        Product[] productes = Dades.productes(midaCarret);
+        escanejos = Dades.escanejos(productes, proporcioRepetits);
+        lotEscanejos = Arrays.asList(escanejos);
+        codis = new CodiBarres[productes.length];
+        for (int i = 0; i < productes.length; i++) {
+            codis[i] = productes[i].getCodiBarres();
+        }
+        carret = omplir();
+        context = ContextPreu.avui();
+
+        roda = new RodaTemporitzadors(100, TimeUnit.MILLISECONDS, 512);
+        preusAlimentacio = new PreusAlimentacio(Clock.systemDefaultZone(), roda);
+        for (Product producte : productes) {
+            preusAlimentacio.registrar(producte);
+        }
+        preusAlimentacio.iniciar();
+        carretPrecalculat = new CarretCompra(midaCarret);
+        carretPrecalculat.setPreusAlimentacio(preusAlimentacio);
+        for (Product producte : escanejos) {
+            carretPrecalculat.afegirProducte(producte);
+        }
+
+        sortidaOriginal = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * Restaura la sortida estàndard original i atura la roda de temporitzadors.
+     */
+    @TearDown(Level.Trial)
+    public void restaurar() {
+        System.setOut(sortidaOriginal);
+        preusAlimentacio.close();
+        roda.close();
+    }
+
+    /**
+     * Crea un carret nou i hi afegeix tots els escanejos.
+     *
+     * @return El carret ple.
+     * @throws LimitProductesException Si el carret no admet tots els productes (no hauria de passar).
+     */
+    private CarretCompra omplir() throws LimitProductesException {
+        CarretCompra nou = new CarretCompra(midaCarret);
+        for (Product producte : escanejos) {
+            nou.afegirProducte(producte);
+        }
+        return nou;
+    }
+
+    /**
+     * Mesura l'addició de tots els escanejos a un carret buit.
+     *
+     * @return El carret ple, perquè el JIT no pugui eliminar el treball.
+     * @throws LimitProductesException Si el carret no admet tots els productes (no hauria de passar).
+     */
+    @Benchmark
+    public CarretCompra afegirProducte() throws LimitProductesException {
+        return omplir();
+    }
+
+    /**
+     * Mesura l'addició de tots els escanejos a un carret buit com un sol lot, amb una sola comprovació del límit.
+     *
+     * @return El carret ple, perquè el JIT no pugui eliminar el treball.
+     * @throws LimitProductesException Si el carret no admet tots els productes (no hauria de passar).
+     */
+    @Benchmark
+    public CarretCompra afegirProductes() throws LimitProductesException {
+        CarretCompra nou = new CarretCompra(midaCarret);
+        nou.afegirProductes(lotEscanejos);
+        return nou;
+    }
+
+    /**
+     * Mesura la cerca d'un producte present al carret pel seu codi de barres.
+     *
+     * @return El producte trobat.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Product buscar() {
+        int i = seguent++;
+        if (seguent == codis.length) {
+            seguent = 0;
+        }
+        return carret.buscar(codis[i]);
+    }
+
+    /**
+     * Mesura treure una unitat d'un producte del carret i tornar-la a afegir.
+     * Quan el producte només té una unitat, la línia es desenllaça i es torna a crear.
+     *
+     * @return El nombre d'unitats tretes.
+     * @throws LimitProductesException Si el carret no admet el producte (no hauria de passar).
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int decrementarIAfegir() throws LimitProductesException {
+        int i = seguent++;
+        if (seguent == codis.length) {
+            seguent = 0;
+        }
+        Product producte = carret.buscar(codis[i]);
+        int tretes = carret.decrementar(codis[i], 1);
+        carret.afegirProducte(producte);
+        return tretes;
+    }
+
+    /**
+     * Mesura la cerca d'un producte present al carret pel seu codi de barres en format text.
+     *
+     * @param forat El Blackhole de JMH.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void buscarText(Blackhole forat) {
+        forat.consume(carret.buscar("8400000000000"));
+    }
+
+    /**
+     * Mesura la visualització del carret (amb la sortida estàndard descartada).
+     */
+    @Benchmark
+    public void mostrarCarret() {
+        carret.mostrarCarret();
+    }
+
+    /**
+     * Mesura el càlcul per lots dels preus de totes les línies del carret.
+     *
+     * @return El total del carret en cèntims.
+     */
+    @Benchmark
+    public long calcularPreus() {
+        return carret.calcularPreus().getTotal();
+    }
+
+    /**
+     * Mesura el càlcul per lots dels preus de totes les línies del carret, llegint els preus d'alimentació de la taula
+     * precalculada del dia.
+     *
+     * @return El total del carret en cèntims.
+     */
+    @Benchmark
+    public long calcularPreusPrecalculats() {
+        return carretPrecalculat.calcularPreus().getTotal();
+    }
+
+    /**
+     * Mesura el càlcul dels preus de totes les línies del carret un per un, amb una crida a calcularPreu() per línia.
+     * Serveix de referència per al càlcul per lots de calcularPreus().
+     *
+     * @return El total del carret en cèntims.
+     */
+    @Benchmark
+    public long calcularPreusUnAUn() {
+        total = 0;
+        carret.perCadaLinia(linia -> total += linia.getProducte().calcularPreu(context) * linia.getQuantitat());
+        return total;
+    }
+
+    /**
+     * Mesura un cicle complet de caixa: omplir el carret i generar el tiquet cap a una sortida nul·la.
+     * S'inclou l'addició perquè generar el tiquet buida el carret.
+     *
+     * @throws LimitProductesException Si el carret no admet tots els productes (no hauria de passar).
+     * @throws IOException Si hi ha un error en escriure el tiquet (no hauria de passar).
+     */
+    @Benchmark
+    public void afegirIImprimir() throws LimitProductesException, IOException {
+        omplir().imprimir(Dades.SORTIDA_NULA);
+    }
+}
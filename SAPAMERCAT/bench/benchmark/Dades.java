@@ -0,0 +1,88 @@
+package benchmark;
+
+import model.Alimentacio;
+import model.Electronica;
+import model.Product;
+import model.Textil;
+import tiquet.SortidaTiquet;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Genera les dades compartides pels benchmarks.
+ * Els productes es generen amb una llavor fixa perquè totes les execucions mesurin exactament les mateixes dades.
+ * 
+ * @author Joan Miralles Carmona
+ */
+final class Dades {
+    private static final String[] COMPOSICIONS = {"cotó", "llana", "seda"};
+
+    /**
+     * Sortida de tiquets que descarta tots els bytes, per mesurar la generació del tiquet sense cap cost d'escriptura.
+     */
+    static final SortidaTiquet SORTIDA_NULA = dades -> dades.position(dades.limit());
+
+    private Dades() {
+    }
+
+    /**
+     * Genera productes diferents, repartits entre els tres tipus, amb codis de barres consecutius.
+     *
+     * @param quantitat El nombre de productes a generar.
+     * @return Els productes generats.
+     */
+    static Product[] productes(int quantitat) {
+        Random random = new Random(42);
+        Clock rellotge = Clock.systemDefaultZone();
+        LocalDate caducitat = LocalDate.now(rellotge).plusDays(30);
+        Product[] productes = new Product[quantitat];
+        try {
+            for (int i = 0; i < quantitat; i++) {
+                String codi = Long.toString(8_400_000_000_000L + i);
+                long preu = 100 + random.nextInt(10_000);
+                switch (i % 3) {
+                    case 0:
+                        productes[i] = new Alimentacio("Aliment", preu, codi, caducitat.plusDays(random.nextInt(30)),
+                                rellotge);
+                        break;
+                    case 1:
+                        productes[i] = new Textil("Roba", preu, codi, COMPOSICIONS[random.nextInt(3)]);
+                        break;
+                    default:
+                        productes[i] = new Electronica("Aparell", preu, codi, random.nextInt(1000));
+                        break;
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return productes;
+    }
+
+    /**
+     * Genera una seqüència d'escanejos sobre els productes indicats.
+     * Cada producte s'escaneja com a mínim una vegada i la resta d'escanejos repeteixen productes ja escanejats.
+     *
+     * @param productes Els productes diferents.
+     * @param proporcioRepetits La proporció d'escanejos que repeteixen un codi de barres (entre 0 i 1, sense incloure l'1).
+     * @return La seqüència d'escanejos.
+     */
+    static Product[] escanejos(Product[] productes, double proporcioRepetits) {
+        int total = (int) Math.round(productes.length / (1 - proporcioRepetits));
+        Random random = new Random(7);
+        Product[] escanejos = new Product[total];
+        System.arraycopy(productes, 0, escanejos, 0, productes.length);
+        for (int i = productes.length; i < total; i++) {
+            escanejos[i] = productes[random.nextInt(productes.length)];
+        }
+        for (int i = total - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Product temporal = escanejos[i];
+            escanejos[i] = escanejos[j];
+            escanejos[j] = temporal;
+        }
+        return escanejos;
+    }
+}
@@ -0,0 +1,155 @@
+package benchmark;
+
+import escaners.ProtocolEscaners;
+import escaners.ServidorEscaners;
+import model.Product;
+import org.openjdk.jmh.annotations.*;
+import servei.CheckoutService;
+import utils.MapaLong;
+import utils.Searchable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Banc de proves del servidor d'escàners sobre la interfície local (loopback).
+ * Un client envia lots de trames per una sola connexió i n'espera els estats, de manera que el resultat és el nombre
+ * de trames per segon que el servidor descodifica, afegeix als carrets i confirma.
+ * Es parametritza pel transport (TCP o socket de domini Unix) i pel nombre de sessions entre les quals es reparteixen
+ * les trames de cada lot.
+ *
+ * @author Joan Miralles Carmona
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EscanersBenchmark {
+    private static final int TRAMES_PER_LOT = 1000;
+    private static final int PRODUCTES = 100;
+
+    @Param({"tcp", "unix"})
+    private String transport;
+
+    @Param({"1", "8"})
+    private int sessions;
+
+    private CheckoutService servei;
+    private ServidorEscaners servidor;
+    private SocketChannel client;
+    private ByteBuffer trames;
+    private ByteBuffer estats;
+    private Path socket;
+
+    /**
+     * Arrenca el servidor, obre les sessions i la connexió del client, i prepara el lot de trames.
+     * Abans de mesurar, envia un lot i comprova que totes les trames s'han acceptat.
+     *
+     * @throws IOException Si no es pot arrencar el servidor o connectar-hi.
+     */
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        Product[] productes = Dades.productes(PRODUCTES);
+        MapaLong<Product> index = new MapaLong<>();
+        for (Product producte : productes) {
+            index.put(producte.getCodiBarres().clau(), producte);
+        }
+        Searchable<Product> font = codiBarres -> index.get(codiBarres.clau());
+
+        SocketAddress adreca;
+        if (transport.equals("unix")) {
+            socket = Files.createTempDirectory("escaners").resolve("escaners.sock");
+            adreca = UnixDomainSocketAddress.of(socket);
+        } else {
+            adreca = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        }
+        servei = new CheckoutService();
+        servidor = new ServidorEscaners(servei, font, adreca);
+        servidor.iniciar();
+
+        long[] ids = new long[sessions];
+        for (int i = 0; i < sessions; i++) {
+            ids[i] = servei.obrirSessio();
+        }
+        trames = ByteBuffer.allocateDirect(TRAMES_PER_LOT * ProtocolEscaners.MIDA_TRAMA);
+        for (int i = 0; i < TRAMES_PER_LOT; i++) {
+            long sessio = ids[i * sessions / TRAMES_PER_LOT];
+            ProtocolEscaners.escriureTrama(trames, sessio, productes[i % PRODUCTES].getCodiBarres(), 1);
+        }
+        estats = ByteBuffer.allocateDirect(TRAMES_PER_LOT);
+
+        if (transport.equals("unix")) {
+            client = SocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            client = SocketChannel.open();
+            client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        client.connect(servidor.getAdreca());
+
+        enviarLot();
+        for (int i = 0; i < TRAMES_PER_LOT; i++) {
+            if (estats.get(i) != ProtocolEscaners.ACCEPTAT) {
+                throw new IllegalStateException("La trama " + i + " no s'ha acceptat: estat " + estats.get(i));
+            }
+        }
+    }
+
+    /**
+     * Tanca la connexió, el servidor i el servei.
+     *
+     * @throws IOException Si no es pot tancar la connexió o esborrar el socket.
+     */
+    @TearDown(Level.Trial)
+    public void tancar() throws IOException {
+        client.close();
+        servidor.close();
+        servei.close();
+        if (socket != null) {
+            Files.deleteIfExists(socket.getParent());
+        }
+    }
+
+    /**
+     * Mesura l'enviament d'un lot de trames i la recepció dels seus estats.
+     *
+     * @return El byte d'estat de l'última trama.
+     * @throws IOException Si hi ha un error de comunicació.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TRAMES_PER_LOT)
+    public byte escanejar() throws IOException {
+        enviarLot();
+        return estats.get(TRAMES_PER_LOT - 1);
+    }
+
+    /**
+     * Envia totes les trames del lot i llegeix un byte d'estat per trama.
+     *
+     * @throws IOException Si hi ha un error de comunicació o el servidor tanca la connexió.
+     */
+    private void enviarLot() throws IOException {
+        trames.clear();
+        while (trames.hasRemaining()) {
+            client.write(trames);
+        }
+        estats.clear();
+        while (estats.hasRemaining()) {
+            if (client.read(estats) < 0) {
+                throw new EOFException("El servidor ha tancat la connexió.");
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package benchmark;
+
+import model.Alimentacio;
+import model.ContextPreu;
+import model.Electronica;
+import model.Product;
+import model.Textil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks del càlcul de preus de cada tipus de producte.
+ * Es mesura el càlcul directe amb un context de preus fix i el càlcul a través de la memòria de preus del context.
+ * 
+ * @author Joan Miralles Carmona
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreuBenchmark {
+    private Alimentacio alimentacio;
+    private Textil textil;
+    private Electronica electronica;
+    private ContextPreu context;
+
+    /**
+     * Prepara un producte de cada tipus i el context de preus.
+     */
+    @Setup
+    public void preparar() {
+        Product[] productes = Dades.productes(3);
+        alimentacio = (Alimentacio) productes[0];
+        textil = (Textil) productes[1];
+        electronica = (Electronica) productes[2];
+        context = ContextPreu.avui();
+    }
+
+    /**
+     * Mesura el càlcul del preu d'un producte d'alimentació.
+     *
+     * @return El preu calculat en cèntims.
+     */
+    @Benchmark
+    public long calcularPreuAlimentacio() {
+        return alimentacio.calcularPreu(context);
+    }
+
+    /**
+     * Mesura el càlcul del preu d'un producte tèxtil.
+     *
+     * @return El preu calculat en cèntims.
+     */
+    @Benchmark
+    public long calcularPreuTextil() {
+        return textil.calcularPreu(context);
+    }
+
+    /**
+     * Mesura el càlcul del preu d'un producte electrònic.
+     *
+     * @return El preu calculat en cèntims.
+     */
+    @Benchmark
+    public long calcularPreuElectronica() {
+        return electronica.calcularPreu(context);
+    }
+
+    /**
+     * Mesura el càlcul del preu d'un producte d'alimentació creant un context nou cada vegada (consulta del rellotge inclosa).
+     *
+     * @return El preu calculat en cèntims.
+     */
+    @Benchmark
+    public long calcularPreuAlimentacioAmbRellotge() {
+        return alimentacio.calcularPreu();
+    }
+
+    /**
+     * Mesura l'obtenció del preu d'un producte d'alimentació a través de la memòria de preus del context.
+     *
+     * @return El preu unitari en cèntims.
+     */
+    @Benchmark
+    public long preuUnitariMemoritzat() {
+        return context.preuUnitari(alimentacio);
+    }
+}
@@ -0,0 +1,122 @@
+package benchmark;
+
+import exceptions.DataCaducitatException;
+import exceptions.LimitCaracteresException;
+import exceptions.NegatiuException;
+import model.Alimentacio;
+import model.Electronica;
+import model.Product;
+import model.RegistreProductes;
+import model.Textil;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de l'obtenció d'un producte escanejat repetidament: creant-lo i validant-lo cada vegada
+ * o obtenint-lo del registre de productes compartits. Amb -prof gc es compara també la memòria assignada per escaneig.
+ * 
+ * @author Joan Miralles Carmona
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistreProductesBenchmark {
+    private RegistreProductes registre;
+    private Clock rellotge;
+    private LocalDate dataCaducitat;
+
+    /**
+     * Crea el registre i hi registra els productes de les proves.
+     *
+     * @throws Exception Si les dades de prova no són vàlides (no hauria de passar).
+     */
+    @Setup
+    public void preparar() throws Exception {
+        rellotge = Clock.systemDefaultZone();
+        registre = new RegistreProductes(rellotge);
+        dataCaducitat = LocalDate.now(rellotge).plusDays(10);
+        registre.alimentacio("Llet", 120, "8410000000017", dataCaducitat);
+        registre.textil("Samarreta", 995, "8410000000024", "seda");
+        registre.electronica("Radio", 2500, "8410000000031", 365);
+    }
+
+    /**
+     * Mesura la creació i validació d'un producte d'alimentació nou a cada escaneig.
+     *
+     * @return El producte creat.
+     * @throws DataCaducitatException Si les dades no són vàlides (no hauria de passar).
+     * @throws NegatiuException Si les dades no són vàlides (no hauria de passar).
+     * @throws LimitCaracteresException Si les dades no són vàlides (no hauria de passar).
+     */
+    @Benchmark
+    public Product crearAlimentacio() throws DataCaducitatException, NegatiuException, LimitCaracteresException {
+        return new Alimentacio("Llet", 120, "8410000000017", dataCaducitat, rellotge);
+    }
+
+    /**
+     * Mesura l'obtenció d'un producte d'alimentació conegut del registre.
+     *
+     * @return El producte compartit.
+     * @throws DataCaducitatException Si les dades no són vàlides (no hauria de passar).
+     * @throws NegatiuException Si les dades no són vàlides (no hauria de passar).
+     * @throws LimitCaracteresException Si les dades no són vàlides (no hauria de passar).
+     */
+    @Benchmark
+    public Product registreAlimentacio() throws DataCaducitatException, NegatiuException, LimitCaracteresException {
+        return registre.alimentacio("Llet", 120, "8410000000017", dataCaducitat);
+    }
+
+    /**
+     * Mesura la creació i validació d'un producte tèxtil nou a cada escaneig.
+     *
+     * @return El producte creat.
+     * @throws NegatiuException Si les dades no són vàlides (no hauria de passar).
+     * @throws LimitCaracteresException Si les dades no són vàlides (no hauria de passar).
+     */
+    @Benchmark
+    public Product crearTextil() throws NegatiuException, LimitCaracteresException {
+        return new Textil("Samarreta", 995, "8410000000024", "seda");
+    }
+
+    /**
+     * Mesura l'obtenció d'un producte tèxtil conegut del registre.
+     *
+     * @return El producte compartit.
+     * @throws NegatiuException Si les dades no són vàlides (no hauria de passar).
+     * @throws LimitCaracteresException Si les dades no són vàlides (no hauria de passar).
+     */
+    @Benchmark
+    public Product registreTextil() throws NegatiuException, LimitCaracteresException {
+        return registre.textil("Samarreta", 995, "8410000000024", "seda");
+    }
+
+    /**
+     * Mesura la creació i validació d'un producte electrònic nou a cada escaneig.
+     *
+     * @return El producte creat.
+     * @throws NegatiuException Si les dades no són vàlides (no hauria de passar).
+     * @throws LimitCaracteresException Si les dades no són vàlides (no hauria de passar).
+     */
+    @Benchmark
+    public Product crearElectronica() throws NegatiuException, LimitCaracteresException {
+        return new Electronica("Radio", 2500, "8410000000031", 365);
+    }
+
+    /**
+     * Mesura l'obtenció d'un producte electrònic conegut del registre.
+     *
+     * @return El producte compartit.
+     * @throws NegatiuException Si les dades no són vàlides (no hauria de passar).
+     * @throws LimitCaracteresException Si les dades no són vàlides (no hauria de passar).
+     */
+    @Benchmark
+    public Product registreElectronica() throws NegatiuException, LimitCaracteresException {
+        return registre.electronica("Radio", 2500, "8410000000031", 365);
+    }
+}
@@ -0,0 +1,175 @@
+package benchmark;
+
+import exceptions.DataCaducitatException;
+import exceptions.LimitCaracteresException;
+import exceptions.NegatiuException;
+import org.openjdk.jmh.annotations.*;
+import utils.ResultatValidacio;
+import utils.Validacions;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks dels mètodes de Validacions, tant amb dades vàlides com invàlides.
+ * Es mesuren les dues versions de cada validació: la que retorna un ResultatValidacio i la que llança una excepció.
+ * 
+ * @author Joan Miralles Carmona
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidacionsBenchmark {
+    @Param({"true", "false"})
+    private boolean valid;
+
+    private long preu;
+    private String codiBarres;
+    private String composicio;
+    private String nom;
+    private LocalDate dataCaducitat;
+    private long avui;
+
+    /**
+     * Prepara les dades vàlides o invàlides segons el paràmetre.
+     */
+    @Setup
+    public void preparar() {
+        preu = valid ? 995 : -1;
+        codiBarres = valid ? "8412345678901" : "84123A5678901";
+        composicio = valid ? "seda" : "niló";
+        nom = valid ? "Samarreta de cotó" : "Samarreta 2";
+        LocalDate dia = LocalDate.now(Clock.systemDefaultZone());
+        avui = dia.toEpochDay();
+        dataCaducitat = valid ? dia.plusDays(10) : dia.minusDays(10);
+    }
+
+    /**
+     * Mesura comprovarPreu(), que retorna el resultat sense llançar excepcions.
+     *
+     * @return El resultat de la validació.
+     */
+    @Benchmark
+    public ResultatValidacio comprovarPreu() {
+        return Validacions.comprovarPreu(preu);
+    }
+
+    /**
+     * Mesura comprovarCodiBarres(), que retorna el resultat sense llançar excepcions.
+     *
+     * @return El resultat de la validació.
+     */
+    @Benchmark
+    public ResultatValidacio comprovarCodiBarres() {
+        return Validacions.comprovarCodiBarres(codiBarres);
+    }
+
+    /**
+     * Mesura comprovarComposicio(), que retorna el resultat sense llançar excepcions.
+     *
+     * @return El resultat de la validació.
+     */
+    @Benchmark
+    public ResultatValidacio comprovarComposicio() {
+        return Validacions.comprovarComposicio(composicio);
+    }
+
+    /**
+     * Mesura comprovarNom(), que retorna el resultat sense llançar excepcions.
+     *
+     * @return El resultat de la validació.
+     */
+    @Benchmark
+    public ResultatValidacio comprovarNom() {
+        return Validacions.comprovarNom(nom);
+    }
+
+    /**
+     * Mesura comprovarDataCaducitat(), que retorna el resultat sense llançar excepcions.
+     *
+     * @return El resultat de la validació.
+     */
+    @Benchmark
+    public ResultatValidacio comprovarDataCaducitat() {
+        return Validacions.comprovarDataCaducitat(dataCaducitat, avui);
+    }
+
+    /**
+     * Mesura validarPreu(), que llança una excepció si la dada no és vàlida.
+     *
+     * @return L'excepció llançada, o null si la dada és vàlida.
+     */
+    @Benchmark
+    public Exception validarPreu() {
+        try {
+            Validacions.validarPreu(preu);
+            return null;
+        } catch (NegatiuException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Mesura validarCodiBarres(), que llança una excepció si la dada no és vàlida.
+     *
+     * @return L'excepció llançada, o null si la dada és vàlida.
+     */
+    @Benchmark
+    public Exception validarCodiBarres() {
+        try {
+            Validacions.validarCodiBarres(codiBarres);
+            return null;
+        } catch (LimitCaracteresException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Mesura validarComposicio(), que llança una excepció si la dada no és vàlida.
+     *
+     * @return L'excepció llançada, o null si la dada és vàlida.
+     */
+    @Benchmark
+    public Exception validarComposicio() {
+        try {
+            Validacions.validarComposicio(composicio);
+            return null;
+        } catch (LimitCaracteresException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Mesura validarNom(), que llança una excepció si la dada no és vàlida.
+     *
+     * @return L'excepció llançada, o null si la dada és vàlida.
+     */
+    @Benchmark
+    public Exception validarNom() {
+        try {
+            Validacions.validarNom(nom);
+            return null;
+        } catch (LimitCaracteresException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Mesura validarDataCaducitat(), que llança una excepció si la dada no és vàlida.
+     *
+     * @return L'excepció llançada, o null si la dada és vàlida.
+     */
+    @Benchmark
+    public Exception validarDataCaducitat() {
+        try {
+            Validacions.validarDataCaducitat(dataCaducitat, avui);
+            return null;
+        } catch (DataCaducitatException e) {
+            return e;
+        }
+    }
+}
@@ -1,24 +1,350 @@
+import api.ServidorCaixes;
+import escaners.ServidorEscaners;
+import exceptions.EnumFailException;
+import lots.ProcessadorLots;
+import metriques.Metriques;
+import model.CarretCompra;
+import model.PreusAlimentacio;
+import model.ProductCatalog;
+import persistencia.DiariCarrets;
+import promocions.MotorPromocions;
+import servei.CheckoutService;
+import utils.RodaTemporitzadors;
 import view.Menu;
 
+import javax.management.JMException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Classe principal que inicia l'aplicació SAPAMERCAT.
  * Aquesta classe conté el punt d'entrada principal de l'aplicació i s'encarrega de:
  * - Crear una instància del menú principal.
  * - Iniciar la interacció amb l'usuari.
+ * - Processar un fitxer d'operacions en mode lots si s'indica per la línia de comandes.
+ * - Aplicar als tiquets les promocions d'un fitxer si s'indica per la línia de comandes, en qualsevol mode.
+ * - Obrir un catàleg de productes persistent si s'indica per la línia de comandes.
+ * - Servir les caixes per HTTP a altres processos de la mateixa màquina si s'indica per la línia de comandes, opcionalment
+ *   rebent també els codis de barres dels escàners amb el protocol binari.
+ * En tots els modes, les mètriques de l'aplicació es publiquen per JMX (vegeu Metriques).
  * El seu funcionament és senzill però fonamental, ja que connecta tots els components del sistema i permet que l'aplicació comenci a funcionar.
  * 
  * @author Joan Miralles Carmona
  */
 public class Main {
-    
+
+    /**
+     * Opció de la línia de comandes que activa el mode lots.
+     */
+    private static final String OPCIO_LOTS = "--lots";
+
+    /**
+     * Opció de la línia de comandes que indica el fitxer del catàleg de productes.
+     */
+    private static final String OPCIO_CATALEG = "--cataleg";
+
+    /**
+     * Opció de la línia de comandes que indica el fitxer de promocions, que sempre va al final dels arguments.
+     */
+    private static final String OPCIO_PROMOCIONS = "--promocions";
+
+    /**
+     * Opció de la línia de comandes que fixa el dia del mode lots, en format DD/MM/YYYY.
+     */
+    private static final String OPCIO_DATA = "--data";
+
+    /**
+     * Opció de la línia de comandes que activa el servidor HTTP de caixes.
+     */
+    private static final String OPCIO_SERVIDOR = "--servidor";
+
+    /**
+     * Opció de la línia de comandes que indica l'adreça del servidor d'escàners del mode servidor.
+     */
+    private static final String OPCIO_ESCANERS = "--escaners";
+
+    /**
+     * Opció de la línia de comandes que indica el directori del diari de carrets del mode servidor.
+     */
+    private static final String OPCIO_DIARI = "--diari";
+
+    /**
+     * Capacitat del catàleg de productes quan s'ha de crear.
+     */
+    private static final int CAPACITAT_CATALEG = 1_000_000;
+
+    /**
+     * Durada en mil·lisegons d'un tic de la roda de temporitzadors del mode servidor, que és el marge màxim amb què
+     * canvien els preus d'alimentació després de mitjanit.
+     */
+    private static final int TIC_RODA = 100;
+
+    /**
+     * Nombre d'intervals de la roda de temporitzadors del mode servidor.
+     */
+    private static final int INTERVALS_RODA = 512;
+
     /**
      * Mètode principal que inicia l'aplicació SAPAMERCAT.
-     * Crea una instància de la classe Menu i crida al seu mètode iniciar() per començar la interacció amb l'usuari.
+     * Sense arguments, crea una instància de la classe Menu i crida al seu mètode iniciar() per començar la interacció amb l'usuari.
+     * Amb els arguments "--cataleg fitxer", inicia el menú amb el catàleg de productes indicat.
+     * Amb els arguments "--lots entrada sortida [maxProductes] [--data DD/MM/YYYY] [--promocions fitxer]", processa el
+     * fitxer d'entrada sense interacció i escriu els tiquets al fitxer de sortida, aplicant-hi les promocions del fitxer
+     * indicat. Amb --data, el lot es processa com si fos l'inici del dia indicat, de manera que reproduir un fitxer
+     * enregistrat dona sempre els mateixos tiquets.
+     * Amb els arguments "--servidor port cataleg [--escaners adreca] [--diari directori]", atén les caixes per HTTP al
+     * port indicat de la màquina local, amb els productes del catàleg indicat, i rep les trames dels escàners a l'adreça
+     * indicada, que pot ser un port de la màquina local o el camí d'un socket de domini Unix. Amb --diari, els carrets
+     * es registren al diari del directori indicat i, en arrencar, es recuperen els que no havien passat per caixa.
+     * En el menú i en el mode servidor, uns arguments finals "--promocions fitxer" apliquen les promocions del fitxer
+     * indicat als tiquets de tots els carrets.
      *
-     * @param args Arguments de la línia de comandes (no s'utilitzen).
+     * @param args Arguments de la línia de comandes.
      */
     public static void main(String[] args) {
+        try {
+            Metriques.registrar();
+        } catch (JMException e) {
+            System.err.println("Error: No s'han pogut publicar les mètriques: " + e.getMessage());
+        }
+
+        if (args.length > 0 && args[0].equals(OPCIO_LOTS)) {
+            executarLots(args);
+            return;
+        }
+
+        MotorPromocions promocions = null;
+        if (args.length >= 2 && args[args.length - 2].equals(OPCIO_PROMOCIONS)) {
+            promocions = carregarPromocions(Path.of(args[args.length - 1]));
+            args = Arrays.copyOf(args, args.length - 2);
+        }
+
+        if (args.length >= 3 && args[0].equals(OPCIO_SERVIDOR)) {
+            String escaners = null;
+            Path diari = null;
+            for (int i = 3; i < args.length; i += 2) {
+                if (i + 1 < args.length && args[i].equals(OPCIO_ESCANERS) && escaners == null) {
+                    escaners = args[i + 1];
+                } else if (i + 1 < args.length && args[i].equals(OPCIO_DIARI) && diari == null) {
+                    diari = Path.of(args[i + 1]);
+                } else {
+                    System.err.println("Ús: java Main --servidor <port> <cataleg> [--escaners <adreca>]"
+                            + " [--diari <directori>] [--promocions <fitxer>]");
+                    System.exit(2);
+                }
+            }
+            executarServidor(args[1], Path.of(args[2]), escaners, diari, promocions);
+            return;
+        }
+
+        if (args.length == 2 && args[0].equals(OPCIO_CATALEG)) {
+            executarAmbCataleg(Path.of(args[1]), promocions);
+            return;
+        }
+
         Menu menu = new Menu();
+        if (promocions != null) {
+            menu.setPromocions(promocions.avaluador());
+        }
+        menu.iniciar();
+    }
+
+    /**
+     * Carrega el fitxer de promocions indicat. Si no es pot carregar, informa de l'error i surt del procés.
+     *
+     * @param fitxer El fitxer de promocions.
+     * @return El motor amb les promocions del fitxer.
+     */
+    private static MotorPromocions carregarPromocions(Path fitxer) {
+        try {
+            return MotorPromocions.carregar(fitxer);
+        } catch (EnumFailException e) {
+            System.err.println("Error: El fitxer de promocions no és vàlid. " + e.getMessage());
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error: No s'ha pogut llegir el fitxer de promocions: " + e.getMessage());
+            System.exit(1);
+        }
+        return null;
+    }
+
+    /**
+     * Inicia el menú amb el catàleg de productes indicat, creant-lo si no existeix.
+     *
+     * @param fitxer El fitxer del catàleg.
+     * @param promocions Les promocions que s'apliquen als tiquets, o null.
+     */
+    private static void executarAmbCataleg(Path fitxer, MotorPromocions promocions) {
+        ProductCatalog cataleg;
+        try {
+            cataleg = ProductCatalog.obrirOCrear(fitxer, CAPACITAT_CATALEG);
+        } catch (IOException e) {
+            System.err.println("Error: No s'ha pogut obrir el catàleg: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                cataleg.close();
+            } catch (IOException e) {
+                System.err.println("Error: No s'ha pogut tancar el catàleg: " + e.getMessage());
+            }
+        }));
+        Menu menu = new Menu(cataleg);
+        if (promocions != null) {
+            menu.setPromocions(promocions.avaluador());
+        }
         menu.iniciar();
     }
-}
\ No newline at end of file
+
+    /**
+     * Inicia el servidor HTTP de caixes a la màquina local amb el catàleg indicat, creant-lo si no existeix.
+     * Si s'indica una adreça d'escàners, inicia també el servidor d'escàners sobre les mateixes sessions: les caixes
+     * obren les sessions per HTTP i els escàners hi envien els codis de barres.
+     * Els preus d'alimentació de tots els productes del catàleg es precalculen per dia i canvien a mitjanit.
+     * Si s'indica un directori de diari, es tornen a obrir les sessions dels carrets recuperats, amb el mateix
+     * identificador, abans d'atendre cap petició.
+     * Els servidors continuen atenent peticions fins que s'atura el procés. En aturar-lo, es tanquen primer els
+     * servidors, després el servei, que espera que s'executin les operacions encuades, i finalment el diari.
+     *
+     * @param port El port on s'escolten les peticions.
+     * @param fitxer El fitxer del catàleg.
+     * @param escaners El port o el camí del socket de domini Unix del servidor d'escàners, o null.
+     * @param directoriDiari El directori del diari de carrets, o null per no registrar-los.
+     * @param promocions Les promocions que s'apliquen als tiquets de totes les sessions, o null.
+     */
+    private static void executarServidor(String port, Path fitxer, String escaners, Path directoriDiari,
+                                         MotorPromocions promocions) {
+        try {
+            InetAddress local = InetAddress.getLoopbackAddress();
+            SocketAddress adrecaEscaners = null;
+            if (escaners != null) {
+                adrecaEscaners = escaners.chars().allMatch(Character::isDigit)
+                        ? new InetSocketAddress(local, Integer.parseInt(escaners))
+                        : UnixDomainSocketAddress.of(escaners);
+            }
+            ProductCatalog cataleg = ProductCatalog.obrirOCrear(fitxer, CAPACITAT_CATALEG);
+            RodaTemporitzadors roda = new RodaTemporitzadors(TIC_RODA, TimeUnit.MILLISECONDS, INTERVALS_RODA);
+            PreusAlimentacio preusAlimentacio = new PreusAlimentacio(Clock.systemDefaultZone(), roda);
+            cataleg.perCadaProducte(preusAlimentacio::registrar);
+            preusAlimentacio.iniciar();
+            DiariCarrets diari = directoriDiari != null ? DiariCarrets.obrir(directoriDiari) : null;
+            CheckoutService servei;
+            if (diari != null) {
+                servei = CheckoutService.recuperar(CarretCompra.MAX_PRODUCTES_PER_DEFECTE, Clock.systemDefaultZone(),
+                        diari);
+                System.out.println("S'han recuperat " + servei.getNombreSessions() + " carrets del diari.");
+            } else {
+                servei = new CheckoutService();
+            }
+            servei.setPreusAlimentacio(preusAlimentacio);
+            servei.setPromocions(promocions);
+            ServidorCaixes servidor = new ServidorCaixes(servei, cataleg,
+                    new InetSocketAddress(local, Integer.parseInt(port)));
+            ServidorEscaners servidorEscaners = adrecaEscaners != null
+                    ? new ServidorEscaners(servei, cataleg, adrecaEscaners) : null;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                if (servidorEscaners != null) {
+                    servidorEscaners.close();
+                }
+                servidor.close();
+                servei.close();
+                if (diari != null) {
+                    try {
+                        diari.close();
+                    } catch (IOException e) {
+                        System.err.println("Error: No s'ha pogut tancar el diari: " + e.getMessage());
+                    }
+                }
+                preusAlimentacio.close();
+                roda.close();
+                try {
+                    cataleg.close();
+                } catch (IOException e) {
+                    System.err.println("Error: No s'ha pogut tancar el catàleg: " + e.getMessage());
+                }
+            }));
+            servidor.iniciar();
+            System.out.println("Servidor de caixes escoltant al port " + servidor.getPort() + ".");
+            if (servidorEscaners != null) {
+                servidorEscaners.iniciar();
+                System.out.println("Servidor d'escàners escoltant a " + servidorEscaners.getAdreca() + ".");
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Error: El port ha de ser un número.");
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error: No s'ha pogut iniciar el servidor: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Executa el mode lots amb els arguments de la línia de comandes.
+     *
+     * @param args Arguments de la línia de comandes, començant per l'opció de lots.
+     */
+    private static void executarLots(String[] args) {
+        Path fitxerPromocions = null;
+        String data = null;
+        while (args.length >= 5) {
+            String opcio = args[args.length - 2];
+            if (opcio.equals(OPCIO_PROMOCIONS) && fitxerPromocions == null) {
+                fitxerPromocions = Path.of(args[args.length - 1]);
+            } else if (opcio.equals(OPCIO_DATA) && data == null) {
+                data = args[args.length - 1];
+            } else {
+                break;
+            }
+            args = Arrays.copyOf(args, args.length - 2);
+        }
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("Ús: java Main --lots <entrada> <sortida> [maxProductes] [--data <DD/MM/YYYY>]"
+                    + " [--promocions <fitxer>]");
+            System.exit(2);
+        }
+
+        try {
+            Clock rellotge = Clock.systemDefaultZone();
+            if (data != null) {
+                ZoneId zona = rellotge.getZone();
+                LocalDate dia = LocalDate.parse(data, DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+                rellotge = Clock.fixed(dia.atStartOfDay(zona).toInstant(), zona);
+            }
+            ProcessadorLots processador = new ProcessadorLots(
+                    args.length == 4 ? Integer.parseInt(args[3]) : CarretCompra.MAX_PRODUCTES_PER_DEFECTE, rellotge);
+            if (fitxerPromocions != null) {
+                MotorPromocions promocions = MotorPromocions.carregar(fitxerPromocions);
+                processador.setPromocions(promocions.avaluador());
+            }
+            processador.processar(Path.of(args[1]), Path.of(args[2]));
+        } catch (NumberFormatException e) {
+            System.err.println("Error: El límit de productes ha de ser un número.");
+            System.exit(2);
+        } catch (DateTimeParseException e) {
+            System.err.println("Error: La data ha de tenir el format DD/MM/YYYY.");
+            System.exit(2);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } catch (EnumFailException e) {
+            System.err.println("Error: El fitxer de promocions no és vàlid. " + e.getMessage());
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error: No s'ha pogut processar el fitxer: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package api;
+
+import com.sun.net.httpserver.HttpExchange;
+import tiquet.SortidaTiquet;
+import utils.Utf8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Buffer reutilitzable on es construeix el cos d'una resposta del servidor de caixes.
+ * El cos pot ser:
+ * - Text JSON, que es construeix en un StringBuilder i es codifica en UTF-8 en enviar-lo.
+ * - Un tiquet ja codificat, que el carret hi escriu directament perquè el buffer també és una sortida de tiquets.
+ * Cada buffer l'utilitza una sola petició alhora; el servidor els guarda en un magatzem i els reaprofita entre peticions.
+ *
+ * @author Joan Miralles Carmona
+ */
+final class BufferResposta implements SortidaTiquet {
+    private static final String JSON = "application/json";
+    private static final String TEXT = "text/plain; charset=utf-8";
+    private static final int CAPACITAT_INICIAL = 1024;
+
+    private final StringBuilder text = new StringBuilder(CAPACITAT_INICIAL);
+    private byte[] bytes = new byte[CAPACITAT_INICIAL];
+    private int mida;
+    private String tipusContingut = JSON;
+
+    /**
+     * Descarta el contingut de la resposta anterior.
+     */
+    void reiniciar() {
+        text.setLength(0);
+        mida = 0;
+        tipusContingut = JSON;
+    }
+
+    /**
+     * Retorna el text JSON en construcció.
+     *
+     * @return El text de la resposta.
+     */
+    StringBuilder json() {
+        return text;
+    }
+
+    /**
+     * Afegeix una cadena JSON entre cometes, escapant els caràcters que ho necessiten.
+     *
+     * @param valor La cadena.
+     * @return Aquest buffer.
+     */
+    BufferResposta cadena(String valor) {
+        text.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\').append(c);
+            } else if (c < 0x20) {
+                text.append("\\u00");
+                text.append(Character.forDigit(c >> 4, 16));
+                text.append(Character.forDigit(c & 0xF, 16));
+            } else {
+                text.append(c);
+            }
+        }
+        text.append('"');
+        return this;
+    }
+
+    /**
+     * Escriu al buffer un objecte JSON amb el missatge d'un error.
+     *
+     * @param missatge El missatge de l'error.
+     */
+    void error(String missatge) {
+        reiniciar();
+        text.append("{\"error\":");
+        cadena(missatge != null ? missatge : "Error desconegut.");
+        text.append('}');
+    }
+
+    /**
+     * Copia al buffer un tiquet ja codificat en UTF-8. El cos de la resposta serà el text del tiquet.
+     *
+     * @param dades El buffer amb el tiquet codificat en UTF-8.
+     */
+    @Override
+    public void escriure(ByteBuffer dades) {
+        int longitud = dades.remaining();
+        assegurarCapacitat(mida + longitud);
+        dades.get(bytes, mida, longitud);
+        mida += longitud;
+        tipusContingut = TEXT;
+    }
+
+    /**
+     * Envia la resposta amb l'estat indicat. Si hi ha text JSON, es codifica abans d'enviar-lo.
+     *
+     * @param intercanvi L'intercanvi HTTP de la petició.
+     * @param estat El codi d'estat HTTP.
+     * @throws IOException Si hi ha un error en enviar la resposta.
+     */
+    void enviar(HttpExchange intercanvi, int estat) throws IOException {
+        if (text.length() > 0) {
+            assegurarCapacitat(text.length() * Utf8.MAX_BYTES_PER_CARACTER);
+            mida = Utf8.codificar(text, bytes);
+        }
+        if (mida == 0) {
+            intercanvi.sendResponseHeaders(estat, -1);
+            return;
+        }
+        intercanvi.getResponseHeaders().set("Content-Type", tipusContingut);
+        intercanvi.sendResponseHeaders(estat, mida);
+        try (OutputStream cos = intercanvi.getResponseBody()) {
+            cos.write(bytes, 0, mida);
+        }
+    }
+
+    /**
+     * Fa créixer l'array de bytes si no hi caben els bytes indicats.
+     *
+     * @param capacitat El nombre de bytes que hi han de cabre.
+     */
+    private void assegurarCapacitat(int capacitat) {
+        if (bytes.length < capacitat) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, capacitat));
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import exceptions.DataCaducitatException;
+import exceptions.LimitProductesException;
+import model.CarretCompra;
+import model.CodiBarres;
+import model.LiniaCarret;
+import model.PreusCarret;
+import model.Product;
+import servei.CheckoutService;
+import utils.Searchable;
+import vendes.Anulacio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Servidor HTTP que permet fer servir les caixes del servei de caixes des d'altres processos
+ * (caixes, caixes d'autoservei i escàners mòbils).
+ * El servidor utilitza el servidor HTTP integrat al JDK i:
+ * - Atén cada petició en un fil virtual propi, de manera que una petició que espera el seu carret no ocupa cap fil del sistema.
+ * - Les operacions sobre cada carret s'executen al fil de la seva sessió del CheckoutService, en l'ordre en què arriben.
+ * - Les respostes es construeixen en buffers que es reaprofiten entre peticions.
+ * - Les connexions es mantenen obertes entre peticions i s'hi desactiva l'algorisme de Nagle: el servidor integrat
+ *   envia les capçaleres i el cos en dues escriptures, i sense això cada resposta esperaria la confirmació retardada
+ *   del client (desenes de mil·lisegons).
+ *
+ * Peticions disponibles:
+ * - POST /caixes: obre una sessió nova. Resposta: {"sessio":1}
+ * - DELETE /caixes/{sessio}: tanca una sessió.
+ * - GET /caixes/{sessio}: mostra el carret amb els preus calculats.
+ * - POST /caixes/{sessio}/productes/{codiBarres}[?quantitat=N]: escaneja un producte, que s'obté de la font de productes.
+ *   Resposta: {"quantitat":N} amb les unitats del producte que hi ha al carret.
+ * - DELETE /caixes/{sessio}/productes/{codiBarres}[?quantitat=N]: treu N unitats d'un producte del carret, o totes si
+ *   no s'indica cap quantitat, i les registra com a anul·lació. Resposta: {"tretes":N}
+ * - GET /caixes/{sessio}/productes/{codiBarres}: cerca un producte al carret.
+ * - GET /caixes/anulacions: llista per al supervisor de les anul·lacions de totes les sessions, en l'ordre en què
+ *   s'han fet, amb l'instant en mil·lisegons des de l'època.
+ * - POST /caixes/{sessio}/caixa: passa per caixa. La resposta és el text del tiquet.
+ * Els imports de les respostes JSON són enters en cèntims. Els errors es responen amb un objecte {"error":"..."}.
+ *
+ * @author Joan Miralles Carmona
+ */
+public class ServidorCaixes implements AutoCloseable {
+    private static final String CAMI = "/caixes";
+    private static final String PRODUCTES = "productes";
+    private static final String CAIXA = "caixa";
+    private static final String ANULACIONS = "anulacions";
+    private static final String QUANTITAT = "quantitat=";
+    private static final int MAX_BUFFERS = 256;
+    private static final int CUA_CONNEXIONS = 1024;
+
+    static {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final CheckoutService servei;
+    private final Searchable<Product> font;
+    private final HttpServer servidor;
+    private final ExecutorService fils;
+    private final BlockingQueue<BufferResposta> buffers;
+
+    /**
+     * Construeix un servidor sobre el servei de caixes i la font de productes indicats, sense començar a atendre peticions.
+     *
+     * @param servei El servei de caixes.
+     * @param font La font d'on s'obtenen els productes escanejats, com ara el catàleg. Ha de permetre consultes concurrents.
+     * @param adreca L'adreça i el port on s'escolten les peticions. El port 0 en tria un de lliure.
+     * @throws IOException Si no es pot obrir el port.
+     */
+    public ServidorCaixes(CheckoutService servei, Searchable<Product> font, InetSocketAddress adreca) throws IOException {
+        this.servei = servei;
+        this.font = font;
+        this.buffers = new ArrayBlockingQueue<>(MAX_BUFFERS);
+        this.fils = Executors.newVirtualThreadPerTaskExecutor();
+        this.servidor = HttpServer.create(adreca, CUA_CONNEXIONS);
+        this.servidor.setExecutor(fils);
+        this.servidor.createContext(CAMI, this::atendre);
+    }
+
+    /**
+     * Comença a atendre peticions.
+     */
+    public void iniciar() {
+        servidor.start();
+    }
+
+    /**
+     * Retorna el port on el servidor escolta les peticions.
+     *
+     * @return El port.
+     */
+    public int getPort() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Deixa d'atendre peticions. Les peticions en curs s'acaben abans de tancar els fils.
+     * El servei de caixes no es tanca.
+     */
+    @Override
+    public void close() {
+        servidor.stop(0);
+        fils.close();
+    }
+
+    /**
+     * Atén una petició: la dirigeix a l'operació corresponent i envia la resposta.
+     *
+     * @param intercanvi L'intercanvi HTTP de la petició.
+     * @throws IOException Si hi ha un error en enviar la resposta.
+     */
+    private void atendre(HttpExchange intercanvi) throws IOException {
+        BufferResposta resposta = buffers.poll();
+        if (resposta == null) {
+            resposta = new BufferResposta();
+        }
+        resposta.reiniciar();
+        try {
+            int estat;
+            try {
+                estat = dirigir(intercanvi, resposta);
+            } catch (LimitProductesException | DataCaducitatException | IllegalStateException e) {
+                resposta.error(e.getMessage());
+                estat = 409;
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                resposta.error(e.getMessage());
+                estat = 400;
+            } catch (Exception e) {
+                resposta.error(e.getMessage());
+                estat = 500;
+            }
+            resposta.enviar(intercanvi, estat);
+        } finally {
+            intercanvi.close();
+            buffers.offer(resposta);
+        }
+    }
+
+    /**
+     * Analitza el camí i el mètode de la petició i executa l'operació que correspon.
+     *
+     * @param intercanvi L'intercanvi HTTP de la petició.
+     * @param resposta On s'escriu el cos de la resposta.
+     * @return El codi d'estat HTTP de la resposta.
+     * @throws Exception Si l'operació falla.
+     */
+    private int dirigir(HttpExchange intercanvi, BufferResposta resposta) throws Exception {
+        String metode = intercanvi.getRequestMethod();
+        String cami = intercanvi.getRequestURI().getRawPath();
+        int inici = CAMI.length();
+        if (cami.length() <= inici + 1) {
+            if (!metode.equals("POST")) {
+                return noPermes(resposta);
+            }
+            resposta.json().append("{\"sessio\":").append(servei.obrirSessio()).append('}');
+            return 201;
+        }
+
+        if (cami.startsWith(ANULACIONS, inici + 1) && cami.length() == inici + 1 + ANULACIONS.length()) {
+            if (!metode.equals("GET")) {
+                return noPermes(resposta);
+            }
+            escriureAnulacions(resposta);
+            return 200;
+        }
+
+        int finalSessio = cami.indexOf('/', inici + 1);
+        long sessio = llegirSessio(cami, inici + 1, finalSessio < 0 ? cami.length() : finalSessio);
+        if (sessio < 0 || !servei.existeixSessio(sessio)) {
+            resposta.error("Error: No existeix la sessió.");
+            return 404;
+        }
+
+        if (finalSessio < 0) {
+            switch (metode) {
+                case "GET":
+                    esperar(servei.executar(sessio, carret -> {
+                        escriureCarret(carret, sessio, resposta);
+                        return null;
+                    }));
+                    return 200;
+                case "DELETE":
+                    servei.tancarSessio(sessio);
+                    return 204;
+                default:
+                    return noPermes(resposta);
+            }
+        }
+
+        String resta = cami.substring(finalSessio + 1);
+        if (resta.equals(CAIXA)) {
+            if (!metode.equals("POST")) {
+                return noPermes(resposta);
+            }
+            esperar(servei.imprimir(sessio, resposta));
+            return 200;
+        }
+        if (!resta.startsWith(PRODUCTES + "/")) {
+            resposta.error("Error: Camí desconegut.");
+            return 404;
+        }
+
+        long clau = CodiBarres.clauDe(resta.substring(PRODUCTES.length() + 1));
+        if (clau < 0) {
+            resposta.error("Error: El codi de barres no és vàlid.");
+            return 400;
+        }
+        CodiBarres codiBarres = CodiBarres.deClau(clau);
+        switch (metode) {
+            case "POST":
+                return afegir(sessio, codiBarres, llegirQuantitat(intercanvi.getRequestURI().getRawQuery()), resposta);
+            case "GET":
+                return buscar(sessio, codiBarres, resposta);
+            case "DELETE":
+                return treure(sessio, codiBarres, intercanvi.getRequestURI().getRawQuery(), resposta);
+            default:
+                return noPermes(resposta);
+        }
+    }
+
+    /**
+     * Escaneja unitats d'un producte al carret d'una sessió.
+     *
+     * @param sessio L'identificador de la sessió.
+     * @param codiBarres El codi de barres escanejat.
+     * @param quantitat El nombre d'unitats.
+     * @param resposta On s'escriu el cos de la resposta.
+     * @return El codi d'estat HTTP de la resposta.
+     * @throws Exception Si l'operació falla.
+     */
+    private int afegir(long sessio, CodiBarres codiBarres, int quantitat, BufferResposta resposta) throws Exception {
+        int total = esperar(servei.executar(sessio, carret ->
+                carret.afegirProducte(codiBarres, quantitat, font) ? carret.getQuantitat(codiBarres) : 0));
+        if (total == 0) {
+            resposta.error("Error: No s'ha trobat cap producte amb aquest codi.");
+            return 404;
+        }
+        resposta.json().append("{\"quantitat\":").append(total).append('}');
+        return 200;
+    }
+
+    /**
+     * Treu unitats d'un producte del carret d'una sessió.
+     *
+     * @param sessio L'identificador de la sessió.
+     * @param codiBarres El codi de barres del producte.
+     * @param consulta La consulta de la petició, amb la quantitat a treure, o null per treure-les totes.
+     * @param resposta On s'escriu el cos de la resposta.
+     * @return El codi d'estat HTTP de la resposta.
+     * @throws Exception Si l'operació falla.
+     */
+    private int treure(long sessio, CodiBarres codiBarres, String consulta, BufferResposta resposta) throws Exception {
+        int tretes;
+        if (consulta == null) {
+            tretes = esperar(servei.treureProducte(sessio, codiBarres));
+        } else {
+            tretes = esperar(servei.decrementar(sessio, codiBarres, llegirQuantitat(consulta)));
+        }
+        if (tretes == 0) {
+            resposta.error("Error: No s'ha trobat cap producte amb aquest codi al carret.");
+            return 404;
+        }
+        resposta.json().append("{\"tretes\":").append(tretes).append('}');
+        return 200;
+    }
+
+    /**
+     * Escriu les anul·lacions de totes les sessions que conserva el registre del servei.
+     *
+     * @param resposta On s'escriu el cos de la resposta.
+     */
+    private void escriureAnulacions(BufferResposta resposta) {
+        StringBuilder json = resposta.json();
+        json.append('[');
+        boolean primera = true;
+        for (Anulacio anulacio : servei.getAnulacions().getAnulacions()) {
+            if (!primera) {
+                json.append(',');
+            }
+            primera = false;
+            json.append("{\"numero\":").append(anulacio.getNumero())
+                    .append(",\"instant\":").append(anulacio.getInstant().toEpochMilli())
+                    .append(",\"sessio\":").append(anulacio.getIdCarret())
+                    .append(",\"codi\":");
+            resposta.cadena(anulacio.getCodiBarres().toString());
+            json.append(",\"nom\":");
+            resposta.cadena(anulacio.getNom());
+            json.append(",\"quantitat\":").append(anulacio.getQuantitat())
+                    .append(",\"preu\":").append(anulacio.getPreu()).append('}');
+        }
+        json.append(']');
+    }
+
+    /**
+     * Cerca un producte al carret d'una sessió i n'escriu les dades.
+     *
+     * @param sessio L'identificador de la sessió.
+     * @param codiBarres El codi de barres del producte.
+     * @param resposta On s'escriu el cos de la resposta.
+     * @return El codi d'estat HTTP de la resposta.
+     * @throws Exception Si l'operació falla.
+     */
+    private int buscar(long sessio, CodiBarres codiBarres, BufferResposta resposta) throws Exception {
+        boolean trobat = esperar(servei.executar(sessio, carret -> {
+            Product producte = carret.buscar(codiBarres);
+            if (producte == null) {
+                return false;
+            }
+            resposta.json().append("{\"codi\":");
+            resposta.cadena(producte.getCodiBarres().toString());
+            resposta.json().append(",\"nom\":");
+            resposta.cadena(producte.getNom());
+            resposta.json().append(",\"tipus\":\"").append(producte.getTipus().name())
+                    .append("\",\"preu\":").append(producte.getPreu())
+                    .append(",\"quantitat\":").append(carret.getQuantitat(codiBarres)).append('}');
+            return true;
+        }));
+        if (!trobat) {
+            resposta.error("Error: No s'ha trobat cap producte amb aquest codi al carret.");
+            return 404;
+        }
+        return 200;
+    }
+
+    /**
+     * Escriu el contingut d'un carret amb els preus calculats. S'executa al fil de la sessió del carret.
+     * Les línies surten en l'ordre en què s'han afegit.
+     *
+     * @param carret El carret.
+     * @param sessio L'identificador de la sessió.
+     * @param resposta On s'escriu el cos de la resposta.
+     */
+    private static void escriureCarret(CarretCompra carret, long sessio, BufferResposta resposta) {
+        PreusCarret preus = carret.calcularPreus();
+        StringBuilder json = resposta.json();
+        json.append("{\"sessio\":").append(sessio).append(",\"linies\":[");
+        for (int i = 0; i < preus.getNombreLinies(); i++) {
+            LiniaCarret linia = preus.getLinia(i);
+            Product producte = linia.getProducte();
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"codi\":");
+            resposta.cadena(producte.getCodiBarres().toString());
+            json.append(",\"nom\":");
+            resposta.cadena(producte.getNom());
+            json.append(",\"quantitat\":").append(linia.getQuantitat())
+                    .append(",\"preu\":").append(preus.getPreuUnitari(i))
+                    .append(",\"total\":").append(preus.getTotalLinia(i)).append('}');
+        }
+        json.append("],\"descomptes\":[");
+        for (int i = 0; i < preus.getNombreDescomptes(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"nom\":");
+            resposta.cadena(preus.getNomDescompte(i));
+            json.append(",\"import\":").append(preus.getDescompte(i)).append('}');
+        }
+        json.append("],\"total\":").append(preus.getTotal()).append('}');
+    }
+
+    /**
+     * Espera el resultat d'una operació i, si ha fallat, en llança l'excepció original.
+     *
+     * @param resultat El resultat de l'operació.
+     * @param <T> El tipus del resultat.
+     * @return El resultat.
+     * @throws Exception L'excepció de l'operació, si ha fallat.
+     */
+    private static <T> T esperar(CompletableFuture<T> resultat) throws Exception {
+        try {
+            return resultat.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Llegeix l'identificador de sessió d'un tros del camí.
+     *
+     * @param cami El camí de la petició.
+     * @param inici La posició del primer dígit.
+     * @param fi La posició just després del darrer dígit.
+     * @return L'identificador, o -1 si el tros no és un número vàlid.
+     */
+    private static long llegirSessio(String cami, int inici, int fi) {
+        if (inici >= fi || fi - inici > 18) {
+            return -1;
+        }
+        long sessio = 0;
+        for (int i = inici; i < fi; i++) {
+            char c = cami.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            sessio = sessio * 10 + (c - '0');
+        }
+        return sessio;
+    }
+
+    /**
+     * Llegeix el paràmetre de quantitat de la consulta de la petició.
+     *
+     * @param consulta La consulta de la petició, o null si no n'hi ha.
+     * @return La quantitat indicada, o 1 si no se n'indica cap.
+     * @throws IllegalArgumentException Si la quantitat no és un número positiu.
+     */
+    private static int llegirQuantitat(String consulta) {
+        if (consulta == null || !consulta.startsWith(QUANTITAT)) {
+            return 1;
+        }
+        int quantitat;
+        try {
+            quantitat = Integer.parseInt(consulta, QUANTITAT.length(), consulta.length(), 10);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Error: La quantitat ha de ser un número.");
+        }
+        if (quantitat <= 0) {
+            throw new IllegalArgumentException("Error: La quantitat ha de ser positiva.");
+        }
+        return quantitat;
+    }
+
+    /**
+     * Escriu l'error de mètode no permès.
+     *
+     * @param resposta On s'escriu el cos de la resposta.
+     * @return El codi d'estat 405.
+     */
+    private static int noPermes(BufferResposta resposta) {
+        resposta.error("Error: Mètode no permès.");
+        return 405;
+    }
+}
@@ -0,0 +1,249 @@
+package escaners;
+
+import exceptions.DataCaducitatException;
+import exceptions.LimitProductesException;
+import model.CarretCompra;
+import model.CodiBarres;
+import model.Product;
+import servei.CheckoutService;
+import servei.OperacioCarret;
+import utils.Searchable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Connexió d'un escàner amb el servidor d'escàners.
+ * Les trames es processen per lots, sense crear cap objecte per trama:
+ * - El fil del servidor llegeix del canal a un buffer directe i en descodifica totes les trames completes a arrays de
+ *   primitius que es reutilitzen entre lots.
+ * - Les trames consecutives de la mateixa sessió formen un tram, que s'executa com una sola operació al fil de la
+ *   sessió. Els objectes dels trams també es reutilitzen.
+ * - Mentre el lot s'executa, la connexió deixa de llegir, de manera que un escàner massa ràpid queda frenat pel TCP.
+ * - Quan s'han executat tots els trams, el fil del servidor escriu els bytes d'estat del lot amb una sola escriptura.
+ *
+ * Tots els mètodes, excepte els dels trams, s'executen al fil del servidor.
+ *
+ * @author Joan Miralles Carmona
+ */
+final class ConnexioEscaner {
+    private static final byte PENDENT = -1;
+
+    private final ServidorEscaners servidor;
+    private final CheckoutService servei;
+    private final Searchable<Product> font;
+    private final SocketChannel canal;
+    private final SelectionKey clau;
+    private final ByteBuffer bloc;
+    private final ByteBuffer entrada;
+    private final ByteBuffer sortida;
+    private final long[] sessions;
+    private final long[] claus;
+    private final int[] quantitats;
+    private final byte[] estats;
+    private final AtomicInteger pendents;
+    private Tram[] trams;
+    private int nombreTrames;
+    private boolean tancada;
+
+    /**
+     * Construeix una connexió i la registra al selector del servidor per llegir-ne les trames.
+     *
+     * @param servidor El servidor que atén la connexió.
+     * @param canal El canal de la connexió, en mode no bloquejant.
+     * @param bloc El buffer directe de la connexió, amb espai per a l'entrada i per a la sortida d'un lot.
+     * @throws IOException Si no es pot registrar el canal.
+     */
+    ConnexioEscaner(ServidorEscaners servidor, SocketChannel canal, ByteBuffer bloc) throws IOException {
+        this.servidor = servidor;
+        this.servei = servidor.getServei();
+        this.font = servidor.getFont();
+        this.canal = canal;
+        this.bloc = bloc;
+        this.entrada = bloc.slice(0, ServidorEscaners.MIDA_ENTRADA);
+        this.sortida = bloc.slice(ServidorEscaners.MIDA_ENTRADA, ServidorEscaners.MAX_TRAMES);
+        this.sessions = new long[ServidorEscaners.MAX_TRAMES];
+        this.claus = new long[ServidorEscaners.MAX_TRAMES];
+        this.quantitats = new int[ServidorEscaners.MAX_TRAMES];
+        this.estats = new byte[ServidorEscaners.MAX_TRAMES];
+        this.pendents = new AtomicInteger();
+        this.trams = new Tram[0];
+        this.clau = canal.register(servidor.getSelector(), SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * Llegeix les dades disponibles del canal i, si hi ha trames completes, n'executa el lot.
+     *
+     * @throws IOException Si hi ha un error de lectura.
+     */
+    void llegir() throws IOException {
+        if (canal.read(entrada) < 0) {
+            tancar();
+            return;
+        }
+
+        entrada.flip();
+        int posicio = entrada.position();
+        int trames = 0;
+        while (entrada.limit() - posicio >= ProtocolEscaners.MIDA_TRAMA) {
+            int quantitat = entrada.getShort(posicio + ProtocolEscaners.POSICIO_QUANTITAT);
+            long clauCodi = CodiBarres.clauDeBcd(entrada.getLong(posicio + ProtocolEscaners.POSICIO_CODI));
+            sessions[trames] = Integer.toUnsignedLong(entrada.getInt(posicio + ProtocolEscaners.POSICIO_SESSIO));
+            claus[trames] = clauCodi;
+            quantitats[trames] = quantitat;
+            estats[trames] = clauCodi < 0 || quantitat < 1 ? ProtocolEscaners.TRAMA_INVALIDA : PENDENT;
+            trames++;
+            posicio += ProtocolEscaners.MIDA_TRAMA;
+        }
+        entrada.position(posicio);
+        entrada.compact();
+
+        if (trames > 0) {
+            nombreTrames = trames;
+            clau.interestOps(0);
+            executarLot();
+        }
+    }
+
+    /**
+     * Divideix el lot en trams de trames consecutives de la mateixa sessió i els encua a les seves sessions.
+     */
+    private void executarLot() {
+        int nombreTrams = 0;
+        for (int inici = 0; inici < nombreTrames; ) {
+            int fi = inici + 1;
+            while (fi < nombreTrames && sessions[fi] == sessions[inici]) {
+                fi++;
+            }
+            if (nombreTrams == trams.length) {
+                trams = Arrays.copyOf(trams, Math.max(4, trams.length * 2));
+            }
+            if (trams[nombreTrams] == null) {
+                trams[nombreTrams] = new Tram();
+            }
+            trams[nombreTrams].inici = inici;
+            trams[nombreTrams].fi = fi;
+            nombreTrams++;
+            inici = fi;
+        }
+
+        pendents.set(nombreTrams);
+        for (int i = 0; i < nombreTrams; i++) {
+            Tram tram = trams[i];
+            servei.executar(sessions[tram.inici], tram).whenComplete(tram);
+        }
+    }
+
+    /**
+     * Escriu els estats del lot executat al canal i torna a llegir trames quan s'han enviat tots.
+     *
+     * @throws IOException Si hi ha un error d'escriptura.
+     */
+    void respondre() throws IOException {
+        if (tancada) {
+            return;
+        }
+        sortida.clear();
+        sortida.put(estats, 0, nombreTrames).flip();
+        nombreTrames = 0;
+        escriure();
+    }
+
+    /**
+     * Continua escrivint els estats pendents. Si el canal no els admet tots, s'espera que s'hi pugui tornar a escriure.
+     *
+     * @throws IOException Si hi ha un error d'escriptura.
+     */
+    void escriure() throws IOException {
+        canal.write(sortida);
+        clau.interestOps(sortida.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * Tanca la connexió i retorna el seu buffer al servidor.
+     * Si hi ha un lot en execució, els seus trams s'acaben igualment però els estats ja no s'envien.
+     */
+    void tancar() {
+        if (tancada) {
+            return;
+        }
+        tancada = true;
+        clau.cancel();
+        try {
+            canal.close();
+        } catch (IOException e) {
+            // La connexió ja no es fa servir.
+        }
+        servidor.retornarBuffer(bloc);
+    }
+
+    /**
+     * Trames consecutives d'un lot que pertanyen a la mateixa sessió.
+     * S'executa al fil de la sessió i, en acabar, avisa el servidor si era l'últim tram pendent del lot.
+     */
+    private final class Tram implements OperacioCarret<Void>, BiConsumer<Void, Throwable> {
+        private int inici;
+        private int fi;
+
+        /**
+         * Afegeix al carret les unitats de cada trama vàlida del tram i en guarda l'estat.
+         *
+         * @param carret El carret de la sessió.
+         * @return null.
+         */
+        @Override
+        public Void executar(CarretCompra carret) {
+            for (int i = inici; i < fi; i++) {
+                if (estats[i] == PENDENT) {
+                    estats[i] = afegir(carret, i);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Afegeix al carret les unitats d'una trama.
+         *
+         * @param carret El carret de la sessió.
+         * @param trama La posició de la trama dins el lot.
+         * @return L'estat de la trama.
+         */
+        private byte afegir(CarretCompra carret, int trama) {
+            try {
+                return carret.afegirProducte(claus[trama], quantitats[trama], font)
+                        ? ProtocolEscaners.ACCEPTAT : ProtocolEscaners.NO_TROBAT;
+            } catch (LimitProductesException e) {
+                return ProtocolEscaners.CARRET_PLE;
+            } catch (DataCaducitatException e) {
+                return ProtocolEscaners.CADUCAT;
+            } catch (RuntimeException e) {
+                return ProtocolEscaners.ERROR;
+            }
+        }
+
+        /**
+         * Marca les trames no executades perquè la sessió no existeix i avisa el servidor si el lot s'ha acabat.
+         *
+         * @param resultat El resultat de l'operació, sempre null.
+         * @param error L'error si la sessió no existeix o s'ha tancat, o null.
+         */
+        @Override
+        public void accept(Void resultat, Throwable error) {
+            if (error != null) {
+                for (int i = inici; i < fi; i++) {
+                    if (estats[i] == PENDENT) {
+                        estats[i] = ProtocolEscaners.SENSE_SESSIO;
+                    }
+                }
+            }
+            if (pendents.decrementAndGet() == 0) {
+                servidor.lotAcabat(ConnexioEscaner.this);
+            }
+        }
+    }
+}
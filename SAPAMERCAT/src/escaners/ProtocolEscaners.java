@@ -0,0 +1,89 @@
+package escaners;
+
+import model.CodiBarres;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Defineix el protocol binari amb què els escàners envien els codis de barres al servidor d'escàners.
+ * Un escàner envia un flux continu de trames de mida fixa i, per cada trama, el servidor respon un byte d'estat, en el
+ * mateix ordre en què han arribat les trames. Un escàner pot enviar trames noves sense esperar les respostes anteriors.
+ *
+ * Format d'una trama (MIDA_TRAMA bytes, big-endian):
+ * - int identificador de la sessió del CheckoutService, sense signe.
+ * - short nombre d'unitats escanejades, entre 1 i 32767.
+ * - long codi de barres en BCD: un dígit per nibble, alineats a la dreta, i els nibbles sobrants de l'esquerra a 0xF.
+ *   Per exemple, el codi 8412345 s'envia com a 0xFFFFFFFFF8412345.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class ProtocolEscaners {
+    /**
+     * Mida de cada trama en bytes.
+     */
+    public static final int MIDA_TRAMA = 14;
+
+    /**
+     * Estat de resposta: les unitats s'han afegit al carret.
+     */
+    public static final byte ACCEPTAT = 0;
+
+    /**
+     * Estat de resposta: el codi de barres no és al carret ni a la font de productes.
+     */
+    public static final byte NO_TROBAT = 1;
+
+    /**
+     * Estat de resposta: no hi ha cap sessió oberta amb l'identificador de la trama.
+     */
+    public static final byte SENSE_SESSIO = 2;
+
+    /**
+     * Estat de resposta: el carret ja té el màxim de productes diferents.
+     */
+    public static final byte CARRET_PLE = 3;
+
+    /**
+     * Estat de resposta: el codi de barres o la quantitat de la trama no són vàlids.
+     */
+    public static final byte TRAMA_INVALIDA = 4;
+
+    /**
+     * Estat de resposta: l'operació ha fallat per qualsevol altre motiu.
+     */
+    public static final byte ERROR = 5;
+
+    /**
+     * Estat de resposta: el producte és d'alimentació i ha caducat, i no es pot vendre.
+     */
+    public static final byte CADUCAT = 6;
+
+    static final int POSICIO_SESSIO = 0;
+    static final int POSICIO_QUANTITAT = 4;
+    static final int POSICIO_CODI = 6;
+
+    private ProtocolEscaners() {
+    }
+
+    /**
+     * Escriu una trama a la posició actual d'un buffer i n'avança la posició.
+     * Els escàners de programari i les proves ho poden fer servir per generar les trames.
+     *
+     * @param desti El buffer on s'escriu la trama. Ha de tenir almenys MIDA_TRAMA bytes lliures.
+     * @param sessio L'identificador de la sessió.
+     * @param codiBarres El codi de barres escanejat.
+     * @param quantitat El nombre d'unitats escanejades.
+     * @throws IllegalArgumentException Si la sessió no cap en un int sense signe o la quantitat no és vàlida.
+     */
+    public static void escriureTrama(ByteBuffer desti, long sessio, CodiBarres codiBarres, int quantitat) {
+        if (sessio < 0 || sessio > 0xFFFF_FFFFL) {
+            throw new IllegalArgumentException("Error: L'identificador de la sessió no cap a la trama.");
+        }
+        if (quantitat < 1 || quantitat > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Error: La quantitat ha d'estar entre 1 i " + Short.MAX_VALUE + ".");
+        }
+        desti.putInt((int) sessio);
+        desti.putShort((short) quantitat);
+        desti.putLong(codiBarres.bcd());
+    }
+}
@@ -0,0 +1,273 @@
+package escaners;
+
+import model.Product;
+import servei.CheckoutService;
+import utils.Searchable;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Servidor que rep els codis de barres dels escàners amb el protocol binari de ProtocolEscaners i els afegeix als
+ * carrets de les sessions del servei de caixes.
+ * A diferència del servidor HTTP, aquest servidor està pensat per a fluxos continus de trames:
+ * - Un sol fil atén totes les connexions amb canals no bloquejants i un selector.
+ * - Cada connexió llegeix a un buffer directe d'un magatzem, d'on les trames es descodifiquen sense crear cap cadena
+ *   ni cap objecte per trama, i sense validar el codi de barres amb expressions regulars ni excepcions.
+ * - Les trames de cada lectura s'executen en lot, amb una sola operació per sessió al fil de la sessió.
+ * - Pot escoltar en un port TCP (amb l'algorisme de Nagle desactivat) o en un socket de domini Unix.
+ *
+ * @author Joan Miralles Carmona
+ */
+public class ServidorEscaners implements AutoCloseable {
+    /**
+     * Nombre màxim de trames d'un lot, és a dir, de trames que es descodifiquen d'una sola lectura.
+     */
+    static final int MAX_TRAMES = 1170;
+
+    /**
+     * Mida del buffer d'entrada de cada connexió, que hi caben exactament MAX_TRAMES trames.
+     */
+    static final int MIDA_ENTRADA = MAX_TRAMES * ProtocolEscaners.MIDA_TRAMA;
+
+    private static final int MAX_BUFFERS = 64;
+    private static final int CUA_CONNEXIONS = 1024;
+
+    private final CheckoutService servei;
+    private final Searchable<Product> font;
+    private final ServerSocketChannel canal;
+    private final Selector selector;
+    private final SocketAddress adreca;
+    private final Queue<ConnexioEscaner> acabades;
+    private final ArrayDeque<ByteBuffer> buffers;
+    private final Consumer<SelectionKey> tractarClau;
+    private Thread fil;
+    private volatile boolean tancat;
+
+    /**
+     * Construeix un servidor sobre el servei de caixes i la font de productes indicats, sense començar a atendre
+     * connexions.
+     *
+     * @param servei El servei de caixes.
+     * @param font La font d'on s'obtenen els productes escanejats, com ara el catàleg. Ha de permetre consultes concurrents.
+     * @param adreca L'adreça on s'escolten les connexions: una InetSocketAddress (el port 0 en tria un de lliure) o una
+     *               UnixDomainSocketAddress.
+     * @throws IOException Si no es pot obrir l'adreça.
+     */
+    public ServidorEscaners(CheckoutService servei, Searchable<Product> font, SocketAddress adreca) throws IOException {
+        this.servei = servei;
+        this.font = font;
+        this.canal = adreca instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        try {
+            canal.bind(adreca, CUA_CONNEXIONS);
+            canal.configureBlocking(false);
+            this.adreca = canal.getLocalAddress();
+            this.selector = Selector.open();
+            canal.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            canal.close();
+            throw e;
+        }
+        this.acabades = new ConcurrentLinkedQueue<>();
+        this.buffers = new ArrayDeque<>();
+        this.tractarClau = this::tractar;
+    }
+
+    /**
+     * Comença a atendre connexions en un fil propi.
+     */
+    public void iniciar() {
+        fil = Thread.ofPlatform().name("escaners").start(this::atendre);
+    }
+
+    /**
+     * Retorna l'adreça on el servidor escolta les connexions.
+     *
+     * @return L'adreça, amb el port triat si s'ha demanat el port 0.
+     */
+    public SocketAddress getAdreca() {
+        return adreca;
+    }
+
+    /**
+     * Deixa d'atendre connexions i tanca les connexions obertes.
+     * Si el servidor escolta en un socket de domini Unix, n'esborra el fitxer. El servei de caixes no es tanca.
+     */
+    @Override
+    public void close() {
+        tancat = true;
+        if (fil == null) {
+            tancarCanals();
+            return;
+        }
+        selector.wakeup();
+        try {
+            fil.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Bucle del fil del servidor: espera esdeveniments dels canals i respon els lots acabats fins que es tanca.
+     */
+    private void atendre() {
+        try {
+            while (!tancat) {
+                selector.select(tractarClau);
+                ConnexioEscaner connexio;
+                while ((connexio = acabades.poll()) != null) {
+                    try {
+                        connexio.respondre();
+                    } catch (IOException e) {
+                        connexio.tancar();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error: El servidor d'escàners s'ha aturat: " + e.getMessage());
+        } finally {
+            tancarCanals();
+        }
+    }
+
+    /**
+     * Atén un canal preparat: accepta connexions noves, o llegeix o escriu les d'un escàner.
+     * Si la connexió falla, es tanca.
+     *
+     * @param clau La clau del canal preparat.
+     */
+    private void tractar(SelectionKey clau) {
+        if (clau.isAcceptable()) {
+            acceptar();
+            return;
+        }
+
+        ConnexioEscaner connexio = (ConnexioEscaner) clau.attachment();
+        try {
+            if (clau.isReadable()) {
+                connexio.llegir();
+            } else if (clau.isWritable()) {
+                connexio.escriure();
+            }
+        } catch (IOException e) {
+            connexio.tancar();
+        }
+    }
+
+    /**
+     * Accepta totes les connexions pendents i les registra al selector.
+     */
+    private void acceptar() {
+        try {
+            SocketChannel connexio;
+            while ((connexio = canal.accept()) != null) {
+                try {
+                    connexio.configureBlocking(false);
+                    if (!(adreca instanceof UnixDomainSocketAddress)) {
+                        connexio.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    }
+                    new ConnexioEscaner(this, connexio, obtenirBuffer());
+                } catch (IOException e) {
+                    connexio.close();
+                    throw e;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error: No s'ha pogut acceptar la connexió d'un escàner: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Avisa el fil del servidor que s'ha acabat d'executar el lot d'una connexió. Es crida des dels fils de les sessions.
+     *
+     * @param connexio La connexió del lot.
+     */
+    void lotAcabat(ConnexioEscaner connexio) {
+        acabades.add(connexio);
+        selector.wakeup();
+    }
+
+    /**
+     * Obté un buffer directe del magatzem per a una connexió nova, o en crea un si el magatzem és buit.
+     *
+     * @return Un buffer amb espai per a l'entrada i la sortida d'un lot.
+     */
+    private ByteBuffer obtenirBuffer() {
+        ByteBuffer bloc = buffers.poll();
+        return bloc != null ? bloc.clear() : ByteBuffer.allocateDirect(MIDA_ENTRADA + MAX_TRAMES);
+    }
+
+    /**
+     * Retorna al magatzem el buffer d'una connexió tancada.
+     *
+     * @param bloc El buffer de la connexió.
+     */
+    void retornarBuffer(ByteBuffer bloc) {
+        if (buffers.size() < MAX_BUFFERS) {
+            buffers.push(bloc);
+        }
+    }
+
+    /**
+     * Tanca totes les connexions, el canal d'escolta i el selector.
+     */
+    private void tancarCanals() {
+        for (SelectionKey clau : selector.keys()) {
+            if (clau.attachment() instanceof ConnexioEscaner) {
+                ((ConnexioEscaner) clau.attachment()).tancar();
+            }
+        }
+        try {
+            canal.close();
+            selector.close();
+            if (adreca instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress) adreca).getPath());
+            }
+        } catch (IOException e) {
+            System.err.println("Error: No s'ha pogut tancar el servidor d'escàners: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retorna el servei de caixes del servidor.
+     *
+     * @return El servei de caixes.
+     */
+    CheckoutService getServei() {
+        return servei;
+    }
+
+    /**
+     * Retorna la font de productes del servidor.
+     *
+     * @return La font de productes.
+     */
+    Searchable<Product> getFont() {
+        return font;
+    }
+
+    /**
+     * Retorna el selector del fil del servidor.
+     *
+     * @return El selector.
+     */
+    Selector getSelector() {
+        return selector;
+    }
+}
@@ -1,5 +1,7 @@
 package exceptions;
 
+import metriques.Metriques;
+
 /**
  * Excepció llançada quan la validació d'una data de caducitat falla.
  * Això pot ser degut a diversos motius, com ara:
@@ -16,6 +18,7 @@ public class DataCaducitatException extends Exception {
      */
     public DataCaducitatException() {
         super("Error: La data de caducitat no pot ser anterior a avui.");
+        Metriques.excepcio(Metriques.Excepcio.DATA_CADUCITAT);
     }
 
     /**
@@ -26,5 +29,6 @@ public class DataCaducitatException extends Exception {
      */
     public DataCaducitatException(String message) {
         super(message);
+        Metriques.excepcio(Metriques.Excepcio.DATA_CADUCITAT);
     }
 }
\ No newline at end of file
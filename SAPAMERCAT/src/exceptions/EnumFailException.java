@@ -1,5 +1,7 @@
 package exceptions;
 
+import metriques.Metriques;
+
 /**
  * Excepció llançada quan es produeix un error relacionat amb un valor enumerat.
  * Això pot ser degut a diversos motius, com ara:
@@ -16,6 +18,7 @@ public class EnumFailException extends Exception {
      */
     public EnumFailException() {
         super("Error: El tipus de producte no és vàlid.");
+        Metriques.excepcio(Metriques.Excepcio.ENUM_FAIL);
     }
 
     /**
@@ -26,5 +29,6 @@ public class EnumFailException extends Exception {
      */
     public EnumFailException(String message) {
         super(message);
+        Metriques.excepcio(Metriques.Excepcio.ENUM_FAIL);
     }
 }
\ No newline at end of file
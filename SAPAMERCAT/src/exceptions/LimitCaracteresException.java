@@ -1,5 +1,7 @@
 package exceptions;
 
+import metriques.Metriques;
+
 /**
  * Excepció llançada quan la validació de límits de caràcters falla.
  * Això pot ser degut a diversos motius, com ara:
@@ -17,6 +19,7 @@ public class LimitCaracteresException extends Exception {
      */
     public LimitCaracteresException() {
         super("Error: El text supera el límit de caràcters permès.");
+        Metriques.excepcio(Metriques.Excepcio.LIMIT_CARACTERES);
     }
 
     /**
@@ -27,5 +30,6 @@ public class LimitCaracteresException extends Exception {
      */
     public LimitCaracteresException(String message) {
         super(message);
+        Metriques.excepcio(Metriques.Excepcio.LIMIT_CARACTERES);
     }
 }
\ No newline at end of file
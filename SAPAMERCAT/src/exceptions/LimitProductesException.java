@@ -1,5 +1,7 @@
 package exceptions;
 
+import metriques.Metriques;
+
 /**
  * Excepció llançada quan s'intenta superar el límit màxim de productes permesos.
  * Això pot ser degut a diversos motius, com ara:
@@ -19,6 +21,7 @@ public class LimitProductesException extends Exception {
      */
     public LimitProductesException(String message) {
         super(message);
+        Metriques.excepcio(Metriques.Excepcio.LIMIT_PRODUCTES);
     }
 
     /**
@@ -27,5 +30,6 @@ public class LimitProductesException extends Exception {
      */
     public LimitProductesException() {
         super("Error: S'ha superat el límit màxim de productes permesos.");
+        Metriques.excepcio(Metriques.Excepcio.LIMIT_PRODUCTES);
     }
 }
\ No newline at end of file
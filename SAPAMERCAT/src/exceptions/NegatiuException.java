@@ -1,5 +1,7 @@
 package exceptions;
 
+import metriques.Metriques;
+
 /**
  * Excepció llançada quan es detecta un valor negatiu invàlid.
  * Això pot ser degut a diversos motius, com ara:
@@ -17,6 +19,7 @@ public class NegatiuException extends Exception {
      */
     public NegatiuException() {
         super("Error: El valor no pot ser negatiu.");
+        Metriques.excepcio(Metriques.Excepcio.NEGATIU);
     }
 
     /**
@@ -27,5 +30,6 @@ public class NegatiuException extends Exception {
      */
     public NegatiuException(String message) {
         super(message);
+        Metriques.excepcio(Metriques.Excepcio.NEGATIU);
     }
 }
\ No newline at end of file
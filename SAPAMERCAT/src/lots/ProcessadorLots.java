@@ -0,0 +1,270 @@
+package lots;
+
+import model.*;
+import exceptions.*;
+import tiquet.SortidaFlux;
+import tiquet.SortidaTiquet;
+import utils.Diners;
+import vendes.RegistreVendes;
+import vendes.VendaProducte;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Processa un fitxer d'operacions de caixa sense interacció amb l'usuari.
+ * Aquesta classe permet reproduir el trànsit d'una caixa a partir d'un fitxer de text:
+ * - Cada línia del fitxer és una operació sobre el carret de compra.
+ * - Els tiquets generats s'escriuen en un fitxer de sortida.
+ * - El fitxer es llegeix línia a línia, de manera que la memòria utilitzada no depèn de la mida del fitxer.
+ * - Els productes repetits es comparteixen a través d'un registre de productes, sense tornar-los a crear ni validar.
+ * - Els tiquets cobrats es desen al registre de vendes.
+ * - Si es configuren promocions, s'apliquen a tots els tiquets.
+ * - Les dates de caducitat, els preus d'alimentació i la data dels tiquets depenen del rellotge del processador, de
+ *   manera que un fitxer enregistrat es pot reproduir amb un rellotge fix i obtenir sempre els mateixos tiquets.
+ * - En acabar es mostra un resum amb el nombre d'operacions, el rendiment obtingut i les vendes principals.
+ * 
+ * Format de les línies (camps separats per punt i coma):
+ * - ALIMENTACIO;nom;preu;codiBarres;DD/MM/YYYY[;quantitat]
+ * - TEXTIL;nom;preu;codiBarres;composicio[;quantitat]
+ * - ELECTRONICA;nom;preu;codiBarres;diesGarantia[;quantitat]
+ * - CAIXA
+ * Si no s'indica la quantitat, s'afegeix una unitat.
+ * Les línies buides i les que comencen per # s'ignoren.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public class ProcessadorLots {
+    private static final String SEPARADOR = ";";
+    private static final String CAIXA = "CAIXA";
+    private static final DateTimeFormatter FORMAT_DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final int PRODUCTES_RESUM = 3;
+
+    private final CarretCompra carret;
+    private final RegistreVendes vendes;
+    private final RegistreProductes registre;
+    private long operacions;
+    private long productes;
+    private long tiquets;
+    private long errors;
+
+    /**
+     * Construeix un nou processador amb un carret del límit de productes per defecte.
+     */
+    public ProcessadorLots() {
+        this(CarretCompra.MAX_PRODUCTES_PER_DEFECTE);
+    }
+
+    /**
+     * Construeix un nou processador amb un carret del límit de productes indicat.
+     *
+     * @param maxProductes El nombre màxim de productes diferents per carret.
+     */
+    public ProcessadorLots(int maxProductes) {
+        this(maxProductes, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Construeix un nou processador amb un carret del límit de productes indicat que determina el dia actual amb el
+     * rellotge indicat.
+     *
+     * @param maxProductes El nombre màxim de productes diferents per carret.
+     * @param rellotge El rellotge amb què es comproven les dates de caducitat, es calculen els preus i es daten els tiquets.
+     */
+    public ProcessadorLots(int maxProductes, Clock rellotge) {
+        this.carret = new CarretCompra(maxProductes, rellotge);
+        this.vendes = new RegistreVendes(rellotge);
+        this.registre = new RegistreProductes(rellotge);
+        this.carret.afegirObservador(vendes.observador());
+    }
+
+    /**
+     * Processa totes les operacions del fitxer d'entrada i escriu els tiquets al fitxer de sortida.
+     * Si al final del fitxer el carret encara té productes, es passa per caixa automàticament.
+     * Les línies amb errors es comuniquen per la sortida d'error i no aturen el procés.
+     *
+     * @param entrada El fitxer amb les operacions de caixa.
+     * @param sortida El fitxer on s'escriuen els tiquets.
+     * @throws IOException Si hi ha un error de lectura o escriptura.
+     */
+    public void processar(Path entrada, Path sortida) throws IOException {
+        long inici = System.nanoTime();
+
+        try (BufferedReader lector = Files.newBufferedReader(entrada, StandardCharsets.UTF_8);
+             SortidaTiquet tiquets = new SortidaFlux(
+                     new BufferedOutputStream(Files.newOutputStream(sortida), 1 << 16), true)) {
+            String linia;
+            long numeroLinia = 0;
+            while ((linia = lector.readLine()) != null) {
+                numeroLinia++;
+                processarLinia(linia.trim(), numeroLinia, tiquets);
+            }
+
+            if (carret.getNombreLinies() > 0) {
+                passarPerCaixa(tiquets);
+            }
+        }
+
+        mostrarResum(System.nanoTime() - inici);
+    }
+
+    /**
+     * Processa una línia del fitxer d'entrada.
+     *
+     * @param linia La línia sense espais als extrems.
+     * @param numeroLinia El número de la línia dins el fitxer.
+     * @param tiquets La sortida on s'escriuen els tiquets.
+     * @throws IOException Si hi ha un error en escriure un tiquet.
+     */
+    private void processarLinia(String linia, long numeroLinia, SortidaTiquet tiquets) throws IOException {
+        if (linia.isEmpty() || linia.startsWith("#")) {
+            return;
+        }
+        operacions++;
+
+        if (linia.equalsIgnoreCase(CAIXA)) {
+            passarPerCaixa(tiquets);
+            return;
+        }
+
+        try {
+            String[] camps = linia.split(SEPARADOR, -1);
+            int quantitat = camps.length == 6 ? Integer.parseInt(camps[5].trim()) : 1;
+            if (quantitat <= 0) {
+                throw new NegatiuException("Error: La quantitat ha de ser positiva.");
+            }
+            carret.afegirProducte(crearProducte(camps), quantitat);
+            productes += quantitat;
+        } catch (EnumFailException | NegatiuException | LimitCaracteresException | DataCaducitatException
+                 | LimitProductesException e) {
+            errors++;
+            System.err.println("Línia " + numeroLinia + ": " + e.getMessage());
+        } catch (NumberFormatException | DateTimeParseException e) {
+            errors++;
+            System.err.println("Línia " + numeroLinia + ": Error: Format de camp incorrecte.");
+        }
+    }
+
+    /**
+     * Obté del registre de productes el producte descrit pels camps d'una línia.
+     *
+     * @param camps Els camps de la línia: tipus, nom, preu, codi de barres, atribut específic i, opcionalment, quantitat.
+     * @return El producte creat.
+     * @throws EnumFailException Si el tipus de producte no és vàlid o el nombre de camps és incorrecte.
+     * @throws NegatiuException Si el preu o la garantia no són vàlids.
+     * @throws LimitCaracteresException Si el nom, el codi de barres o la composició no són vàlids.
+     * @throws DataCaducitatException Si la data de caducitat és anterior a avui.
+     */
+    private Product crearProducte(String[] camps)
+            throws EnumFailException, NegatiuException, LimitCaracteresException, DataCaducitatException {
+        if (camps.length != 5 && camps.length != 6) {
+            throw new EnumFailException("Error: La línia ha de tenir 5 o 6 camps separats per punt i coma.");
+        }
+
+        TipusProducte tipus;
+        try {
+            tipus = TipusProducte.valueOf(camps[0].trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new EnumFailException();
+        }
+
+        String nom = camps[1].trim();
+        long preu = Diners.parse(camps[2].trim());
+        String codiBarres = camps[3].trim();
+        String atribut = camps[4].trim();
+
+        switch (tipus) {
+            case ALIMENTACIO:
+                return registre.alimentacio(nom, preu, codiBarres, LocalDate.parse(atribut, FORMAT_DATA));
+            case TEXTIL:
+                return registre.textil(nom, preu, codiBarres, atribut);
+            default:
+                return registre.electronica(nom, preu, codiBarres, Integer.parseInt(atribut));
+        }
+    }
+
+    /**
+     * Genera el tiquet del carret actual a la sortida indicada.
+     *
+     * @param tiquets La sortida on s'escriuen els tiquets.
+     * @throws IOException Si hi ha un error en escriure el tiquet.
+     */
+    private void passarPerCaixa(SortidaTiquet tiquets) throws IOException {
+        carret.imprimir(tiquets);
+        this.tiquets++;
+    }
+
+    /**
+     * Mostra el resum del processament amb el rendiment obtingut.
+     *
+     * @param nanos El temps total de processament en nanosegons.
+     */
+    private void mostrarResum(long nanos) {
+        double segons = nanos / 1_000_000_000.0;
+        System.out.println("----- RESUM DEL LOT -----");
+        System.out.println("Operacions: " + operacions);
+        System.out.println("Productes afegits: " + productes);
+        System.out.println("Tiquets generats: " + tiquets);
+        System.out.println("Errors: " + errors);
+        System.out.printf("Temps: %.3f s%n", segons);
+        System.out.printf("Rendiment: %.0f operacions/s%n", segons > 0 ? operacions / segons : 0);
+        System.out.printf("Unitats per tiquet: %.2f%n", vendes.mitjanaUnitatsPerTiquet());
+        System.out.println("Descomptes: " + Diners.format(vendes.getTotalDescomptes()) + " EUR");
+        for (VendaProducte venda : vendes.productesMesVenuts(PRODUCTES_RESUM)) {
+            System.out.println("Més venut: " + venda);
+        }
+    }
+
+    /**
+     * Estableix les promocions que s'apliquen als tiquets del lot.
+     *
+     * @param promocions Les promocions, o null per no aplicar-ne cap.
+     */
+    public void setPromocions(Promocions promocions) {
+        carret.setPromocions(promocions);
+    }
+
+    /**
+     * Retorna el nombre d'operacions processades.
+     *
+     * @return El nombre d'operacions.
+     */
+    public long getOperacions() {
+        return operacions;
+    }
+
+    /**
+     * Retorna el nombre de tiquets generats.
+     *
+     * @return El nombre de tiquets.
+     */
+    public long getTiquets() {
+        return tiquets;
+    }
+
+    /**
+     * Retorna el registre de vendes amb els tiquets cobrats.
+     *
+     * @return El registre de vendes.
+     */
+    public RegistreVendes getVendes() {
+        return vendes;
+    }
+
+    /**
+     * Retorna el nombre de línies amb errors.
+     *
+     * @return El nombre d'errors.
+     */
+    public long getErrors() {
+        return errors;
+    }
+}
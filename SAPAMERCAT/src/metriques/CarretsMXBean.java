@@ -0,0 +1,62 @@
+package metriques;
+
+/**
+ * Interfície de gestió (JMX) amb els comptadors de les operacions de tots els carrets del procés i l'estat dels carrets
+ * oberts.
+ * Un carret està obert des que s'hi afegeix el primer producte fins que passa per caixa, es buida o es descarta.
+ *
+ * @author Joan Miralles Carmona
+ */
+public interface CarretsMXBean {
+
+    /**
+     * Retorna el nombre de carrets oberts.
+     *
+     * @return El nombre de carrets amb alguna línia.
+     */
+    long getCarretsOberts();
+
+    /**
+     * Retorna el nombre total de línies dels carrets oberts.
+     *
+     * @return La suma de les línies de tots els carrets oberts.
+     */
+    long getLiniesObertes();
+
+    /**
+     * Retorna la mitjana de línies per carret obert.
+     *
+     * @return Les línies obertes dividides pels carrets oberts, o 0 si no n'hi ha cap.
+     */
+    double getMitjanaLiniesPerCarret();
+
+    /**
+     * Retorna el nombre d'operacions d'afegir productes acabades correctament. Un lot de productes compta com una operació.
+     * Pot anar endarrerit fins a Metriques.MOSTREIG - 1 operacions per cada carret obert.
+     *
+     * @return El nombre d'operacions d'afegir.
+     */
+    long getOperacionsAfegir();
+
+    /**
+     * Retorna el nombre de cerques de productes als carrets.
+     * Pot anar endarrerit fins a Metriques.MOSTREIG - 1 cerques per cada carret obert.
+     *
+     * @return El nombre de cerques.
+     */
+    long getCerques();
+
+    /**
+     * Retorna el nombre de vegades que s'ha mostrat un carret.
+     *
+     * @return El nombre de visualitzacions.
+     */
+    long getVisualitzacions();
+
+    /**
+     * Retorna el nombre de tiquets generats.
+     *
+     * @return El nombre de carrets que han passat per caixa.
+     */
+    long getTiquets();
+}
@@ -0,0 +1,52 @@
+package metriques;
+
+/**
+ * Interfície de gestió (JMX) amb el nombre de vegades que s'ha creat cada excepció de validació de l'aplicació.
+ * Les excepcions es compten en crear-les, que a l'aplicació sempre és just abans de llançar-les.
+ *
+ * @author Joan Miralles Carmona
+ */
+public interface ExcepcionsMXBean {
+
+    /**
+     * Retorna el nombre de NegatiuException.
+     *
+     * @return El nombre d'excepcions per valors negatius.
+     */
+    long getNegatiu();
+
+    /**
+     * Retorna el nombre de LimitCaracteresException.
+     *
+     * @return El nombre d'excepcions per textos o codis de barres no vàlids.
+     */
+    long getLimitCaracteres();
+
+    /**
+     * Retorna el nombre de DataCaducitatException.
+     *
+     * @return El nombre d'excepcions per dates de caducitat no vàlides.
+     */
+    long getDataCaducitat();
+
+    /**
+     * Retorna el nombre de LimitProductesException.
+     *
+     * @return El nombre d'excepcions per carrets plens.
+     */
+    long getLimitProductes();
+
+    /**
+     * Retorna el nombre d'EnumFailException.
+     *
+     * @return El nombre d'excepcions per valors d'enumeracions no vàlids.
+     */
+    long getEnumFail();
+
+    /**
+     * Retorna el nombre total d'excepcions de validació.
+     *
+     * @return La suma de totes les excepcions.
+     */
+    long getTotal();
+}
@@ -0,0 +1,196 @@
+package metriques;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de valors no negatius amb intervals logarítmics, pensat per registrar latències des de molts fils alhora.
+ * - Cada potència de dos es divideix en quatre intervals, de manera que l'error relatiu dels percentils és com a
+ *   molt d'un 25% per a qualsevol valor, des de nanosegons fins a hores, amb només 248 intervals.
+ * - Cada interval és un LongAdder: registrar un valor no bloqueja ni fa esperar cap fil i, si diversos fils registren
+ *   alhora, cadascun incrementa la seva pròpia cel·la.
+ * - El càlcul dels percentils es fa només en llegir-los, recorrent els intervals.
+ * Les lectures no són atòmiques: un valor registrat durant una lectura pot comptar-se en unes estadístiques i no en
+ * unes altres.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class Histograma implements HistogramaMXBean {
+    private static final int BITS_SUBINTERVAL = 2;
+    private static final int SUBINTERVALS = 1 << BITS_SUBINTERVAL;
+    private static final int NOMBRE_INTERVALS = (Long.SIZE - BITS_SUBINTERVAL) * SUBINTERVALS;
+
+    private final LongAdder[] intervals;
+    private final LongAdder suma;
+    private final LongAccumulator maxim;
+
+    /**
+     * Construeix un histograma buit.
+     */
+    public Histograma() {
+        this.intervals = new LongAdder[NOMBRE_INTERVALS];
+        for (int i = 0; i < NOMBRE_INTERVALS; i++) {
+            intervals[i] = new LongAdder();
+        }
+        this.suma = new LongAdder();
+        this.maxim = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Registra un valor. Els valors negatius (per exemple, per un rellotge que retrocedeix) es registren com a 0.
+     *
+     * @param valor El valor a registrar.
+     */
+    public void registrar(long valor) {
+        long positiu = Math.max(valor, 0);
+        intervals[interval(positiu)].increment();
+        suma.add(positiu);
+        maxim.accumulate(positiu);
+    }
+
+    /**
+     * Calcula l'interval d'un valor: els valors de 0 a 3 tenen un interval propi, i cada potència de dos superior es
+     * divideix en quatre intervals segons els dos bits que segueixen el bit més alt.
+     *
+     * @param valor El valor, no negatiu.
+     * @return La posició de l'interval.
+     */
+    private static int interval(long valor) {
+        if (valor < SUBINTERVALS) {
+            return (int) valor;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(valor);
+        int subinterval = (int) (valor >>> (exponent - BITS_SUBINTERVAL)) & (SUBINTERVALS - 1);
+        return (exponent - BITS_SUBINTERVAL + 1) * SUBINTERVALS + subinterval;
+    }
+
+    /**
+     * Calcula el valor més gran que pertany a un interval.
+     *
+     * @param interval La posició de l'interval.
+     * @return El límit superior de l'interval.
+     */
+    private static long limitSuperior(int interval) {
+        if (interval < SUBINTERVALS) {
+            return interval;
+        }
+        int exponent = interval / SUBINTERVALS + BITS_SUBINTERVAL - 1;
+        long inici = (long) (SUBINTERVALS + interval % SUBINTERVALS) << (exponent - BITS_SUBINTERVAL);
+        return inici + (1L << (exponent - BITS_SUBINTERVAL)) - 1;
+    }
+
+    /**
+     * Calcula un percentil aproximat dels valors registrats.
+     *
+     * @param percentil El percentil, entre 0 i 100.
+     * @return El límit superior de l'interval on cau el percentil, sense superar el màxim, o 0 si no hi ha valors.
+     */
+    public long percentil(double percentil) {
+        long[] comptes = new long[NOMBRE_INTERVALS];
+        long total = 0;
+        for (int i = 0; i < NOMBRE_INTERVALS; i++) {
+            comptes[i] = intervals[i].sum();
+            total += comptes[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long posicio = Math.max(1, (long) Math.ceil(total * percentil / 100));
+        long acumulat = 0;
+        for (int i = 0; i < NOMBRE_INTERVALS; i++) {
+            acumulat += comptes[i];
+            if (acumulat >= posicio) {
+                return Math.min(limitSuperior(i), maxim.get());
+            }
+        }
+        return maxim.get();
+    }
+
+    /**
+     * Retorna el nombre de valors registrats, sumant els comptes de tots els intervals.
+     *
+     * @return El nombre de valors.
+     */
+    @Override
+    public long getNombre() {
+        long total = 0;
+        for (LongAdder interval : intervals) {
+            total += interval.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Retorna la mitjana exacta dels valors registrats.
+     *
+     * @return La mitjana, o 0 si no n'hi ha cap.
+     */
+    @Override
+    public double getMitjana() {
+        long nombre = getNombre();
+        return nombre == 0 ? 0 : (double) suma.sum() / nombre;
+    }
+
+    /**
+     * Retorna la mediana aproximada dels valors registrats.
+     *
+     * @return El percentil 50.
+     */
+    @Override
+    public long getP50() {
+        return percentil(50);
+    }
+
+    /**
+     * Retorna el percentil 90 aproximat dels valors registrats.
+     *
+     * @return El percentil 90.
+     */
+    @Override
+    public long getP90() {
+        return percentil(90);
+    }
+
+    /**
+     * Retorna el percentil 99 aproximat dels valors registrats.
+     *
+     * @return El percentil 99.
+     */
+    @Override
+    public long getP99() {
+        return percentil(99);
+    }
+
+    /**
+     * Retorna el percentil 99,9 aproximat dels valors registrats.
+     *
+     * @return El percentil 99,9.
+     */
+    @Override
+    public long getP999() {
+        return percentil(99.9);
+    }
+
+    /**
+     * Retorna el valor més gran registrat, que és exacte.
+     *
+     * @return El màxim, o 0 si no n'hi ha cap.
+     */
+    @Override
+    public long getMaxim() {
+        return maxim.get();
+    }
+
+    /**
+     * Descarta tots els valors registrats. Els valors que es registren mentre es reinicia poden perdre's.
+     */
+    @Override
+    public void reiniciar() {
+        for (LongAdder interval : intervals) {
+            interval.reset();
+        }
+        suma.reset();
+        maxim.reset();
+    }
+}
@@ -0,0 +1,66 @@
+package metriques;
+
+/**
+ * Interfície de gestió (JMX) d'un histograma de valors, com ara les latències d'una operació o les mides dels carrets.
+ * Tots els valors es donen en la unitat de l'histograma, que s'indica al nom de l'MBean.
+ * Els percentils són aproximats: es retorna el límit superior de l'interval on cau el percentil, amb un error màxim
+ * d'un 25%.
+ *
+ * @author Joan Miralles Carmona
+ */
+public interface HistogramaMXBean {
+
+    /**
+     * Retorna el nombre de valors registrats.
+     *
+     * @return El nombre de valors.
+     */
+    long getNombre();
+
+    /**
+     * Retorna la mitjana dels valors registrats.
+     *
+     * @return La mitjana, o 0 si no n'hi ha cap.
+     */
+    double getMitjana();
+
+    /**
+     * Retorna la mediana dels valors registrats.
+     *
+     * @return El percentil 50.
+     */
+    long getP50();
+
+    /**
+     * Retorna el percentil 90 dels valors registrats.
+     *
+     * @return El percentil 90.
+     */
+    long getP90();
+
+    /**
+     * Retorna el percentil 99 dels valors registrats.
+     *
+     * @return El percentil 99.
+     */
+    long getP99();
+
+    /**
+     * Retorna el percentil 99,9 dels valors registrats.
+     *
+     * @return El percentil 99,9.
+     */
+    long getP999();
+
+    /**
+     * Retorna el valor més gran registrat.
+     *
+     * @return El màxim, o 0 si no n'hi ha cap.
+     */
+    long getMaxim();
+
+    /**
+     * Descarta tots els valors registrats.
+     */
+    void reiniciar();
+}
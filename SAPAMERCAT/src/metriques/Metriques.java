@@ -0,0 +1,407 @@
+package metriques;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mètriques de funcionament de l'aplicació, publicades com a MBeans de JMX perquè es puguin consultar en producció
+ * (amb JConsole, VisualVM o qualsevol agent JMX) sense aturar el procés.
+ * Les mètriques són globals per a tot el procés i estan sempre actives, de manera que han de tenir un cost mínim:
+ * - Tots els comptadors són LongAdder, que no bloquegen cap fil i no es disputen entre sessions de caixa paral·leles.
+ * - Les latències es registren en histogrames amb intervals logarítmics (vegeu Histograma).
+ * - Afegir i cercar productes només triguen desenes de nanosegons, gairebé el mateix que llegir el rellotge o
+ *   incrementar un LongAdder. Per això cada carret compta aquestes operacions en comptadors propis, i només una de
+ *   cada MOSTREIG operacions es mesura i suma les MOSTREIG operacions als comptadors globals. La resta se sumen quan
+ *   el carret es buida, de manera que els comptadors globals poden anar endarrerits MOSTREIG - 1 operacions per carret.
+ * - Mostrar el carret i passar per caixa es mesuren sempre.
+ *
+ * MBeans publicats per registrar(), al domini "sapamercat":
+ * - type=Carrets: comptadors d'operacions, carrets oberts i línies dels carrets oberts.
+ * - type=Carrets,name=liniesPerTiquet: histograma del nombre de línies de cada tiquet.
+ * - type=Latencia,name=afegir|cercar|mostrar|caixa: histogrames de latència de cada operació, en nanosegons.
+ * - type=Excepcions: nombre d'excepcions de validació de cada tipus.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class Metriques {
+    /**
+     * Domini dels noms dels MBeans de l'aplicació.
+     */
+    public static final String DOMINI = "sapamercat";
+
+    /**
+     * Es mesura la latència d'una de cada MOSTREIG operacions ràpides. Ha de ser una potència de dos.
+     */
+    public static final int MOSTREIG = 64;
+
+    /**
+     * Valor d'inici que indica que l'operació no es mesura.
+     */
+    public static final long SENSE_MESURA = Long.MIN_VALUE;
+
+    /**
+     * Tipus d'excepcions de validació que es compten.
+     */
+    public enum Excepcio {
+        /**
+         * NegatiuException.
+         */
+        NEGATIU,
+
+        /**
+         * LimitCaracteresException.
+         */
+        LIMIT_CARACTERES,
+
+        /**
+         * DataCaducitatException.
+         */
+        DATA_CADUCITAT,
+
+        /**
+         * LimitProductesException.
+         */
+        LIMIT_PRODUCTES,
+
+        /**
+         * EnumFailException.
+         */
+        ENUM_FAIL
+    }
+
+    private static final Histograma AFEGIR = new Histograma();
+    private static final Histograma CERCAR = new Histograma();
+    private static final Histograma MOSTRAR = new Histograma();
+    private static final Histograma CAIXA = new Histograma();
+    private static final Histograma LINIES_PER_TIQUET = new Histograma();
+    private static final Carrets CARRETS = new Carrets();
+    private static final Excepcions EXCEPCIONS = new Excepcions();
+
+    private Metriques() {
+    }
+
+    /**
+     * Publica els MBeans de les mètriques al servidor de MBeans de la plataforma.
+     * Es pot cridar més d'una vegada: els MBeans ja publicats no es tornen a publicar.
+     *
+     * @throws JMException Si algun MBean no es pot publicar.
+     */
+    public static synchronized void registrar() throws JMException {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        registrar(servidor, "type=Carrets", CARRETS);
+        registrar(servidor, "type=Carrets,name=liniesPerTiquet", LINIES_PER_TIQUET);
+        registrar(servidor, "type=Latencia,name=afegir", AFEGIR);
+        registrar(servidor, "type=Latencia,name=cercar", CERCAR);
+        registrar(servidor, "type=Latencia,name=mostrar", MOSTRAR);
+        registrar(servidor, "type=Latencia,name=caixa", CAIXA);
+        registrar(servidor, "type=Excepcions", EXCEPCIONS);
+    }
+
+    /**
+     * Publica un MBean amb les propietats de nom indicades, si encara no hi és.
+     *
+     * @param servidor El servidor de MBeans.
+     * @param propietats Les propietats del nom de l'MBean, sense el domini.
+     * @param mbean L'MBean a publicar.
+     * @throws JMException Si l'MBean no es pot publicar.
+     */
+    private static void registrar(MBeanServer servidor, String propietats, Object mbean) throws JMException {
+        ObjectName nom = new ObjectName(DOMINI + ":" + propietats);
+        if (!servidor.isRegistered(nom)) {
+            servidor.registerMBean(mbean, nom);
+        }
+    }
+
+    /**
+     * Comença la mesura d'una operació ràpida, només si li toca segons el mostreig.
+     *
+     * @param operacio El número de l'operació segons el comptador propi de qui mesura, començant per 1.
+     * @return L'instant d'inici en nanosegons, o SENSE_MESURA si l'operació no es mesura.
+     */
+    public static long iniciar(int operacio) {
+        return (operacio & (MOSTREIG - 1)) == 0 ? System.nanoTime() : SENSE_MESURA;
+    }
+
+    /**
+     * Comença la mesura d'una operació que es mesura sempre.
+     *
+     * @return L'instant d'inici en nanosegons.
+     */
+    public static long iniciar() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Registra una operació d'afegir productes acabada. Si l'operació s'ha mesurat, també suma als comptadors globals
+     * les MOSTREIG operacions d'afegir que ha comptat el carret des de l'última mesura.
+     *
+     * @param inici L'instant d'inici obtingut amb iniciar(int).
+     */
+    public static void afegit(long inici) {
+        if (inici != SENSE_MESURA) {
+            AFEGIR.registrar(System.nanoTime() - inici);
+            CARRETS.afegir.add(MOSTREIG);
+        }
+    }
+
+    /**
+     * Registra una cerca de productes acabada. Si la cerca s'ha mesurat, també suma als comptadors globals les
+     * MOSTREIG cerques que ha comptat el carret des de l'última mesura.
+     *
+     * @param inici L'instant d'inici obtingut amb iniciar(int).
+     */
+    public static void cercat(long inici) {
+        if (inici != SENSE_MESURA) {
+            CERCAR.registrar(System.nanoTime() - inici);
+            CARRETS.cerques.add(MOSTREIG);
+        }
+    }
+
+    /**
+     * Registra una visualització d'un carret acabada.
+     *
+     * @param inici L'instant d'inici obtingut amb iniciar().
+     */
+    public static void mostrat(long inici) {
+        CARRETS.visualitzacions.increment();
+        acabar(MOSTRAR, inici);
+    }
+
+    /**
+     * Registra un tiquet generat.
+     *
+     * @param inici L'instant d'inici obtingut amb iniciar().
+     * @param linies El nombre de línies del tiquet.
+     */
+    public static void tiquet(long inici, int linies) {
+        CARRETS.tiquets.increment();
+        LINIES_PER_TIQUET.registrar(linies);
+        acabar(CAIXA, inici);
+    }
+
+    /**
+     * Registra la latència d'una operació.
+     *
+     * @param histograma L'histograma de l'operació.
+     * @param inici L'instant d'inici obtingut amb iniciar().
+     */
+    private static void acabar(Histograma histograma, long inici) {
+        histograma.registrar(System.nanoTime() - inici);
+    }
+
+    /**
+     * Registra una línia nova en un carret.
+     *
+     * @param primera Si és la primera línia del carret, que per tant passa a estar obert.
+     */
+    public static void liniaNova(boolean primera) {
+        CARRETS.linies.increment();
+        if (primera) {
+            CARRETS.carrets.increment();
+        }
+    }
+
+    /**
+     * Registra que s'ha eliminat una línia d'un carret.
+     *
+     * @param darrera Si era l'última línia del carret, que per tant deixa d'estar obert.
+     */
+    public static void liniaEliminada(boolean darrera) {
+        CARRETS.linies.decrement();
+        if (darrera) {
+            CARRETS.carrets.decrement();
+        }
+    }
+
+    /**
+     * Registra que s'han eliminat totes les línies d'un carret i suma als comptadors globals les operacions que el
+     * carret encara no hi havia sumat. El carret ha de posar els seus comptadors a zero.
+     *
+     * @param linies El nombre de línies que tenia el carret.
+     * @param afegits El comptador d'operacions d'afegir del carret.
+     * @param cerques El comptador de cerques del carret.
+     */
+    public static void carretBuidat(int linies, int afegits, int cerques) {
+        CARRETS.afegir.add(afegits & (MOSTREIG - 1));
+        CARRETS.cerques.add(cerques & (MOSTREIG - 1));
+        if (linies > 0) {
+            CARRETS.linies.add(-linies);
+            CARRETS.carrets.decrement();
+        }
+    }
+
+    /**
+     * Registra la creació d'una excepció de validació.
+     *
+     * @param excepcio El tipus d'excepció.
+     */
+    public static void excepcio(Excepcio excepcio) {
+        EXCEPCIONS.comptadors[excepcio.ordinal()].increment();
+    }
+
+    /**
+     * Comptadors de l'MBean de carrets.
+     */
+    private static final class Carrets implements CarretsMXBean {
+        private final LongAdder carrets = new LongAdder();
+        private final LongAdder linies = new LongAdder();
+        private final LongAdder afegir = new LongAdder();
+        private final LongAdder cerques = new LongAdder();
+        private final LongAdder visualitzacions = new LongAdder();
+        private final LongAdder tiquets = new LongAdder();
+
+        /**
+         * Retorna el nombre de carrets oberts.
+         *
+         * @return El nombre de carrets amb alguna línia.
+         */
+        @Override
+        public long getCarretsOberts() {
+            return carrets.sum();
+        }
+
+        /**
+         * Retorna el nombre total de línies dels carrets oberts.
+         *
+         * @return La suma de les línies de tots els carrets oberts.
+         */
+        @Override
+        public long getLiniesObertes() {
+            return linies.sum();
+        }
+
+        /**
+         * Retorna la mitjana de línies per carret obert.
+         *
+         * @return Les línies obertes dividides pels carrets oberts, o 0 si no n'hi ha cap.
+         */
+        @Override
+        public double getMitjanaLiniesPerCarret() {
+            long oberts = carrets.sum();
+            return oberts <= 0 ? 0 : (double) linies.sum() / oberts;
+        }
+
+        /**
+         * Retorna el nombre d'operacions d'afegir productes acabades correctament.
+         *
+         * @return El nombre d'operacions d'afegir.
+         */
+        @Override
+        public long getOperacionsAfegir() {
+            return afegir.sum();
+        }
+
+        /**
+         * Retorna el nombre de cerques de productes als carrets.
+         *
+         * @return El nombre de cerques.
+         */
+        @Override
+        public long getCerques() {
+            return cerques.sum();
+        }
+
+        /**
+         * Retorna el nombre de vegades que s'ha mostrat un carret.
+         *
+         * @return El nombre de visualitzacions.
+         */
+        @Override
+        public long getVisualitzacions() {
+            return visualitzacions.sum();
+        }
+
+        /**
+         * Retorna el nombre de tiquets generats.
+         *
+         * @return El nombre de carrets que han passat per caixa.
+         */
+        @Override
+        public long getTiquets() {
+            return tiquets.sum();
+        }
+    }
+
+    /**
+     * Comptadors de l'MBean d'excepcions, un per cada tipus d'Excepcio.
+     */
+    private static final class Excepcions implements ExcepcionsMXBean {
+        private final LongAdder[] comptadors = new LongAdder[Excepcio.values().length];
+
+        /**
+         * Construeix els comptadors a zero.
+         */
+        Excepcions() {
+            for (int i = 0; i < comptadors.length; i++) {
+                comptadors[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Retorna el nombre de NegatiuException.
+         *
+         * @return El nombre d'excepcions per valors negatius.
+         */
+        @Override
+        public long getNegatiu() {
+            return comptadors[Excepcio.NEGATIU.ordinal()].sum();
+        }
+
+        /**
+         * Retorna el nombre de LimitCaracteresException.
+         *
+         * @return El nombre d'excepcions per textos o codis de barres no vàlids.
+         */
+        @Override
+        public long getLimitCaracteres() {
+            return comptadors[Excepcio.LIMIT_CARACTERES.ordinal()].sum();
+        }
+
+        /**
+         * Retorna el nombre de DataCaducitatException.
+         *
+         * @return El nombre d'excepcions per dates de caducitat no vàlides.
+         */
+        @Override
+        public long getDataCaducitat() {
+            return comptadors[Excepcio.DATA_CADUCITAT.ordinal()].sum();
+        }
+
+        /**
+         * Retorna el nombre de LimitProductesException.
+         *
+         * @return El nombre d'excepcions per carrets plens.
+         */
+        @Override
+        public long getLimitProductes() {
+            return comptadors[Excepcio.LIMIT_PRODUCTES.ordinal()].sum();
+        }
+
+        /**
+         * Retorna el nombre d'EnumFailException.
+         *
+         * @return El nombre d'excepcions per valors d'enumeracions no vàlids.
+         */
+        @Override
+        public long getEnumFail() {
+            return comptadors[Excepcio.ENUM_FAIL.ordinal()].sum();
+        }
+
+        /**
+         * Retorna el nombre total d'excepcions de validació.
+         *
+         * @return La suma de totes les excepcions.
+         */
+        @Override
+        public long getTotal() {
+            long total = 0;
+            for (LongAdder comptador : comptadors) {
+                total += comptador.sum();
+            }
+            return total;
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package model;
 
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
 
 import exceptions.DataCaducitatException;
 import exceptions.LimitCaracteresException;
 import exceptions.NegatiuException;
+import utils.Diners;
 import utils.Validacions;
 
 /**
@@ -14,31 +15,79 @@ import utils.Validacions;
  * Aquesta classe gestiona productes de tipus alimentació amb característiques específiques:
  * - Data de caducitat que afecta el preu del producte.
  * - Càlcul del preu basat en la proximitat a la data de caducitat.
- * - Validació per assegurar que la data de caducitat no sigui anterior a la data actual.
+ * - Validació per assegurar que la data de caducitat no sigui anterior al dia actual d'un rellotge.
  * 
  * @author Joan Miralles Carmona
  */
 public class Alimentacio extends Product {
     private LocalDate dataCaducitat;
+    private long diaCaducitat;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
     /**
      * Construeix un nou producte d'alimentació amb les dades proporcionades.
-     * Valida la data de caducitat per assegurar que no és anterior a la data actual.
+     * Valida la data de caducitat per assegurar que no és anterior al dia actual del rellotge indicat.
      *
      * @param nom El nom del producte d'alimentació.
-     * @param preu El preu base del producte.
+     * @param preu El preu base del producte en cèntims.
      * @param codiBarres El codi de barres únic del producte.
      * @param dataCaducitat La data de caducitat del producte.
-     * @throws DataCaducitatException Si la data de caducitat és anterior a la data actual.
+     * @param rellotge El rellotge que determina el dia actual.
+     * @throws DataCaducitatException Si la data de caducitat és anterior al dia actual.
      * @throws NegatiuException Si el preu és negatiu o zero.
      * @throws LimitCaracteresException Si el codi de barres no compleix amb els requisits.
      */
-    public Alimentacio(String nom, double preu, String codiBarres, LocalDate dataCaducitat)
+    public Alimentacio(String nom, long preu, String codiBarres, LocalDate dataCaducitat, Clock rellotge)
             throws DataCaducitatException, NegatiuException, LimitCaracteresException {
         super(nom, preu, codiBarres);
-        Validacions.validarDataCaducitat(dataCaducitat);
+        Validacions.validarDataCaducitat(dataCaducitat, ContextPreu.diaActual(rellotge));
         this.dataCaducitat = dataCaducitat;
+        this.diaCaducitat = dataCaducitat.toEpochDay();
+    }
+
+    /**
+     * Construeix un nou producte d'alimentació amb un codi de barres ja validat.
+     * Valida la data de caducitat per assegurar que no és anterior al dia actual del rellotge indicat.
+     *
+     * @param nom El nom del producte d'alimentació.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres únic del producte.
+     * @param dataCaducitat La data de caducitat del producte.
+     * @param rellotge El rellotge que determina el dia actual.
+     * @throws DataCaducitatException Si la data de caducitat és anterior al dia actual.
+     * @throws NegatiuException Si el preu és negatiu o zero.
+     */
+    public Alimentacio(String nom, long preu, CodiBarres codiBarres, LocalDate dataCaducitat, Clock rellotge)
+            throws DataCaducitatException, NegatiuException {
+        super(nom, preu, codiBarres);
+        Validacions.validarDataCaducitat(dataCaducitat, ContextPreu.diaActual(rellotge));
+        this.dataCaducitat = dataCaducitat;
+        this.diaCaducitat = dataCaducitat.toEpochDay();
+    }
+
+    /**
+     * Construeix un producte d'alimentació buit per restaurar-lo a partir de dades ja validades.
+     */
+    private Alimentacio() {
+    }
+
+    /**
+     * Restaura un producte d'alimentació a partir de dades ja validades, sense tornar-les a validar.
+     * S'utilitza per recuperar productes emmagatzemats, com ara els del catàleg, encara que ja hagin caducat.
+     *
+     * @param nom El nom del producte d'alimentació.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres únic del producte.
+     * @param dataCaducitat La data de caducitat del producte.
+     * @return El producte restaurat.
+     */
+    static Alimentacio restaurar(String nom, long preu, CodiBarres codiBarres, LocalDate dataCaducitat) {
+        Alimentacio producte = new Alimentacio();
+        producte.nom = nom;
+        producte.preu = preu;
+        producte.codiBarres = codiBarres;
+        producte.setDataCaducitat(dataCaducitat);
+        return producte;
     }
 
     /**
@@ -57,25 +106,64 @@ public class Alimentacio extends Product {
      */
     public void setDataCaducitat(LocalDate dataCaducitat) {
         this.dataCaducitat = dataCaducitat;
+        this.diaCaducitat = dataCaducitat.toEpochDay();
     }
 
     /**
      * Calcula el preu del producte tenint en compte la proximitat a la data de caducitat.
      * Si el producte ha caducat, el seu preu és 0.
      * La fórmula aplicada és: preu - preu * (1.0 / (diesRestants + 1)) + (preu * 0.1).
+     * Es calcula en cèntims com a preu * (11 * (diesRestants + 1) - 10) / (10 * (diesRestants + 1)),
+     * amb una sola divisió arrodonida al cèntim més proper (els mitjos cèntims cap amunt).
+     * Els dies restants es calculen a partir del dia del context, sense consultar el rellotge.
+     * Si el context té la taula de preus precalculats del dia i el producte hi és, el preu s'hi llegeix directament.
      *
-     * @return El preu calculat segons els dies que falten per caducar.
+     * @param context El context de preus que fixa el dia de càlcul.
+     * @return El preu calculat en cèntims segons els dies que falten per caducar.
+     * @throws ArithmeticException Si el càlcul no cap en un long.
      */
     @Override
-    public double calcularPreu() {
-        LocalDate dataActual = LocalDate.now();
-        long diesRestants = ChronoUnit.DAYS.between(dataActual, dataCaducitat);
+    public long calcularPreu(ContextPreu context) {
+        long precalculat = context.preuPrecalculat(codiBarres.clau(), preu, diaCaducitat);
+        return precalculat >= 0 ? precalculat : calcularPreu(preu, diaCaducitat - context.getDiaEpoca());
+    }
 
+    /**
+     * Aplica la fórmula de preu dels productes d'alimentació.
+     * És la mateixa fórmula per al càlcul d'un sol producte i per al càlcul per lots de PreusCarret.
+     *
+     * @param preu El preu base en cèntims.
+     * @param diesRestants Els dies que falten per caducar; si és negatiu, el producte ha caducat.
+     * @return El preu calculat en cèntims.
+     * @throws ArithmeticException Si el càlcul no cap en un long.
+     */
+    static long calcularPreu(long preu, long diesRestants) {
         if (diesRestants < 0) {
             return 0;
         }
 
-        return preu - preu * (1.0 / (diesRestants + 1)) + (preu * 0.1);
+        long dies = diesRestants + 1;
+        return Diners.dividir(Math.multiplyExact(preu, 11 * dies - 10), 10 * dies);
+    }
+
+    /**
+     * Retorna el tipus del producte.
+     *
+     * @return TipusProducte.ALIMENTACIO.
+     */
+    @Override
+    public TipusProducte getTipus() {
+        return TipusProducte.ALIMENTACIO;
+    }
+
+    /**
+     * Retorna el dia de caducitat en dies des de l'època, que determina el preu calculat.
+     *
+     * @return El dia de caducitat.
+     */
+    @Override
+    public long getAtribut() {
+        return diaCaducitat;
     }
 
     /**
@@ -2,6 +2,7 @@ package model;
 
 /**
  * Interfície que defineix la capacitat d'un objecte per calcular el seu preu.
+ * Els preus es calculen en cèntims d'euro amb aritmètica entera, de manera que el resultat és el mateix en qualsevol màquina.
  * Aquesta interfície és implementada per totes les classes de productes que necessiten calcular el seu preu de manera específica, permetent així diferents fórmules de càlcul segons el tipus de producte:
  * - Productes d'alimentació: El preu varia segons la proximitat a la data de caducitat.
  * - Productes tèxtils: El preu es manté sense canvis.
@@ -12,10 +13,21 @@ package model;
 public interface Calculable {
     
     /**
-     * Calcula el preu actual del producte.
+     * Calcula el preu del producte per al dia del context indicat.
      * Aquest mètode aplica les regles específiques de cada tipus de producte per determinar el seu preu final.
      *
-     * @return El preu calculat del producte.
+     * @param context El context de preus que fixa el dia de càlcul.
+     * @return El preu calculat del producte en cèntims.
+     */
+    long calcularPreu(ContextPreu context);
+
+    /**
+     * Calcula el preu actual del producte.
+     * Crea un context per al dia actual segons el rellotge del sistema.
+     *
+     * @return El preu calculat del producte en cèntims.
      */
-    double calcularPreu();
-}
\ No newline at end of file
+    default long calcularPreu() {
+        return calcularPreu(ContextPreu.avui());
+    }
+}
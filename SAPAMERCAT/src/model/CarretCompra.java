@@ -1,21 +1,43 @@
 package model;
 
 import utils.Addable;
+import metriques.Metriques;
+import utils.MapaLong;
 import utils.Printable;
 import utils.Searchable;
+import utils.Validacions;
+import exceptions.DataCaducitatException;
 import exceptions.LimitProductesException;
+import tiquet.RenderitzadorTiquet;
+import tiquet.SortidaTiquet;
+import traces.OrdenacioEvent;
+import traces.PromocionsEvent;
+import traces.SortidaEvent;
+import traces.TiquetEvent;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
 import java.util.*;
-import java.text.SimpleDateFormat;
+import java.util.function.Consumer;
 
 /**
  * Representa un carret de compra que gestiona els productes afegits i les seves quantitats.
  * Aquesta classe proporciona funcionalitats per:
  * - Afegir nous productes al carret o incrementar la quantitat dels existents.
+ * - Afegir diverses unitats d'un producte o un lot sencer de productes amb una sola comprovació del límit.
+ * - Treure productes o reduir-ne la quantitat en temps constant, conservant l'ordre de la resta de línies.
  * - Visualitzar el contingut del carret sense preus.
+ * - Calcular per lots els preus de totes les línies i aplicar-hi les promocions configurades.
  * - Generar un tiquet de compra amb preus i total.
  * - Cercar productes per codi de barres.
  * 
+ * El carret manté, a mesura que s'hi afegeixen productes, una vista de les línies ordenades per preu (per al tiquet)
+ * i un grup de línies tèxtils per a cada composició (per a la visualització), de manera que no cal ordenar res en mostrar-les.
+ * Per a cada composició també es porta el compte de línies i d'unitats que hi ha al carret.
+ * Els productes no han de canviar de preu ni de composició mentre són al carret.
+ * Les operacions d'afegir, cercar, mostrar i passar per caixa es registren a les mètriques de l'aplicació (vegeu Metriques).
+ * 
  * La classe implementa:
  * - Printable: per generar tiquets de compra.
  * - Searchable: per cercar productes.
@@ -24,128 +46,861 @@ import java.text.SimpleDateFormat;
  * @author Joan Miralles Carmona
  */
 public class CarretCompra implements Printable, Searchable<Product>, Addable {
-    private List<Product> productes;
-    private Map<String, Integer> quantitats;
+    /**
+     * Nombre màxim de productes diferents que admet un carret per defecte.
+     */
+    public static final int MAX_PRODUCTES_PER_DEFECTE = 100;
+
+    private final MapaLong<LiniaCarret> linies;
+    private final MapaLong<Product> nousDelLot;
+    private final int maxProductes;
+    private LiniaCarret primera;
+    private LiniaCarret darrera;
+    private final TreeSet<LiniaCarret> indexPerPreu;
+    private LiniaCarret primeraPerPreu;
+    private final LiniaCarret[] primeraPerComposicio;
+    private final LiniaCarret[] darreraPerComposicio;
+    private final int[] liniesPerComposicio;
+    private final long[] unitatsPerComposicio;
+    private long seguentOrdre;
+    private ObservadorCarret[] observadors;
+    private ContextPreu context;
+    private final RenderitzadorTiquet renderitzador;
+    private final PreusCarret preus;
+    private Promocions promocions;
+    private SortidaTiquet sortida;
+    private int afegits;
+    private int cerques;
 
     /**
-     * Construeix un nou carret de compra buit.
-     * Inicialitza la llista de productes i el mapa de quantitats.
+     * Construeix un nou carret de compra buit amb el límit de productes per defecte.
      */
     public CarretCompra() {
-        this.productes = new ArrayList<>();
-        this.quantitats = new HashMap<>();
+        this(MAX_PRODUCTES_PER_DEFECTE);
+    }
+
+    /**
+     * Construeix un nou carret de compra buit amb un límit de productes diferents personalitzat.
+     * Permet crear carrets majoristes amb molts més productes que el límit per defecte.
+     * Inicialitza l'índex de línies per la clau empaquetada del codi de barres.
+     * Les línies queden enllaçades entre elles per conservar l'ordre d'inserció.
+     *
+     * @param maxProductes El nombre màxim de productes diferents que pot contenir el carret.
+     * @throws IllegalArgumentException Si el límit no és positiu.
+     */
+    public CarretCompra(int maxProductes) {
+        this(maxProductes, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Construeix un nou carret de compra buit amb un límit de productes i un rellotge personalitzats.
+     * El rellotge determina el dia amb què es calculen els preus dels tiquets.
+     *
+     * @param maxProductes El nombre màxim de productes diferents que pot contenir el carret.
+     * @param rellotge El rellotge utilitzat per calcular els preus i la data del tiquet.
+     * @throws IllegalArgumentException Si el límit no és positiu.
+     */
+    public CarretCompra(int maxProductes, Clock rellotge) {
+        if (maxProductes <= 0) {
+            throw new IllegalArgumentException("Error: El límit de productes del carret ha de ser positiu.");
+        }
+        this.maxProductes = maxProductes;
+        this.context = ContextPreu.of(rellotge);
+        this.renderitzador = new RenderitzadorTiquet();
+        this.preus = new PreusCarret();
+        this.sortida = SortidaTiquet.consola();
+        this.observadors = new ObservadorCarret[0];
+        this.linies = new MapaLong<>(Math.min(maxProductes, MAX_PRODUCTES_PER_DEFECTE));
+        this.nousDelLot = new MapaLong<>();
+        ProductComparator perPreu = new ProductComparator();
+        this.indexPerPreu = new TreeSet<>((l1, l2) -> {
+            int comparacio = perPreu.compare(l1.getProducte(), l2.getProducte());
+            return comparacio != 0 ? comparacio : Long.compare(l1.ordre, l2.ordre);
+        });
+        int composicions = Composicio.values().length;
+        this.primeraPerComposicio = new LiniaCarret[composicions];
+        this.darreraPerComposicio = new LiniaCarret[composicions];
+        this.liniesPerComposicio = new int[composicions];
+        this.unitatsPerComposicio = new long[composicions];
+    }
+
+    /**
+     * Retorna el nombre màxim de productes diferents que admet el carret.
+     *
+     * @return El límit de productes diferents del carret.
+     */
+    public int getMaxProductes() {
+        return maxProductes;
     }
 
     /**
      * Afegeix un producte al carret o incrementa la seva quantitat si ja existeix.
      * Si el producte amb el mateix codi de barres ja existeix, s'incrementa la quantitat.
-     * Si el producte és nou, s'afegeix a la llista i s'estableix la quantitat inicial a 1.
+     * Si el producte és nou, s'afegeix una nova línia amb quantitat inicial 1.
+     * L'operació es resol amb una sola consulta a l'índex per codi de barres.
      *
      * @param producte El producte a afegir al carret.
-     * @throws LimitProductesException Si s'intenta afegir més de 100 productes diferents.
+     * @throws LimitProductesException Si s'intenta afegir més productes diferents dels permesos.
      */
     @Override
     public void afegirProducte(Product producte) throws LimitProductesException {
-        if (productes.size() >= 100) {
-            throw new LimitProductesException("Error: No pots afegir més de 100 productes al carret!");
+        afegirProducte(producte, 1);
+    }
+
+    /**
+     * Afegeix diverses unitats d'un producte al carret, amb una sola consulta a l'índex i una sola comprovació del límit.
+     * Permet afegir d'una sola vegada les comandes majoristes o les ràfegues d'escanejos del mateix producte.
+     *
+     * @param producte El producte a afegir al carret.
+     * @param quantitat El nombre d'unitats a afegir.
+     * @throws LimitProductesException Si el producte és nou i el carret ja té el màxim de productes diferents.
+     * @throws IllegalArgumentException Si la quantitat no és positiva.
+     */
+    @Override
+    public void afegirProducte(Product producte, int quantitat) throws LimitProductesException {
+        long inici = Metriques.iniciar(afegits + 1);
+        afegir(producte, quantitat);
+        afegits++;
+        Metriques.afegit(inici);
+    }
+
+    /**
+     * Afegeix diverses unitats d'un producte al carret, sense registrar-ho a les mètriques.
+     *
+     * @param producte El producte a afegir al carret.
+     * @param quantitat El nombre d'unitats a afegir.
+     * @throws LimitProductesException Si el producte és nou i el carret ja té el màxim de productes diferents.
+     * @throws IllegalArgumentException Si la quantitat no és positiva.
+     */
+    private void afegir(Product producte, int quantitat) throws LimitProductesException {
+        comprovarQuantitat(quantitat);
+        long clau = producte.getCodiBarres().clau();
+        LiniaCarret linia = linies.get(clau);
+        if (linia == null) {
+            if (linies.size() >= maxProductes) {
+                throw new LimitProductesException("Error: No pots afegir més de " + maxProductes + " productes al carret!");
+            }
+            linia = novaLinia(producte, clau);
+        }
+        sumarUnitats(linia, quantitat);
+        notificarAfegit(producte, quantitat);
+    }
+
+    /**
+     * Afegeix un lot de productes al carret, en l'ordre del lot.
+     * Abans d'afegir res es compta quants productes diferents són nous i es comprova el límit un sol cop, de manera que
+     * si el lot no hi cap el carret no es modifica. Les aparicions consecutives del mateix producte s'afegeixen com una
+     * sola operació, i els observadors reben una sola notificació per a cada ràfega.
+     *
+     * @param productes Els productes a afegir.
+     * @throws LimitProductesException Si el lot fa superar el màxim de productes diferents del carret.
+     */
+    @Override
+    public void afegirProductes(Collection<? extends Product> productes) throws LimitProductesException {
+        long inici = Metriques.iniciar(afegits + 1);
+        int nous = 0;
+        for (Product producte : productes) {
+            long clau = producte.getCodiBarres().clau();
+            if (!linies.containsKey(clau) && nousDelLot.put(clau, producte) == null) {
+                nous++;
+            }
+        }
+        nousDelLot.clear();
+        if (linies.size() + nous > maxProductes) {
+            throw new LimitProductesException("Error: No pots afegir més de " + maxProductes + " productes al carret!");
         }
 
-        if (quantitats.containsKey(producte.getCodiBarres())) {
-            quantitats.put(producte.getCodiBarres(), quantitats.get(producte.getCodiBarres()) + 1);
+        Product anterior = null;
+        int repeticions = 0;
+        for (Product producte : productes) {
+            if (anterior != null && producte.getCodiBarres().clau() == anterior.getCodiBarres().clau()) {
+                repeticions++;
+                continue;
+            }
+            if (anterior != null) {
+                afegirSenseLimit(anterior, repeticions);
+            }
+            anterior = producte;
+            repeticions = 1;
+        }
+        if (anterior != null) {
+            afegirSenseLimit(anterior, repeticions);
+        }
+        afegits++;
+        Metriques.afegit(inici);
+    }
+
+    /**
+     * Afegeix unitats d'un producte quan ja s'ha comprovat que el carret té lloc per a la seva línia.
+     *
+     * @param producte El producte a afegir.
+     * @param quantitat El nombre d'unitats a afegir.
+     */
+    private void afegirSenseLimit(Product producte, int quantitat) {
+        long clau = producte.getCodiBarres().clau();
+        LiniaCarret linia = linies.get(clau);
+        if (linia == null) {
+            linia = novaLinia(producte, clau);
+        }
+        sumarUnitats(linia, quantitat);
+        notificarAfegit(producte, quantitat);
+    }
+
+    /**
+     * Crea una línia buida per a un producte nou i l'enllaça al final de l'ordre d'inserció i a les vistes ordenades.
+     *
+     * @param producte El producte de la línia.
+     * @param clau La clau del codi de barres del producte.
+     * @return La línia nova.
+     */
+    private LiniaCarret novaLinia(Product producte, long clau) {
+        LiniaCarret linia = new LiniaCarret(producte, seguentOrdre++);
+        linies.put(clau, linia);
+        Metriques.liniaNova(linies.size() == 1);
+        if (darrera == null) {
+            primera = linia;
         } else {
-            productes.add(producte);
-            quantitats.put(producte.getCodiBarres(), 1);
+            darrera.seguent = linia;
+            linia.anterior = darrera;
+        }
+        darrera = linia;
+        OrdenacioEvent event = OrdenacioEvent.iniciar();
+        inserirPerPreu(linia);
+        boolean textil = producte instanceof Textil;
+        if (textil) {
+            inserirPerComposicio(linia, ((Textil) producte).getComposicio());
         }
+        event.acabar(linies.size(), textil);
+        return linia;
     }
 
     /**
-     * Mostra el contingut del carret sense preus.
-     * Els productes tèxtils es mostren ordenats per composició.
-     * Per cada producte es mostra el nom i la quantitat.
-     * Si el carret està buit, es mostra un missatge indicant-ho.
+     * Incrementa la quantitat d'una línia i, si és tèxtil, el compte d'unitats de la seva composició.
+     *
+     * @param linia La línia.
+     * @param unitats El nombre d'unitats a afegir.
      */
-    public void mostrarCarret() {
-        System.out.println("----- CARRET -----");
+    private void sumarUnitats(LiniaCarret linia, int unitats) {
+        linia.incrementar(unitats);
+        if (linia.composicio != null) {
+            unitatsPerComposicio[linia.composicio.ordinal()] += unitats;
+        }
+    }
 
-        if (productes.isEmpty()) {
-            System.out.println("El carret està buit.");
-            System.out.println();
-            return;
+    /**
+     * Comprova que una quantitat a afegir sigui positiva.
+     *
+     * @param quantitat La quantitat.
+     * @throws IllegalArgumentException Si la quantitat no és positiva.
+     */
+    private static void comprovarQuantitat(int quantitat) {
+        if (quantitat <= 0) {
+            throw new IllegalArgumentException("Error: La quantitat ha de ser positiva.");
         }
+    }
+
+    /**
+     * Comprova que un producte obtingut d'una font, com ara el catàleg, no hagi caducat el dia del carret.
+     * Els productes de les fonts es restauren sense validar, i un producte d'alimentació caducat entraria al carret
+     * amb preu 0, mentre que introduir-lo a mà no és possible.
+     *
+     * @param producte El producte obtingut de la font.
+     * @throws DataCaducitatException Si el producte és d'alimentació i ha caducat.
+     */
+    private void comprovarCaducitat(Product producte) throws DataCaducitatException {
+        if (producte instanceof Alimentacio) {
+            context = context.actualitzar();
+            Validacions.validarDataCaducitat(((Alimentacio) producte).getDataCaducitat(), context.getDiaEpoca());
+        }
+    }
+
+    /**
+     * Insereix una línia nova a la vista ordenada per preu.
+     * L'índex ordenat troba la línia anterior en temps logarítmic i la línia s'enllaça just després d'aquesta.
+     *
+     * @param linia La línia nova.
+     */
+    private void inserirPerPreu(LiniaCarret linia) {
+        indexPerPreu.add(linia);
+        LiniaCarret anterior = anteriorViva(indexPerPreu, linia);
+        LiniaCarret seguent = anterior != null ? anterior.seguentPerPreu : primeraPerPreu;
+        linia.anteriorPerPreu = anterior;
+        linia.seguentPerPreu = seguent;
+        if (seguent != null) {
+            seguent.anteriorPerPreu = linia;
+        }
+        if (anterior != null) {
+            anterior.seguentPerPreu = linia;
+        } else {
+            primeraPerPreu = linia;
+        }
+    }
+
+    /**
+     * Afegeix una línia tèxtil nova al final del grup de la seva composició, en temps constant.
+     * Cada composició té el seu propi grup, de manera que les línies queden classificades per composició sense comparar-les
+     * i, dins de cada grup, en l'ordre en què s'han afegit.
+     *
+     * @param linia La línia tèxtil nova.
+     * @param composicio La composició del producte de la línia.
+     */
+    private void inserirPerComposicio(LiniaCarret linia, Composicio composicio) {
+        int grup = composicio.ordinal();
+        LiniaCarret anterior = darreraPerComposicio[grup];
+        linia.composicio = composicio;
+        linia.anteriorPerComposicio = anterior;
+        if (anterior != null) {
+            anterior.seguentPerComposicio = linia;
+        } else {
+            primeraPerComposicio[grup] = linia;
+        }
+        darreraPerComposicio[grup] = linia;
+        liniesPerComposicio[grup]++;
+    }
+
+    /**
+     * Retorna la línia anterior a una línia dins un índex ordenat, ignorant les línies ja tretes del carret.
+     * Les línies tretes no s'eliminen dels índexs en treure-les, perquè això costaria temps logarítmic;
+     * s'eliminen aquí quan una inserció les troba, o totes alhora en buidar el carret.
+     *
+     * @param index L'índex ordenat.
+     * @param linia La línia de referència.
+     * @return La línia anterior encara al carret, o null si no n'hi ha.
+     */
+    private static LiniaCarret anteriorViva(TreeSet<LiniaCarret> index, LiniaCarret linia) {
+        LiniaCarret anterior = index.lower(linia);
+        while (anterior != null && anterior.eliminada) {
+            index.remove(anterior);
+            anterior = index.lower(linia);
+        }
+        return anterior;
+    }
+
+    /**
+     * Treu del carret totes les unitats d'un producte.
+     * La línia es troba a l'índex per codi de barres i es desenllaça de l'ordre d'inserció i de les vistes ordenades
+     * en temps constant, independentment de la mida del carret.
+     *
+     * @param codiBarres El codi de barres del producte a treure.
+     * @return El nombre d'unitats tretes, o 0 si el producte no era al carret.
+     */
+    public int treureProducte(CodiBarres codiBarres) {
+        LiniaCarret linia = linies.get(codiBarres.clau());
+        if (linia == null) {
+            return 0;
+        }
+        int quantitat = linia.getQuantitat();
+        eliminarLinia(codiBarres.clau(), linia);
+        notificarTret(linia.getProducte(), quantitat);
+        return quantitat;
+    }
+
+    /**
+     * Redueix en temps constant la quantitat d'un producte del carret.
+     * Si es treuen totes les unitats, la línia desapareix del carret com amb treureProducte().
+     *
+     * @param codiBarres El codi de barres del producte.
+     * @param unitats El nombre d'unitats a treure. Si supera la quantitat de la línia, es treuen totes.
+     * @return El nombre d'unitats tretes, o 0 si el producte no era al carret.
+     * @throws IllegalArgumentException Si el nombre d'unitats no és positiu.
+     */
+    public int decrementar(CodiBarres codiBarres, int unitats) {
+        comprovarQuantitat(unitats);
+        LiniaCarret linia = linies.get(codiBarres.clau());
+        if (linia == null) {
+            return 0;
+        }
+        if (unitats >= linia.getQuantitat()) {
+            return treureProducte(codiBarres);
+        }
+        linia.decrementar(unitats);
+        if (linia.composicio != null) {
+            unitatsPerComposicio[linia.composicio.ordinal()] -= unitats;
+        }
+        notificarTret(linia.getProducte(), unitats);
+        return unitats;
+    }
+
+    /**
+     * Elimina una línia de l'índex per codi de barres i la desenllaça de l'ordre d'inserció i de les vistes ordenades.
+     *
+     * @param clau La clau del codi de barres de la línia.
+     * @param linia La línia a eliminar.
+     */
+    private void eliminarLinia(long clau, LiniaCarret linia) {
+        linies.remove(clau);
+        linia.eliminada = true;
+        Metriques.liniaEliminada(linies.isEmpty());
 
-        List<Textil> productesTextil = new ArrayList<>();
-        List<Product> altresProductes = new ArrayList<>();
+        if (linia.anterior != null) {
+            linia.anterior.seguent = linia.seguent;
+        } else {
+            primera = linia.seguent;
+        }
+        if (linia.seguent != null) {
+            linia.seguent.anterior = linia.anterior;
+        } else {
+            darrera = linia.anterior;
+        }
 
-        for (Product p : productes) {
-            if (p instanceof Textil) {
-                productesTextil.add((Textil) p);
+        if (linia.anteriorPerPreu != null) {
+            linia.anteriorPerPreu.seguentPerPreu = linia.seguentPerPreu;
+        } else {
+            primeraPerPreu = linia.seguentPerPreu;
+        }
+        if (linia.seguentPerPreu != null) {
+            linia.seguentPerPreu.anteriorPerPreu = linia.anteriorPerPreu;
+        }
+
+        if (linia.composicio != null) {
+            int grup = linia.composicio.ordinal();
+            if (linia.anteriorPerComposicio != null) {
+                linia.anteriorPerComposicio.seguentPerComposicio = linia.seguentPerComposicio;
+            } else {
+                primeraPerComposicio[grup] = linia.seguentPerComposicio;
+            }
+            if (linia.seguentPerComposicio != null) {
+                linia.seguentPerComposicio.anteriorPerComposicio = linia.anteriorPerComposicio;
             } else {
-                altresProductes.add(p);
+                darreraPerComposicio[grup] = linia.anteriorPerComposicio;
             }
+            liniesPerComposicio[grup]--;
+            unitatsPerComposicio[grup] -= linia.getQuantitat();
         }
+    }
 
-        Collections.sort(productesTextil, new TextilComparator());
+    /**
+     * Afegeix al carret el producte amb el codi de barres indicat, obtenint-lo d'una font de productes com ara el catàleg.
+     * Si el producte ja és al carret, només s'incrementa la quantitat i no es consulta la font.
+     *
+     * @param codiBarres El codi de barres escanejat.
+     * @param font La font on es cerca el producte si no és al carret.
+     * @return true si el producte s'ha afegit, o false si no és al carret ni a la font.
+     * @throws LimitProductesException Si s'intenta afegir més productes diferents dels permesos.
+     * @throws DataCaducitatException Si el producte de la font és d'alimentació i ha caducat.
+     */
+    public boolean afegirProducte(CodiBarres codiBarres, Searchable<Product> font)
+            throws LimitProductesException, DataCaducitatException {
+        return afegirProducte(codiBarres, 1, font);
+    }
 
-        productesTextil.forEach(textil -> {
-            int quantitat = quantitats.get(textil.getCodiBarres());
-            System.out.printf("%s - %d unitat%s\n", textil.getNom(), quantitat, quantitat > 1 ? "s" : "");
-        });
+    /**
+     * Afegeix al carret una ràfega d'escanejos del mateix codi de barres, com les que envien els escàners de les
+     * caixes d'autoservei, amb una sola consulta a l'índex i, si el producte és nou, una sola consulta a la font.
+     *
+     * @param codiBarres El codi de barres escanejat.
+     * @param quantitat El nombre d'escanejos de la ràfega.
+     * @param font La font on es cerca el producte si no és al carret.
+     * @return true si el producte s'ha afegit, o false si no és al carret ni a la font.
+     * @throws LimitProductesException Si s'intenta afegir més productes diferents dels permesos.
+     * @throws DataCaducitatException Si el producte de la font és d'alimentació i ha caducat.
+     * @throws IllegalArgumentException Si la quantitat no és positiva.
+     */
+    public boolean afegirProducte(CodiBarres codiBarres, int quantitat, Searchable<Product> font)
+            throws LimitProductesException, DataCaducitatException {
+        return afegirProducte(codiBarres.clau(), quantitat, font);
+    }
 
-        altresProductes.forEach(prod -> {
-            int quantitat = quantitats.get(prod.getCodiBarres());
-            System.out.printf("%s - %d unitat%s\n", prod.getNom(), quantitat, quantitat > 1 ? "s" : "");
-        });
+    /**
+     * Afegeix al carret una ràfega d'escanejos d'un codi de barres indicat per la seva clau empaquetada.
+     * Si el producte ja és al carret, no es crea cap objecte; si és nou, es cerca a la font per la clau i, si és
+     * d'alimentació, es comprova que no hagi caducat.
+     *
+     * @param clau La clau del codi de barres escanejat, obtinguda amb CodiBarres.clau().
+     * @param quantitat El nombre d'escanejos de la ràfega.
+     * @param font La font on es cerca el producte si no és al carret.
+     * @return true si el producte s'ha afegit, o false si no és al carret ni a la font.
+     * @throws LimitProductesException Si s'intenta afegir més productes diferents dels permesos.
+     * @throws DataCaducitatException Si el producte de la font és d'alimentació i ha caducat.
+     * @throws IllegalArgumentException Si la quantitat no és positiva.
+     */
+    public boolean afegirProducte(long clau, int quantitat, Searchable<Product> font)
+            throws LimitProductesException, DataCaducitatException {
+        long inici = Metriques.iniciar(afegits + 1);
+        boolean afegit = afegir(clau, quantitat, font);
+        afegits++;
+        Metriques.afegit(inici);
+        return afegit;
+    }
+
+    /**
+     * Afegeix al carret una ràfega d'escanejos d'un codi de barres, sense registrar-ho a les mètriques.
+     *
+     * @param clau La clau del codi de barres escanejat.
+     * @param quantitat El nombre d'escanejos de la ràfega.
+     * @param font La font on es cerca el producte si no és al carret.
+     * @return true si el producte s'ha afegit, o false si no és al carret ni a la font.
+     * @throws LimitProductesException Si s'intenta afegir més productes diferents dels permesos.
+     * @throws DataCaducitatException Si el producte de la font és d'alimentació i ha caducat.
+     * @throws IllegalArgumentException Si la quantitat no és positiva.
+     */
+    private boolean afegir(long clau, int quantitat, Searchable<Product> font)
+            throws LimitProductesException, DataCaducitatException {
+        comprovarQuantitat(quantitat);
+        LiniaCarret linia = linies.get(clau);
+        if (linia != null) {
+            sumarUnitats(linia, quantitat);
+            notificarAfegit(linia.getProducte(), quantitat);
+            return true;
+        }
+
+        Product producte = font.buscar(clau);
+        if (producte == null) {
+            return false;
+        }
+        comprovarCaducitat(producte);
+        afegir(producte, quantitat);
+        return true;
+    }
 
-        System.out.println();
+    /**
+     * Mostra el contingut del carret sense preus per la sortida estàndard.
+     * El text es construeix amb mostrarCarret(StringBuilder) i s'escriu amb una sola crida.
+     */
+    public void mostrarCarret() {
+        StringBuilder text = new StringBuilder(256);
+        mostrarCarret(text);
+        System.out.print(text);
+    }
+
+    /**
+     * Afegeix el contingut del carret sense preus al text indicat.
+     * Els productes tèxtils es mostren ordenats per composició, recorrent un darrere l'altre els grups de cada composició
+     * que el carret manté a mesura que s'hi afegeixen productes, sense comparar ni ordenar cap línia.
+     * La resta de productes es mostren en l'ordre en què s'han afegit.
+     * Per cada producte es mostra el nom i la quantitat.
+     * Si el carret està buit, es mostra un missatge indicant-ho.
+     *
+     * @param text On s'afegeix el contingut del carret.
+     */
+    public void mostrarCarret(StringBuilder text) {
+        long inici = Metriques.iniciar();
+        text.append("----- CARRET -----\n");
+
+        if (linies.isEmpty()) {
+            text.append("El carret està buit.\n\n");
+            Metriques.mostrat(inici);
+            return;
+        }
+
+        for (LiniaCarret primeraDelGrup : primeraPerComposicio) {
+            for (LiniaCarret linia = primeraDelGrup; linia != null; linia = linia.seguentPerComposicio) {
+                mostrarLinia(text, linia);
+            }
+        }
+
+        for (LiniaCarret linia = primera; linia != null; linia = linia.seguent) {
+            if (!(linia.getProducte() instanceof Textil)) {
+                mostrarLinia(text, linia);
+            }
+        }
+
+        text.append('\n');
+        Metriques.mostrat(inici);
+    }
+
+    /**
+     * Afegeix el nom i la quantitat d'una línia del carret al text indicat.
+     *
+     * @param text On s'afegeix la línia.
+     * @param linia La línia a mostrar.
+     */
+    private void mostrarLinia(StringBuilder text, LiniaCarret linia) {
+        int quantitat = linia.getQuantitat();
+        text.append(linia.getProducte().getNom()).append(" - ").append(quantitat).append(" unitat");
+        if (quantitat > 1) {
+            text.append('s');
+        }
+        text.append('\n');
     }
 
     /**
      * Genera un tiquet de compra amb els productes, quantitats i preus.
-     * Els productes es mostren ordenats per preu.
+     * Les línies es mostren ordenades per preu, recorrent la vista que el carret manté ordenada a mesura que s'hi afegeixen productes.
+     * Tots els preus es calculen per lots amb calcularPreus(), amb el mateix context de preus, obtingut un sol cop per tiquet.
+     * Els imports són cèntims enters, de manera que els totals de les línies i del tiquet són sumes exactes.
      * El tiquet inclou:
      * - Capçalera de SAPAMERCAT.
      * - Data i hora actual.
      * - Llista de productes amb nom, quantitat, preu unitari i total.
+     * - Descomptes de les promocions aplicades, si n'hi ha.
      * - Total de la compra.
+     * El tiquet es construeix en un buffer reutilitzable i s'escriu a la sortida configurada (per defecte, la consola).
      * Després de generar el tiquet, es buida el carret.
+     *
+     * @throws UncheckedIOException Si hi ha un error en escriure el tiquet.
      */
     @Override
     public void imprimir() {
-        System.out.println("\n--------- SAPAMERCAT ---------");
-
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        System.out.println("Data: " + dateFormat.format(new Date()));
-        System.out.println("--------------------------------");
-
-        Collections.sort(productes, new ProductComparator());
-
-        double total = 0;
-        for (String codi : quantitats.keySet()) {
-            Product prod = productes.stream().filter(p -> p.getCodiBarres().equals(codi)).findFirst().orElse(null);
-            if (prod != null) {
-                int quantitat = quantitats.get(codi);
-                double preuUnitari = prod.calcularPreu();
-                double preuTotal = preuUnitari * quantitat;
-                total += preuTotal;
-                System.out.printf("%-10s %2d  %.2f EUR  %.2f EUR\n", prod.getNom(), quantitat, preuUnitari, preuTotal);
+        try {
+            imprimir(sortida);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Genera el tiquet de compra i l'escriu a la sortida indicada amb una sola escriptura.
+     * El carret només es buida, i les línies i els descomptes del tiquet només es notifiquen als observadors, si el
+     * tiquet s'ha escrit correctament: si l'escriptura falla, el carret es conserva sense haver notificat cap venda.
+     *
+     * @param sortida La sortida on s'escriu el tiquet.
+     * @throws IOException Si hi ha un error en escriure el tiquet.
+     */
+    public void imprimir(SortidaTiquet sortida) throws IOException {
+        long inici = Metriques.iniciar();
+        TiquetEvent event = TiquetEvent.iniciar();
+        int nombreLinies = linies.size();
+        long unitats = 0;
+        calcularPreus();
+        renderitzador.iniciar(context.getRellotge());
+
+        for (LiniaCarret linia = primeraPerPreu; linia != null; linia = linia.seguentPerPreu) {
+            Product prod = linia.getProducte();
+            int quantitat = linia.getQuantitat();
+            unitats += quantitat;
+            long preuUnitari = preus.getPreuUnitari(linia.posicioPreus);
+            renderitzador.linia(prod.getNom(), quantitat, preuUnitari, preus.getTotalLinia(linia.posicioPreus));
+        }
+
+        for (int i = 0; i < preus.getNombreDescomptes(); i++) {
+            renderitzador.descompte(preus.getNomDescompte(i), preus.getDescompte(i));
+        }
+
+        long total = preus.getTotal();
+        int descomptes = preus.getNombreDescomptes();
+        renderitzador.finalitzar(total);
+        SortidaEvent eventSortida = SortidaEvent.iniciar();
+        int bytes = renderitzador.escriure(sortida);
+        eventSortida.acabar(bytes, nombreLinies);
+        if (observadors.length > 0) {
+            notificarVenda();
+        }
+        preus.buidar();
+        buidar();
+        for (ObservadorCarret observador : observadors) {
+            observador.caixa();
+        }
+        Metriques.tiquet(inici, nombreLinies);
+        event.acabar(nombreLinies, unitats, descomptes, total);
+    }
+
+    /**
+     * Notifica als observadors les línies i els descomptes del tiquet que s'acaba d'escriure, en el mateix ordre que
+     * apareixen al tiquet.
+     */
+    private void notificarVenda() {
+        for (LiniaCarret linia = primeraPerPreu; linia != null; linia = linia.seguentPerPreu) {
+            long preuUnitari = preus.getPreuUnitari(linia.posicioPreus);
+            for (ObservadorCarret observador : observadors) {
+                observador.liniaVenuda(linia.getProducte(), linia.getQuantitat(), preuUnitari);
             }
         }
+        for (int i = 0; i < preus.getNombreDescomptes(); i++) {
+            for (ObservadorCarret observador : observadors) {
+                observador.descompteAplicat(preus.getNomDescompte(i), preus.getDescompte(i));
+            }
+        }
+    }
+
+    /**
+     * Calcula per lots els preus unitaris, els totals de línia i el total de totes les línies del carret, per al dia actual.
+     * Les línies es reparteixen per tipus de producte i cada tipus es calcula amb un bucle sobre arrays primitius,
+     * amb les mateixes fórmules que calcularPreu(). Les línies del resultat estan en l'ordre en què s'han afegit al carret.
+     * Si el carret té promocions, els seus descomptes s'afegeixen al resultat i es resten del total.
+     * El resultat es reutilitza: només és vàlid fins que es torni a cridar aquest mètode o imprimir().
+     *
+     * @return Els preus calculats.
+     * @throws ArithmeticException Si algun import no cap en un long.
+     */
+    public PreusCarret calcularPreus() {
+        context = context.actualitzar();
+        preus.calcular(primera, context);
+        if (promocions != null) {
+            PromocionsEvent event = PromocionsEvent.iniciar();
+            promocions.aplicar(preus);
+            event.acabar(linies.size(), preus.getNombreDescomptes());
+        }
+        return preus;
+    }
+
+    /**
+     * Estableix les promocions que s'apliquen als tiquets del carret.
+     *
+     * @param promocions Les promocions, o null per no aplicar-ne cap.
+     */
+    public void setPromocions(Promocions promocions) {
+        this.promocions = promocions;
+    }
+
+    /**
+     * Fa que els tiquets del carret llegeixin els preus d'alimentació de la taula precalculada, i que el dia dels
+     * tiquets sigui el de la taula vigent en lloc de consultar-lo al rellotge a cada tiquet.
+     *
+     * @param preusAlimentacio Els preus d'alimentació precalculats.
+     */
+    public void setPreusAlimentacio(PreusAlimentacio preusAlimentacio) {
+        this.context = ContextPreu.of(preusAlimentacio);
+    }
+
+    /**
+     * Afegeix un observador que rebrà les notificacions de les operacions del carret.
+     *
+     * @param observador L'observador a afegir.
+     */
+    public void afegirObservador(ObservadorCarret observador) {
+        ObservadorCarret[] nous = Arrays.copyOf(observadors, observadors.length + 1);
+        nous[observadors.length] = observador;
+        observadors = nous;
+    }
+
+    /**
+     * Notifica als observadors que s'han afegit unitats d'un producte.
+     *
+     * @param producte El producte afegit.
+     * @param quantitat El nombre d'unitats afegides.
+     */
+    private void notificarAfegit(Product producte, int quantitat) {
+        for (ObservadorCarret observador : observadors) {
+            observador.producteAfegit(producte, quantitat);
+        }
+    }
+
+    /**
+     * Notifica als observadors que s'han tret unitats d'un producte.
+     *
+     * @param producte El producte tret.
+     * @param quantitat El nombre d'unitats tretes.
+     */
+    private void notificarTret(Product producte, int quantitat) {
+        for (ObservadorCarret observador : observadors) {
+            observador.producteTret(producte, quantitat);
+        }
+    }
+
+    /**
+     * Recorre les línies del carret en l'ordre en què s'han afegit.
+     *
+     * @param accio L'acció a executar per a cada línia.
+     */
+    public void perCadaLinia(Consumer<LiniaCarret> accio) {
+        for (LiniaCarret linia = primera; linia != null; linia = linia.seguent) {
+            accio.accept(linia);
+        }
+    }
+
+    /**
+     * Retorna el nombre de productes tèxtils diferents d'una composició que hi ha al carret.
+     *
+     * @param composicio La composició.
+     * @return El nombre de línies tèxtils de la composició.
+     */
+    public int getLiniesPerComposicio(Composicio composicio) {
+        return liniesPerComposicio[composicio.ordinal()];
+    }
+
+    /**
+     * Retorna el nombre d'unitats de productes tèxtils d'una composició que hi ha al carret.
+     *
+     * @param composicio La composició.
+     * @return El nombre d'unitats tèxtils de la composició.
+     */
+    public long getUnitatsPerComposicio(Composicio composicio) {
+        return unitatsPerComposicio[composicio.ordinal()];
+    }
 
-        System.out.println("--------------------------------");
-        System.out.printf("Total: %.2f EUR\n", total);
-        System.out.println();
-        productes.clear();
-        quantitats.clear();
+    /**
+     * Estableix la sortida on imprimir() escriu els tiquets.
+     *
+     * @param sortida La nova sortida de tiquets.
+     */
+    public void setSortida(SortidaTiquet sortida) {
+        this.sortida = sortida;
+    }
+
+    /**
+     * Buida el carret sense generar cap tiquet ni notificar els observadors.
+     * S'ha de cridar quan el carret es deixa de fer servir sense passar per caixa, per exemple en tancar la sessió d'una
+     * caixa, perquè les mètriques no el continuïn comptant com a carret obert.
+     */
+    public void descartar() {
+        buidar();
+    }
+
+    /**
+     * Buida el carret eliminant totes les línies.
+     */
+    private void buidar() {
+        Metriques.carretBuidat(linies.size(), afegits, cerques);
+        afegits = 0;
+        cerques = 0;
+        linies.clear();
+        primera = null;
+        darrera = null;
+        indexPerPreu.clear();
+        primeraPerPreu = null;
+        Arrays.fill(primeraPerComposicio, null);
+        Arrays.fill(darreraPerComposicio, null);
+        Arrays.fill(liniesPerComposicio, 0);
+        Arrays.fill(unitatsPerComposicio, 0);
     }
 
     /**
      * Cerca un producte al carret pel seu codi de barres.
+     * La cerca es fa directament sobre l'índex per la clau del codi de barres.
      *
      * @param codiBarres El codi de barres del producte a cercar.
      * @return El producte si es troba al carret, o null si no existeix.
      */
     @Override
+    public Product buscar(CodiBarres codiBarres) {
+        return buscar(codiBarres.clau());
+    }
+
+    /**
+     * Cerca un producte al carret per la clau empaquetada del seu codi de barres.
+     *
+     * @param clau La clau del codi de barres, obtinguda amb CodiBarres.clau().
+     * @return El producte si es troba al carret, o null si no existeix.
+     */
+    @Override
+    public Product buscar(long clau) {
+        long inici = Metriques.iniciar(++cerques);
+        LiniaCarret linia = linies.get(clau);
+        Metriques.cercat(inici);
+        return linia != null ? linia.getProducte() : null;
+    }
+
+    /**
+     * Cerca un producte al carret pel seu codi de barres en format text.
+     * Calcula la clau del codi sense crear cap objecte intermedi.
+     *
+     * @param codiBarres El codi de barres del producte a cercar en format text.
+     * @return El producte si es troba al carret, o null si no existeix.
+     */
+    @Override
     public Product buscar(String codiBarres) {
-        return productes.stream().filter(p -> p.getCodiBarres().equals(codiBarres)).findFirst().orElse(null);
+        long clau = CodiBarres.clauDe(codiBarres);
+        return clau < 0 ? null : buscar(clau);
+    }
+
+    /**
+     * Retorna la quantitat d'unitats d'un producte al carret.
+     *
+     * @param codiBarres El codi de barres del producte.
+     * @return La quantitat d'unitats, o 0 si el producte no és al carret.
+     */
+    public int getQuantitat(CodiBarres codiBarres) {
+        LiniaCarret linia = linies.get(codiBarres.clau());
+        return linia != null ? linia.getQuantitat() : 0;
+    }
+
+    /**
+     * Retorna el nombre de productes diferents del carret.
+     *
+     * @return El nombre de línies del carret.
+     */
+    public int getNombreLinies() {
+        return linies.size();
     }
-}
\ No newline at end of file
+}
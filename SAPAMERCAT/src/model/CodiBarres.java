@@ -0,0 +1,224 @@
+package model;
+
+import exceptions.LimitCaracteresException;
+import utils.Validacions;
+
+/**
+ * Representa un codi de barres numèric de fins a 13 dígits empaquetat en un long.
+ * Aquesta classe substitueix la representació del codi de barres com a cadena de text:
+ * - El valor numèric del codi es guarda en un long.
+ * - Es guarda també el nombre de dígits original perquè els zeros a l'esquerra no es perdin.
+ * - La igualtat i el hash es calculen sobre primitius, sense crear cap objecte.
+ * - La clau empaquetada permet utilitzar el codi en mapes de claus primitives.
+ * - El codi es pot convertir de i a BCD (un dígit per nibble), el format binari que envien els escàners.
+ * 
+ * Els objectes d'aquesta classe són immutables.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public final class CodiBarres {
+    /**
+     * Nombre màxim de dígits que pot tenir un codi de barres.
+     */
+    public static final int MAX_DIGITS = 13;
+
+    private static final int DESPLACAMENT_DIGITS = 56;
+    private static final long MASCARA_VALOR = (1L << DESPLACAMENT_DIGITS) - 1;
+
+    private final long clau;
+
+    /**
+     * Construeix un codi de barres a partir de la seva clau empaquetada.
+     *
+     * @param clau La clau empaquetada amb el nombre de dígits i el valor.
+     */
+    private CodiBarres(long clau) {
+        this.clau = clau;
+    }
+
+    /**
+     * Crea un codi de barres a partir del seu valor numèric i el seu nombre de dígits.
+     *
+     * @param valor El valor numèric del codi de barres.
+     * @param digits El nombre de dígits del codi original, incloent-hi els zeros a l'esquerra.
+     * @return El codi de barres corresponent.
+     * @throws LimitCaracteresException Si el nombre de dígits no és vàlid o el valor no hi cap.
+     */
+    public static CodiBarres of(long valor, int digits) throws LimitCaracteresException {
+        if (digits < 1 || digits > MAX_DIGITS) {
+            throw new LimitCaracteresException("Error: El codi de barres no pot tenir més de 13 caràcters.");
+        }
+        if (valor < 0 || Long.toString(valor).length() > digits) {
+            throw new LimitCaracteresException("Error: El codi de barres no és vàlid.");
+        }
+        return new CodiBarres(empaquetar(valor, digits));
+    }
+
+    /**
+     * Crea un codi de barres a partir de la seva representació en format text.
+     * El text ha de complir les mateixes regles que Validacions.validarCodiBarres().
+     *
+     * @param codiBarres El codi de barres en format text.
+     * @return El codi de barres corresponent.
+     * @throws LimitCaracteresException Si el codi de barres no compleix els requisits.
+     */
+    public static CodiBarres parse(String codiBarres) throws LimitCaracteresException {
+        Validacions.validarCodiBarres(codiBarres);
+        return new CodiBarres(clauDe(codiBarres));
+    }
+
+    /**
+     * Reconstrueix un codi de barres a partir d'una clau obtinguda amb clau().
+     *
+     * @param clau La clau empaquetada.
+     * @return El codi de barres corresponent.
+     * @throws IllegalArgumentException Si la clau no correspon a cap codi de barres vàlid.
+     */
+    public static CodiBarres deClau(long clau) {
+        int digits = (int) (clau >>> DESPLACAMENT_DIGITS);
+        if (digits < 1 || digits > MAX_DIGITS) {
+            throw new IllegalArgumentException("Error: La clau no correspon a cap codi de barres.");
+        }
+        return new CodiBarres(clau);
+    }
+
+    /**
+     * Calcula la clau empaquetada d'un codi de barres en format text sense crear cap objecte.
+     *
+     * @param codiBarres El codi de barres en format text.
+     * @return La clau empaquetada, o -1 si el text no és un codi de barres vàlid.
+     */
+    public static long clauDe(String codiBarres) {
+        int digits = codiBarres.length();
+        if (digits < 1 || digits > MAX_DIGITS) {
+            return -1;
+        }
+
+        long valor = 0;
+        for (int i = 0; i < digits; i++) {
+            char c = codiBarres.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            valor = valor * 10 + (c - '0');
+        }
+        return empaquetar(valor, digits);
+    }
+
+    /**
+     * Calcula la clau empaquetada d'un codi de barres codificat en BCD sense crear cap objecte.
+     * Cada nibble del long és un dígit; els dígits s'alineen a la dreta i els nibbles sobrants de l'esquerra valen 0xF.
+     *
+     * @param bcd El codi de barres en BCD.
+     * @return La clau empaquetada, o -1 si el valor no és un codi de barres vàlid.
+     */
+    public static long clauDeBcd(long bcd) {
+        int digits = 16 - Long.numberOfLeadingZeros(~bcd) / 4;
+        if (digits < 1 || digits > MAX_DIGITS) {
+            return -1;
+        }
+
+        long valor = 0;
+        for (int desplacament = (digits - 1) * 4; desplacament >= 0; desplacament -= 4) {
+            int xifra = (int) (bcd >>> desplacament) & 0xF;
+            if (xifra > 9) {
+                return -1;
+            }
+            valor = valor * 10 + xifra;
+        }
+        return empaquetar(valor, digits);
+    }
+
+    /**
+     * Empaqueta el nombre de dígits als bits alts i el valor als bits baixos.
+     *
+     * @param valor El valor numèric del codi.
+     * @param digits El nombre de dígits del codi.
+     * @return La clau empaquetada.
+     */
+    private static long empaquetar(long valor, int digits) {
+        return ((long) digits << DESPLACAMENT_DIGITS) | valor;
+    }
+
+    /**
+     * Retorna la clau empaquetada del codi de barres.
+     * Dos codis de barres són iguals si i només si tenen la mateixa clau.
+     *
+     * @return La clau empaquetada.
+     */
+    public long clau() {
+        return clau;
+    }
+
+    /**
+     * Retorna el valor numèric del codi de barres.
+     *
+     * @return El valor numèric sense els zeros a l'esquerra.
+     */
+    public long getValor() {
+        return clau & MASCARA_VALOR;
+    }
+
+    /**
+     * Retorna el nombre de dígits del codi de barres original.
+     *
+     * @return El nombre de dígits.
+     */
+    public int getDigits() {
+        return (int) (clau >>> DESPLACAMENT_DIGITS);
+    }
+
+    /**
+     * Retorna el codi de barres codificat en BCD, en el format que accepta clauDeBcd().
+     *
+     * @return El codi de barres en BCD.
+     */
+    public long bcd() {
+        int digits = getDigits();
+        long valor = getValor();
+        long bcd = -1L << (digits * 4);
+        for (int desplacament = 0; desplacament < digits * 4; desplacament += 4) {
+            bcd |= (valor % 10) << desplacament;
+            valor /= 10;
+        }
+        return bcd;
+    }
+
+    /**
+     * Compara aquest codi de barres amb un altre objecte.
+     *
+     * @param obj L'objecte a comparar.
+     * @return true si l'objecte és un codi de barres amb el mateix valor i nombre de dígits.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CodiBarres && ((CodiBarres) obj).clau == clau;
+    }
+
+    /**
+     * Retorna el hash del codi de barres calculat a partir de la clau empaquetada.
+     *
+     * @return El hash del codi de barres.
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(clau * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Retorna el codi de barres en format text, conservant els zeros a l'esquerra.
+     *
+     * @return El codi de barres en format text.
+     */
+    @Override
+    public String toString() {
+        int digits = getDigits();
+        char[] text = new char[digits];
+        long valor = getValor();
+        for (int i = digits - 1; i >= 0; i--) {
+            text[i] = (char) ('0' + valor % 10);
+            valor /= 10;
+        }
+        return new String(text);
+    }
+}
@@ -0,0 +1,106 @@
+package model;
+
+import exceptions.LimitCaracteresException;
+import utils.Validacions;
+
+/**
+ * Defineix les composicions vàlides dels productes tèxtils.
+ * L'ordre de declaració és el mateix que l'ordre alfabètic dels noms, de manera que els productes tèxtils
+ * es poden ordenar per composició comparant directament els valors de l'enumerat.
+ * L'ordinal de cada composició és l'atribut amb què s'emmagatzemen els productes tèxtils i l'índex del seu grup al carret.
+ *
+ * @author Joan Miralles Carmona
+ */
+public enum Composicio {
+    /**
+     * Teixit de cotó.
+     */
+    COTO("cotó"),
+
+    /**
+     * Teixit de llana.
+     */
+    LLANA("llana"),
+
+    /**
+     * Teixit de seda.
+     */
+    SEDA("seda");
+
+    /**
+     * Composicions en un array per recórrer-les sense crear cap objecte.
+     */
+    private static final Composicio[] VALORS = values();
+
+    private final String nom;
+
+    /**
+     * Construeix una composició amb el nom que es mostra a l'usuari.
+     *
+     * @param nom El nom de la composició.
+     */
+    Composicio(String nom) {
+        this.nom = nom;
+    }
+
+    /**
+     * Retorna el nom de la composició.
+     *
+     * @return El nom de la composició (cotó, llana o seda).
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * Retorna la composició amb el nom indicat, sense distingir majúscules ni llançar excepcions.
+     *
+     * @param nom El nom de la composició.
+     * @return La composició, o null si el nom no correspon a cap composició vàlida.
+     */
+    public static Composicio deNom(String nom) {
+        for (Composicio composicio : VALORS) {
+            if (composicio.nom.equalsIgnoreCase(nom)) {
+                return composicio;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retorna la composició amb l'ordinal indicat.
+     * És l'operació inversa de ordinal(), i s'utilitza per recuperar productes tèxtils emmagatzemats.
+     *
+     * @param ordinal L'ordinal de la composició.
+     * @return La composició.
+     * @throws IllegalArgumentException Si l'ordinal no correspon a cap composició.
+     */
+    public static Composicio deOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= VALORS.length) {
+            throw new IllegalArgumentException("Error: Composició tèxtil desconeguda: " + ordinal);
+        }
+        return VALORS[ordinal];
+    }
+
+    /**
+     * Valida una composició en format text i la converteix al valor de l'enumerat.
+     *
+     * @param nom El nom de la composició.
+     * @return La composició.
+     * @throws LimitCaracteresException Si la composició no és vàlida o supera els 100 caràcters.
+     */
+    public static Composicio parse(String nom) throws LimitCaracteresException {
+        Validacions.validarComposicio(nom);
+        return deNom(nom);
+    }
+
+    /**
+     * Retorna el nom de la composició.
+     *
+     * @return El nom de la composició.
+     */
+    @Override
+    public String toString() {
+        return nom;
+    }
+}
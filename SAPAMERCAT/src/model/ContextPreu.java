@@ -0,0 +1,226 @@
+package model;
+
+import utils.MapaLong;
+
+import java.time.Clock;
+import java.time.LocalDate;
+
+/**
+ * Representa el context en què es calculen els preus dels productes.
+ * Aquesta classe fixa el dia de càlcul una sola vegada per tiquet o per dia:
+ * - El rellotge és injectable, de manera que el dia es pot controlar en proves i reproduccions.
+ * - El dia es guarda com a nombre de dies des de l'època (epoch-day) per evitar càlculs amb dates.
+ * - Conté una memòria dels preus unitaris ja calculats aquell dia per a cada codi de barres.
+ * - Si es crea a partir d'una taula de PreusAlimentacio, el dia és el de la taula vigent, que canvia a mitjanit, i els
+ *   preus d'alimentació es llegeixen de la taula sense consultar el rellotge ni calcular amb dates.
+ * 
+ * Tots els preus d'un tiquet es calculen amb el mateix context, de manera que el total és coherent encara que el pagament es faci a mitjanit.
+ * Aquesta classe no és segura per a l'accés concurrent: cada carret en fa servir el seu.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public final class ContextPreu {
+    private final Clock rellotge;
+    private final long diaEpoca;
+    private final PreusAlimentacio preusAlimentacio;
+    private final PreusAlimentacio.Taula taula;
+    private MapaLong<PreuMemoritzat> memo;
+
+    /**
+     * Construeix un nou context per al dia indicat.
+     *
+     * @param rellotge El rellotge del qual s'ha obtingut el dia.
+     * @param diaEpoca El dia de càlcul en dies des de l'època.
+     * @param preusAlimentacio Els preus d'alimentació precalculats d'on s'obté la taula de cada dia, o null.
+     * @param taula La taula de preus d'alimentació del dia, o null.
+     */
+    private ContextPreu(Clock rellotge, long diaEpoca, PreusAlimentacio preusAlimentacio, PreusAlimentacio.Taula taula) {
+        this.rellotge = rellotge;
+        this.diaEpoca = diaEpoca;
+        this.preusAlimentacio = preusAlimentacio;
+        this.taula = taula;
+    }
+
+    /**
+     * Crea un context per al dia actual segons el rellotge del sistema.
+     *
+     * @return El context del dia actual.
+     */
+    public static ContextPreu avui() {
+        return of(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Crea un context per al dia actual segons el rellotge indicat.
+     *
+     * @param rellotge El rellotge que determina el dia de càlcul.
+     * @return El context del dia actual segons el rellotge.
+     */
+    public static ContextPreu of(Clock rellotge) {
+        return new ContextPreu(rellotge, diaActual(rellotge), null, null);
+    }
+
+    /**
+     * Crea un context per al dia de la taula vigent dels preus d'alimentació precalculats.
+     * Mentre la taula no s'hagi iniciat, o si ja no és la del dia del rellotge, el dia s'obté del rellotge dels preus.
+     *
+     * @param preusAlimentacio Els preus d'alimentació precalculats.
+     * @return El context del dia actual.
+     */
+    public static ContextPreu of(PreusAlimentacio preusAlimentacio) {
+        return new ContextPreu(preusAlimentacio.getRellotge(), Long.MIN_VALUE, preusAlimentacio, null).actualitzar();
+    }
+
+    /**
+     * Retorna el dia actual d'un rellotge en dies des de l'època.
+     *
+     * @param rellotge El rellotge a consultar.
+     * @return El dia actual en dies des de l'època.
+     */
+    public static long diaActual(Clock rellotge) {
+        return LocalDate.now(rellotge).toEpochDay();
+    }
+
+    /**
+     * Retorna un context vàlid per al dia actual del rellotge.
+     * Si el dia no ha canviat, es retorna aquest mateix context i es conserva la memòria de preus.
+     * Si ha canviat, es crea un context nou amb la memòria buida.
+     * Amb preus d'alimentació precalculats, el dia ha canviat si el dia de la taula vigent ja no és el del context.
+     * No n'hi ha prou de comparar les taules: les taules s'alternen i es tornen a omplir, de manera que un carret que
+     * no ha fet cap tiquet durant dos canvis de dia troba la mateixa taula amb els preus d'un altre dia.
+     * La taula només s'utilitza si l'hora del rellotge és dins el seu dia, amb una sola lectura del rellotge; si no
+     * ho és, perquè el canvi de dia s'ha endarrerit, el dia s'obté del rellotge i es demana el canvi.
+     *
+     * @return El context per al dia actual.
+     */
+    public ContextPreu actualitzar() {
+        if (preusAlimentacio != null) {
+            PreusAlimentacio.Taula vigent = preusAlimentacio.getTaula();
+            if (vigent != null) {
+                if (vigent.esVigent(rellotge.millis())) {
+                    long dia = vigent.getDia();
+                    return vigent == taula && dia == diaEpoca
+                            ? this : new ContextPreu(rellotge, dia, preusAlimentacio, vigent);
+                }
+                preusAlimentacio.demanarCanvi();
+            }
+        }
+        long avui = diaActual(rellotge);
+        return avui == diaEpoca && taula == null ? this : new ContextPreu(rellotge, avui, preusAlimentacio, null);
+    }
+
+    /**
+     * Retorna el rellotge del context.
+     *
+     * @return El rellotge del context.
+     */
+    public Clock getRellotge() {
+        return rellotge;
+    }
+
+    /**
+     * Retorna el dia de càlcul en dies des de l'època.
+     *
+     * @return El dia de càlcul.
+     */
+    public long getDiaEpoca() {
+        return diaEpoca;
+    }
+
+    /**
+     * Retorna el preu precalculat d'un producte d'alimentació per al dia del context.
+     *
+     * @param clau La clau del codi de barres del producte.
+     * @param preu El preu base del producte en cèntims.
+     * @param diaCaducitat El dia de caducitat del producte en dies des de l'època.
+     * @return El preu en cèntims, o -1 si el context no té taula o el producte no hi és amb aquestes dades.
+     */
+    long preuPrecalculat(long clau, long preu, long diaCaducitat) {
+        return taula != null ? taula.preu(clau, preu, diaCaducitat) : -1;
+    }
+
+    /**
+     * Registra als preus d'alimentació precalculats un producte que no era a la taula, perquè es precalculi a partir
+     * del dia següent.
+     *
+     * @param producte El producte.
+     */
+    void registrarAlimentacio(Product producte) {
+        if (preusAlimentacio != null) {
+            preusAlimentacio.registrar(producte);
+        }
+    }
+
+    /**
+     * Retorna el preu unitari d'un producte per al dia del context.
+     * El preu es calcula només la primera vegada que es demana per a un codi de barres.
+     * Les consultes següents el recuperen de la memòria si el producte té el mateix tipus, preu base i atribut de preu.
+     *
+     * @param producte El producte del qual es vol el preu.
+     * @return El preu unitari del producte en cèntims per al dia del context.
+     */
+    public long preuUnitari(Product producte) {
+        if (memo == null) {
+            memo = new MapaLong<>();
+        }
+
+        long clau = producte.getCodiBarres().clau();
+        PreuMemoritzat entrada = memo.get(clau);
+        if (entrada != null && entrada.coincideix(producte)) {
+            return entrada.preu;
+        }
+
+        long preu = producte.calcularPreu(this);
+        if (entrada == null) {
+            memo.put(clau, new PreuMemoritzat(producte, preu));
+        } else {
+            entrada.actualitzar(producte, preu);
+        }
+        return preu;
+    }
+
+    /**
+     * Entrada de la memòria de preus.
+     * Guarda les dades de les quals depèn el preu per detectar si un producte amb el mateix codi de barres ha canviat.
+     */
+    private static final class PreuMemoritzat {
+        private Class<?> tipus;
+        private long preuBase;
+        private long atributPreu;
+        private long preu;
+
+        /**
+         * Construeix una entrada per al producte i el preu calculat.
+         *
+         * @param producte El producte.
+         * @param preu El preu unitari calculat.
+         */
+        PreuMemoritzat(Product producte, long preu) {
+            actualitzar(producte, preu);
+        }
+
+        /**
+         * Substitueix les dades de l'entrada.
+         *
+         * @param producte El producte.
+         * @param preu El preu unitari calculat.
+         */
+        void actualitzar(Product producte, long preu) {
+            this.tipus = producte.getClass();
+            this.preuBase = producte.getPreu();
+            this.atributPreu = producte.getAtribut();
+            this.preu = preu;
+        }
+
+        /**
+         * Indica si l'entrada correspon a les dades actuals del producte.
+         *
+         * @param producte El producte.
+         * @return true si el preu memoritzat és vàlid per al producte.
+         */
+        boolean coincideix(Product producte) {
+            return tipus == producte.getClass() && preuBase == producte.getPreu()
+                    && atributPreu == producte.getAtribut();
+        }
+    }
+}
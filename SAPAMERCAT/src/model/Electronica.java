@@ -2,6 +2,7 @@ package model;
 
 import exceptions.NegatiuException;
 import exceptions.LimitCaracteresException;
+import utils.Diners;
 
 /**
  * Representa un producte electrònic amb dies de garantia.
@@ -20,13 +21,13 @@ public class Electronica extends Product {
      * Valida que els dies de garantia no siguin negatius.
      *
      * @param nom El nom del producte electrònic.
-     * @param preu El preu base del producte.
+     * @param preu El preu base del producte en cèntims.
      * @param codiBarres El codi de barres únic del producte.
      * @param garantia Els dies de garantia del producte.
      * @throws NegatiuException Si la garantia és negativa o el preu és negatiu o zero.
      * @throws LimitCaracteresException Si el codi de barres no compleix amb els requisits.
      */
-    public Electronica(String nom, double preu, String codiBarres, int garantia)
+    public Electronica(String nom, long preu, String codiBarres, int garantia)
             throws NegatiuException, LimitCaracteresException {
         super(nom, preu, codiBarres);
         if (garantia < 0) {
@@ -35,6 +36,49 @@ public class Electronica extends Product {
         this.garantia = garantia;
     }
 
+    /**
+     * Construeix un nou producte electrònic amb un codi de barres ja validat.
+     * Valida que els dies de garantia no siguin negatius.
+     *
+     * @param nom El nom del producte electrònic.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres únic del producte.
+     * @param garantia Els dies de garantia del producte.
+     * @throws NegatiuException Si la garantia és negativa o el preu és negatiu o zero.
+     */
+    public Electronica(String nom, long preu, CodiBarres codiBarres, int garantia) throws NegatiuException {
+        super(nom, preu, codiBarres);
+        if (garantia < 0) {
+            throw new NegatiuException("Error: La garantia no pot ser negativa.");
+        }
+        this.garantia = garantia;
+    }
+
+    /**
+     * Construeix un producte electrònic buit per restaurar-lo a partir de dades ja validades.
+     */
+    private Electronica() {
+    }
+
+    /**
+     * Restaura un producte electrònic a partir de dades ja validades, sense tornar-les a validar.
+     * S'utilitza per recuperar productes emmagatzemats, com ara els del catàleg.
+     *
+     * @param nom El nom del producte electrònic.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres únic del producte.
+     * @param garantia Els dies de garantia del producte.
+     * @return El producte restaurat.
+     */
+    static Electronica restaurar(String nom, long preu, CodiBarres codiBarres, int garantia) {
+        Electronica producte = new Electronica();
+        producte.nom = nom;
+        producte.preu = preu;
+        producte.codiBarres = codiBarres;
+        producte.garantia = garantia;
+        return producte;
+    }
+
     /**
      * Retorna els dies de garantia del producte.
      *
@@ -56,13 +100,50 @@ public class Electronica extends Product {
     /**
      * Calcula el preu del producte tenint en compte els dies de garantia.
      * La fórmula aplicada és: preu + preu * (garantia/365) * 0.1.
+     * Es calcula en cèntims com a preu * (3650 + garantia) / 3650, amb una sola divisió arrodonida
+     * al cèntim més proper (els mitjos cèntims cap amunt).
      * A més dies de garantia, més alt serà el preu.
      *
-     * @return El preu calculat segons els dies de garantia.
+     * @param context El context de preus (el preu no depèn del dia).
+     * @return El preu calculat en cèntims segons els dies de garantia.
+     * @throws ArithmeticException Si el càlcul no cap en un long.
      */
     @Override
-    public double calcularPreu() {
-        return preu + preu * ((double) garantia / 365) * 0.1;
+    public long calcularPreu(ContextPreu context) {
+        return calcularPreu(preu, garantia);
+    }
+
+    /**
+     * Aplica la fórmula de preu dels productes electrònics.
+     * És la mateixa fórmula per al càlcul d'un sol producte i per al càlcul per lots de PreusCarret.
+     *
+     * @param preu El preu base en cèntims.
+     * @param garantia Els dies de garantia.
+     * @return El preu calculat en cèntims.
+     * @throws ArithmeticException Si el càlcul no cap en un long.
+     */
+    static long calcularPreu(long preu, long garantia) {
+        return Diners.dividir(Math.multiplyExact(preu, 3650 + garantia), 3650);
+    }
+
+    /**
+     * Retorna el tipus del producte.
+     *
+     * @return TipusProducte.ELECTRONICA.
+     */
+    @Override
+    public TipusProducte getTipus() {
+        return TipusProducte.ELECTRONICA;
+    }
+
+    /**
+     * Retorna els dies de garantia, que determinen el preu calculat.
+     *
+     * @return Els dies de garantia.
+     */
+    @Override
+    public long getAtribut() {
+        return garantia;
     }
 
     /**
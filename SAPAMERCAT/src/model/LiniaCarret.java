@@ -0,0 +1,77 @@
+package model;
+
+/**
+ * Representa una línia del carret de compra.
+ * Cada línia agrupa en una sola entrada:
+ * - El producte afegit al carret.
+ * - La quantitat d'unitats d'aquest producte.
+ * D'aquesta manera el carret només necessita un índex per codi de barres per trobar tant el producte com la seva quantitat.
+ * Les línies estan enllaçades entre elles per conservar l'ordre en què s'han afegit al carret.
+ * A més, cada línia té els enllaços de les vistes ordenades del carret (per preu i, en els tèxtils, el grup de la seva composició),
+ * de manera que aquestes vistes es poden recórrer en ordre sense ordenar ni crear cap objecte.
+ * Com que tots els enllaços són a la mateixa línia, treure-la del carret només cal desenllaçar-la en temps constant.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public class LiniaCarret {
+    private final Product producte;
+    private int quantitat;
+    final long ordre;
+    boolean eliminada;
+    int posicioPreus;
+    LiniaCarret anterior;
+    LiniaCarret seguent;
+    LiniaCarret anteriorPerPreu;
+    LiniaCarret seguentPerPreu;
+    Composicio composicio;
+    LiniaCarret anteriorPerComposicio;
+    LiniaCarret seguentPerComposicio;
+
+    /**
+     * Construeix una nova línia buida amb el producte indicat. Les unitats s'afegeixen amb incrementar().
+     *
+     * @param producte El producte de la línia.
+     * @param ordre El número d'ordre d'inserció de la línia dins el carret, que desempata les vistes ordenades.
+     */
+    LiniaCarret(Product producte, long ordre) {
+        this.producte = producte;
+        this.ordre = ordre;
+    }
+
+    /**
+     * Retorna el producte de la línia.
+     *
+     * @return El producte de la línia.
+     */
+    public Product getProducte() {
+        return producte;
+    }
+
+    /**
+     * Retorna la quantitat d'unitats de la línia.
+     *
+     * @return La quantitat d'unitats.
+     */
+    public int getQuantitat() {
+        return quantitat;
+    }
+
+    /**
+     * Incrementa la quantitat de la línia.
+     *
+     * @param unitats El nombre d'unitats a afegir.
+     * @throws ArithmeticException Si la quantitat resultant no cap en un int.
+     */
+    void incrementar(int unitats) {
+        quantitat = Math.addExact(quantitat, unitats);
+    }
+
+    /**
+     * Redueix la quantitat de la línia.
+     *
+     * @param unitats El nombre d'unitats a treure. No pot superar la quantitat actual.
+     */
+    void decrementar(int unitats) {
+        quantitat -= unitats;
+    }
+}
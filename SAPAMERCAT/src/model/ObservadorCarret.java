@@ -0,0 +1,60 @@
+package model;
+
+/**
+ * Interfície que defineix un observador de les operacions d'un carret de compra.
+ * Els observadors reben una notificació després de cada operació completada correctament, i s'utilitzen per exemple per:
+ * - Registrar les operacions en un diari per poder recuperar el carret després d'una fallada.
+ * - Desar les línies dels tiquets per consultar-ne les vendes.
+ * - Deixar constància de les unitats tretes del carret perquè un supervisor les pugui revisar.
+ * Tots els mètodes tenen una implementació buida per defecte, de manera que cada observador només implementa els que necessita.
+ * Les notificacions s'executen al mateix fil que l'operació, per tant han de ser ràpides.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public interface ObservadorCarret {
+
+    /**
+     * Notifica que s'han afegit unitats d'un producte al carret.
+     *
+     * @param producte El producte afegit.
+     * @param quantitat El nombre d'unitats afegides.
+     */
+    default void producteAfegit(Product producte, int quantitat) {
+    }
+
+    /**
+     * Notifica que s'han tret unitats d'un producte del carret.
+     *
+     * @param producte El producte tret.
+     * @param quantitat El nombre d'unitats tretes.
+     */
+    default void producteTret(Product producte, int quantitat) {
+    }
+
+    /**
+     * Notifica una línia del tiquet que s'ha escrit en passar per caixa.
+     * Es crida per a cada línia abans de caixa(), i només si el tiquet s'ha escrit correctament.
+     *
+     * @param producte El producte de la línia.
+     * @param quantitat El nombre d'unitats de la línia.
+     * @param preuUnitari El preu unitari de la línia, en cèntims, abans dels descomptes de les promocions.
+     */
+    default void liniaVenuda(Product producte, int quantitat, long preuUnitari) {
+    }
+
+    /**
+     * Notifica un descompte d'una promoció aplicat al tiquet que s'ha escrit en passar per caixa.
+     * Es crida després de totes les línies i abans de caixa().
+     *
+     * @param promocio El nom de la promoció.
+     * @param descompte L'import descomptat, en cèntims.
+     */
+    default void descompteAplicat(String promocio, long descompte) {
+    }
+
+    /**
+     * Notifica que s'ha passat per caixa i el carret s'ha buidat.
+     */
+    default void caixa() {
+    }
+}
@@ -0,0 +1,373 @@
+package model;
+
+import utils.RodaTemporitzadors;
+import utils.RodaTemporitzadors.Temporitzador;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Taula de preus precalculats dels productes d'alimentació, que canvia de dia a mitjanit.
+ * El preu d'un producte d'alimentació només depèn dels dies que falten per a la seva caducitat, de manera que tots
+ * els preus canvien alhora a mitjanit:
+ * - La taula del dia actual es llegeix sense bloquejos des de qualsevol fil, i dona el preu d'un producte amb una
+ *   sola consulta per codi de barres, sense cap càlcul amb dates.
+ * - Una hora abans de mitjanit, un fil virtual calcula els preus del dia següent de tots els productes coneguts en una
+ *   segona taula, de manera que les dues taules s'alternen (doble memòria intermèdia).
+ * - A mitjanit, una roda de temporitzadors substitueix atòmicament la taula del dia per la del dia següent i
+ *   programa el canvi del dia després; la caixa no ha de calcular el dia ni recalcular cap preu.
+ * - La roda mesura el temps amb System.nanoTime(), que no avança mentre el sistema està suspès, de manera que el canvi
+ *   pot arribar tard. Per això la caixa compara l'hora del rellotge amb els límits del dia de la taula: si la taula ja
+ *   no és vigent, calcula els preus amb el dia del rellotge i demana el canvi de dia immediatament.
+ * Els productes coneguts són els que s'han registrat, per exemple tots els del catàleg en arrencar, i els que s'han
+ * venut sense ser a la taula. Es distingeixen per lot (codi de barres, preu base i caducitat), de manera que diversos
+ * lots d'un mateix producte tenen cadascun el seu preu, i els lots caducats es descarten en calcular cada taula.
+ * Els productes que no hi són, o que han canviat de preu o de caducitat, es calculen com sempre.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class PreusAlimentacio implements AutoCloseable {
+    private static final Duration ANTELACIO = Duration.ofHours(1);
+
+    private final Clock rellotge;
+    private final RodaTemporitzadors roda;
+    private final ConcurrentHashMap<Lot, Alimentacio> coneguts;
+    private volatile Taula actual;
+    private volatile Taula preparada;
+    private Taula reserva;
+    private Temporitzador calcul;
+    private Temporitzador canvi;
+    private final AtomicBoolean canviDemanat;
+    private volatile boolean tancat;
+
+    /**
+     * Construeix una taula de preus sense cap producte conegut i sense programar cap canvi de dia.
+     * Abans d'utilitzar-la s'hi han de registrar els productes coneguts i s'ha de cridar iniciar().
+     *
+     * @param rellotge El rellotge que determina el dia i la mitjanit.
+     * @param roda La roda de temporitzadors que programa els canvis de dia.
+     */
+    public PreusAlimentacio(Clock rellotge, RodaTemporitzadors roda) {
+        this.rellotge = rellotge;
+        this.roda = roda;
+        this.coneguts = new ConcurrentHashMap<>();
+        this.canviDemanat = new AtomicBoolean();
+    }
+
+    /**
+     * Registra un producte perquè els seus preus es precalculin a partir del dia següent.
+     * Els productes que no són d'alimentació s'ignoren. Un lot que ja estava registrat no es torna a registrar: la
+     * comprovació no bloqueja, de manera que les caixes la poden fer a cada tiquet sense esperar-se entre elles.
+     *
+     * @param producte El producte.
+     */
+    public void registrar(Product producte) {
+        if (producte.getClass() != Alimentacio.class) {
+            return;
+        }
+        Lot lot = new Lot(producte.getCodiBarres().clau(), producte.getPreu(), producte.getAtribut());
+        if (!coneguts.containsKey(lot)) {
+            coneguts.putIfAbsent(lot, (Alimentacio) producte);
+        }
+    }
+
+    /**
+     * Calcula la taula del dia actual amb els productes registrats i programa el càlcul i el canvi del dia següent.
+     */
+    public synchronized void iniciar() {
+        Taula taula = new Taula();
+        long avui = ContextPreu.diaActual(rellotge);
+        taula.omplir(avui, rellotge.getZone(), productes(avui));
+        actual = taula;
+        programar();
+    }
+
+    /**
+     * Cancel·la el càlcul i el canvi de dia programats. La roda de temporitzadors no es tanca.
+     */
+    @Override
+    public synchronized void close() {
+        tancat = true;
+        if (calcul != null) {
+            calcul.cancelar();
+            canvi.cancelar();
+        }
+    }
+
+    /**
+     * Retorna el rellotge que determina el dia de la taula.
+     *
+     * @return El rellotge.
+     */
+    public Clock getRellotge() {
+        return rellotge;
+    }
+
+    /**
+     * Retorna la taula del dia actual.
+     *
+     * @return La taula, o null si encara no s'ha iniciat.
+     */
+    Taula getTaula() {
+        return actual;
+    }
+
+    /**
+     * Demana que el canvi de dia es faci al tic següent de la roda, perquè la taula actual ja no és la del dia del
+     * rellotge. Es crida des dels fils de les caixes: només programa un canvi alhora i no bloqueja.
+     */
+    void demanarCanvi() {
+        if (tancat || !canviDemanat.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            roda.programar(this::canviarDia, 0, TimeUnit.NANOSECONDS);
+        } catch (IllegalStateException e) {
+            canviDemanat.set(false);
+        }
+    }
+
+    /**
+     * Programa a la roda el càlcul de la taula del dia següent i el canvi de dia a la mitjanit següent, i cancel·la els
+     * que hi havia programats.
+     */
+    private void programar() {
+        if (tancat) {
+            return;
+        }
+        if (calcul != null) {
+            calcul.cancelar();
+            canvi.cancelar();
+        }
+        Instant mitjanit = LocalDate.ofEpochDay(actual.dia + 1).atStartOfDay(rellotge.getZone()).toInstant();
+        long finsMitjanit = Duration.between(rellotge.instant(), mitjanit).toNanos();
+        long finsCalcul = finsMitjanit - ANTELACIO.toNanos();
+        calcul = roda.programar(() -> Thread.ofVirtual().name("preus-alimentacio").start(this::precalcular),
+                finsCalcul, TimeUnit.NANOSECONDS);
+        canvi = roda.programar(this::canviarDia, finsMitjanit, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Calcula la taula del dia següent a la taula actual, reutilitzant la taula del dia anterior si n'hi ha.
+     * S'executa en un fil propi perquè no endarrereixi la roda.
+     */
+    private synchronized void precalcular() {
+        long dia = actual.dia + 1;
+        Taula taula = preparada;
+        if (taula != null && taula.dia == dia) {
+            return;
+        }
+        taula = reserva != null ? reserva : new Taula();
+        reserva = null;
+        taula.omplir(dia, rellotge.getZone(), productes(dia));
+        preparada = taula;
+    }
+
+    /**
+     * Substitueix la taula actual per la del dia del rellotge i programa el canvi de l'endemà. S'executa al fil de la
+     * roda, a mitjanit o quan una caixa troba que la taula ja no és vigent.
+     * Si la taula del dia no s'ha pogut preparar a temps, o el rellotge ha saltat a un altre dia, es calcula en aquest
+     * moment. Si el rellotge encara no ha arribat a mitjanit, per exemple perquè s'ha endarrerit, el canvi es torna a
+     * programar. El canvi següent es programa encara que aquest falli, de manera que un error no atura els canvis.
+     * La taula substituïda es reutilitza el vespre següent: per llavors cap tiquet no la pot estar llegint.
+     */
+    private synchronized void canviarDia() {
+        canviDemanat.set(false);
+        try {
+            long avui = ContextPreu.diaActual(rellotge);
+            if (avui != actual.dia) {
+                Taula nova = preparada;
+                preparada = null;
+                if (nova == null || nova.dia != avui) {
+                    nova = nova != null ? nova : reserva != null ? reserva : new Taula();
+                    nova.omplir(avui, rellotge.getZone(), productes(avui));
+                }
+                reserva = actual;
+                actual = nova;
+            }
+        } finally {
+            programar();
+        }
+    }
+
+    /**
+     * Descarta els lots registrats que ja hauran caducat el dia indicat, el preu dels quals és 0, i retorna una còpia
+     * de la resta. Els registres nous que arriben mentre es fa la còpia poden quedar-ne fora fins a la taula següent.
+     *
+     * @param dia El dia de la taula que s'ha de calcular, en dies des de l'època.
+     * @return Els productes registrats que no hauran caducat.
+     */
+    private Alimentacio[] productes(long dia) {
+        coneguts.keySet().removeIf(lot -> lot.diaCaducitat < dia);
+        return coneguts.values().toArray(new Alimentacio[0]);
+    }
+
+    /**
+     * Identificador d'un lot de producte d'alimentació: les dades de les quals depèn el preu precalculat.
+     */
+    private static final class Lot {
+        private final long clau;
+        private final long preu;
+        private final long diaCaducitat;
+
+        /**
+         * Construeix l'identificador d'un lot.
+         *
+         * @param clau La clau del codi de barres.
+         * @param preu El preu base en cèntims.
+         * @param diaCaducitat El dia de caducitat en dies des de l'època.
+         */
+        Lot(long clau, long preu, long diaCaducitat) {
+            this.clau = clau;
+            this.preu = preu;
+            this.diaCaducitat = diaCaducitat;
+        }
+
+        /**
+         * Compara dos lots per les seves dades.
+         *
+         * @param o L'altre objecte.
+         * @return true si és un lot amb el mateix codi de barres, preu base i caducitat.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Lot)) {
+                return false;
+            }
+            Lot altre = (Lot) o;
+            return clau == altre.clau && preu == altre.preu && diaCaducitat == altre.diaCaducitat;
+        }
+
+        /**
+         * Calcula el codi de dispersió a partir de les dades del lot.
+         *
+         * @return El codi de dispersió.
+         */
+        @Override
+        public int hashCode() {
+            long h = (clau * 31 + preu) * 31 + diaCaducitat;
+            return Long.hashCode(h * 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    /**
+     * Taula de dispersió oberta dels preus d'un dia, indexada per la clau del codi de barres.
+     * Cada entrada guarda, en posicions consecutives d'un sol array, la clau, el preu base, el dia de caducitat i el
+     * preu del dia, de manera que una consulta llegeix una sola línia de memòria cau en el cas habitual.
+     * Una taula només s'escriu abans de publicar-la a la resta de fils.
+     */
+    static final class Taula {
+        private static final int CAMPS = 4;
+        private static final int CLAU = 0;
+        private static final int PREU_BASE = 1;
+        private static final int CADUCITAT = 2;
+        private static final int PREU = 3;
+
+        private long[] entrades = new long[0];
+        private int mascara;
+        private long dia;
+        private long inici;
+        private long fi;
+
+        /**
+         * Omple la taula amb els preus d'un dia, reutilitzant l'array si hi caben tots els productes.
+         * Els productes el preu dels quals no cap en un long no s'hi afegeixen. Cada lot d'un codi de barres té la seva
+         * entrada.
+         *
+         * @param dia El dia en dies des de l'època.
+         * @param zona La zona horària que determina on comença i acaba el dia.
+         * @param productes Els productes d'alimentació.
+         */
+        void omplir(long dia, ZoneId zona, Alimentacio[] productes) {
+            int posicions = Integer.highestOneBit(Math.max(productes.length, 8) * 2 - 1) << 1;
+            if (entrades.length < posicions * CAMPS) {
+                entrades = new long[posicions * CAMPS];
+            } else {
+                Arrays.fill(entrades, 0);
+                posicions = entrades.length / CAMPS;
+            }
+            mascara = posicions - 1;
+            this.dia = dia;
+            this.inici = LocalDate.ofEpochDay(dia).atStartOfDay(zona).toInstant().toEpochMilli();
+            this.fi = LocalDate.ofEpochDay(dia + 1).atStartOfDay(zona).toInstant().toEpochMilli();
+
+            for (Alimentacio producte : productes) {
+                long preu;
+                try {
+                    preu = Alimentacio.calcularPreu(producte.getPreu(), producte.getAtribut() - dia);
+                } catch (ArithmeticException e) {
+                    continue;
+                }
+                long clau = producte.getCodiBarres().clau();
+                int posicio = posicio(clau);
+                while (entrades[posicio + CLAU] != 0) {
+                    posicio = (posicio + CAMPS) & (entrades.length - 1);
+                }
+                entrades[posicio + CLAU] = clau;
+                entrades[posicio + PREU_BASE] = producte.getPreu();
+                entrades[posicio + CADUCITAT] = producte.getAtribut();
+                entrades[posicio + PREU] = preu;
+            }
+        }
+
+        /**
+         * Retorna el preu precalculat d'un producte, si la taula té un lot del seu codi de barres amb el mateix preu
+         * base i dia de caducitat.
+         *
+         * @param clau La clau del codi de barres.
+         * @param preuBase El preu base del producte en cèntims.
+         * @param diaCaducitat El dia de caducitat en dies des de l'època.
+         * @return El preu del dia en cèntims, o -1 si no és a la taula.
+         */
+        long preu(long clau, long preuBase, long diaCaducitat) {
+            long[] entrades = this.entrades;
+            int posicio = posicio(clau);
+            long actual;
+            while ((actual = entrades[posicio + CLAU]) != 0) {
+                if (actual == clau && entrades[posicio + PREU_BASE] == preuBase
+                        && entrades[posicio + CADUCITAT] == diaCaducitat) {
+                    return entrades[posicio + PREU];
+                }
+                posicio = (posicio + CAMPS) & (entrades.length - 1);
+            }
+            return -1;
+        }
+
+        /**
+         * Indica si un instant pertany al dia de la taula.
+         *
+         * @param millis L'instant en mil·lisegons des de l'època.
+         * @return true si l'instant és entre l'inici i el final del dia de la taula.
+         */
+        boolean esVigent(long millis) {
+            return millis >= inici && millis < fi;
+        }
+
+        /**
+         * Retorna el dia de la taula.
+         *
+         * @return El dia en dies des de l'època.
+         */
+        long getDia() {
+            return dia;
+        }
+
+        /**
+         * Calcula la primera posició on es busca una clau.
+         *
+         * @param clau La clau del codi de barres.
+         * @return La posició de la primera entrada dins l'array.
+         */
+        private int posicio(long clau) {
+            long h = clau * 0x9E3779B97F4A7C15L;
+            return ((int) (h ^ (h >>> 32)) & mascara) * CAMPS;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package model;
+
+import traces.PreusEvent;
+
+import java.util.Arrays;
+
+/**
+ * Calcula per lots els preus de totes les línies d'un carret.
+ * En lloc de cridar calcularPreu() una vegada per línia, les línies es reparteixen per tipus de producte en grups
+ * organitzats per columnes (preu base, atribut de preu i quantitat en arrays primitius) i cada grup es calcula amb un
+ * bucle simple sobre els seus arrays:
+ * - Alimentació: codi de barres, preu base, dia de caducitat i quantitat. Si el context té la taula de preus
+ *   precalculats del dia, els preus s'hi llegeixen en lloc de calcular-los.
+ * - Tèxtil: preu base i quantitat.
+ * - Electrònica: preu base, dies de garantia i quantitat.
+ * Els productes d'altres classes (per exemple, subclasses que redefineixen calcularPreu()) es calculen un per un.
+ *
+ * Les fórmules són les mateixes que les de cada tipus de producte, de manera que el resultat és idèntic al càlcul d'un en un.
+ * Les línies es recorren en l'ordre en què s'han afegit, que és també l'ordre en què són a la memòria, i els resultats
+ * queden en aquest mateix ordre; cada línia guarda la seva posició als resultats per poder-los consultar des d'una altra vista.
+ * Els arrays es reutilitzen entre càlculs i només creixen, de manera que calcular un carret no crea cap objecte
+ * i el cost és lineal amb el nombre de línies.
+ * Les promocions hi poden afegir descomptes un cop calculades les línies; cada descompte té el nom de la promoció
+ * i el seu import, i es resta del total.
+ * Aquesta classe no és segura per a l'accés concurrent: cada carret en fa servir la seva.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class PreusCarret {
+    private static final int CAPACITAT_INICIAL = 16;
+    private static final String ALTRES = "ALTRES";
+
+    private LiniaCarret[] linies = new LiniaCarret[CAPACITAT_INICIAL];
+    private long[] preusUnitaris = new long[CAPACITAT_INICIAL];
+    private long[] totalsLinia = new long[CAPACITAT_INICIAL];
+    private int mida;
+    private long total;
+    private String[] nomsDescomptes = new String[CAPACITAT_INICIAL];
+    private long[] descomptes = new long[CAPACITAT_INICIAL];
+    private int nombreDescomptes;
+    private long totalDescomptes;
+
+    private final Grup alimentacio = new Grup();
+    private final Grup textil = new Grup();
+    private final Grup electronica = new Grup();
+    private final Grup altres = new Grup();
+
+    /**
+     * Construeix un calculador de preus buit.
+     */
+    PreusCarret() {
+    }
+
+    /**
+     * Calcula els preus de les línies recorrent-les en ordre d'inserció a partir de la primera línia del carret.
+     * Els resultats es conserven en el mateix ordre fins al càlcul següent.
+     *
+     * @param primera La primera línia del carret.
+     * @param context El context de preus que fixa el dia de càlcul.
+     * @throws ArithmeticException Si algun import no cap en un long.
+     */
+    void calcular(LiniaCarret primera, ContextPreu context) {
+        buidar();
+        for (LiniaCarret linia = primera; linia != null; linia = linia.seguent) {
+            afegir(linia);
+        }
+
+        PreusEvent event = PreusEvent.iniciar();
+        alimentacio.calcularAlimentacio(linies, context, preusUnitaris, totalsLinia);
+        event.acabar(TipusProducte.ALIMENTACIO.name(), alimentacio.mida, mida);
+        event = PreusEvent.iniciar();
+        textil.calcularTextil(preusUnitaris, totalsLinia);
+        event.acabar(TipusProducte.TEXTIL.name(), textil.mida, mida);
+        event = PreusEvent.iniciar();
+        electronica.calcularElectronica(preusUnitaris, totalsLinia);
+        event.acabar(TipusProducte.ELECTRONICA.name(), electronica.mida, mida);
+        event = PreusEvent.iniciar();
+        altres.calcularAltres(linies, context, preusUnitaris, totalsLinia);
+        event.acabar(ALTRES, altres.mida, mida);
+
+        long suma = 0;
+        for (int i = 0; i < mida; i++) {
+            suma = Math.addExact(suma, totalsLinia[i]);
+        }
+        total = suma;
+    }
+
+    /**
+     * Afegeix una línia al final dels resultats i al grup del seu tipus de producte.
+     *
+     * @param linia La línia a afegir.
+     */
+    private void afegir(LiniaCarret linia) {
+        if (mida == linies.length) {
+            int capacitat = mida * 2;
+            linies = Arrays.copyOf(linies, capacitat);
+            preusUnitaris = Arrays.copyOf(preusUnitaris, capacitat);
+            totalsLinia = Arrays.copyOf(totalsLinia, capacitat);
+        }
+        int posicio = mida++;
+        linies[posicio] = linia;
+        linia.posicioPreus = posicio;
+
+        Product producte = linia.getProducte();
+        Class<?> classe = producte.getClass();
+        if (classe == Alimentacio.class) {
+            alimentacio.afegir(posicio, producte.getCodiBarres().clau(), producte.getPreu(),
+                    ((Alimentacio) producte).getAtribut(), linia.getQuantitat());
+        } else if (classe == Textil.class) {
+            textil.afegir(posicio, 0, producte.getPreu(), 0, linia.getQuantitat());
+        } else if (classe == Electronica.class) {
+            electronica.afegir(posicio, 0, producte.getPreu(), ((Electronica) producte).getAtribut(),
+                    linia.getQuantitat());
+        } else {
+            altres.afegir(posicio, 0, 0, 0, linia.getQuantitat());
+        }
+    }
+
+    /**
+     * Afegeix un descompte al resultat i el resta del total.
+     *
+     * @param nom El nom de la promoció que genera el descompte, tal com es mostra al tiquet.
+     * @param descompte L'import del descompte en cèntims.
+     * @throws IllegalArgumentException Si l'import no és positiu o supera el total que queda per pagar.
+     */
+    public void afegirDescompte(String nom, long descompte) {
+        if (descompte <= 0 || descompte > total) {
+            throw new IllegalArgumentException("Error: Descompte no vàlid: " + descompte);
+        }
+        if (nombreDescomptes == descomptes.length) {
+            int capacitat = nombreDescomptes * 2;
+            nomsDescomptes = Arrays.copyOf(nomsDescomptes, capacitat);
+            descomptes = Arrays.copyOf(descomptes, capacitat);
+        }
+        nomsDescomptes[nombreDescomptes] = nom;
+        descomptes[nombreDescomptes] = descompte;
+        nombreDescomptes++;
+        totalDescomptes += descompte;
+        total -= descompte;
+    }
+
+    /**
+     * Descarta els resultats del càlcul anterior i deixa d'apuntar a les seves línies.
+     */
+    void buidar() {
+        Arrays.fill(linies, 0, mida, null);
+        Arrays.fill(nomsDescomptes, 0, nombreDescomptes, null);
+        mida = 0;
+        total = 0;
+        nombreDescomptes = 0;
+        totalDescomptes = 0;
+        alimentacio.mida = 0;
+        textil.mida = 0;
+        electronica.mida = 0;
+        altres.mida = 0;
+    }
+
+    /**
+     * Retorna el nombre de línies calculades.
+     *
+     * @return El nombre de línies.
+     */
+    public int getNombreLinies() {
+        return mida;
+    }
+
+    /**
+     * Retorna una línia calculada. Les línies estan en l'ordre en què s'han afegit al carret.
+     *
+     * @param i La posició de la línia.
+     * @return La línia del carret.
+     */
+    public LiniaCarret getLinia(int i) {
+        return linies[i];
+    }
+
+    /**
+     * Retorna el preu unitari d'una línia calculada.
+     *
+     * @param i La posició de la línia.
+     * @return El preu unitari en cèntims.
+     */
+    public long getPreuUnitari(int i) {
+        return preusUnitaris[i];
+    }
+
+    /**
+     * Retorna el total d'una línia calculada (preu unitari per quantitat).
+     *
+     * @param i La posició de la línia.
+     * @return El total de la línia en cèntims.
+     */
+    public long getTotalLinia(int i) {
+        return totalsLinia[i];
+    }
+
+    /**
+     * Retorna el total de totes les línies calculades, un cop restats els descomptes.
+     *
+     * @return El total en cèntims.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Retorna el nombre de descomptes afegits.
+     *
+     * @return El nombre de descomptes.
+     */
+    public int getNombreDescomptes() {
+        return nombreDescomptes;
+    }
+
+    /**
+     * Retorna el nom de la promoció d'un descompte.
+     *
+     * @param i La posició del descompte, en l'ordre en què s'ha afegit.
+     * @return El nom de la promoció.
+     */
+    public String getNomDescompte(int i) {
+        return nomsDescomptes[i];
+    }
+
+    /**
+     * Retorna l'import d'un descompte.
+     *
+     * @param i La posició del descompte, en l'ordre en què s'ha afegit.
+     * @return L'import del descompte en cèntims.
+     */
+    public long getDescompte(int i) {
+        return descomptes[i];
+    }
+
+    /**
+     * Retorna la suma de tots els descomptes afegits.
+     *
+     * @return La suma dels descomptes en cèntims.
+     */
+    public long getTotalDescomptes() {
+        return totalDescomptes;
+    }
+
+    /**
+     * Línies d'un mateix tipus de producte organitzades per columnes.
+     * Cada fila guarda la posició de la línia als resultats, la clau del codi de barres (només per a alimentació), el
+     * preu base, l'atribut de preu i la quantitat.
+     */
+    private static final class Grup {
+        private int[] posicions = new int[CAPACITAT_INICIAL];
+        private long[] claus = new long[CAPACITAT_INICIAL];
+        private long[] preus = new long[CAPACITAT_INICIAL];
+        private long[] atributs = new long[CAPACITAT_INICIAL];
+        private int[] quantitats = new int[CAPACITAT_INICIAL];
+        private int mida;
+
+        /**
+         * Afegeix una fila al grup.
+         *
+         * @param posicio La posició de la línia als resultats.
+         * @param clau La clau del codi de barres, o 0 si el grup no la necessita.
+         * @param preu El preu base en cèntims.
+         * @param atribut L'atribut de preu del producte.
+         * @param quantitat La quantitat de la línia.
+         */
+        void afegir(int posicio, long clau, long preu, long atribut, int quantitat) {
+            if (mida == posicions.length) {
+                int capacitat = mida * 2;
+                posicions = Arrays.copyOf(posicions, capacitat);
+                claus = Arrays.copyOf(claus, capacitat);
+                preus = Arrays.copyOf(preus, capacitat);
+                atributs = Arrays.copyOf(atributs, capacitat);
+                quantitats = Arrays.copyOf(quantitats, capacitat);
+            }
+            posicions[mida] = posicio;
+            claus[mida] = clau;
+            preus[mida] = preu;
+            atributs[mida] = atribut;
+            quantitats[mida] = quantitat;
+            mida++;
+        }
+
+        /**
+         * Calcula el grup d'alimentació. L'atribut de cada fila és el dia de caducitat.
+         * Els preus es llegeixen de la taula de preus precalculats del context; els productes que no hi són es
+         * calculen amb el dia del context i es registren perquè es precalculin a partir del dia següent.
+         *
+         * @param linies Les línies dels resultats.
+         * @param context El context de preus.
+         * @param unitaris On s'escriuen els preus unitaris.
+         * @param totals On s'escriuen els totals de línia.
+         */
+        void calcularAlimentacio(LiniaCarret[] linies, ContextPreu context, long[] unitaris, long[] totals) {
+            long dia = context.getDiaEpoca();
+            for (int j = 0; j < mida; j++) {
+                long preu = context.preuPrecalculat(claus[j], preus[j], atributs[j]);
+                if (preu < 0) {
+                    preu = Alimentacio.calcularPreu(preus[j], atributs[j] - dia);
+                    context.registrarAlimentacio(linies[posicions[j]].getProducte());
+                }
+                unitaris[posicions[j]] = preu;
+                totals[posicions[j]] = Math.multiplyExact(preu, quantitats[j]);
+            }
+        }
+
+        /**
+         * Calcula el grup tèxtil, el preu del qual és el preu base.
+         *
+         * @param unitaris On s'escriuen els preus unitaris.
+         * @param totals On s'escriuen els totals de línia.
+         */
+        void calcularTextil(long[] unitaris, long[] totals) {
+            for (int j = 0; j < mida; j++) {
+                unitaris[posicions[j]] = preus[j];
+                totals[posicions[j]] = Math.multiplyExact(preus[j], quantitats[j]);
+            }
+        }
+
+        /**
+         * Calcula el grup d'electrònica. L'atribut de cada fila són els dies de garantia.
+         *
+         * @param unitaris On s'escriuen els preus unitaris.
+         * @param totals On s'escriuen els totals de línia.
+         */
+        void calcularElectronica(long[] unitaris, long[] totals) {
+            for (int j = 0; j < mida; j++) {
+                long preu = Electronica.calcularPreu(preus[j], atributs[j]);
+                unitaris[posicions[j]] = preu;
+                totals[posicions[j]] = Math.multiplyExact(preu, quantitats[j]);
+            }
+        }
+
+        /**
+         * Calcula un per un els productes que no són de cap de les classes conegudes.
+         *
+         * @param linies Les línies dels resultats.
+         * @param context El context de preus.
+         * @param unitaris On s'escriuen els preus unitaris.
+         * @param totals On s'escriuen els totals de línia.
+         */
+        void calcularAltres(LiniaCarret[] linies, ContextPreu context, long[] unitaris, long[] totals) {
+            for (int j = 0; j < mida; j++) {
+                long preu = context.preuUnitari(linies[posicions[j]].getProducte());
+                unitaris[posicions[j]] = preu;
+                totals[posicions[j]] = Math.multiplyExact(preu, quantitats[j]);
+            }
+        }
+    }
+}
@@ -2,38 +2,61 @@ package model;
 
 import exceptions.NegatiuException;
 import exceptions.LimitCaracteresException;
+import utils.Diners;
 import utils.Validacions;
 
+import java.time.LocalDate;
+
 /**
  * Classe abstracta que representa un producte genèric a la botiga.
  * Aquesta classe proporciona l'estructura bàsica comuna a tots els tipus de productes:
  * - Atributs bàsics com nom, preu i codi de barres.
+ * - El preu es guarda en cèntims d'euro (vegeu Diners), de manera que tots els càlculs amb imports són enters i exactes.
  * - Validació del preu i del codi de barres.
  * - Implementació de la interfície Calculable per al càlcul del preu.
  * 
- * Les classes derivades han d'implementar el mètode calcularPreu() per proporcionar el càlcul específic segons el tipus de producte.
+ * Les classes derivades han d'implementar el mètode calcularPreu(ContextPreu) per proporcionar el càlcul específic segons el tipus de producte.
  * 
  * @author Joan Miralles Carmona
  */
 public abstract class Product implements Calculable {
     protected String nom;
-    protected double preu;
-    protected String codiBarres;
+    protected long preu;
+    protected CodiBarres codiBarres;
+
+    /**
+     * Construeix un producte buit perquè les classes derivades el puguin restaurar a partir de dades ja validades.
+     * Les classes derivades són les responsables d'assignar tots els atributs.
+     */
+    Product() {
+    }
 
     /**
      * Construeix un nou producte amb les dades proporcionades.
      * Valida que el preu no sigui negatiu ni zero i que el codi de barres compleixi amb els requisits.
      *
      * @param nom El nom del producte.
-     * @param preu El preu base del producte.
+     * @param preu El preu base del producte en cèntims.
      * @param codiBarres El codi de barres únic del producte.
      * @throws NegatiuException Si el preu és negatiu o zero.
      * @throws LimitCaracteresException Si el codi de barres no compleix amb els requisits.
      */
-    public Product(String nom, double preu, String codiBarres)
+    public Product(String nom, long preu, String codiBarres)
             throws NegatiuException, LimitCaracteresException {
+        this(nom, preu, CodiBarres.parse(codiBarres));
+    }
+
+    /**
+     * Construeix un nou producte amb un codi de barres ja validat.
+     * Valida que el preu no sigui negatiu ni zero.
+     *
+     * @param nom El nom del producte.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres únic del producte.
+     * @throws NegatiuException Si el preu és negatiu o zero.
+     */
+    public Product(String nom, long preu, CodiBarres codiBarres) throws NegatiuException {
         Validacions.validarPreu(preu);
-        Validacions.validarCodiBarres(codiBarres);
         this.nom = nom;
         this.preu = preu;
         this.codiBarres = codiBarres;
@@ -60,18 +83,18 @@ public abstract class Product implements Calculable {
     /**
      * Retorna el preu base del producte.
      *
-     * @return El preu base del producte.
+     * @return El preu base del producte en cèntims.
      */
-    public double getPreu() {
+    public long getPreu() {
         return preu;
     }
 
     /**
      * Estableix un nou preu base per al producte.
      *
-     * @param preu El nou preu base del producte.
+     * @param preu El nou preu base del producte en cèntims.
      */
-    public void setPreu(double preu) {
+    public void setPreu(long preu) {
         this.preu = preu;
     }
 
@@ -80,7 +103,7 @@ public abstract class Product implements Calculable {
      *
      * @return El codi de barres del producte.
      */
-    public String getCodiBarres() {
+    public CodiBarres getCodiBarres() {
         return codiBarres;
     }
 
@@ -89,10 +112,60 @@ public abstract class Product implements Calculable {
      *
      * @param codiBarres El nou codi de barres del producte.
      */
-    public void setCodiBarres(String codiBarres) {
+    public void setCodiBarres(CodiBarres codiBarres) {
         this.codiBarres = codiBarres;
     }
 
+    /**
+     * Estableix un nou codi de barres per al producte a partir del seu format text.
+     *
+     * @param codiBarres El nou codi de barres del producte en format text.
+     * @throws LimitCaracteresException Si el codi de barres no compleix amb els requisits.
+     */
+    public void setCodiBarres(String codiBarres) throws LimitCaracteresException {
+        this.codiBarres = CodiBarres.parse(codiBarres);
+    }
+
+    /**
+     * Retorna el tipus del producte.
+     *
+     * @return El tipus del producte.
+     */
+    public abstract TipusProducte getTipus();
+
+    /**
+     * Retorna l'atribut específic del tipus de producte codificat com a enter.
+     * S'utilitza per emmagatzemar el producte en format binari i per comprovar si un preu memoritzat continua sent vàlid:
+     * - Alimentació: el dia de caducitat en dies des de l'època.
+     * - Tèxtil: l'ordinal de la composició dins l'enumerat Composicio.
+     * - Electrònica: els dies de garantia.
+     *
+     * @return L'atribut codificat.
+     */
+    public abstract long getAtribut();
+
+    /**
+     * Restaura un producte a partir del seu tipus i les seves dades codificades, sense tornar-les a validar.
+     * És l'operació inversa de getTipus() i getAtribut(), i s'utilitza per recuperar productes emmagatzemats.
+     *
+     * @param tipus El tipus del producte.
+     * @param nom El nom del producte.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres del producte.
+     * @param atribut L'atribut específic codificat tal com el retorna getAtribut().
+     * @return El producte restaurat.
+     */
+    public static Product restaurar(TipusProducte tipus, String nom, long preu, CodiBarres codiBarres, long atribut) {
+        switch (tipus) {
+            case ALIMENTACIO:
+                return Alimentacio.restaurar(nom, preu, codiBarres, LocalDate.ofEpochDay(atribut));
+            case TEXTIL:
+                return Textil.restaurar(nom, preu, codiBarres, Composicio.deOrdinal((int) atribut));
+            default:
+                return Electronica.restaurar(nom, preu, codiBarres, (int) atribut);
+        }
+    }
+
     /**
      * Retorna una representació en format text del producte.
      * Inclou el nom, codi de barres i preu del producte.
@@ -101,6 +174,6 @@ public abstract class Product implements Calculable {
      */
     @Override
     public String toString() {
-        return nom + " (" + codiBarres + ") - " + preu + " EUR";
+        return nom + " (" + codiBarres + ") - " + Diners.format(preu) + " EUR";
     }
 }
\ No newline at end of file
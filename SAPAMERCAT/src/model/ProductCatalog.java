@@ -0,0 +1,501 @@
+package model;
+
+import exceptions.LimitCaracteresException;
+import exceptions.LimitProductesException;
+import exceptions.NegatiuException;
+import utils.Searchable;
+import utils.Validacions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Catàleg persistent de productes indexat per codi de barres i emmagatzemat en un fitxer projectat a memòria.
+ * Aquesta classe permet resoldre un codi de barres escanejat a un producte sense haver d'introduir-ne les dades:
+ * - Cada producte ocupa un registre de mida fixa dins una taula de dispersió amb adreçament obert.
+ * - El fitxer es projecta a memòria (memory-mapped), de manera que obrir-lo és immediat i només es llegeixen les pàgines consultades.
+ * - Les consultes no necessiten cap bloqueig i cada registre es protegeix amb un comptador de seqüència (seqlock).
+ * - Les actualitzacions de preu i d'atributs són atòmiques: un lector mai veu un registre a mig escriure.
+ * 
+ * Format del fitxer:
+ * - Capçalera de 64 bytes: identificador, versió, nombre de posicions, mida de registre, nombre de productes i estat
+ *   (obert o tancat correctament).
+ * - Registres de 64 bytes: clau del codi de barres, seqüència, tipus, longitud del nom, preu en cèntims, atribut i nom (32 bytes UTF-8).
+ * L'atribut és el dia de caducitat (alimentació), l'ordinal de la composició (tèxtil) o els dies de garantia (electrònica).
+ * 
+ * Les escriptures s'han de fer des d'un sol procés; les consultes es poden fer des de qualsevol fil.
+ * Si el procés cau enmig d'una escriptura, el comptador de seqüència del registre queda senar al fitxer: en tornar-lo a
+ * obrir sense que s'hagués tancat correctament es recorren els registres i es tornen a publicar.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public class ProductCatalog implements Searchable<Product>, Closeable {
+    /**
+     * Nombre màxim de bytes UTF-8 que pot ocupar el nom d'un producte al catàleg.
+     */
+    public static final int MAX_BYTES_NOM = 32;
+
+    /**
+     * Nombre màxim de posicions de la taula (el fitxer no pot superar 1 GB).
+     */
+    public static final int MAX_POSICIONS = 1 << 24;
+
+    private static final int IDENTIFICADOR = 0x53415043;
+    private static final int VERSIO_FORMAT = 2;
+    private static final int MIDA_CAPCALERA = 64;
+    private static final int MIDA_REGISTRE = 64;
+
+    private static final int CAP_IDENTIFICADOR = 0;
+    private static final int CAP_VERSIO = 4;
+    private static final int CAP_POSICIONS = 8;
+    private static final int CAP_MIDA_REGISTRE = 12;
+    private static final int CAP_PRODUCTES = 16;
+    private static final int CAP_ESTAT = 24;
+
+    private static final int ESTAT_OBERT = 0;
+    private static final int ESTAT_TANCAT = 1;
+
+    private static final int REG_CLAU = 0;
+    private static final int REG_SEQUENCIA = 8;
+    private static final int REG_TIPUS = 12;
+    private static final int REG_LONGITUD_NOM = 13;
+    private static final int REG_PREU = 16;
+    private static final int REG_ATRIBUT = 24;
+    private static final int REG_NOM = 32;
+
+    private static final VarHandle ENTERS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LLARGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final TipusProducte[] TIPUS = TipusProducte.values();
+
+    private final FileChannel canal;
+    private final MappedByteBuffer buffer;
+    private final int posicions;
+    private final int mascara;
+    private long productes;
+
+    /**
+     * Construeix un catàleg sobre un fitxer ja projectat a memòria.
+     *
+     * @param canal El canal del fitxer.
+     * @param buffer La projecció del fitxer a memòria.
+     * @param posicions El nombre de posicions de la taula.
+     */
+    private ProductCatalog(FileChannel canal, MappedByteBuffer buffer, int posicions) {
+        this.canal = canal;
+        this.buffer = buffer;
+        this.posicions = posicions;
+        this.mascara = posicions - 1;
+        this.productes = buffer.getLong(CAP_PRODUCTES);
+    }
+
+    /**
+     * Crea un fitxer de catàleg nou i buit amb capacitat per al nombre de productes indicat.
+     * El fitxer es crea dispers: només ocupa espai al disc a mesura que s'hi afegeixen productes.
+     *
+     * @param fitxer El fitxer a crear, que no pot existir.
+     * @param capacitat El nombre màxim de productes que ha de poder contenir el catàleg.
+     * @return El catàleg obert.
+     * @throws IOException Si no es pot crear el fitxer.
+     * @throws IllegalArgumentException Si la capacitat no és positiva o supera el màxim permès.
+     */
+    public static ProductCatalog crear(Path fitxer, int capacitat) throws IOException {
+        if (capacitat <= 0) {
+            throw new IllegalArgumentException("Error: La capacitat del catàleg ha de ser positiva.");
+        }
+        int posicions = 16;
+        while ((long) posicions * 3 / 4 < capacitat) {
+            posicions <<= 1;
+            if (posicions > MAX_POSICIONS) {
+                throw new IllegalArgumentException("Error: La capacitat del catàleg supera el màxim permès.");
+            }
+        }
+
+        FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.SPARSE);
+        try {
+            MappedByteBuffer buffer = projectar(canal, posicions);
+            buffer.putInt(CAP_IDENTIFICADOR, IDENTIFICADOR);
+            buffer.putInt(CAP_VERSIO, VERSIO_FORMAT);
+            buffer.putInt(CAP_POSICIONS, posicions);
+            buffer.putInt(CAP_MIDA_REGISTRE, MIDA_REGISTRE);
+            buffer.putLong(CAP_PRODUCTES, 0);
+            buffer.putInt(CAP_ESTAT, ESTAT_OBERT);
+            return new ProductCatalog(canal, buffer, posicions);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Obre un fitxer de catàleg existent.
+     * Només es llegeix la capçalera; la resta del fitxer es carrega sota demanda en consultar-lo. Si el catàleg no
+     * es va tancar correctament, abans es normalitzen els comptadors de seqüència que hagin quedat senars.
+     *
+     * @param fitxer El fitxer del catàleg.
+     * @return El catàleg obert.
+     * @throws IOException Si no es pot obrir el fitxer o no és un catàleg vàlid.
+     */
+    public static ProductCatalog obrir(Path fitxer) throws IOException {
+        FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (canal.size() < MIDA_CAPCALERA) {
+                throw new IOException("Error: El fitxer no és un catàleg de productes.");
+            }
+            MappedByteBuffer capcalera = canal.map(FileChannel.MapMode.READ_ONLY, 0, MIDA_CAPCALERA);
+            capcalera.order(ByteOrder.LITTLE_ENDIAN);
+            int posicions = capcalera.getInt(CAP_POSICIONS);
+            if (capcalera.getInt(CAP_IDENTIFICADOR) != IDENTIFICADOR
+                    || capcalera.getInt(CAP_VERSIO) != VERSIO_FORMAT
+                    || capcalera.getInt(CAP_MIDA_REGISTRE) != MIDA_REGISTRE
+                    || posicions <= 0 || posicions > MAX_POSICIONS || Integer.bitCount(posicions) != 1
+                    || canal.size() != midaFitxer(posicions)) {
+                throw new IOException("Error: El fitxer no és un catàleg de productes.");
+            }
+            ProductCatalog cataleg = new ProductCatalog(canal, projectar(canal, posicions), posicions);
+            cataleg.marcarObert();
+            return cataleg;
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Obre un fitxer de catàleg si existeix o el crea amb la capacitat indicada si no existeix.
+     *
+     * @param fitxer El fitxer del catàleg.
+     * @param capacitat La capacitat del catàleg si s'ha de crear.
+     * @return El catàleg obert.
+     * @throws IOException Si no es pot obrir ni crear el fitxer.
+     */
+    public static ProductCatalog obrirOCrear(Path fitxer, int capacitat) throws IOException {
+        return fitxer.toFile().exists() ? obrir(fitxer) : crear(fitxer, capacitat);
+    }
+
+    /**
+     * Retorna la mida del fitxer per al nombre de posicions indicat.
+     *
+     * @param posicions El nombre de posicions de la taula.
+     * @return La mida del fitxer en bytes.
+     */
+    private static long midaFitxer(int posicions) {
+        return MIDA_CAPCALERA + (long) posicions * MIDA_REGISTRE;
+    }
+
+    /**
+     * Projecta el fitxer sencer a memòria.
+     *
+     * @param canal El canal del fitxer.
+     * @param posicions El nombre de posicions de la taula.
+     * @return La projecció del fitxer.
+     * @throws IOException Si no es pot projectar el fitxer.
+     */
+    private static MappedByteBuffer projectar(FileChannel canal, int posicions) throws IOException {
+        MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_WRITE, 0, midaFitxer(posicions));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Cerca un producte al catàleg pel seu codi de barres.
+     *
+     * @param codiBarres El codi de barres del producte.
+     * @return El producte, o null si no és al catàleg.
+     * @throws UncheckedIOException Si el registre del producte està corrupte.
+     */
+    @Override
+    public Product buscar(CodiBarres codiBarres) {
+        int registre = trobar(codiBarres.clau());
+        return registre < 0 ? null : llegir(registre, codiBarres);
+    }
+
+    /**
+     * Cerca un producte al catàleg per la clau empaquetada del seu codi de barres.
+     *
+     * @param clau La clau del codi de barres, obtinguda amb CodiBarres.clau().
+     * @return El producte, o null si no és al catàleg.
+     * @throws UncheckedIOException Si el registre del producte està corrupte.
+     */
+    @Override
+    public Product buscar(long clau) {
+        int registre = trobar(clau);
+        return registre < 0 ? null : llegir(registre, CodiBarres.deClau(clau));
+    }
+
+    /**
+     * Indica si el catàleg conté un codi de barres.
+     *
+     * @param codiBarres El codi de barres.
+     * @return true si el codi de barres és al catàleg.
+     */
+    public boolean conte(CodiBarres codiBarres) {
+        return trobar(codiBarres.clau()) >= 0;
+    }
+
+    /**
+     * Desa un producte al catàleg, substituint atòmicament el registre anterior si el codi de barres ja existia.
+     *
+     * @param producte El producte a desar.
+     * @throws LimitCaracteresException Si el nom del producte no cap al registre.
+     * @throws LimitProductesException Si el catàleg és ple.
+     */
+    public synchronized void desar(Product producte) throws LimitCaracteresException, LimitProductesException {
+        byte[] nom = producte.getNom().getBytes(StandardCharsets.UTF_8);
+        if (nom.length > MAX_BYTES_NOM) {
+            throw new LimitCaracteresException("Error: El nom no pot ocupar més de " + MAX_BYTES_NOM
+                    + " bytes al catàleg.");
+        }
+
+        long clau = producte.getCodiBarres().clau();
+        int registre = trobar(clau);
+        if (registre >= 0) {
+            escriure(desplacament(registre), producte, nom);
+            return;
+        }
+
+        if (productes >= (long) posicions * 3 / 4) {
+            throw new LimitProductesException("Error: El catàleg de productes és ple.");
+        }
+        int desplacament = desplacament(-registre - 1);
+        escriure(desplacament, producte, nom);
+        LLARGS.setRelease(buffer, desplacament + REG_CLAU, clau);
+        productes++;
+        buffer.putLong(CAP_PRODUCTES, productes);
+    }
+
+    /**
+     * Actualitza atòmicament el preu base d'un producte del catàleg.
+     *
+     * @param codiBarres El codi de barres del producte.
+     * @param preu El nou preu base en cèntims.
+     * @return true si el producte existia i s'ha actualitzat.
+     * @throws NegatiuException Si el preu és negatiu o zero.
+     */
+    public synchronized boolean actualitzarPreu(CodiBarres codiBarres, long preu) throws NegatiuException {
+        Validacions.validarPreu(preu);
+        int registre = trobar(codiBarres.clau());
+        if (registre < 0) {
+            return false;
+        }
+
+        int desplacament = desplacament(registre);
+        int sequencia = iniciarEscriptura(desplacament);
+        buffer.putLong(desplacament + REG_PREU, preu);
+        acabarEscriptura(desplacament, sequencia);
+        return true;
+    }
+
+    /**
+     * Aplica una acció a cada producte del catàleg, en l'ordre dels registres.
+     * No bloqueja les escriptures: els productes que es desen mentre es recorre el catàleg poden aparèixer o no.
+     * Els registres corruptes se salten amb un avís.
+     *
+     * @param accio L'acció a aplicar.
+     */
+    public void perCadaProducte(Consumer<Product> accio) {
+        for (int registre = 0; registre < posicions; registre++) {
+            long clau = (long) LLARGS.getAcquire(buffer, desplacament(registre) + REG_CLAU);
+            if (clau != 0) {
+                Product producte;
+                try {
+                    producte = llegir(registre, CodiBarres.deClau(clau));
+                } catch (UncheckedIOException e) {
+                    System.err.println(e.getMessage());
+                    continue;
+                }
+                accio.accept(producte);
+            }
+        }
+    }
+
+    /**
+     * Retorna el nombre de productes del catàleg.
+     *
+     * @return El nombre de productes.
+     */
+    public synchronized long getNombreProductes() {
+        return productes;
+    }
+
+    /**
+     * Retorna el nombre màxim de productes que pot contenir el catàleg.
+     *
+     * @return La capacitat del catàleg.
+     */
+    public int getCapacitat() {
+        return posicions / 4 * 3;
+    }
+
+    /**
+     * Força que tots els canvis del catàleg s'escriguin al disc.
+     */
+    public synchronized void forcar() {
+        buffer.force();
+    }
+
+    /**
+     * Escriu els canvis pendents al disc i tanca el fitxer del catàleg.
+     *
+     * @throws IOException Si hi ha un error en tancar el fitxer.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        buffer.putInt(CAP_ESTAT, ESTAT_TANCAT);
+        buffer.force(0, MIDA_CAPCALERA);
+        canal.close();
+    }
+
+    /**
+     * Marca el catàleg com a obert, de manera que si el procés cau abans de tancar-lo la propera obertura ho detecti.
+     * Si l'obertura anterior no es va tancar correctament, primer normalitza els comptadors de seqüència.
+     */
+    private void marcarObert() {
+        if (buffer.getInt(CAP_ESTAT) != ESTAT_TANCAT) {
+            normalitzarSequencies();
+        }
+        buffer.putInt(CAP_ESTAT, ESTAT_OBERT);
+        buffer.force(0, MIDA_CAPCALERA);
+    }
+
+    /**
+     * Publica els registres que una escriptura interrompuda ha deixat amb el comptador de seqüència senar. Sense
+     * aquesta correcció, les lectures d'aquests registres esperarien indefinidament que l'escriptura acabés.
+     * El registre conserva les dades que s'havien arribat a escriure.
+     */
+    private void normalitzarSequencies() {
+        for (int registre = 0; registre < posicions; registre++) {
+            int desplacament = desplacament(registre);
+            int sequencia = buffer.getInt(desplacament + REG_SEQUENCIA);
+            if ((sequencia & 1) != 0) {
+                buffer.putInt(desplacament + REG_SEQUENCIA, sequencia + 1);
+            }
+        }
+        buffer.force();
+    }
+
+    /**
+     * Cerca la posició d'una clau a la taula.
+     *
+     * @param clau La clau del codi de barres.
+     * @return La posició del registre si existeix, o (-posicióLliure - 1) si no existeix.
+     */
+    private int trobar(long clau) {
+        long h = clau * 0x9E3779B97F4A7C15L;
+        int posicio = (int) (h ^ (h >>> 32)) & mascara;
+        while (true) {
+            long actual = (long) LLARGS.getAcquire(buffer, desplacament(posicio) + REG_CLAU);
+            if (actual == clau) {
+                return posicio;
+            }
+            if (actual == 0) {
+                return -posicio - 1;
+            }
+            posicio = (posicio + 1) & mascara;
+        }
+    }
+
+    /**
+     * Retorna el desplaçament d'un registre dins el fitxer.
+     *
+     * @param registre La posició del registre.
+     * @return El desplaçament en bytes.
+     */
+    private static int desplacament(int registre) {
+        return MIDA_CAPCALERA + registre * MIDA_REGISTRE;
+    }
+
+    /**
+     * Escriu les dades d'un producte a un registre protegint-les amb el comptador de seqüència.
+     *
+     * @param desplacament El desplaçament del registre.
+     * @param producte El producte a escriure.
+     * @param nom El nom del producte codificat en UTF-8.
+     */
+    private void escriure(int desplacament, Product producte, byte[] nom) {
+        long atribut = producte.getAtribut();
+        int sequencia = iniciarEscriptura(desplacament);
+        buffer.put(desplacament + REG_TIPUS, (byte) producte.getTipus().ordinal());
+        buffer.put(desplacament + REG_LONGITUD_NOM, (byte) nom.length);
+        buffer.putLong(desplacament + REG_PREU, producte.getPreu());
+        buffer.putLong(desplacament + REG_ATRIBUT, atribut);
+        buffer.put(desplacament + REG_NOM, nom);
+        acabarEscriptura(desplacament, sequencia);
+    }
+
+    /**
+     * Marca un registre com a en escriptura posant el comptador de seqüència a un valor senar.
+     * L'escriptura volàtil només ordena els accessos anteriors: la barrera storeStore impedeix que les escriptures
+     * normals dels camps del registre es facin visibles abans del valor senar, com fa StampedLock. Sense ella, en
+     * processadors amb un model de memòria feble un lector podria acceptar un registre a mig escriure.
+     *
+     * @param desplacament El desplaçament del registre.
+     * @return El valor del comptador abans de l'escriptura.
+     */
+    private int iniciarEscriptura(int desplacament) {
+        int sequencia = (int) ENTERS.getVolatile(buffer, desplacament + REG_SEQUENCIA);
+        ENTERS.setVolatile(buffer, desplacament + REG_SEQUENCIA, sequencia + 1);
+        VarHandle.storeStoreFence();
+        return sequencia;
+    }
+
+    /**
+     * Publica un registre escrit posant el comptador de seqüència al següent valor parell.
+     *
+     * @param desplacament El desplaçament del registre.
+     * @param sequencia El valor del comptador abans de l'escriptura.
+     */
+    private void acabarEscriptura(int desplacament, int sequencia) {
+        ENTERS.setRelease(buffer, desplacament + REG_SEQUENCIA, sequencia + 2);
+    }
+
+    /**
+     * Llegeix un registre i el converteix en un producte.
+     * Si el registre s'està escrivint en aquell moment, es torna a llegir fins obtenir una versió coherent.
+     * El tipus es valida com els camps de la capçalera: un valor fora de rang en una versió coherent vol dir que el
+     * fitxer està corrupte o no l'ha escrit aquesta classe.
+     *
+     * @param registre La posició del registre.
+     * @param codiBarres El codi de barres del registre.
+     * @return El producte del registre.
+     * @throws UncheckedIOException Si el tipus del registre no és vàlid.
+     */
+    private Product llegir(int registre, CodiBarres codiBarres) {
+        int desplacament = desplacament(registre);
+        while (true) {
+            int sequencia = (int) ENTERS.getAcquire(buffer, desplacament + REG_SEQUENCIA);
+            if ((sequencia & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            int tipus = buffer.get(desplacament + REG_TIPUS);
+            int longitudNom = Math.min(buffer.get(desplacament + REG_LONGITUD_NOM) & 0xFF, MAX_BYTES_NOM);
+            long preu = buffer.getLong(desplacament + REG_PREU);
+            long atribut = buffer.getLong(desplacament + REG_ATRIBUT);
+            byte[] nom = new byte[longitudNom];
+            buffer.get(desplacament + REG_NOM, nom);
+
+            VarHandle.loadLoadFence();
+            if ((int) ENTERS.getVolatile(buffer, desplacament + REG_SEQUENCIA) == sequencia) {
+                if (tipus < 0 || tipus >= TIPUS.length) {
+                    String missatge = "Error: El registre del producte " + codiBarres + " del catàleg està corrupte.";
+                    throw new UncheckedIOException(missatge, new IOException(missatge));
+                }
+                return Product.restaurar(TIPUS[tipus], new String(nom, StandardCharsets.UTF_8), preu, codiBarres,
+                        atribut);
+            }
+        }
+    }
+}
@@ -15,7 +15,7 @@ public class ProductComparator implements Comparator<Product> {
     
     /**
      * Compara dos productes segons el seu preu.
-     * La comparació es realitza utilitzant Double.compare() per evitar problemes amb els valors de punt flotant i garantir una ordenació estable.
+     * La comparació es realitza sobre els preus en cèntims, amb una comparació entera exacta.
      *
      * @param p1 El primer producte a comparar.
      * @param p2 El segon producte a comparar.
@@ -23,6 +23,6 @@ public class ProductComparator implements Comparator<Product> {
      */
     @Override
     public int compare(Product p1, Product p2) {
-        return Double.compare(p1.getPreu(), p2.getPreu());
+        return Long.compare(p1.getPreu(), p2.getPreu());
     }
 }
\ No newline at end of file
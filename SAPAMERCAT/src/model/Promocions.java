@@ -0,0 +1,19 @@
+package model;
+
+/**
+ * Interfície que defineix les promocions que s'apliquen als tiquets d'un carret.
+ * El carret la crida cada vegada que calcula els preus, just després de calcular els preus de totes les línies,
+ * i les promocions hi afegeixen els seus descomptes amb PreusCarret.afegirDescompte().
+ * Les implementacions poden guardar estat entre tiquets, de manera que cada carret necessita la seva.
+ *
+ * @author Joan Miralles Carmona
+ */
+public interface Promocions {
+
+    /**
+     * Calcula els descomptes de les promocions aplicables a les línies calculades i els afegeix al resultat.
+     *
+     * @param preus Els preus ja calculats de les línies del carret.
+     */
+    void aplicar(PreusCarret preus);
+}
@@ -0,0 +1,226 @@
+package model;
+
+import exceptions.DataCaducitatException;
+import exceptions.LimitCaracteresException;
+import exceptions.NegatiuException;
+import utils.MapaLong;
+import utils.Validacions;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Registre de productes compartits (flyweight) indexat per codi de barres.
+ * Quan es torna a escanejar o introduir un producte ja conegut, el registre retorna la mateixa instància en lloc de crear-ne una de nova:
+ * - Les dades d'un producte conegut no es tornen a validar, perquè ja es van validar en registrar-lo.
+ * - Els noms es comparteixen entre totes les instàncies.
+ * - Els productes d'alimentació es registren per lot, és a dir, per codi de barres i data de caducitat.
+ * - Si arriba un producte amb el mateix codi de barres però dades diferents (com un canvi de preu), es valida i substitueix l'anterior.
+ *
+ * D'aquesta manera, un escaneig repetit no crea cap objecte i els carrets de llarga durada comparteixen els productes.
+ * Els productes del registre són compartits i no s'han de modificar amb els seus mètodes set.
+ * El registre és segur des de diversos fils.
+ *
+ * @author Joan Miralles Carmona
+ */
+public class RegistreProductes {
+    /**
+     * Nombre màxim de lots d'alimentació que es conserven per a cada codi de barres.
+     */
+    public static final int MAX_LOTS = 8;
+
+    private final MapaLong<Product[]> perCodi;
+    private final HashMap<String, String> noms;
+    private final Clock rellotge;
+    private int productes;
+
+    /**
+     * Construeix un registre buit que comprova les dates de caducitat amb el rellotge del sistema.
+     */
+    public RegistreProductes() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Construeix un registre buit que comprova les dates de caducitat amb el rellotge indicat.
+     *
+     * @param rellotge El rellotge que determina el dia actual.
+     */
+    public RegistreProductes(Clock rellotge) {
+        this.perCodi = new MapaLong<>();
+        this.noms = new HashMap<>();
+        this.rellotge = rellotge;
+    }
+
+    /**
+     * Retorna el producte d'alimentació amb les dades indicades, creant-lo i validant-lo només si no és al registre.
+     * La data de caducitat es comprova sempre, perquè un lot conegut pot haver caducat des que es va registrar.
+     *
+     * @param nom El nom del producte.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres en format text.
+     * @param dataCaducitat La data de caducitat del lot.
+     * @return El producte compartit.
+     * @throws DataCaducitatException Si la data de caducitat és anterior a avui.
+     * @throws NegatiuException Si el preu és negatiu o zero.
+     * @throws LimitCaracteresException Si el nom o el codi de barres no són vàlids.
+     */
+    public synchronized Alimentacio alimentacio(String nom, long preu, String codiBarres, LocalDate dataCaducitat)
+            throws DataCaducitatException, NegatiuException, LimitCaracteresException {
+        Validacions.validarDataCaducitat(dataCaducitat, ContextPreu.diaActual(rellotge));
+        long clau = CodiBarres.clauDe(codiBarres);
+        Product conegut = buscar(clau, TipusProducte.ALIMENTACIO, nom, preu, dataCaducitat.toEpochDay());
+        if (conegut != null) {
+            return (Alimentacio) conegut;
+        }
+
+        Validacions.validarNom(nom);
+        Validacions.validarPreu(preu);
+        Alimentacio producte = Alimentacio.restaurar(internar(nom), preu, CodiBarres.parse(codiBarres), dataCaducitat);
+        registrar(producte);
+        return producte;
+    }
+
+    /**
+     * Retorna el producte tèxtil amb les dades indicades, creant-lo i validant-lo només si no és al registre.
+     *
+     * @param nom El nom del producte.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres en format text.
+     * @param composicio La composició del teixit en format text.
+     * @return El producte compartit.
+     * @throws NegatiuException Si el preu és negatiu o zero.
+     * @throws LimitCaracteresException Si el nom, el codi de barres o la composició no són vàlids.
+     */
+    public Textil textil(String nom, long preu, String codiBarres, String composicio)
+            throws NegatiuException, LimitCaracteresException {
+        Composicio teixit = Composicio.deNom(composicio);
+        return textil(nom, preu, codiBarres, teixit != null ? teixit : Composicio.parse(composicio));
+    }
+
+    /**
+     * Retorna el producte tèxtil amb les dades indicades, creant-lo i validant-lo només si no és al registre.
+     *
+     * @param nom El nom del producte.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres en format text.
+     * @param composicio La composició del teixit.
+     * @return El producte compartit.
+     * @throws NegatiuException Si el preu és negatiu o zero.
+     * @throws LimitCaracteresException Si el nom o el codi de barres no són vàlids.
+     */
+    public synchronized Textil textil(String nom, long preu, String codiBarres, Composicio composicio)
+            throws NegatiuException, LimitCaracteresException {
+        long clau = CodiBarres.clauDe(codiBarres);
+        Product conegut = buscar(clau, TipusProducte.TEXTIL, nom, preu, composicio.ordinal());
+        if (conegut != null) {
+            return (Textil) conegut;
+        }
+
+        Validacions.validarNom(nom);
+        Textil producte = new Textil(internar(nom), preu, CodiBarres.parse(codiBarres), composicio);
+        registrar(producte);
+        return producte;
+    }
+
+    /**
+     * Retorna el producte electrònic amb les dades indicades, creant-lo i validant-lo només si no és al registre.
+     *
+     * @param nom El nom del producte.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres en format text.
+     * @param garantia Els dies de garantia.
+     * @return El producte compartit.
+     * @throws NegatiuException Si el preu o la garantia són negatius o zero.
+     * @throws LimitCaracteresException Si el nom o el codi de barres no són vàlids.
+     */
+    public synchronized Electronica electronica(String nom, long preu, String codiBarres, int garantia)
+            throws NegatiuException, LimitCaracteresException {
+        long clau = CodiBarres.clauDe(codiBarres);
+        Product conegut = buscar(clau, TipusProducte.ELECTRONICA, nom, preu, garantia);
+        if (conegut != null) {
+            return (Electronica) conegut;
+        }
+
+        Validacions.validarNom(nom);
+        Validacions.validarPreu(garantia);
+        Electronica producte = new Electronica(internar(nom), preu, CodiBarres.parse(codiBarres), garantia);
+        registrar(producte);
+        return producte;
+    }
+
+    /**
+     * Retorna el nombre de productes registrats, comptant cada lot d'alimentació per separat.
+     *
+     * @return El nombre de productes registrats.
+     */
+    public synchronized int getNombreProductes() {
+        return productes;
+    }
+
+    /**
+     * Cerca un producte registrat amb exactament les dades indicades.
+     *
+     * @param clau La clau del codi de barres, o -1 si el codi no és vàlid.
+     * @param tipus El tipus del producte.
+     * @param nom El nom del producte.
+     * @param preu El preu base del producte en cèntims.
+     * @param atribut L'atribut específic del tipus, tal com el retorna Product.getAtribut().
+     * @return El producte registrat, o null si no n'hi ha cap d'igual.
+     */
+    private Product buscar(long clau, TipusProducte tipus, String nom, long preu, long atribut) {
+        if (clau < 0) {
+            return null;
+        }
+        Product[] lots = perCodi.get(clau);
+        if (lots == null) {
+            return null;
+        }
+        for (Product producte : lots) {
+            if (producte.getTipus() == tipus && producte.getAtribut() == atribut && producte.getPreu() == preu
+                    && producte.getNom().equals(nom)) {
+                return producte;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Registra un producte nou. Si és d'alimentació s'afegeix com un lot més del seu codi de barres,
+     * descartant el lot més antic si se supera el màxim; en la resta de casos substitueix el producte anterior.
+     *
+     * @param producte El producte a registrar.
+     */
+    private void registrar(Product producte) {
+        long clau = producte.getCodiBarres().clau();
+        Product[] lots = perCodi.get(clau);
+        if (lots == null || producte.getTipus() != TipusProducte.ALIMENTACIO
+                || lots[0].getTipus() != TipusProducte.ALIMENTACIO) {
+            productes += 1 - (lots != null ? lots.length : 0);
+            perCodi.put(clau, new Product[]{producte});
+            return;
+        }
+        Product[] nous;
+        if (lots.length < MAX_LOTS) {
+            nous = Arrays.copyOf(lots, lots.length + 1);
+            productes++;
+        } else {
+            nous = Arrays.copyOfRange(lots, 1, lots.length + 1);
+        }
+        nous[nous.length - 1] = producte;
+        perCodi.put(clau, nous);
+    }
+
+    /**
+     * Retorna la instància compartida d'un nom.
+     *
+     * @param nom El nom.
+     * @return La cadena compartida amb el mateix contingut.
+     */
+    private String internar(String nom) {
+        String existent = noms.putIfAbsent(nom, nom);
+        return existent != null ? existent : nom;
+    }
+}
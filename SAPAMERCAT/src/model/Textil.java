@@ -2,36 +2,93 @@ package model;
 
 import exceptions.LimitCaracteresException;
 import exceptions.NegatiuException;
-import utils.Validacions;
+
+import java.util.Objects;
 
 /**
  * Representa un producte tèxtil amb composició específica.
  * Aquesta classe gestiona productes de tipus tèxtil amb característiques específiques:
- * - Composició del material tèxtil (cotó, llana, seda).
- * - Validació per assegurar que la composició sigui una de les permeses.
+ * - Composició del material tèxtil (cotó, llana, seda), codificada amb l'enumerat Composicio.
+ * - Validació per assegurar que la composició en format text sigui una de les permeses.
  * - Manteniment del preu base sense modificacions.
  * 
  * @author Joan Miralles Carmona
  */
 public class Textil extends Product {
-    private String composicio;
+    private Composicio composicio;
 
     /**
      * Construeix un nou producte tèxtil amb les dades proporcionades.
      * Valida que la composició sigui una de les permeses pel sistema.
      *
      * @param nom El nom del producte tèxtil.
-     * @param preu El preu base del producte.
+     * @param preu El preu base del producte en cèntims.
      * @param codiBarres El codi de barres únic del producte.
      * @param composicio La composició del teixit (cotó, llana, seda).
      * @throws LimitCaracteresException Si la composició no és vàlida o el codi de barres no compleix amb els requisits.
      * @throws NegatiuException Si el preu és negatiu o zero.
      */
-    public Textil(String nom, double preu, String codiBarres, String composicio)
+    public Textil(String nom, long preu, String codiBarres, String composicio)
             throws LimitCaracteresException, NegatiuException {
         super(nom, preu, codiBarres);
-        Validacions.validarComposicio(composicio);
-        this.composicio = composicio;
+        this.composicio = Composicio.parse(composicio);
+    }
+
+    /**
+     * Construeix un nou producte tèxtil amb un codi de barres ja validat.
+     * Valida que la composició sigui una de les permeses pel sistema.
+     *
+     * @param nom El nom del producte tèxtil.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres únic del producte.
+     * @param composicio La composició del teixit (cotó, llana, seda).
+     * @throws LimitCaracteresException Si la composició no és vàlida.
+     * @throws NegatiuException Si el preu és negatiu o zero.
+     */
+    public Textil(String nom, long preu, CodiBarres codiBarres, String composicio)
+            throws LimitCaracteresException, NegatiuException {
+        super(nom, preu, codiBarres);
+        this.composicio = Composicio.parse(composicio);
+    }
+
+    /**
+     * Construeix un nou producte tèxtil amb un codi de barres i una composició ja validats.
+     *
+     * @param nom El nom del producte tèxtil.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres únic del producte.
+     * @param composicio La composició del teixit.
+     * @throws NegatiuException Si el preu és negatiu o zero.
+     * @throws NullPointerException Si la composició és null.
+     */
+    public Textil(String nom, long preu, CodiBarres codiBarres, Composicio composicio) throws NegatiuException {
+        super(nom, preu, codiBarres);
+        this.composicio = Objects.requireNonNull(composicio);
+    }
+
+    /**
+     * Construeix un producte tèxtil buit per restaurar-lo a partir de dades ja validades.
+     */
+    private Textil() {
+    }
+
+    /**
+     * Restaura un producte tèxtil a partir de dades ja validades, sense tornar-les a validar.
+     * S'utilitza per recuperar productes emmagatzemats, com ara els del catàleg.
+     *
+     * @param nom El nom del producte tèxtil.
+     * @param preu El preu base del producte en cèntims.
+     * @param codiBarres El codi de barres únic del producte.
+     * @param composicio La composició del teixit.
+     * @return El producte restaurat.
+     */
+    static Textil restaurar(String nom, long preu, CodiBarres codiBarres, Composicio composicio) {
+        Textil producte = new Textil();
+        producte.nom = nom;
+        producte.preu = preu;
+        producte.codiBarres = codiBarres;
+        producte.composicio = composicio;
+        return producte;
     }
 
     /**
@@ -39,7 +96,7 @@ public class Textil extends Product {
      *
      * @return La composició del teixit.
      */
-    public String getComposicio() {
+    public Composicio getComposicio() {
         return composicio;
     }
 
@@ -48,7 +105,7 @@ public class Textil extends Product {
      *
      * @param composicio La nova composició del teixit.
      */
-    public void setComposicio(String composicio) {
+    public void setComposicio(Composicio composicio) {
         this.composicio = composicio;
     }
 
@@ -56,13 +113,34 @@ public class Textil extends Product {
      * Calcula el preu del producte tèxtil.
      * En aquest cas, el preu no es modifica i és igual al preu base.
      *
-     * @return El preu base del producte.
+     * @param context El context de preus (el preu no depèn del dia).
+     * @return El preu base del producte en cèntims.
      */
     @Override
-    public double calcularPreu() {
+    public long calcularPreu(ContextPreu context) {
         return preu;
     }
 
+    /**
+     * Retorna el tipus del producte.
+     *
+     * @return TipusProducte.TEXTIL.
+     */
+    @Override
+    public TipusProducte getTipus() {
+        return TipusProducte.TEXTIL;
+    }
+
+    /**
+     * Retorna l'ordinal de la composició dins l'enumerat Composicio.
+     *
+     * @return L'ordinal de la composició.
+     */
+    @Override
+    public long getAtribut() {
+        return composicio.ordinal();
+    }
+
     /**
      * Retorna una representació en format text del producte tèxtil.
      * Inclou la informació bàsica del producte més la composició del teixit.
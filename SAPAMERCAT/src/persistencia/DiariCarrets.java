@@ -0,0 +1,831 @@
+package persistencia;
+
+import exceptions.LimitProductesException;
+import model.CarretCompra;
+import model.CodiBarres;
+import model.ObservadorCarret;
+import model.Product;
+import model.TipusProducte;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Diari d'operacions dels carrets que permet recuperar-ne l'estat després d'una fallada del procés.
+ * Cada operació que modifica un carret (afegir o treure productes, passar per caixa o descartar-lo) s'afegeix al final del diari com un registre binari compacte:
+ * - Els registres s'escriuen en segments de mida fixa preassignats, de manera que escriure no fa créixer el fitxer.
+ * - Cada registre porta una suma de verificació CRC32C, de manera que un registre escrit a mitges es detecta i es descarta.
+ * - Registrar una operació només copia el registre a un buffer en memòria; un fil dedicat escriu els registres pendents
+ *   en lots i força la seva escriptura al disc amb una sola crida per lot (group commit).
+ *
+ * En obrir el diari cal recuperar els carrets oberts amb recuperar(), que reprodueix totes les operacions dels segments
+ * existents, escriu una instantània dels carrets oberts en un segment nou i esborra els segments anteriors.
+ * La instantània s'escriu en un fitxer temporal que només es reanomena a segment quan és completa, i comença amb un
+ * registre INSTANTANIA que fa descartar tot el que s'ha reproduït abans: si el procés cau abans d'esborrar els segments
+ * anteriors, la recuperació següent no torna a sumar les seves operacions.
+ * Si cada carret nou es registra amb registrarObertura(), getIdMaxim() coneix tots els identificadors ja utilitzats,
+ * també els dels carrets que han passat per caixa o s'han descartat.
+ *
+ * Format d'un registre (little-endian):
+ * - int longitud del registre sense la capçalera, int CRC32C del contingut, byte operació, long identificador del carret.
+ * - Per a AFEGIR: int quantitat, byte tipus, long clau del codi de barres, long preu en cèntims, long atribut, short
+ *   bytes del nom i el nom en UTF-8.
+ * - Per a TREURE: int quantitat i long clau del codi de barres.
+ * - Per a INSTANTANIA: res més; el camp de l'identificador guarda l'identificador més gran que apareixia al diari.
+ * - Per a OBRIR, CAIXA i TANCAR: res més.
+ * Una longitud zero indica el final de les dades del segment.
+ *
+ * @author Joan Miralles Carmona
+ */
+public class DiariCarrets implements Closeable {
+    /**
+     * Mida per defecte de cada segment del diari en bytes.
+     */
+    public static final int MIDA_SEGMENT_PER_DEFECTE = 64 << 20;
+
+    /**
+     * Nombre per defecte de registres pendents que fan escriure un lot immediatament.
+     */
+    public static final int MIDA_LOT_PER_DEFECTE = 64;
+
+    /**
+     * Temps màxim per defecte, en microsegons, que un registre pot esperar a ser escrit al disc.
+     */
+    public static final long INTERVAL_PER_DEFECTE_MICROS = 2_000;
+
+    static final byte OP_CAIXA = 2;
+    static final byte OP_TANCAR = 3;
+    static final byte OP_TREURE = 4;
+    static final byte OP_AFEGIR = 5;
+    static final byte OP_INSTANTANIA = 6;
+    static final byte OP_OBRIR = 7;
+
+    private static final int MIDA_CAPCALERA = 8;
+    private static final int MIDA_OPERACIO = 9;
+    private static final int MIDA_AFEGIR = 31;
+    private static final int MIDA_TREURE = 12;
+    private static final int MAX_BYTES_NOM = 0xFFFF;
+    private static final int MIDA_BUFFER = 1 << 20;
+    private static final int MIDA_ZEROS = 1 << 16;
+    private static final TipusProducte[] TIPUS = TipusProducte.values();
+
+    private final Path directori;
+    private final int midaSegment;
+    private final int midaLot;
+    private final long intervalNanos;
+
+    private final ReentrantLock bloqueig;
+    private final Condition pendents;
+    private final Condition escrits;
+    private final CRC32C crc;
+    private ByteBuffer actiu;
+    private ByteBuffer enEscriptura;
+    private int registresPendents;
+    private long seqRegistrada;
+    private long seqDurable;
+    private IOException error;
+    private boolean recuperat;
+    private long idMaxim;
+    private boolean tancat;
+
+    private FileChannel segment;
+    private long numeroSegment;
+    private long posicioSegment;
+    private CompletableFuture<FileChannel> seguentSegment;
+    private Thread escriptor;
+
+    /**
+     * Construeix un diari sobre el directori indicat.
+     *
+     * @param directori El directori on es desen els segments.
+     * @param midaSegment La mida de cada segment en bytes.
+     * @param midaLot El nombre de registres pendents que fan escriure un lot immediatament.
+     * @param intervalMicros El temps màxim que un registre pot esperar a ser escrit al disc.
+     */
+    private DiariCarrets(Path directori, int midaSegment, int midaLot, long intervalMicros) {
+        this.directori = directori;
+        this.midaSegment = midaSegment;
+        this.midaLot = midaLot;
+        this.intervalNanos = TimeUnit.MICROSECONDS.toNanos(intervalMicros);
+        this.bloqueig = new ReentrantLock();
+        this.pendents = bloqueig.newCondition();
+        this.escrits = bloqueig.newCondition();
+        this.crc = new CRC32C();
+        this.actiu = ByteBuffer.allocateDirect(MIDA_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        this.enEscriptura = ByteBuffer.allocateDirect(MIDA_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Obre el diari del directori indicat amb la configuració per defecte.
+     * Si el directori no existeix, es crea.
+     *
+     * @param directori El directori on es desen els segments.
+     * @return El diari obert, pendent de recuperar().
+     * @throws IOException Si no es pot crear el directori.
+     */
+    public static DiariCarrets obrir(Path directori) throws IOException {
+        return obrir(directori, MIDA_SEGMENT_PER_DEFECTE, MIDA_LOT_PER_DEFECTE, INTERVAL_PER_DEFECTE_MICROS);
+    }
+
+    /**
+     * Obre el diari del directori indicat amb la configuració de lots indicada.
+     * Si el directori no existeix, es crea.
+     *
+     * @param directori El directori on es desen els segments.
+     * @param midaSegment La mida de cada segment en bytes. Ha de ser com a mínim d'1 MB.
+     * @param midaLot El nombre de registres pendents que fan escriure un lot immediatament. Amb 1 cada registre
+     *                s'escriu i es força al disc tan aviat com és possible.
+     * @param intervalMicros El temps màxim que un registre pot esperar a ser escrit al disc.
+     * @return El diari obert, pendent de recuperar().
+     * @throws IOException Si no es pot crear el directori.
+     */
+    public static DiariCarrets obrir(Path directori, int midaSegment, int midaLot, long intervalMicros)
+            throws IOException {
+        if (midaSegment < MIDA_BUFFER) {
+            throw new IllegalArgumentException("Error: La mida del segment ha de ser com a mínim de "
+                    + MIDA_BUFFER + " bytes.");
+        }
+        if (midaLot <= 0 || intervalMicros < 0) {
+            throw new IllegalArgumentException("Error: La configuració dels lots del diari no és vàlida.");
+        }
+        Files.createDirectories(directori);
+        return new DiariCarrets(directori, midaSegment, midaLot, intervalMicros);
+    }
+
+    /**
+     * Reprodueix els segments existents i retorna els carrets que estaven oberts.
+     * La reproducció s'atura al primer registre incomplet o corrupte: les operacions posteriors, encara que siguin en
+     * segments següents, depenen d'operacions que s'han perdut i es descarten.
+     * Després escriu una instantània dels carrets recuperats en un segment nou, esborra els segments anteriors
+     * i comença a acceptar registres. S'ha de cridar una sola vegada, abans de registrar cap operació.
+     *
+     * @param nouCarret Crea els carrets buits on es reprodueixen les operacions.
+     * @return Els carrets oberts indexats pel seu identificador, en ordre d'identificador.
+     * @throws IOException Si hi ha un error de lectura o escriptura dels segments.
+     */
+    public Map<Long, CarretCompra> recuperar(Supplier<CarretCompra> nouCarret) throws IOException {
+        bloqueig.lock();
+        try {
+            if (recuperat) {
+                throw new IllegalStateException("Error: El diari ja s'ha recuperat.");
+            }
+            esborrarTemporals();
+            List<Path> antics = segmentsExistents();
+            Map<Long, CarretCompra> carrets = new HashMap<>();
+            for (Path fitxer : antics) {
+                if (!reproduir(fitxer, carrets, nouCarret)) {
+                    System.err.println("Avís: El segment " + fitxer.getFileName() + " del diari té un registre corrupte."
+                            + " Es descarten les operacions posteriors.");
+                    break;
+                }
+            }
+            numeroSegment = antics.isEmpty() ? 0 : numero(antics.get(antics.size() - 1));
+
+            Path instantania = temporal(++numeroSegment);
+            segment = preassignar(instantania);
+            posicioSegment = 0;
+            List<Long> ids = new ArrayList<>(carrets.keySet());
+            Collections.sort(ids);
+            acabarRegistre(iniciarRegistre(OP_INSTANTANIA, idMaxim));
+            try {
+                for (Long id : ids) {
+                    carrets.get(id).perCadaLinia(linia -> afegirRegistre(id, linia.getProducte(), linia.getQuantitat()));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            escriureActiu();
+            segment.force(true);
+            Files.move(instantania, ruta(numeroSegment), StandardCopyOption.ATOMIC_MOVE);
+            forcarDirectori();
+            for (Path fitxer : antics) {
+                Files.delete(fitxer);
+            }
+
+            seguentSegment = CompletableFuture.supplyAsync(this::preassignarSeguent);
+            escriptor = Thread.ofPlatform().name("diari-carrets").daemon().start(this::escriure);
+            recuperat = true;
+
+            Map<Long, CarretCompra> ordenats = new LinkedHashMap<>();
+            for (Long id : ids) {
+                ordenats.put(id, carrets.get(id));
+            }
+            return ordenats;
+        } finally {
+            bloqueig.unlock();
+        }
+    }
+
+    /**
+     * Retorna l'identificador més gran que apareix al diari recuperat, inclosos els dels carrets que ja han passat per
+     * caixa o s'han descartat. Els carrets nous han d'utilitzar identificadors més grans.
+     *
+     * @return L'identificador més gran utilitzat, o zero si el diari és buit.
+     */
+    public long getIdMaxim() {
+        bloqueig.lock();
+        try {
+            return idMaxim;
+        } finally {
+            bloqueig.unlock();
+        }
+    }
+
+    /**
+     * Registra que s'ha obert un carret nou amb l'identificador indicat.
+     *
+     * @param idCarret L'identificador del carret.
+     * @return El número de seqüència del registre, per esperar-ne la durabilitat.
+     */
+    public long registrarObertura(long idCarret) {
+        return registrarOperacio(OP_OBRIR, idCarret);
+    }
+
+    /**
+     * Registra que s'han afegit unitats d'un producte a un carret.
+     *
+     * @param idCarret L'identificador del carret.
+     * @param producte El producte afegit.
+     * @param quantitat El nombre d'unitats afegides.
+     * @return El número de seqüència del registre, per esperar-ne la durabilitat.
+     */
+    public long registrarAfegir(long idCarret, Product producte, int quantitat) {
+        byte[] nom = producte.getNom().getBytes(StandardCharsets.UTF_8);
+        if (nom.length > MAX_BYTES_NOM) {
+            throw new IllegalArgumentException("Error: El nom no pot ocupar més de " + MAX_BYTES_NOM
+                    + " bytes al diari.");
+        }
+        bloqueig.lock();
+        try {
+            reservar(MIDA_CAPCALERA + MIDA_OPERACIO + MIDA_AFEGIR + nom.length);
+            int inici = iniciarRegistre(OP_AFEGIR, idCarret);
+            actiu.putInt(quantitat);
+            actiu.put((byte) producte.getTipus().ordinal());
+            actiu.putLong(producte.getCodiBarres().clau());
+            actiu.putLong(producte.getPreu());
+            actiu.putLong(producte.getAtribut());
+            actiu.putShort((short) nom.length);
+            actiu.put(nom);
+            return acabarRegistre(inici);
+        } finally {
+            bloqueig.unlock();
+        }
+    }
+
+    /**
+     * Registra que s'han tret unitats d'un producte d'un carret.
+     *
+     * @param idCarret L'identificador del carret.
+     * @param codiBarres El codi de barres del producte tret.
+     * @param quantitat El nombre d'unitats tretes.
+     * @return El número de seqüència del registre, per esperar-ne la durabilitat.
+     */
+    public long registrarTreure(long idCarret, CodiBarres codiBarres, int quantitat) {
+        bloqueig.lock();
+        try {
+            reservar(MIDA_CAPCALERA + MIDA_OPERACIO + MIDA_TREURE);
+            int inici = iniciarRegistre(OP_TREURE, idCarret);
+            actiu.putInt(quantitat);
+            actiu.putLong(codiBarres.clau());
+            return acabarRegistre(inici);
+        } finally {
+            bloqueig.unlock();
+        }
+    }
+
+    /**
+     * Registra que un carret ha passat per caixa i s'ha buidat.
+     *
+     * @param idCarret L'identificador del carret.
+     * @return El número de seqüència del registre, per esperar-ne la durabilitat.
+     */
+    public long registrarCaixa(long idCarret) {
+        return registrarOperacio(OP_CAIXA, idCarret);
+    }
+
+    /**
+     * Registra que un carret s'ha descartat sense passar per caixa, de manera que no s'ha de recuperar.
+     *
+     * @param idCarret L'identificador del carret.
+     * @return El número de seqüència del registre, per esperar-ne la durabilitat.
+     */
+    public long registrarTancament(long idCarret) {
+        return registrarOperacio(OP_TANCAR, idCarret);
+    }
+
+    /**
+     * Espera fins que el registre indicat i tots els anteriors s'han forçat al disc.
+     *
+     * @param seq El número de seqüència retornat en registrar l'operació.
+     * @throws IOException Si l'escriptura del diari ha fallat.
+     * @throws InterruptedException Si el fil s'interromp mentre espera.
+     */
+    public void esperarDurabilitat(long seq) throws IOException, InterruptedException {
+        bloqueig.lock();
+        try {
+            while (seqDurable < seq && error == null) {
+                pendents.signal();
+                escrits.await();
+            }
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            bloqueig.unlock();
+        }
+    }
+
+    /**
+     * Retorna un observador que registra al diari les operacions d'un carret.
+     *
+     * @param idCarret L'identificador amb què es registren les operacions del carret.
+     * @return L'observador a afegir al carret.
+     */
+    public ObservadorCarret observador(long idCarret) {
+        return new ObservadorCarret() {
+            @Override
+            public void producteAfegit(Product producte, int quantitat) {
+                registrarAfegir(idCarret, producte, quantitat);
+            }
+
+            @Override
+            public void producteTret(Product producte, int quantitat) {
+                registrarTreure(idCarret, producte.getCodiBarres(), quantitat);
+            }
+
+            @Override
+            public void caixa() {
+                registrarCaixa(idCarret);
+            }
+        };
+    }
+
+    /**
+     * Escriu i força al disc els registres pendents i tanca el diari.
+     *
+     * @throws IOException Si hi ha un error en escriure els últims registres.
+     */
+    @Override
+    public void close() throws IOException {
+        bloqueig.lock();
+        try {
+            if (tancat) {
+                return;
+            }
+            tancat = true;
+            pendents.signal();
+        } finally {
+            bloqueig.unlock();
+        }
+        if (escriptor != null) {
+            try {
+                escriptor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (segment != null) {
+            segment.close();
+        }
+        if (seguentSegment != null) {
+            try {
+                seguentSegment.join().close();
+            } catch (CompletionException e) {
+                // El segment següent no s'ha arribat a crear; no hi ha res a tancar.
+            }
+            Files.deleteIfExists(ruta(numeroSegment + 1));
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Registra una operació sense contingut.
+     *
+     * @param operacio El codi de l'operació.
+     * @param idCarret L'identificador del carret.
+     * @return El número de seqüència del registre.
+     */
+    private long registrarOperacio(byte operacio, long idCarret) {
+        bloqueig.lock();
+        try {
+            reservar(MIDA_CAPCALERA + MIDA_OPERACIO);
+            return acabarRegistre(iniciarRegistre(operacio, idCarret));
+        } finally {
+            bloqueig.unlock();
+        }
+    }
+
+    /**
+     * Espera fins que el buffer actiu té espai per a un registre de la mida indicada.
+     * S'ha de cridar amb el bloqueig adquirit.
+     *
+     * @param mida La mida del registre.
+     */
+    private void reservar(int mida) {
+        if (!recuperat || tancat) {
+            throw new IllegalStateException("Error: El diari no accepta registres.");
+        }
+        while (actiu.remaining() < mida) {
+            if (error != null) {
+                throw new UncheckedIOException(error);
+            }
+            pendents.signal();
+            escrits.awaitUninterruptibly();
+        }
+        if (error != null) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    /**
+     * Escriu la capçalera d'un registre deixant la longitud i la suma de verificació per omplir.
+     *
+     * @param operacio El codi de l'operació.
+     * @param idCarret L'identificador del carret.
+     * @return La posició on comença el registre.
+     */
+    private int iniciarRegistre(byte operacio, long idCarret) {
+        int inici = actiu.position();
+        actiu.position(inici + MIDA_CAPCALERA);
+        actiu.put(operacio);
+        actiu.putLong(idCarret);
+        return inici;
+    }
+
+    /**
+     * Omple la longitud i la suma de verificació d'un registre i avisa el fil escriptor si cal.
+     *
+     * @param inici La posició on comença el registre.
+     * @return El número de seqüència del registre.
+     */
+    private long acabarRegistre(int inici) {
+        int fi = actiu.position();
+        crc.reset();
+        crc.update(actiu.slice(inici + MIDA_CAPCALERA, fi - inici - MIDA_CAPCALERA));
+        actiu.putInt(inici, fi - inici - MIDA_CAPCALERA);
+        actiu.putInt(inici + 4, (int) crc.getValue());
+        registresPendents++;
+        if (registresPendents == 1 || registresPendents >= midaLot) {
+            pendents.signal();
+        }
+        return ++seqRegistrada;
+    }
+
+    /**
+     * Afegeix un registre d'AFEGIR al buffer actiu sense passar pel fil escriptor. Només s'usa durant la recuperació.
+     *
+     * @param idCarret L'identificador del carret.
+     * @param producte El producte de la línia.
+     * @param quantitat La quantitat de la línia.
+     */
+    private void afegirRegistre(long idCarret, Product producte, int quantitat) {
+        byte[] nom = producte.getNom().getBytes(StandardCharsets.UTF_8);
+        if (actiu.remaining() < MIDA_CAPCALERA + MIDA_OPERACIO + MIDA_AFEGIR + nom.length) {
+            try {
+                escriureActiu();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        int inici = iniciarRegistre(OP_AFEGIR, idCarret);
+        actiu.putInt(quantitat);
+        actiu.put((byte) producte.getTipus().ordinal());
+        actiu.putLong(producte.getCodiBarres().clau());
+        actiu.putLong(producte.getPreu());
+        actiu.putLong(producte.getAtribut());
+        actiu.putShort((short) nom.length);
+        actiu.put(nom);
+        acabarRegistre(inici);
+    }
+
+    /**
+     * Bucle del fil escriptor. Espera registres pendents, deixa que s'acumulin fins a omplir un lot o fins que passa
+     * l'interval màxim, intercanvia els buffers i escriu i força el lot al disc fora del bloqueig.
+     */
+    private void escriure() {
+        while (true) {
+            long seq;
+            bloqueig.lock();
+            try {
+                while (registresPendents == 0 && !tancat) {
+                    pendents.awaitUninterruptibly();
+                }
+                long limit = System.nanoTime() + intervalNanos;
+                while (registresPendents < midaLot && !tancat && actiu.position() < MIDA_BUFFER / 2) {
+                    long espera = limit - System.nanoTime();
+                    if (espera <= 0) {
+                        break;
+                    }
+                    try {
+                        pendents.awaitNanos(espera);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                if (registresPendents == 0 && tancat) {
+                    return;
+                }
+                ByteBuffer lot = actiu;
+                actiu = enEscriptura;
+                enEscriptura = lot;
+                registresPendents = 0;
+                seq = seqRegistrada;
+                escrits.signalAll();
+            } finally {
+                bloqueig.unlock();
+            }
+
+            IOException fallada = null;
+            try {
+                escriureLot(enEscriptura);
+            } catch (IOException e) {
+                fallada = e;
+            }
+
+            bloqueig.lock();
+            try {
+                if (fallada != null) {
+                    error = fallada;
+                } else {
+                    seqDurable = seq;
+                }
+                escrits.signalAll();
+                if (fallada != null) {
+                    return;
+                }
+            } finally {
+                bloqueig.unlock();
+            }
+        }
+    }
+
+    /**
+     * Escriu un lot de registres al segment actual, passant al següent segment preassignat si no hi cap, i el força al disc.
+     *
+     * @param lot El buffer amb els registres del lot.
+     * @throws IOException Si hi ha un error d'escriptura.
+     */
+    private void escriureLot(ByteBuffer lot) throws IOException {
+        lot.flip();
+        if (posicioSegment + lot.remaining() > midaSegment) {
+            segment.close();
+            try {
+                segment = seguentSegment.join();
+            } catch (CompletionException e) {
+                throw new IOException("Error: No s'ha pogut preassignar el segment següent del diari.", e.getCause());
+            }
+            numeroSegment++;
+            posicioSegment = 0;
+            seguentSegment = CompletableFuture.supplyAsync(this::preassignarSeguent);
+        }
+        while (lot.hasRemaining()) {
+            posicioSegment += segment.write(lot, posicioSegment);
+        }
+        segment.force(false);
+        lot.clear();
+    }
+
+    /**
+     * Escriu el buffer actiu al segment actual des del fil que recupera el diari.
+     *
+     * @throws IOException Si hi ha un error d'escriptura.
+     */
+    private void escriureActiu() throws IOException {
+        registresPendents = 0;
+        escriureLot(actiu);
+    }
+
+    /**
+     * Preassigna el segment següent al segment actual.
+     *
+     * @return El canal del segment preassignat.
+     */
+    private FileChannel preassignarSeguent() {
+        try {
+            return preassignar(numeroSegment + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Crea un segment i l'omple de zeros fins a la seva mida, de manera que les escriptures posteriors no
+     * n'hagin de fer créixer el fitxer ni assignar-ne blocs al disc.
+     *
+     * @param numero El número del segment.
+     * @return El canal del segment.
+     * @throws IOException Si no es pot crear el segment.
+     */
+    private FileChannel preassignar(long numero) throws IOException {
+        return preassignar(ruta(numero));
+    }
+
+    /**
+     * Crea el fitxer indicat i l'omple de zeros fins a la mida d'un segment.
+     *
+     * @param fitxer La ruta del fitxer.
+     * @return El canal del fitxer.
+     * @throws IOException Si no es pot crear el fitxer.
+     */
+    private FileChannel preassignar(Path fitxer) throws IOException {
+        FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer zeros = ByteBuffer.allocateDirect(MIDA_ZEROS);
+        for (long posicio = 0; posicio < midaSegment; ) {
+            zeros.clear().limit((int) Math.min(MIDA_ZEROS, midaSegment - posicio));
+            posicio += canal.write(zeros, posicio);
+        }
+        canal.force(true);
+        return canal;
+    }
+
+    /**
+     * Reprodueix els registres d'un segment sobre els carrets i actualitza l'identificador més gran vist.
+     * S'atura al final de les dades o al primer registre incomplet o corrupte.
+     *
+     * @param fitxer El segment a reproduir.
+     * @param carrets Els carrets oberts indexats pel seu identificador.
+     * @param nouCarret Crea els carrets buits.
+     * @return true si s'ha arribat al final de les dades, o false si s'ha trobat un registre incomplet o corrupte.
+     * @throws IOException Si no es pot llegir el segment.
+     */
+    private boolean reproduir(Path fitxer, Map<Long, CarretCompra> carrets, Supplier<CarretCompra> nouCarret)
+            throws IOException {
+        try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.READ)) {
+            MappedByteBuffer dades = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            dades.order(ByteOrder.LITTLE_ENDIAN);
+            CRC32C crc = new CRC32C();
+            while (dades.remaining() >= MIDA_CAPCALERA + MIDA_OPERACIO) {
+                int inici = dades.position();
+                int longitud = dades.getInt(inici);
+                if (longitud == 0) {
+                    return true;
+                }
+                if (longitud < MIDA_OPERACIO || longitud > dades.remaining() - MIDA_CAPCALERA) {
+                    return false;
+                }
+                crc.reset();
+                crc.update(dades.slice(inici + MIDA_CAPCALERA, longitud));
+                if ((int) crc.getValue() != dades.getInt(inici + 4)) {
+                    return false;
+                }
+                idMaxim = Math.max(idMaxim, dades.getLong(inici + MIDA_CAPCALERA + 1));
+                dades.position(inici + MIDA_CAPCALERA);
+                aplicar(dades, carrets, nouCarret);
+                dades.position(inici + MIDA_CAPCALERA + longitud);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Aplica un registre vàlid sobre els carrets.
+     *
+     * @param dades El segment, posicionat al contingut del registre.
+     * @param carrets Els carrets oberts indexats pel seu identificador.
+     * @param nouCarret Crea els carrets buits.
+     */
+    private static void aplicar(ByteBuffer dades, Map<Long, CarretCompra> carrets, Supplier<CarretCompra> nouCarret) {
+        byte operacio = dades.get();
+        long idCarret = dades.getLong();
+        if (operacio == OP_INSTANTANIA) {
+            carrets.clear();
+            return;
+        }
+        if (operacio == OP_OBRIR) {
+            return;
+        }
+        if (operacio == OP_TREURE) {
+            int quantitat = dades.getInt();
+            CarretCompra carret = carrets.get(idCarret);
+            if (carret != null) {
+                carret.decrementar(CodiBarres.deClau(dades.getLong()), quantitat);
+            }
+            return;
+        }
+        if (operacio != OP_AFEGIR) {
+            carrets.remove(idCarret);
+            return;
+        }
+
+        int quantitat = dades.getInt();
+        TipusProducte tipus = TIPUS[dades.get()];
+        long clau = dades.getLong();
+        long preu = dades.getLong();
+        long atribut = dades.getLong();
+        byte[] nom = new byte[dades.getShort() & 0xFFFF];
+        dades.get(nom);
+
+        CarretCompra carret = carrets.computeIfAbsent(idCarret, id -> nouCarret.get());
+        Product producte = carret.buscar(clau);
+        if (producte == null) {
+            producte = Product.restaurar(tipus, new String(nom, StandardCharsets.UTF_8), preu, CodiBarres.deClau(clau), atribut);
+        }
+        try {
+            carret.afegirProducte(producte, quantitat);
+        } catch (LimitProductesException e) {
+            System.err.println("Avís: No s'ha pogut recuperar una línia del carret " + idCarret + ". " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retorna els segments del directori ordenats pel seu número.
+     *
+     * @return Els segments existents.
+     * @throws IOException Si no es pot llegir el directori.
+     */
+    private List<Path> segmentsExistents() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> fitxers = Files.newDirectoryStream(directori, "diari-*.log")) {
+            for (Path fitxer : fitxers) {
+                segments.add(fitxer);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Retorna la ruta del segment amb el número indicat.
+     *
+     * @param numero El número del segment.
+     * @return La ruta del segment.
+     */
+    private Path ruta(long numero) {
+        return directori.resolve(String.format("diari-%020d.log", numero));
+    }
+
+    /**
+     * Retorna la ruta del fitxer temporal on s'escriu la instantània que serà el segment amb el número indicat.
+     * Els fitxers temporals no es reprodueixen mai.
+     *
+     * @param numero El número del segment.
+     * @return La ruta del fitxer temporal.
+     */
+    private Path temporal(long numero) {
+        return directori.resolve(String.format("diari-%020d.tmp", numero));
+    }
+
+    /**
+     * Esborra les instantànies a mitges que hagi deixat una recuperació interrompuda.
+     *
+     * @throws IOException Si no es pot llegir el directori o esborrar-ne un fitxer.
+     */
+    private void esborrarTemporals() throws IOException {
+        try (DirectoryStream<Path> fitxers = Files.newDirectoryStream(directori, "diari-*.tmp")) {
+            for (Path fitxer : fitxers) {
+                Files.delete(fitxer);
+            }
+        }
+    }
+
+    /**
+     * Força al disc les entrades del directori, de manera que el canvi de nom de la instantània sigui durable abans
+     * d'esborrar els segments anteriors. Els sistemes que no permeten obrir un directori ja ho garanteixen d'una altra
+     * manera, i en aquest cas no es fa res.
+     */
+    private void forcarDirectori() {
+        try (FileChannel canal = FileChannel.open(directori, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            // El sistema no permet forçar un directori.
+        }
+    }
+
+    /**
+     * Retorna el número d'un segment a partir del nom del fitxer.
+     *
+     * @param fitxer El segment.
+     * @return El número del segment.
+     */
+    private static long numero(Path fitxer) {
+        String nom = fitxer.getFileName().toString();
+        return Long.parseLong(nom.substring("diari-".length(), nom.length() - ".log".length()));
+    }
+}
@@ -0,0 +1,442 @@
+package promocions;
+
+import exceptions.EnumFailException;
+import exceptions.LimitCaracteresException;
+import exceptions.NegatiuException;
+import model.CodiBarres;
+import model.LiniaCarret;
+import model.PreusCarret;
+import model.Promocions;
+import model.TipusProducte;
+import utils.Diners;
+import utils.MapaLong;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Motor de promocions que compila un conjunt de promocions en un índex per aplicar-les als tiquets.
+ * L'índex es construeix una sola vegada i no canvia:
+ * - Per la clau del codi de barres: les promocions NxM del producte, la millor promoció percentual del producte
+ *   i els lots on apareix el producte.
+ * - Per tipus de producte: només la promoció percentual més gran, perquè les altres mai no poden guanyar.
+ * D'aquesta manera aplicar les promocions a un tiquet costa una consulta a l'índex per línia més les promocions que
+ * afecten de veritat els seus productes, independentment del nombre total de promocions actives.
+ *
+ * Les promocions s'apliquen a cada tiquet amb aquestes regles:
+ * - Primer els lots, en l'ordre en què s'han definit. Cada lot s'aplica tantes vegades com permeten les unitats
+ *   que encara no ha fet servir cap altre lot, i només si surt més barat que les unitats per separat.
+ * - Després, per a cada línia, s'aplica a les unitats que no formen part de cap lot la promoció NxM o percentual
+ *   que dona el descompte més gran. Les promocions d'una mateixa línia no s'acumulen.
+ *
+ * Format del fitxer de promocions (camps separats per punt i coma):
+ * - NXM;nom;codiBarres;N;M
+ * - PERCENTATGE;nom;codiBarres o tipus de producte;percentatge
+ * - LOT;nom;preu;codiBarres,codiBarres,...
+ * Les línies buides i les que comencen per # s'ignoren.
+ *
+ * El motor es pot compartir entre carrets i fils; cada carret necessita el seu propi avaluador.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class MotorPromocions {
+    private static final String SEPARADOR = ";";
+    private static final String SEPARADOR_LOT = ",";
+    private static final String NXM = "NXM";
+    private static final String PERCENTATGE = "PERCENTATGE";
+    private static final String LOT = "LOT";
+    private static final TipusProducte[] TIPUS = TipusProducte.values();
+    private static final int CAPACITAT_INICIAL = 16;
+
+    private final MapaLong<Regles> perCodi;
+    private final PromocioPercentatge[] perTipus;
+    private final PromocioLot[] lots;
+    private final int[] iniciLot;
+    private final int nombrePromocions;
+
+    /**
+     * Compila les promocions indicades.
+     *
+     * @param promocions Les promocions. L'ordre determina la prioritat dels lots i desempata les promocions de línia.
+     * @throws IllegalArgumentException Si alguna promoció no és de cap dels tipus coneguts.
+     */
+    public MotorPromocions(List<? extends Promocio> promocions) {
+        int nombreLots = 0;
+        for (Promocio promocio : promocions) {
+            if (promocio instanceof PromocioLot) {
+                nombreLots++;
+            }
+        }
+        this.perCodi = new MapaLong<>(promocions.size());
+        this.perTipus = new PromocioPercentatge[TIPUS.length];
+        this.lots = new PromocioLot[nombreLots];
+        this.iniciLot = new int[nombreLots + 1];
+        this.nombrePromocions = promocions.size();
+
+        int lot = 0;
+        for (Promocio promocio : promocions) {
+            if (promocio instanceof PromocioNxM) {
+                PromocioNxM nxm = (PromocioNxM) promocio;
+                regles(nxm.getCodiBarres()).afegirNxM(nxm);
+            } else if (promocio instanceof PromocioPercentatge) {
+                PromocioPercentatge percentatge = (PromocioPercentatge) promocio;
+                if (percentatge.getTipus() != null) {
+                    int tipus = percentatge.getTipus().ordinal();
+                    perTipus[tipus] = millor(perTipus[tipus], percentatge);
+                } else {
+                    Regles regles = regles(percentatge.getCodiBarres());
+                    regles.percentatge = millor(regles.percentatge, percentatge);
+                }
+            } else if (promocio instanceof PromocioLot) {
+                PromocioLot promocioLot = (PromocioLot) promocio;
+                lots[lot] = promocioLot;
+                iniciLot[lot + 1] = iniciLot[lot] + promocioLot.getNombreProductes();
+                for (int i = 0; i < promocioLot.getNombreProductes(); i++) {
+                    regles(promocioLot.getProducte(i)).afegirLot(lot, i);
+                }
+                lot++;
+            } else {
+                throw new IllegalArgumentException("Error: Tipus de promoció desconegut: " + promocio.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * Llegeix i compila les promocions d'un fitxer de text.
+     *
+     * @param fitxer El fitxer de promocions.
+     * @return El motor amb les promocions del fitxer.
+     * @throws IOException Si hi ha un error de lectura.
+     * @throws EnumFailException Si alguna línia del fitxer no és una promoció vàlida. El missatge indica el número de línia.
+     */
+    public static MotorPromocions carregar(Path fitxer) throws IOException, EnumFailException {
+        List<Promocio> promocions = new ArrayList<>();
+        try (BufferedReader lector = Files.newBufferedReader(fitxer, StandardCharsets.UTF_8)) {
+            String linia;
+            long numeroLinia = 0;
+            while ((linia = lector.readLine()) != null) {
+                numeroLinia++;
+                linia = linia.trim();
+                if (linia.isEmpty() || linia.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    promocions.add(llegir(linia));
+                } catch (EnumFailException | LimitCaracteresException | NegatiuException e) {
+                    throw new EnumFailException("Línia " + numeroLinia + ": " + e.getMessage());
+                } catch (NumberFormatException e) {
+                    throw new EnumFailException("Línia " + numeroLinia + ": Error: Format de camp incorrecte.");
+                }
+            }
+        }
+        return new MotorPromocions(promocions);
+    }
+
+    /**
+     * Crea la promoció descrita per una línia del fitxer de promocions.
+     *
+     * @param linia La línia sense espais als extrems.
+     * @return La promoció.
+     * @throws EnumFailException Si el tipus de promoció no és vàlid o el nombre de camps és incorrecte.
+     * @throws LimitCaracteresException Si el nom o algun codi de barres no són vàlids.
+     * @throws NegatiuException Si algun valor numèric no és vàlid per a la promoció.
+     */
+    private static Promocio llegir(String linia) throws EnumFailException, LimitCaracteresException, NegatiuException {
+        String[] camps = linia.split(SEPARADOR, -1);
+        String tipus = camps[0].trim().toUpperCase();
+        switch (tipus) {
+            case NXM:
+                comprovarCamps(camps, 5);
+                return new PromocioNxM(camps[1].trim(), CodiBarres.parse(camps[2].trim()),
+                        Integer.parseInt(camps[3].trim()), Integer.parseInt(camps[4].trim()));
+            case PERCENTATGE:
+                comprovarCamps(camps, 4);
+                String objectiu = camps[2].trim();
+                int percentatge = Integer.parseInt(camps[3].trim());
+                TipusProducte tipusProducte = tipusProducte(objectiu);
+                return tipusProducte != null
+                        ? new PromocioPercentatge(camps[1].trim(), tipusProducte, percentatge)
+                        : new PromocioPercentatge(camps[1].trim(), CodiBarres.parse(objectiu), percentatge);
+            case LOT:
+                comprovarCamps(camps, 4);
+                List<CodiBarres> productes = new ArrayList<>();
+                for (String codiBarres : camps[3].split(SEPARADOR_LOT)) {
+                    productes.add(CodiBarres.parse(codiBarres.trim()));
+                }
+                return new PromocioLot(camps[1].trim(), Diners.parse(camps[2].trim()), productes);
+            default:
+                throw new EnumFailException("Error: Tipus de promoció desconegut: " + camps[0].trim());
+        }
+    }
+
+    /**
+     * Comprova que una línia del fitxer tingui el nombre de camps del seu tipus de promoció.
+     *
+     * @param camps Els camps de la línia.
+     * @param nombre El nombre de camps esperat.
+     * @throws EnumFailException Si el nombre de camps és incorrecte.
+     */
+    private static void comprovarCamps(String[] camps, int nombre) throws EnumFailException {
+        if (camps.length != nombre) {
+            throw new EnumFailException("Error: Una promoció " + camps[0].trim().toUpperCase() + " ha de tenir "
+                    + nombre + " camps separats per punt i coma.");
+        }
+    }
+
+    /**
+     * Retorna el tipus de producte amb el nom indicat, sense distingir majúscules.
+     *
+     * @param nom El nom del tipus.
+     * @return El tipus de producte, o null si el nom no correspon a cap tipus.
+     */
+    private static TipusProducte tipusProducte(String nom) {
+        for (TipusProducte tipus : TIPUS) {
+            if (tipus.name().equalsIgnoreCase(nom)) {
+                return tipus;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retorna la promoció percentual amb el percentatge més gran. En cas d'empat, es queda la primera.
+     *
+     * @param actual La millor promoció fins ara, o null si no n'hi ha cap.
+     * @param nova La promoció nova.
+     * @return La millor de les dues.
+     */
+    private static PromocioPercentatge millor(PromocioPercentatge actual, PromocioPercentatge nova) {
+        return actual == null || nova.getPercentatge() > actual.getPercentatge() ? nova : actual;
+    }
+
+    /**
+     * Retorna les regles d'un producte, creant-les si encara no en té.
+     *
+     * @param codiBarres El codi de barres del producte.
+     * @return Les regles del producte.
+     */
+    private Regles regles(CodiBarres codiBarres) {
+        Regles regles = perCodi.get(codiBarres.clau());
+        if (regles == null) {
+            regles = new Regles();
+            perCodi.put(codiBarres.clau(), regles);
+        }
+        return regles;
+    }
+
+    /**
+     * Retorna el nombre de promocions compilades.
+     *
+     * @return El nombre de promocions.
+     */
+    public int getNombrePromocions() {
+        return nombrePromocions;
+    }
+
+    /**
+     * Retorna un avaluador que aplica les promocions als tiquets d'un carret.
+     * Cada carret necessita el seu propi avaluador.
+     *
+     * @return L'avaluador a configurar al carret amb setPromocions().
+     */
+    public Promocions avaluador() {
+        return new Avaluador();
+    }
+
+    /**
+     * Promocions que afecten un producte concret.
+     * Cada lot on apareix el producte es guarda amb la posició del producte dins el lot.
+     */
+    private static final class Regles {
+        private PromocioPercentatge percentatge;
+        private PromocioNxM[] nxm = new PromocioNxM[0];
+        private int nombreNxm;
+        private int[] lots = new int[0];
+        private int[] productesLot = new int[0];
+        private int nombreLots;
+
+        /**
+         * Afegeix una promoció NxM del producte.
+         *
+         * @param promocio La promoció.
+         */
+        void afegirNxM(PromocioNxM promocio) {
+            if (nombreNxm == nxm.length) {
+                nxm = Arrays.copyOf(nxm, Math.max(1, nombreNxm * 2));
+            }
+            nxm[nombreNxm++] = promocio;
+        }
+
+        /**
+         * Afegeix un lot on apareix el producte.
+         *
+         * @param lot L'índex del lot.
+         * @param producte La posició del producte dins el lot.
+         */
+        void afegirLot(int lot, int producte) {
+            if (nombreLots == lots.length) {
+                int capacitat = Math.max(1, nombreLots * 2);
+                lots = Arrays.copyOf(lots, capacitat);
+                productesLot = Arrays.copyOf(productesLot, capacitat);
+            }
+            lots[nombreLots] = lot;
+            productesLot[nombreLots] = producte;
+            nombreLots++;
+        }
+    }
+
+    /**
+     * Aplica les promocions del motor als tiquets d'un carret.
+     * Una primera passada per les línies consulta l'índex una vegada per línia, anota les unitats de cada línia i
+     * marca quins lots queden complets. Després s'apliquen els lots complets i, finalment, la millor promoció de cada línia.
+     * L'estat de cada lot es reinicia només quan el tiquet actual el troba (amb un número de tiquet), de manera que
+     * preparar un tiquet no recorre els lots que no hi apareixen.
+     */
+    private final class Avaluador implements Promocions {
+        private final long[] tiquetLot = new long[lots.length];
+        private final int[] trobatsLot = new int[lots.length];
+        private final int[] liniaProducteLot = new int[iniciLot[lots.length]];
+        private long tiquet;
+        private int[] complets = new int[CAPACITAT_INICIAL];
+        private int nombreComplets;
+        private Regles[] reglesLinia = new Regles[CAPACITAT_INICIAL];
+        private int[] restants = new int[CAPACITAT_INICIAL];
+
+        /**
+         * Aplica les promocions a les línies calculades d'un carret.
+         *
+         * @param preus Els preus ja calculats de les línies del carret.
+         * @throws ArithmeticException Si algun descompte no cap en un long.
+         */
+        @Override
+        public void aplicar(PreusCarret preus) {
+            int linies = preus.getNombreLinies();
+            if (reglesLinia.length < linies) {
+                int capacitat = Math.max(linies, reglesLinia.length * 2);
+                reglesLinia = new Regles[capacitat];
+                restants = new int[capacitat];
+            }
+            tiquet++;
+            nombreComplets = 0;
+
+            for (int i = 0; i < linies; i++) {
+                LiniaCarret linia = preus.getLinia(i);
+                Regles regles = perCodi.get(linia.getProducte().getCodiBarres().clau());
+                reglesLinia[i] = regles;
+                restants[i] = linia.getQuantitat();
+                if (regles != null) {
+                    anotarLots(regles, i);
+                }
+            }
+
+            Arrays.sort(complets, 0, nombreComplets);
+            for (int i = 0; i < nombreComplets; i++) {
+                aplicarLot(preus, complets[i]);
+            }
+            for (int i = 0; i < linies; i++) {
+                aplicarMillor(preus, i);
+            }
+            Arrays.fill(reglesLinia, 0, linies, null);
+        }
+
+        /**
+         * Anota la línia d'un producte a tots els lots on apareix i afegeix als lots complets els que ja tenen tots els productes.
+         *
+         * @param regles Les regles del producte de la línia.
+         * @param linia La posició de la línia als resultats.
+         */
+        private void anotarLots(Regles regles, int linia) {
+            for (int i = 0; i < regles.nombreLots; i++) {
+                int lot = regles.lots[i];
+                if (tiquetLot[lot] != tiquet) {
+                    tiquetLot[lot] = tiquet;
+                    trobatsLot[lot] = 0;
+                }
+                liniaProducteLot[iniciLot[lot] + regles.productesLot[i]] = linia;
+                if (++trobatsLot[lot] == iniciLot[lot + 1] - iniciLot[lot]) {
+                    if (nombreComplets == complets.length) {
+                        complets = Arrays.copyOf(complets, nombreComplets * 2);
+                    }
+                    complets[nombreComplets++] = lot;
+                }
+            }
+        }
+
+        /**
+         * Aplica un lot complet tantes vegades com permeten les unitats que encara no ha fet servir cap altre lot.
+         *
+         * @param preus Els preus calculats del carret.
+         * @param lot L'índex del lot.
+         */
+        private void aplicarLot(PreusCarret preus, int lot) {
+            PromocioLot promocio = lots[lot];
+            int inici = iniciLot[lot];
+            int vegades = Integer.MAX_VALUE;
+            long preuUnitats = 0;
+            for (int i = 0; i < promocio.getNombreProductes(); i++) {
+                int linia = liniaProducteLot[inici + i];
+                vegades = Math.min(vegades, restants[linia] / promocio.getUnitats(i));
+                preuUnitats = Math.addExact(preuUnitats,
+                        Math.multiplyExact(preus.getPreuUnitari(linia), promocio.getUnitats(i)));
+            }
+            long estalvi = preuUnitats - promocio.getPreu();
+            if (vegades == 0 || estalvi <= 0) {
+                return;
+            }
+
+            for (int i = 0; i < promocio.getNombreProductes(); i++) {
+                restants[liniaProducteLot[inici + i]] -= vegades * promocio.getUnitats(i);
+            }
+            preus.afegirDescompte(promocio.getNom(), Math.multiplyExact(estalvi, vegades));
+        }
+
+        /**
+         * Aplica a les unitats d'una línia que no formen part de cap lot la promoció que dona el descompte més gran.
+         *
+         * @param preus Els preus calculats del carret.
+         * @param linia La posició de la línia als resultats.
+         */
+        private void aplicarMillor(PreusCarret preus, int linia) {
+            int quantitat = restants[linia];
+            if (quantitat == 0) {
+                return;
+            }
+            long preuUnitari = preus.getPreuUnitari(linia);
+            Promocio millor = null;
+            long descompte = 0;
+
+            Regles regles = reglesLinia[linia];
+            if (regles != null) {
+                if (regles.percentatge != null) {
+                    millor = regles.percentatge;
+                    descompte = regles.percentatge.descompte(preuUnitari, quantitat);
+                }
+                for (int i = 0; i < regles.nombreNxm; i++) {
+                    long candidat = regles.nxm[i].descompte(preuUnitari, quantitat);
+                    if (candidat > descompte) {
+                        millor = regles.nxm[i];
+                        descompte = candidat;
+                    }
+                }
+            }
+            PromocioPercentatge perTipusLinia = perTipus[preus.getLinia(linia).getProducte().getTipus().ordinal()];
+            if (perTipusLinia != null) {
+                long candidat = perTipusLinia.descompte(preuUnitari, quantitat);
+                if (candidat > descompte) {
+                    millor = perTipusLinia;
+                    descompte = candidat;
+                }
+            }
+
+            if (millor != null && descompte > 0) {
+                preus.afegirDescompte(millor.getNom(), descompte);
+            }
+        }
+    }
+}
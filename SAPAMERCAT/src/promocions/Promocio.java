@@ -0,0 +1,51 @@
+package promocions;
+
+import exceptions.LimitCaracteresException;
+
+/**
+ * Classe abstracta que representa una promoció de la botiga.
+ * Cada promoció té un nom, que és el que es mostra al tiquet al costat del seu descompte.
+ * Les classes derivades defineixen a quins productes s'aplica la promoció i com es calcula el descompte:
+ * - PromocioNxM: s'emporta N unitats d'un producte i en paga M.
+ * - PromocioPercentatge: un percentatge de descompte sobre un producte o sobre tots els productes d'un tipus.
+ * - PromocioLot: un preu fix per un lot de productes comprats junts.
+ *
+ * Les promocions són immutables; MotorPromocions les compila en un índex per aplicar-les als tiquets.
+ *
+ * @author Joan Miralles Carmona
+ */
+public abstract class Promocio {
+    private final String nom;
+
+    /**
+     * Construeix una promoció amb el nom indicat.
+     *
+     * @param nom El nom de la promoció.
+     * @throws LimitCaracteresException Si el nom està buit.
+     */
+    protected Promocio(String nom) throws LimitCaracteresException {
+        if (nom.isBlank()) {
+            throw new LimitCaracteresException("Error: El nom de la promoció no pot estar buit.");
+        }
+        this.nom = nom;
+    }
+
+    /**
+     * Retorna el nom de la promoció.
+     *
+     * @return El nom de la promoció.
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * Retorna el nom de la promoció.
+     *
+     * @return El nom de la promoció.
+     */
+    @Override
+    public String toString() {
+        return nom;
+    }
+}
@@ -0,0 +1,97 @@
+package promocions;
+
+import exceptions.LimitCaracteresException;
+import exceptions.NegatiuException;
+import model.CodiBarres;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Promoció que cobra un preu fix per un lot de productes comprats junts (per exemple, camisa i corbata per 30 EUR).
+ * Un producte pot aparèixer diverses vegades al lot, i llavors el lot inclou aquest nombre d'unitats del producte.
+ * El descompte de cada lot complet és la diferència entre el preu de les seves unitats i el preu del lot;
+ * si el lot no surt més barat que les unitats per separat, la promoció no s'aplica.
+ *
+ * @author Joan Miralles Carmona
+ */
+public class PromocioLot extends Promocio {
+    private final long preu;
+    private final CodiBarres[] productes;
+    private final int[] unitats;
+
+    /**
+     * Construeix una promoció de lot.
+     *
+     * @param nom El nom de la promoció.
+     * @param preu El preu del lot en cèntims.
+     * @param productes Els codis de barres de les unitats del lot. Els codis repetits compten com a diverses unitats.
+     * @throws LimitCaracteresException Si el nom està buit.
+     * @throws NegatiuException Si el preu és negatiu o el lot no té cap producte.
+     */
+    public PromocioLot(String nom, long preu, List<CodiBarres> productes)
+            throws LimitCaracteresException, NegatiuException {
+        super(nom);
+        if (preu < 0) {
+            throw new NegatiuException("Error: El preu del lot no pot ser negatiu.");
+        }
+        if (productes.isEmpty()) {
+            throw new NegatiuException("Error: El lot ha de tenir almenys un producte.");
+        }
+
+        CodiBarres[] diferents = new CodiBarres[productes.size()];
+        int[] unitatsPerProducte = new int[productes.size()];
+        int nombre = 0;
+        for (CodiBarres codiBarres : productes) {
+            int i = 0;
+            while (i < nombre && !diferents[i].equals(codiBarres)) {
+                i++;
+            }
+            if (i == nombre) {
+                diferents[nombre++] = codiBarres;
+            }
+            unitatsPerProducte[i]++;
+        }
+        this.preu = preu;
+        this.productes = Arrays.copyOf(diferents, nombre);
+        this.unitats = Arrays.copyOf(unitatsPerProducte, nombre);
+    }
+
+    /**
+     * Retorna el preu del lot.
+     *
+     * @return El preu del lot en cèntims.
+     */
+    public long getPreu() {
+        return preu;
+    }
+
+    /**
+     * Retorna el nombre de productes diferents del lot.
+     *
+     * @return El nombre de productes diferents.
+     */
+    public int getNombreProductes() {
+        return productes.length;
+    }
+
+    /**
+     * Retorna el codi de barres d'un dels productes del lot.
+     *
+     * @param i La posició del producte dins el lot.
+     * @return El codi de barres.
+     */
+    public CodiBarres getProducte(int i) {
+        return productes[i];
+    }
+
+    /**
+     * Retorna el nombre d'unitats d'un dels productes que inclou el lot.
+     *
+     * @param i La posició del producte dins el lot.
+     * @return El nombre d'unitats.
+     */
+    public int getUnitats(int i) {
+        return unitats[i];
+    }
+}
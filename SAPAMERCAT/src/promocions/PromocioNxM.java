@@ -0,0 +1,78 @@
+package promocions;
+
+import exceptions.LimitCaracteresException;
+import exceptions.NegatiuException;
+import model.CodiBarres;
+
+/**
+ * Promoció del tipus "N per M": per cada N unitats d'un producte només se'n paguen M (per exemple, 3x2).
+ * Les unitats que no arriben a completar un grup de N es paguen senceres.
+ *
+ * @author Joan Miralles Carmona
+ */
+public class PromocioNxM extends Promocio {
+    private final CodiBarres codiBarres;
+    private final int unitats;
+    private final int pagades;
+
+    /**
+     * Construeix una promoció N per M.
+     *
+     * @param nom El nom de la promoció.
+     * @param codiBarres El codi de barres del producte.
+     * @param unitats El nombre d'unitats que s'emporta el client (N).
+     * @param pagades El nombre d'unitats que paga (M).
+     * @throws LimitCaracteresException Si el nom està buit.
+     * @throws NegatiuException Si no es compleix 0 < M < N.
+     */
+    public PromocioNxM(String nom, CodiBarres codiBarres, int unitats, int pagades)
+            throws LimitCaracteresException, NegatiuException {
+        super(nom);
+        if (pagades <= 0 || pagades >= unitats) {
+            throw new NegatiuException("Error: Una promoció NxM ha de complir 0 < M < N.");
+        }
+        this.codiBarres = codiBarres;
+        this.unitats = unitats;
+        this.pagades = pagades;
+    }
+
+    /**
+     * Retorna el codi de barres del producte de la promoció.
+     *
+     * @return El codi de barres.
+     */
+    public CodiBarres getCodiBarres() {
+        return codiBarres;
+    }
+
+    /**
+     * Retorna el nombre d'unitats que s'emporta el client per cada grup (N).
+     *
+     * @return El nombre d'unitats.
+     */
+    public int getUnitats() {
+        return unitats;
+    }
+
+    /**
+     * Retorna el nombre d'unitats que paga el client per cada grup (M).
+     *
+     * @return El nombre d'unitats pagades.
+     */
+    public int getPagades() {
+        return pagades;
+    }
+
+    /**
+     * Calcula el descompte de la promoció sobre unes unitats del producte.
+     *
+     * @param preuUnitari El preu unitari del producte en cèntims.
+     * @param quantitat El nombre d'unitats a les quals es pot aplicar la promoció.
+     * @return El descompte en cèntims.
+     * @throws ArithmeticException Si el descompte no cap en un long.
+     */
+    long descompte(long preuUnitari, int quantitat) {
+        long gratuites = (long) (quantitat / unitats) * (unitats - pagades);
+        return Math.multiplyExact(preuUnitari, gratuites);
+    }
+}
@@ -0,0 +1,110 @@
+package promocions;
+
+import exceptions.LimitCaracteresException;
+import exceptions.NegatiuException;
+import model.CodiBarres;
+import model.TipusProducte;
+import utils.Diners;
+
+/**
+ * Promoció que descompta un percentatge del preu d'un producte concret o de tots els productes d'un tipus.
+ * El descompte es calcula sobre el total de la línia i s'arrodoneix al cèntim més proper.
+ *
+ * @author Joan Miralles Carmona
+ */
+public class PromocioPercentatge extends Promocio {
+    private static final int PERCENTATGE_MAXIM = 100;
+
+    private final CodiBarres codiBarres;
+    private final TipusProducte tipus;
+    private final int percentatge;
+
+    /**
+     * Construeix una promoció percentual sobre un producte.
+     *
+     * @param nom El nom de la promoció.
+     * @param codiBarres El codi de barres del producte.
+     * @param percentatge El percentatge de descompte, entre 1 i 100.
+     * @throws LimitCaracteresException Si el nom està buit.
+     * @throws NegatiuException Si el percentatge no és entre 1 i 100.
+     */
+    public PromocioPercentatge(String nom, CodiBarres codiBarres, int percentatge)
+            throws LimitCaracteresException, NegatiuException {
+        this(nom, codiBarres, null, percentatge);
+    }
+
+    /**
+     * Construeix una promoció percentual sobre tots els productes d'un tipus.
+     *
+     * @param nom El nom de la promoció.
+     * @param tipus El tipus de producte.
+     * @param percentatge El percentatge de descompte, entre 1 i 100.
+     * @throws LimitCaracteresException Si el nom està buit.
+     * @throws NegatiuException Si el percentatge no és entre 1 i 100.
+     */
+    public PromocioPercentatge(String nom, TipusProducte tipus, int percentatge)
+            throws LimitCaracteresException, NegatiuException {
+        this(nom, null, tipus, percentatge);
+    }
+
+    /**
+     * Construeix una promoció percentual sobre un producte o sobre un tipus de producte.
+     *
+     * @param nom El nom de la promoció.
+     * @param codiBarres El codi de barres del producte, o null si la promoció és per tipus.
+     * @param tipus El tipus de producte, o null si la promoció és per producte.
+     * @param percentatge El percentatge de descompte, entre 1 i 100.
+     * @throws LimitCaracteresException Si el nom està buit.
+     * @throws NegatiuException Si el percentatge no és entre 1 i 100.
+     */
+    private PromocioPercentatge(String nom, CodiBarres codiBarres, TipusProducte tipus, int percentatge)
+            throws LimitCaracteresException, NegatiuException {
+        super(nom);
+        if (percentatge <= 0 || percentatge > PERCENTATGE_MAXIM) {
+            throw new NegatiuException("Error: El percentatge de descompte ha de ser entre 1 i 100.");
+        }
+        this.codiBarres = codiBarres;
+        this.tipus = tipus;
+        this.percentatge = percentatge;
+    }
+
+    /**
+     * Retorna el codi de barres del producte de la promoció.
+     *
+     * @return El codi de barres, o null si la promoció és per tipus de producte.
+     */
+    public CodiBarres getCodiBarres() {
+        return codiBarres;
+    }
+
+    /**
+     * Retorna el tipus de producte de la promoció.
+     *
+     * @return El tipus de producte, o null si la promoció és per producte.
+     */
+    public TipusProducte getTipus() {
+        return tipus;
+    }
+
+    /**
+     * Retorna el percentatge de descompte.
+     *
+     * @return El percentatge, entre 1 i 100.
+     */
+    public int getPercentatge() {
+        return percentatge;
+    }
+
+    /**
+     * Calcula el descompte de la promoció sobre unes unitats d'un producte.
+     *
+     * @param preuUnitari El preu unitari del producte en cèntims.
+     * @param quantitat El nombre d'unitats a les quals s'aplica la promoció.
+     * @return El descompte en cèntims.
+     * @throws ArithmeticException Si el descompte no cap en un long.
+     */
+    long descompte(long preuUnitari, int quantitat) {
+        long total = Math.multiplyExact(preuUnitari, quantitat);
+        return Diners.dividir(Math.multiplyExact(total, percentatge), PERCENTATGE_MAXIM);
+    }
+}
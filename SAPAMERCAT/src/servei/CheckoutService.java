@@ -0,0 +1,541 @@
+package servei;
+
+import model.CarretCompra;
+import model.CodiBarres;
+import model.PreusAlimentacio;
+import model.Product;
+import persistencia.DiariCarrets;
+import promocions.MotorPromocions;
+import tiquet.SortidaTiquet;
+import utils.Searchable;
+import vendes.RegistreAnulacions;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servei que gestiona els carrets de totes les caixes d'una botiga dins un mateix procés.
+ * Cada caixa obre una sessió identificada per un número i:
+ * - Cada sessió té el seu propi carret i el seu propi fil virtual.
+ * - Totes les operacions d'una sessió s'executen en ordre al fil de la sessió, de manera que el carret no es comparteix entre fils.
+ * - Les operacions de sessions diferents no comparteixen cap bloqueig i s'executen en paral·lel.
+ * - Les sessions es registren en un mapa concurrent, de manera que crear-les i cercar-les escala amb el nombre de nuclis.
+ * 
+ * Totes les operacions retornen un CompletableFuture que es completa quan el fil de la sessió l'ha executada.
+ * Les unitats tretes de qualsevol carret queden al registre d'anul·lacions del servei perquè un supervisor les revisi.
+ * Si el servei es crea amb recuperar(), les operacions de tots els carrets es registren en un diari i en arrencar
+ * es tornen a obrir les sessions dels carrets que no havien passat per caixa.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public class CheckoutService implements AutoCloseable {
+    private final ConcurrentHashMap<Long, Sessio> sessions;
+    private final AtomicLong seguentSessio;
+    private final ThreadFactory fils;
+    private final Set<Thread> filsActius;
+    private final int maxProductes;
+    private final Clock rellotge;
+    private final DiariCarrets diari;
+    private final RegistreAnulacions anulacions;
+    private volatile PreusAlimentacio preusAlimentacio;
+    private volatile MotorPromocions promocions;
+    private volatile boolean tancat;
+
+    /**
+     * Construeix un nou servei amb carrets del límit de productes per defecte.
+     */
+    public CheckoutService() {
+        this(CarretCompra.MAX_PRODUCTES_PER_DEFECTE, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Construeix un nou servei amb el límit de productes i el rellotge indicats per a tots els carrets.
+     *
+     * @param maxProductes El nombre màxim de productes diferents de cada carret.
+     * @param rellotge El rellotge utilitzat per calcular els preus dels tiquets.
+     */
+    public CheckoutService(int maxProductes, Clock rellotge) {
+        this(maxProductes, rellotge, null);
+    }
+
+    /**
+     * Construeix un nou servei que registra les operacions dels carrets al diari indicat, si n'hi ha.
+     *
+     * @param maxProductes El nombre màxim de productes diferents de cada carret.
+     * @param rellotge El rellotge utilitzat per calcular els preus dels tiquets.
+     * @param diari El diari on es registren les operacions, o null.
+     */
+    private CheckoutService(int maxProductes, Clock rellotge, DiariCarrets diari) {
+        this.sessions = new ConcurrentHashMap<>();
+        this.seguentSessio = new AtomicLong();
+        this.fils = Thread.ofVirtual().name("caixa-", 1).factory();
+        this.filsActius = ConcurrentHashMap.newKeySet();
+        this.maxProductes = maxProductes;
+        this.rellotge = rellotge;
+        this.diari = diari;
+        this.anulacions = new RegistreAnulacions(rellotge);
+    }
+
+    /**
+     * Crea un servei que registra les operacions dels carrets al diari indicat i torna a obrir una sessió,
+     * amb el mateix identificador, per a cada carret recuperat del diari.
+     * Els identificadors de les sessions noves continuen després del més gran que apareix al diari, de manera que no es
+     * reutilitza el d'una sessió que ja havia passat per caixa o s'havia tancat.
+     * El diari s'ha de tancar després de tancar el servei.
+     *
+     * @param maxProductes El nombre màxim de productes diferents de cada carret.
+     * @param rellotge El rellotge utilitzat per calcular els preus dels tiquets.
+     * @param diari El diari acabat d'obrir.
+     * @return El servei amb les sessions recuperades obertes.
+     * @throws IOException Si no es pot recuperar el diari.
+     */
+    public static CheckoutService recuperar(int maxProductes, Clock rellotge, DiariCarrets diari) throws IOException {
+        CheckoutService servei = new CheckoutService(maxProductes, rellotge, diari);
+        Map<Long, CarretCompra> carrets = diari.recuperar(() -> new CarretCompra(maxProductes, rellotge));
+        servei.seguentSessio.set(diari.getIdMaxim());
+        for (Map.Entry<Long, CarretCompra> carret : carrets.entrySet()) {
+            servei.iniciarSessio(carret.getKey(), carret.getValue());
+        }
+        return servei;
+    }
+
+    /**
+     * Obre una sessió nova amb un carret buit i el seu fil virtual.
+     * Si hi ha diari, l'identificador de la sessió s'hi registra abans de cap operació del carret.
+     * Si el servei es tanca mentre s'obre la sessió, close() pot no veure-la al mapa: per això es torna a comprovar
+     * si el servei està tancat després de registrar-la i, si ho està, la sessió s'atura aquí.
+     *
+     * @return L'identificador de la sessió.
+     * @throws IllegalStateException Si el servei està tancat.
+     */
+    public long obrirSessio() {
+        if (tancat) {
+            throw new IllegalStateException("Error: El servei de caixes està tancat.");
+        }
+        long id = seguentSessio.incrementAndGet();
+        if (diari != null) {
+            diari.registrarObertura(id);
+        }
+        iniciarSessio(id, new CarretCompra(maxProductes, rellotge));
+        if (tancat) {
+            aturarSessio(id, false);
+            throw new IllegalStateException("Error: El servei de caixes està tancat.");
+        }
+        return id;
+    }
+
+    /**
+     * Registra una sessió amb el carret indicat i n'arrenca el fil virtual.
+     *
+     * @param id L'identificador de la sessió.
+     * @param carret El carret de la sessió.
+     */
+    private void iniciarSessio(long id, CarretCompra carret) {
+        PreusAlimentacio preus = preusAlimentacio;
+        if (preus != null) {
+            carret.setPreusAlimentacio(preus);
+        }
+        MotorPromocions motor = promocions;
+        if (motor != null) {
+            carret.setPromocions(motor.avaluador());
+        }
+        carret.afegirObservador(anulacions.observador(id));
+        if (diari != null) {
+            carret.afegirObservador(diari.observador(id));
+        }
+        Sessio sessio = new Sessio(carret, filsActius);
+        sessions.put(id, sessio);
+        Thread fil = fils.newThread(sessio);
+        filsActius.add(fil);
+        fil.start();
+    }
+
+    /**
+     * Fa que els carrets de les sessions obertes, com ara les recuperades del diari, i de les que s'obrin a partir d'ara
+     * llegeixin els preus d'alimentació de la taula precalculada indicada. El dia dels tiquets d'aquests carrets el
+     * determina el rellotge de la taula.
+     *
+     * @param preusAlimentacio Els preus d'alimentació precalculats.
+     */
+    public void setPreusAlimentacio(PreusAlimentacio preusAlimentacio) {
+        this.preusAlimentacio = preusAlimentacio;
+        for (Long id : sessions.keySet()) {
+            executar(id, carret -> {
+                carret.setPreusAlimentacio(preusAlimentacio);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Fa que els tiquets dels carrets de les sessions obertes i de les que s'obrin a partir d'ara apliquin les
+     * promocions indicades. Cada carret rep el seu propi avaluador del motor.
+     *
+     * @param promocions El motor de promocions, o null per no aplicar-ne cap.
+     */
+    public void setPromocions(MotorPromocions promocions) {
+        this.promocions = promocions;
+        for (Long id : sessions.keySet()) {
+            executar(id, carret -> {
+                carret.setPromocions(promocions != null ? promocions.avaluador() : null);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Tanca una sessió. Les operacions pendents s'executen abans d'aturar el fil de la sessió.
+     * Si hi ha diari, el carret de la sessió es descarta i no es tornarà a recuperar.
+     *
+     * @param id L'identificador de la sessió.
+     * @return true si la sessió existia.
+     */
+    public boolean tancarSessio(long id) {
+        return aturarSessio(id, true);
+    }
+
+    /**
+     * Atura el fil d'una sessió després d'executar les operacions pendents.
+     *
+     * @param id L'identificador de la sessió.
+     * @param descartar Si cal registrar al diari que el carret de la sessió s'ha descartat.
+     * @return true si la sessió existia.
+     */
+    private boolean aturarSessio(long id, boolean descartar) {
+        Sessio sessio = sessions.remove(id);
+        if (sessio == null) {
+            return false;
+        }
+        if (descartar && diari != null) {
+            sessio.aturar(new Tasca<>(carret -> diari.registrarTancament(id), new CompletableFuture<>()));
+        } else {
+            sessio.aturar(null);
+        }
+        return true;
+    }
+
+    /**
+     * Indica si existeix una sessió oberta amb l'identificador indicat.
+     *
+     * @param id L'identificador de la sessió.
+     * @return true si la sessió està oberta.
+     */
+    public boolean existeixSessio(long id) {
+        return sessions.containsKey(id);
+    }
+
+    /**
+     * Retorna el nombre de sessions obertes.
+     *
+     * @return El nombre de sessions obertes.
+     */
+    public int getNombreSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Executa una operació qualsevol sobre el carret d'una sessió.
+     *
+     * @param id L'identificador de la sessió.
+     * @param operacio L'operació a executar.
+     * @param <T> El tipus del resultat de l'operació.
+     * @return El resultat de l'operació, que es completa amb excepció si la sessió no existeix o l'operació falla.
+     */
+    public <T> CompletableFuture<T> executar(long id, OperacioCarret<T> operacio) {
+        CompletableFuture<T> resultat = new CompletableFuture<>();
+        Sessio sessio = sessions.get(id);
+        if (sessio == null) {
+            resultat.completeExceptionally(new IllegalArgumentException("Error: No existeix la sessió " + id + "."));
+        } else {
+            sessio.encuar(new Tasca<>(operacio, resultat));
+        }
+        return resultat;
+    }
+
+    /**
+     * Afegeix un producte al carret d'una sessió.
+     *
+     * @param id L'identificador de la sessió.
+     * @param producte El producte a afegir.
+     * @return Un resultat que es completa quan el producte s'ha afegit.
+     */
+    public CompletableFuture<Void> afegirProducte(long id, Product producte) {
+        return executar(id, carret -> {
+            carret.afegirProducte(producte);
+            return null;
+        });
+    }
+
+    /**
+     * Afegeix diverses unitats d'un producte al carret d'una sessió.
+     *
+     * @param id L'identificador de la sessió.
+     * @param producte El producte a afegir.
+     * @param quantitat El nombre d'unitats a afegir.
+     * @return Un resultat que es completa quan les unitats s'han afegit.
+     */
+    public CompletableFuture<Void> afegirProducte(long id, Product producte, int quantitat) {
+        return executar(id, carret -> {
+            carret.afegirProducte(producte, quantitat);
+            return null;
+        });
+    }
+
+    /**
+     * Afegeix un lot de productes al carret d'una sessió. Si el lot no hi cap, el carret no es modifica.
+     *
+     * @param id L'identificador de la sessió.
+     * @param productes Els productes a afegir.
+     * @return Un resultat que es completa quan el lot s'ha afegit.
+     */
+    public CompletableFuture<Void> afegirProductes(long id, Collection<? extends Product> productes) {
+        return executar(id, carret -> {
+            carret.afegirProductes(productes);
+            return null;
+        });
+    }
+
+    /**
+     * Afegeix al carret d'una sessió el producte amb el codi de barres indicat, obtenint-lo de la font si cal.
+     *
+     * @param id L'identificador de la sessió.
+     * @param codiBarres El codi de barres escanejat.
+     * @param font La font on es cerca el producte, com ara el catàleg.
+     * @return Un resultat amb true si el producte s'ha afegit, o false si no s'ha trobat.
+     */
+    public CompletableFuture<Boolean> afegirProducte(long id, CodiBarres codiBarres, Searchable<Product> font) {
+        return executar(id, carret -> carret.afegirProducte(codiBarres, font));
+    }
+
+    /**
+     * Afegeix al carret d'una sessió una ràfega d'escanejos del mateix codi de barres.
+     *
+     * @param id L'identificador de la sessió.
+     * @param codiBarres El codi de barres escanejat.
+     * @param quantitat El nombre d'escanejos de la ràfega.
+     * @param font La font on es cerca el producte, com ara el catàleg.
+     * @return Un resultat amb true si el producte s'ha afegit, o false si no s'ha trobat.
+     */
+    public CompletableFuture<Boolean> afegirProducte(long id, CodiBarres codiBarres, int quantitat,
+                                                     Searchable<Product> font) {
+        return executar(id, carret -> carret.afegirProducte(codiBarres, quantitat, font));
+    }
+
+    /**
+     * Treu totes les unitats d'un producte del carret d'una sessió.
+     *
+     * @param id L'identificador de la sessió.
+     * @param codiBarres El codi de barres del producte.
+     * @return Un resultat amb el nombre d'unitats tretes.
+     */
+    public CompletableFuture<Integer> treureProducte(long id, CodiBarres codiBarres) {
+        return executar(id, carret -> carret.treureProducte(codiBarres));
+    }
+
+    /**
+     * Redueix la quantitat d'un producte del carret d'una sessió.
+     *
+     * @param id L'identificador de la sessió.
+     * @param codiBarres El codi de barres del producte.
+     * @param unitats El nombre d'unitats a treure.
+     * @return Un resultat amb el nombre d'unitats tretes.
+     */
+    public CompletableFuture<Integer> decrementar(long id, CodiBarres codiBarres, int unitats) {
+        return executar(id, carret -> carret.decrementar(codiBarres, unitats));
+    }
+
+    /**
+     * Retorna el registre d'anul·lacions de totes les sessions.
+     *
+     * @return El registre d'anul·lacions.
+     */
+    public RegistreAnulacions getAnulacions() {
+        return anulacions;
+    }
+
+    /**
+     * Cerca un producte al carret d'una sessió.
+     *
+     * @param id L'identificador de la sessió.
+     * @param codiBarres El codi de barres del producte.
+     * @return Un resultat amb el producte, o null si no és al carret.
+     */
+    public CompletableFuture<Product> buscar(long id, CodiBarres codiBarres) {
+        return executar(id, carret -> carret.buscar(codiBarres));
+    }
+
+    /**
+     * Passa per caixa el carret d'una sessió i escriu el tiquet a la sortida indicada.
+     * La sessió continua oberta amb el carret buit.
+     *
+     * @param id L'identificador de la sessió.
+     * @param sortida La sortida on s'escriu el tiquet.
+     * @return Un resultat que es completa quan el tiquet s'ha escrit.
+     */
+    public CompletableFuture<Void> imprimir(long id, SortidaTiquet sortida) {
+        return executar(id, carret -> {
+            carret.imprimir(sortida);
+            return null;
+        });
+    }
+
+    /**
+     * Tanca el servei i totes les sessions obertes, i espera que els fils de totes les sessions acabin.
+     * Les operacions ja encuades s'executen abans d'aturar els fils de les sessions, de manera que quan close() retorna
+     * ja s'han registrat al diari i aquest es pot tancar.
+     * Si hi ha diari, els carrets oberts es conserven per recuperar-los la propera vegada.
+     */
+    @Override
+    public void close() {
+        tancat = true;
+        for (Long id : sessions.keySet()) {
+            aturarSessio(id, false);
+        }
+
+        boolean interromput = false;
+        for (Thread fil : filsActius) {
+            while (true) {
+                try {
+                    fil.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interromput = true;
+                }
+            }
+        }
+        if (interromput) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Operació encuada a una sessió juntament amb el resultat que s'ha de completar.
+     *
+     * @param <T> El tipus del resultat de l'operació.
+     */
+    private static final class Tasca<T> {
+        private final OperacioCarret<T> operacio;
+        private final CompletableFuture<T> resultat;
+
+        /**
+         * Construeix una nova tasca.
+         *
+         * @param operacio L'operació a executar.
+         * @param resultat El resultat que es completa amb l'operació.
+         */
+        Tasca(OperacioCarret<T> operacio, CompletableFuture<T> resultat) {
+            this.operacio = operacio;
+            this.resultat = resultat;
+        }
+
+        /**
+         * Executa l'operació sobre el carret i completa el resultat.
+         * Qualsevol error de l'operació, inclosos els Error, completa el resultat amb excepció: si s'escapés, aturaria
+         * el fil de la sessió i deixaria sense completar totes les operacions encuades.
+         *
+         * @param carret El carret de la sessió.
+         */
+        void executar(CarretCompra carret) {
+            try {
+                resultat.complete(operacio.executar(carret));
+            } catch (Throwable e) {
+                resultat.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * Completa el resultat amb un error perquè la sessió s'ha tancat abans d'executar l'operació.
+         */
+        void rebutjar() {
+            resultat.completeExceptionally(new IllegalStateException("Error: La sessió s'ha tancat."));
+        }
+    }
+
+    /**
+     * Sessió de caixa: un carret i la cua d'operacions que executa el seu fil virtual.
+     */
+    private static final class Sessio implements Runnable {
+        private static final Tasca<Void> FINAL = new Tasca<>(carret -> null, new CompletableFuture<>());
+
+        private final CarretCompra carret;
+        private final BlockingQueue<Tasca<?>> cua;
+        private final Set<Thread> filsActius;
+        private boolean aturada;
+
+        /**
+         * Construeix una nova sessió amb el carret indicat.
+         *
+         * @param carret El carret de la sessió.
+         * @param filsActius Els fils de les sessions que encara no han acabat, d'on el fil de la sessió es treu en acabar.
+         */
+        Sessio(CarretCompra carret, Set<Thread> filsActius) {
+            this.carret = carret;
+            this.cua = new LinkedBlockingQueue<>();
+            this.filsActius = filsActius;
+        }
+
+        /**
+         * Encua una operació per executar-la al fil de la sessió.
+         * Si la sessió ja s'ha aturat, l'operació es rebutja.
+         *
+         * @param tasca L'operació a encuar.
+         */
+        synchronized void encuar(Tasca<?> tasca) {
+            if (aturada) {
+                tasca.rebutjar();
+                return;
+            }
+            cua.add(tasca);
+        }
+
+        /**
+         * Demana al fil de la sessió que s'aturi després d'executar les operacions pendents.
+         *
+         * @param darrera Una operació a executar després de les pendents, o null.
+         */
+        synchronized void aturar(Tasca<?> darrera) {
+            aturada = true;
+            if (darrera != null) {
+                cua.add(darrera);
+            }
+            cua.add(FINAL);
+        }
+
+        /**
+         * Executa les operacions de la cua fins que la sessió s'atura, després descarta el carret i es treu dels fils
+         * actius.
+         */
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Tasca<?> tasca = cua.take();
+                    if (tasca == FINAL) {
+                        break;
+                    }
+                    tasca.executar(carret);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            Tasca<?> pendent;
+            while ((pendent = cua.poll()) != null) {
+                if (pendent != FINAL) {
+                    pendent.rebutjar();
+                }
+            }
+            carret.descartar();
+            filsActius.remove(Thread.currentThread());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package servei;
+
+import model.CarretCompra;
+
+/**
+ * Interfície funcional que representa una operació sobre el carret d'una sessió de caixa.
+ * Les operacions s'executen sempre al fil de la sessió, de manera que el carret mai és accedit per dos fils alhora.
+ * 
+ * @author Joan Miralles Carmona
+ * @param <T> El tipus del resultat de l'operació.
+ */
+@FunctionalInterface
+public interface OperacioCarret<T> {
+
+    /**
+     * Executa l'operació sobre el carret de la sessió.
+     *
+     * @param carret El carret de la sessió.
+     * @return El resultat de l'operació.
+     * @throws Exception Si l'operació falla; l'excepció es propaga al resultat de l'operació.
+     */
+    T executar(CarretCompra carret) throws Exception;
+}
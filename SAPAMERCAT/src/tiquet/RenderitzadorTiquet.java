@@ -0,0 +1,159 @@
+package tiquet;
+
+import utils.Diners;
+import utils.Utf8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Genera el text dels tiquets de compra en un buffer reutilitzable.
+ * Aquesta classe substitueix l'escriptura línia a línia amb printf:
+ * - El text es construeix en un StringBuilder que es reutilitza entre tiquets.
+ * - La data es formata amb un DateTimeFormatter creat una sola vegada.
+ * - Els imports (en cèntims) i les quantitats es formaten a mà amb aritmètica entera, sense analitzar cap cadena de format.
+ * - El tiquet complet es codifica en UTF-8 en un buffer reutilitzable i s'envia a la sortida amb una sola escriptura.
+ * 
+ * Aquesta classe no és segura per a l'accés concurrent: cada carret en fa servir la seva.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public class RenderitzadorTiquet {
+    private static final DateTimeFormatter FORMAT_DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+    private static final String SEPARADOR = "--------------------------------\n";
+    private static final int AMPLADA_NOM = 10;
+    private static final int AMPLADA_QUANTITAT = 2;
+
+    private final StringBuilder text = new StringBuilder(512);
+    private ByteBuffer bytes = ByteBuffer.allocate(1024);
+
+    /**
+     * Comença un tiquet nou descartant el contingut anterior i escriu la capçalera amb la data actual.
+     *
+     * @param rellotge El rellotge del qual s'obté la data i hora del tiquet.
+     */
+    public void iniciar(Clock rellotge) {
+        text.setLength(0);
+        text.append("\n--------- SAPAMERCAT ---------\n");
+        text.append("Data: ");
+        FORMAT_DATA.formatTo(LocalDateTime.now(rellotge), text);
+        text.append('\n');
+        text.append(SEPARADOR);
+    }
+
+    /**
+     * Afegeix una línia de producte al tiquet.
+     * Format: nom (mínim 10 caràcters), quantitat (mínim 2 caràcters), preu unitari i preu total.
+     *
+     * @param nom El nom del producte.
+     * @param quantitat La quantitat d'unitats.
+     * @param preuUnitari El preu unitari del producte en cèntims.
+     * @param preuTotal El preu total de la línia en cèntims.
+     */
+    public void linia(String nom, int quantitat, long preuUnitari, long preuTotal) {
+        text.append(nom);
+        afegirEspais(AMPLADA_NOM - nom.length());
+        text.append(' ');
+        afegirEspais(AMPLADA_QUANTITAT - amplada(quantitat));
+        text.append(quantitat);
+        text.append("  ");
+        Diners.afegir(text, preuUnitari);
+        text.append(" EUR  ");
+        Diners.afegir(text, preuTotal);
+        text.append(" EUR\n");
+    }
+
+    /**
+     * Afegeix una línia de descompte d'una promoció al tiquet.
+     * Format: nom de la promoció (mínim 10 caràcters) i import descomptat amb signe negatiu.
+     *
+     * @param nom El nom de la promoció.
+     * @param descompte L'import descomptat en cèntims.
+     */
+    public void descompte(String nom, long descompte) {
+        text.append(nom);
+        afegirEspais(AMPLADA_NOM - nom.length());
+        text.append("  ");
+        Diners.afegir(text, -descompte);
+        text.append(" EUR\n");
+    }
+
+    /**
+     * Acaba el tiquet amb el total de la compra.
+     *
+     * @param total El total de la compra en cèntims.
+     */
+    public void finalitzar(long total) {
+        text.append(SEPARADOR);
+        text.append("Total: ");
+        Diners.afegir(text, total);
+        text.append(" EUR\n\n");
+    }
+
+    /**
+     * Escriu el tiquet complet a la sortida amb una sola escriptura.
+     *
+     * @param sortida La sortida on s'escriu el tiquet.
+     * @return El nombre de bytes escrits.
+     * @throws IOException Si hi ha un error d'escriptura.
+     */
+    public int escriure(SortidaTiquet sortida) throws IOException {
+        codificar();
+        int mida = bytes.remaining();
+        sortida.escriure(bytes);
+        return mida;
+    }
+
+    /**
+     * Retorna el text del tiquet en construcció.
+     *
+     * @return El text del tiquet.
+     */
+    public CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * Afegeix el nombre d'espais indicat, si és positiu.
+     *
+     * @param espais El nombre d'espais.
+     */
+    private void afegirEspais(int espais) {
+        for (int i = 0; i < espais; i++) {
+            text.append(' ');
+        }
+    }
+
+    /**
+     * Retorna el nombre de caràcters que ocupa un enter escrit en base 10.
+     *
+     * @param valor L'enter.
+     * @return El nombre de caràcters, incloent-hi el signe.
+     */
+    private static int amplada(int valor) {
+        int amplada = valor < 0 ? 2 : 1;
+        long absolut = Math.abs((long) valor);
+        while (absolut >= 10) {
+            absolut /= 10;
+            amplada++;
+        }
+        return amplada;
+    }
+
+    /**
+     * Codifica el text del tiquet en UTF-8 dins el buffer reutilitzable.
+     * El buffer només creix si el tiquet no hi cap.
+     */
+    private void codificar() {
+        int longitud = text.length();
+        if (bytes.capacity() < longitud * Utf8.MAX_BYTES_PER_CARACTER) {
+            bytes = ByteBuffer.allocate(Math.max(bytes.capacity() * 2, longitud * Utf8.MAX_BYTES_PER_CARACTER));
+        }
+        int mida = Utf8.codificar(text, bytes.array());
+        bytes.clear();
+        bytes.limit(mida);
+    }
+}
@@ -0,0 +1,52 @@
+package tiquet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Sortida de tiquets que escriu sobre un WritableByteChannel, com ara un FileChannel o un SocketChannel.
+ * El buffer del tiquet es passa directament al canal, sense còpies intermèdies.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public class SortidaCanal implements SortidaTiquet {
+    private final WritableByteChannel canal;
+    private final boolean tancarCanal;
+
+    /**
+     * Construeix una nova sortida sobre el canal indicat.
+     *
+     * @param canal El canal on s'escriuen els tiquets.
+     * @param tancarCanal Si s'ha de tancar el canal en tancar la sortida.
+     */
+    public SortidaCanal(WritableByteChannel canal, boolean tancarCanal) {
+        this.canal = canal;
+        this.tancarCanal = tancarCanal;
+    }
+
+    /**
+     * Escriu tots els bytes pendents del buffer al canal.
+     *
+     * @param dades El buffer amb el tiquet codificat en UTF-8.
+     * @throws IOException Si hi ha un error d'escriptura.
+     */
+    @Override
+    public void escriure(ByteBuffer dades) throws IOException {
+        while (dades.hasRemaining()) {
+            canal.write(dades);
+        }
+    }
+
+    /**
+     * Tanca el canal si s'ha indicat en construir la sortida.
+     *
+     * @throws IOException Si hi ha un error en tancar el canal.
+     */
+    @Override
+    public void close() throws IOException {
+        if (tancarCanal) {
+            canal.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package tiquet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Sortida de tiquets que escriu sobre un OutputStream.
+ * Cada tiquet es passa a l'OutputStream amb una sola crida a write() i un sol flush().
+ * 
+ * @author Joan Miralles Carmona
+ */
+public class SortidaFlux implements SortidaTiquet {
+    private final OutputStream flux;
+    private final boolean tancarFlux;
+
+    /**
+     * Construeix una nova sortida sobre l'OutputStream indicat.
+     *
+     * @param flux L'OutputStream on s'escriuen els tiquets.
+     * @param tancarFlux Si s'ha de tancar l'OutputStream en tancar la sortida.
+     */
+    public SortidaFlux(OutputStream flux, boolean tancarFlux) {
+        this.flux = flux;
+        this.tancarFlux = tancarFlux;
+    }
+
+    /**
+     * Escriu els bytes pendents del buffer a l'OutputStream.
+     *
+     * @param dades El buffer amb el tiquet codificat en UTF-8.
+     * @throws IOException Si hi ha un error d'escriptura.
+     */
+    @Override
+    public void escriure(ByteBuffer dades) throws IOException {
+        if (dades.hasArray()) {
+            flux.write(dades.array(), dades.arrayOffset() + dades.position(), dades.remaining());
+            dades.position(dades.limit());
+        } else {
+            while (dades.hasRemaining()) {
+                flux.write(dades.get());
+            }
+        }
+        flux.flush();
+    }
+
+    /**
+     * Tanca l'OutputStream si s'ha indicat en construir la sortida.
+     *
+     * @throws IOException Si hi ha un error en tancar l'OutputStream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (tancarFlux) {
+            flux.close();
+        } else {
+            flux.flush();
+        }
+    }
+}
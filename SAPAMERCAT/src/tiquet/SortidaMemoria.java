@@ -0,0 +1,57 @@
+package tiquet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Sortida de tiquets que acumula els bytes escrits en memòria.
+ * És útil per a proves i per a processos que necessiten el text dels tiquets sense escriure'ls enlloc.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public class SortidaMemoria implements SortidaTiquet {
+    private byte[] dades = new byte[1024];
+    private int mida;
+
+    /**
+     * Copia els bytes pendents del buffer a la memòria de la sortida.
+     *
+     * @param buffer El buffer amb el tiquet codificat en UTF-8.
+     */
+    @Override
+    public void escriure(ByteBuffer buffer) {
+        int longitud = buffer.remaining();
+        if (mida + longitud > dades.length) {
+            dades = Arrays.copyOf(dades, Math.max(dades.length * 2, mida + longitud));
+        }
+        buffer.get(dades, mida, longitud);
+        mida += longitud;
+    }
+
+    /**
+     * Retorna el nombre de bytes acumulats.
+     *
+     * @return El nombre de bytes acumulats.
+     */
+    public int getMida() {
+        return mida;
+    }
+
+    /**
+     * Descarta tots els bytes acumulats.
+     */
+    public void buidar() {
+        mida = 0;
+    }
+
+    /**
+     * Retorna el text acumulat descodificat en UTF-8.
+     *
+     * @return El text de tots els tiquets escrits.
+     */
+    @Override
+    public String toString() {
+        return new String(dades, 0, mida, StandardCharsets.UTF_8);
+    }
+}
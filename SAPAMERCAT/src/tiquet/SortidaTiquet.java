@@ -0,0 +1,62 @@
+package tiquet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Interfície que defineix una destinació on s'escriuen els tiquets de compra.
+ * El renderitzador de tiquets escriu cada tiquet complet amb una sola crida a escriure().
+ * Les implementacions disponibles permeten escriure els tiquets a:
+ * - La consola o qualsevol OutputStream (SortidaFlux).
+ * - Un fitxer o qualsevol WritableByteChannel (SortidaCanal).
+ * - Memòria, per a proves i processos que necessiten el text del tiquet (SortidaMemoria).
+ * 
+ * @author Joan Miralles Carmona
+ */
+public interface SortidaTiquet extends Closeable {
+
+    /**
+     * Escriu els bytes pendents del buffer indicat.
+     * En acabar, la posició del buffer ha d'haver arribat al seu límit.
+     *
+     * @param dades El buffer amb el tiquet codificat en UTF-8.
+     * @throws IOException Si hi ha un error d'escriptura.
+     */
+    void escriure(ByteBuffer dades) throws IOException;
+
+    /**
+     * Tanca la sortida. Per defecte no fa res.
+     *
+     * @throws IOException Si hi ha un error en tancar la sortida.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Crea una sortida cap a la consola.
+     * Cada tiquet s'escriu amb una sola escriptura sobre System.out.
+     *
+     * @return La sortida de consola.
+     */
+    static SortidaTiquet consola() {
+        return new SortidaFlux(System.out, false);
+    }
+
+    /**
+     * Crea una sortida que afegeix els tiquets al final d'un fitxer.
+     * Si el fitxer no existeix, es crea.
+     *
+     * @param fitxer El fitxer on s'escriuen els tiquets.
+     * @return La sortida de fitxer, que s'ha de tancar en acabar.
+     * @throws IOException Si no es pot obrir el fitxer.
+     */
+    static SortidaTiquet fitxer(Path fitxer) throws IOException {
+        return new SortidaCanal(FileChannel.open(fitxer, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND), true);
+    }
+}
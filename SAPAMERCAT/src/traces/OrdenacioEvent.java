@@ -0,0 +1,64 @@
+package traces;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Esdeveniment de JFR que cobreix la inserció d'una línia nova a les vistes ordenades del carret: per preu i, si és
+ * tèxtil, per composició.
+ * Les línies s'ordenen a mesura que s'afegeixen al carret, i no en imprimir el tiquet, de manera que el cost de
+ * l'ordenació es reparteix entre aquestes insercions.
+ * Com que es produeix a cada producte nou, per defecte només s'enregistra si supera 1 ms.
+ *
+ * @author Joan Miralles Carmona
+ */
+@Name(OrdenacioEvent.NOM)
+@Label("Ordenació")
+@Category({"SAPAMERCAT", "Carret"})
+@Description("Inserció d'una línia nova a les vistes ordenades del carret.")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class OrdenacioEvent extends Event {
+    /**
+     * Nom de l'esdeveniment, tal com apareix als enregistraments i a la configuració.
+     */
+    public static final String NOM = "sapamercat.Ordenacio";
+
+    @Label("Línies del carret")
+    int liniesCarret;
+
+    @Label("Tèxtil")
+    @Description("Si la línia també s'ha inserit a la vista ordenada per composició.")
+    boolean textil;
+
+    /**
+     * Crea l'esdeveniment i en comença a mesurar la durada.
+     *
+     * @return L'esdeveniment iniciat.
+     */
+    public static OrdenacioEvent iniciar() {
+        OrdenacioEvent event = new OrdenacioEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Acaba de mesurar la durada i, si l'esdeveniment està activat i supera el llindar, l'enregistra.
+     *
+     * @param liniesCarret El nombre de línies del carret, incloent-hi la nova.
+     * @param textil Si la línia s'ha inserit també a la vista per composició.
+     */
+    public void acabar(int liniesCarret, boolean textil) {
+        end();
+        if (shouldCommit()) {
+            this.liniesCarret = liniesCarret;
+            this.textil = textil;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package traces;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Esdeveniment de JFR que cobreix el càlcul per lots dels preus de les línies d'un tipus de producte.
+ * Només s'enregistra per als tipus que tenen alguna línia al carret i, per defecte, si supera 1 ms: com que n'hi ha
+ * fins a quatre per tiquet, enregistrar-los tots encariria el càlcul de preus.
+ *
+ * @author Joan Miralles Carmona
+ */
+@Name(PreusEvent.NOM)
+@Label("Càlcul de preus")
+@Category({"SAPAMERCAT", "Caixa"})
+@Description("Càlcul dels preus de les línies d'un tipus de producte.")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class PreusEvent extends Event {
+    /**
+     * Nom de l'esdeveniment, tal com apareix als enregistraments i a la configuració.
+     */
+    public static final String NOM = "sapamercat.Preus";
+
+    @Label("Tipus de producte")
+    String tipus;
+
+    @Label("Línies del tipus")
+    int linies;
+
+    @Label("Línies del carret")
+    int liniesCarret;
+
+    /**
+     * Crea l'esdeveniment i en comença a mesurar la durada.
+     *
+     * @return L'esdeveniment iniciat.
+     */
+    public static PreusEvent iniciar() {
+        PreusEvent event = new PreusEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Acaba de mesurar la durada i, si el tipus té línies, l'esdeveniment està activat i supera el llindar,
+     * l'enregistra.
+     *
+     * @param tipus El nom del tipus de producte.
+     * @param linies El nombre de línies del tipus.
+     * @param liniesCarret El nombre de línies del carret.
+     */
+    public void acabar(String tipus, int linies, int liniesCarret) {
+        end();
+        if (linies > 0 && shouldCommit()) {
+            this.tipus = tipus;
+            this.linies = linies;
+            this.liniesCarret = liniesCarret;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package traces;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Esdeveniment de JFR que cobreix l'aplicació de les promocions als preus calculats d'un carret.
+ * Per defecte només s'enregistra si supera 1 ms; la durada de l'aplicació de les promocions ja forma part de la del
+ * tiquet.
+ *
+ * @author Joan Miralles Carmona
+ */
+@Name(PromocionsEvent.NOM)
+@Label("Promocions")
+@Category({"SAPAMERCAT", "Caixa"})
+@Description("Aplicació de les promocions als preus d'un carret.")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class PromocionsEvent extends Event {
+    /**
+     * Nom de l'esdeveniment, tal com apareix als enregistraments i a la configuració.
+     */
+    public static final String NOM = "sapamercat.Promocions";
+
+    @Label("Línies del carret")
+    int liniesCarret;
+
+    @Label("Descomptes")
+    int descomptes;
+
+    /**
+     * Crea l'esdeveniment i en comença a mesurar la durada.
+     *
+     * @return L'esdeveniment iniciat.
+     */
+    public static PromocionsEvent iniciar() {
+        PromocionsEvent event = new PromocionsEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Acaba de mesurar la durada i, si l'esdeveniment està activat i supera el llindar, l'enregistra.
+     *
+     * @param liniesCarret El nombre de línies del carret.
+     * @param descomptes El nombre de descomptes aplicats.
+     */
+    public void acabar(int liniesCarret, int descomptes) {
+        end();
+        if (shouldCommit()) {
+            this.liniesCarret = liniesCarret;
+            this.descomptes = descomptes;
+            commit();
+        }
+    }
+}
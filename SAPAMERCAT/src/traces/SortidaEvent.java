@@ -0,0 +1,62 @@
+package traces;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Esdeveniment de JFR que cobreix la codificació d'un tiquet i la seva escriptura a la sortida.
+ * Per defecte només s'enregistra si supera 1 ms, per exemple quan la sortida es bloqueja.
+ *
+ * @author Joan Miralles Carmona
+ */
+@Name(SortidaEvent.NOM)
+@Label("Sortida del tiquet")
+@Category({"SAPAMERCAT", "Caixa"})
+@Description("Codificació d'un tiquet i escriptura a la sortida.")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class SortidaEvent extends Event {
+    /**
+     * Nom de l'esdeveniment, tal com apareix als enregistraments i a la configuració.
+     */
+    public static final String NOM = "sapamercat.Sortida";
+
+    @Label("Mida")
+    @DataAmount(DataAmount.BYTES)
+    int bytes;
+
+    @Label("Línies del carret")
+    int liniesCarret;
+
+    /**
+     * Crea l'esdeveniment i en comença a mesurar la durada.
+     *
+     * @return L'esdeveniment iniciat.
+     */
+    public static SortidaEvent iniciar() {
+        SortidaEvent event = new SortidaEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Acaba de mesurar la durada i, si l'esdeveniment està activat i supera el llindar, l'enregistra.
+     *
+     * @param bytes El nombre de bytes escrits.
+     * @param liniesCarret El nombre de línies del carret.
+     */
+    public void acabar(int bytes, int liniesCarret) {
+        end();
+        if (shouldCommit()) {
+            this.bytes = bytes;
+            this.liniesCarret = liniesCarret;
+            commit();
+        }
+    }
+}
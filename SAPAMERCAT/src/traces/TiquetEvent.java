@@ -0,0 +1,70 @@
+package traces;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Esdeveniment de JFR que cobreix la generació completa d'un tiquet: càlcul de preus, promocions, renderització i
+ * escriptura a la sortida.
+ * Conté la mida del carret i els imports del tiquet, de manera que els tiquets lents es poden relacionar amb els
+ * carrets grans o amb les promocions aplicades.
+ *
+ * @author Joan Miralles Carmona
+ */
+@Name(TiquetEvent.NOM)
+@Label("Tiquet")
+@Category({"SAPAMERCAT", "Caixa"})
+@Description("Generació d'un tiquet, des del càlcul de preus fins a l'escriptura a la sortida.")
+@StackTrace(false)
+public final class TiquetEvent extends Event {
+    /**
+     * Nom de l'esdeveniment, tal com apareix als enregistraments i a la configuració.
+     */
+    public static final String NOM = "sapamercat.Tiquet";
+
+    @Label("Línies del carret")
+    int linies;
+
+    @Label("Unitats")
+    long unitats;
+
+    @Label("Descomptes")
+    int descomptes;
+
+    @Label("Total (cèntims)")
+    long total;
+
+    /**
+     * Crea l'esdeveniment i en comença a mesurar la durada.
+     *
+     * @return L'esdeveniment iniciat.
+     */
+    public static TiquetEvent iniciar() {
+        TiquetEvent event = new TiquetEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Acaba de mesurar la durada i, si l'esdeveniment està activat i supera el llindar, l'enregistra.
+     *
+     * @param linies El nombre de línies del carret.
+     * @param unitats El nombre total d'unitats del tiquet.
+     * @param descomptes El nombre de descomptes aplicats.
+     * @param total El total del tiquet en cèntims.
+     */
+    public void acabar(int linies, long unitats, int descomptes, long total) {
+        end();
+        if (shouldCommit()) {
+            this.linies = linies;
+            this.unitats = unitats;
+            this.descomptes = descomptes;
+            this.total = total;
+            commit();
+        }
+    }
+}
@@ -3,10 +3,14 @@ package utils;
 import model.Product;
 import exceptions.LimitProductesException;
 
+import java.util.Collection;
+
 /**
  * Interfície que defineix la capacitat d'afegir productes.
  * Aquesta interfície és implementada per classes que necessiten gestionar col·leccions de productes, com ara el carret de compra.
  * Proporciona un mètode estàndard per afegir productes i gestionar les excepcions relacionades amb els límits de productes permesos.
+ * A més del mètode per afegir una unitat, permet afegir diverses unitats d'un producte o un lot de productes d'una sola vegada,
+ * de manera que les implementacions poden comprovar els límits un sol cop per operació.
  * 
  * @author Joan Miralles Carmona
  */
@@ -18,5 +22,30 @@ public interface Addable {
      * @param producte El producte a afegir.
      * @throws LimitProductesException Si s'intenta afegir més productes dels permesos o si s'excedeix el límit màxim de la col·lecció.
      */
-    void afegirProducte(Product producte) throws LimitProductesException;
+    default void afegirProducte(Product producte) throws LimitProductesException {
+        afegirProducte(producte, 1);
+    }
+
+    /**
+     * Afegeix diverses unitats d'un producte a la col·lecció.
+     *
+     * @param producte El producte a afegir.
+     * @param quantitat El nombre d'unitats a afegir. Ha de ser positiu.
+     * @throws LimitProductesException Si s'intenta afegir més productes dels permesos o si s'excedeix el límit màxim de la col·lecció.
+     * @throws IllegalArgumentException Si la quantitat no és positiva.
+     */
+    void afegirProducte(Product producte, int quantitat) throws LimitProductesException;
+
+    /**
+     * Afegeix un lot de productes a la col·lecció, en l'ordre del lot.
+     * Per defecte s'afegeixen un a un; les implementacions poden comprovar els límits un sol cop per a tot el lot.
+     *
+     * @param productes Els productes a afegir. Un producte repetit afegeix una unitat per cada aparició.
+     * @throws LimitProductesException Si s'intenta afegir més productes dels permesos o si s'excedeix el límit màxim de la col·lecció.
+     */
+    default void afegirProductes(Collection<? extends Product> productes) throws LimitProductesException {
+        for (Product producte : productes) {
+            afegirProducte(producte);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package utils;
+
+/**
+ * Classe d'utilitat per treballar amb imports de diners en coma fixa.
+ * Tots els imports del sistema es guarden com a long en cèntims d'euro, de manera que:
+ * - Les sumes i els productes per quantitats són operacions enteres exactes, sense errors d'arrodoniment acumulats.
+ * - Els totals són idèntics bit a bit en qualsevol màquina.
+ * - Formatar un import no crea cap BigDecimal ni analitza cap cadena de format.
+ *
+ * L'única regla d'arrodoniment és la de dividir(): al cèntim més proper, i els mitjos cèntims cap amunt (en valor absolut).
+ * Les fórmules de preu fan totes les multiplicacions en enters i arrodoneixen una sola vegada, al final.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class Diners {
+    /**
+     * Nombre de cèntims que té un euro.
+     */
+    public static final long CENTIMS_PER_EURO = 100;
+
+    private Diners() {
+    }
+
+    /**
+     * Converteix un import escrit en euros al nombre de cèntims, sense passar per cap double.
+     * Admet signe, part entera i decimals separats per punt o coma (per exemple "12", "12.5" o "-0,99").
+     * Si hi ha més de dos decimals, l'import s'arrodoneix al cèntim més proper, i els mitjos cèntims cap amunt.
+     *
+     * @param text L'import en euros.
+     * @return L'import en cèntims.
+     * @throws NumberFormatException Si el text no és un import vàlid o no cap en un long.
+     */
+    public static long parse(String text) {
+        int longitud = text.length();
+        int i = 0;
+        boolean negatiu = false;
+        if (longitud > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negatiu = text.charAt(0) == '-';
+            i++;
+        }
+
+        long euros = 0;
+        int digitsEnters = 0;
+        try {
+            for (; i < longitud && esDigit(text.charAt(i)); i++, digitsEnters++) {
+                euros = Math.addExact(Math.multiplyExact(euros, 10), text.charAt(i) - '0');
+            }
+
+            long centims = 0;
+            int digitsDecimals = 0;
+            if (i < longitud && (text.charAt(i) == '.' || text.charAt(i) == ',')) {
+                for (i++; i < longitud && esDigit(text.charAt(i)); i++, digitsDecimals++) {
+                    int digit = text.charAt(i) - '0';
+                    if (digitsDecimals < 2) {
+                        centims = centims * 10 + digit;
+                    } else if (digitsDecimals == 2 && digit >= 5) {
+                        centims++;
+                    }
+                }
+                for (int d = digitsDecimals; d < 2; d++) {
+                    centims *= 10;
+                }
+            }
+
+            if (i != longitud || digitsEnters + digitsDecimals == 0) {
+                throw new NumberFormatException("Import no vàlid: \"" + text + "\"");
+            }
+            long total = Math.addExact(Math.multiplyExact(euros, CENTIMS_PER_EURO), centims);
+            return negatiu ? -total : total;
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Import massa gran: \"" + text + "\"");
+        }
+    }
+
+    /**
+     * Divideix un import en cèntims i l'arrodoneix al cèntim més proper; els mitjos cèntims s'arrodoneixen cap amunt en valor absolut.
+     *
+     * @param numerador L'import a dividir, ja multiplicat pels factors enters de la fórmula.
+     * @param denominador El divisor. Ha de ser positiu.
+     * @return El quocient arrodonit, en cèntims.
+     */
+    public static long dividir(long numerador, long denominador) {
+        long quocient = numerador / denominador;
+        long residu = numerador % denominador;
+        if (Math.abs(residu) * 2 >= denominador) {
+            quocient += numerador < 0 ? -1 : 1;
+        }
+        return quocient;
+    }
+
+    /**
+     * Afegeix un import en cèntims amb dos decimals, com ara "12.05" o "-0.50".
+     *
+     * @param desti On s'afegeix l'import.
+     * @param centims L'import en cèntims.
+     */
+    public static void afegir(StringBuilder desti, long centims) {
+        if (centims < 0) {
+            desti.append('-');
+        }
+        long euros = Math.abs(centims / CENTIMS_PER_EURO);
+        long decimals = Math.abs(centims % CENTIMS_PER_EURO);
+        desti.append(euros);
+        desti.append('.');
+        if (decimals < 10) {
+            desti.append('0');
+        }
+        desti.append(decimals);
+    }
+
+    /**
+     * Retorna un import en cèntims formatat amb dos decimals.
+     *
+     * @param centims L'import en cèntims.
+     * @return L'import formatat.
+     */
+    public static String format(long centims) {
+        StringBuilder text = new StringBuilder(24);
+        afegir(text, centims);
+        return text.toString();
+    }
+
+    /**
+     * Indica si un caràcter és un dígit decimal ASCII.
+     *
+     * @param c El caràcter.
+     * @return true si és un dígit entre 0 i 9.
+     */
+    private static boolean esDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,208 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Mapa amb claus primitives de tipus long i adreçament obert.
+ * Aquesta classe evita l'encapsulament de les claus en objectes Long i permet:
+ * - Consultar, afegir i eliminar entrades en temps constant de mitjana.
+ * - Reutilitzar la mateixa estructura sense crear objectes per a cada consulta.
+ * 
+ * No s'admeten valors null, ja que un valor null indica una posició lliure.
+ * Aquesta classe no és segura per a l'accés concurrent.
+ * 
+ * @author Joan Miralles Carmona
+ * @param <V> El tipus dels valors del mapa.
+ */
+public class MapaLong<V> {
+    private static final int CAPACITAT_MINIMA = 16;
+
+    private long[] claus;
+    private Object[] valors;
+    private int mida;
+    private int llindar;
+
+    /**
+     * Construeix un nou mapa buit amb la capacitat mínima.
+     */
+    public MapaLong() {
+        this(CAPACITAT_MINIMA);
+    }
+
+    /**
+     * Construeix un nou mapa buit preparat per contenir el nombre d'entrades indicat sense redimensionar-se.
+     *
+     * @param capacitatEsperada El nombre d'entrades esperat.
+     */
+    public MapaLong(int capacitatEsperada) {
+        int capacitat = CAPACITAT_MINIMA;
+        while (capacitat * 3 / 4 < capacitatEsperada) {
+            capacitat <<= 1;
+        }
+        reservar(capacitat);
+    }
+
+    /**
+     * Retorna el valor associat a una clau.
+     *
+     * @param clau La clau a cercar.
+     * @return El valor associat, o null si la clau no existeix.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long clau) {
+        int mascara = claus.length - 1;
+        for (int i = posicio(clau, mascara); valors[i] != null; i = (i + 1) & mascara) {
+            if (claus[i] == clau) {
+                return (V) valors[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indica si el mapa conté una clau.
+     *
+     * @param clau La clau a cercar.
+     * @return true si la clau existeix al mapa.
+     */
+    public boolean containsKey(long clau) {
+        return get(clau) != null;
+    }
+
+    /**
+     * Associa un valor a una clau, substituint el valor anterior si n'hi havia.
+     *
+     * @param clau La clau.
+     * @param valor El valor a associar (no pot ser null).
+     * @return El valor anterior associat a la clau, o null si no n'hi havia.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long clau, V valor) {
+        if (valor == null) {
+            throw new IllegalArgumentException("Error: El mapa no admet valors null.");
+        }
+
+        int mascara = claus.length - 1;
+        int i = posicio(clau, mascara);
+        for (; valors[i] != null; i = (i + 1) & mascara) {
+            if (claus[i] == clau) {
+                V anterior = (V) valors[i];
+                valors[i] = valor;
+                return anterior;
+            }
+        }
+
+        claus[i] = clau;
+        valors[i] = valor;
+        if (++mida > llindar) {
+            redimensionar();
+        }
+        return null;
+    }
+
+    /**
+     * Elimina l'entrada associada a una clau.
+     * Les entrades posteriors de la mateixa seqüència de sondeig es desplacen per no deixar forats.
+     *
+     * @param clau La clau a eliminar.
+     * @return El valor que estava associat a la clau, o null si no existia.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long clau) {
+        int mascara = claus.length - 1;
+        int i = posicio(clau, mascara);
+        while (valors[i] != null && claus[i] != clau) {
+            i = (i + 1) & mascara;
+        }
+        if (valors[i] == null) {
+            return null;
+        }
+
+        V anterior = (V) valors[i];
+        int buit = i;
+        for (int j = (i + 1) & mascara; valors[j] != null; j = (j + 1) & mascara) {
+            int desitjada = posicio(claus[j], mascara);
+            boolean moure = buit <= j ? (desitjada <= buit || desitjada > j) : (desitjada <= buit && desitjada > j);
+            if (moure) {
+                claus[buit] = claus[j];
+                valors[buit] = valors[j];
+                buit = j;
+            }
+        }
+        valors[buit] = null;
+        mida--;
+        return anterior;
+    }
+
+    /**
+     * Retorna el nombre d'entrades del mapa.
+     *
+     * @return El nombre d'entrades.
+     */
+    public int size() {
+        return mida;
+    }
+
+    /**
+     * Indica si el mapa està buit.
+     *
+     * @return true si el mapa no té cap entrada.
+     */
+    public boolean isEmpty() {
+        return mida == 0;
+    }
+
+    /**
+     * Elimina totes les entrades del mapa conservant la capacitat reservada.
+     */
+    public void clear() {
+        if (mida > 0) {
+            Arrays.fill(valors, null);
+            mida = 0;
+        }
+    }
+
+    /**
+     * Calcula la posició inicial d'una clau dins la taula.
+     *
+     * @param clau La clau.
+     * @param mascara La màscara de la mida de la taula.
+     * @return La posició inicial de sondeig.
+     */
+    private static int posicio(long clau, int mascara) {
+        long h = clau * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+
+    /**
+     * Reserva una taula buida de la capacitat indicada.
+     *
+     * @param capacitat La capacitat, que ha de ser una potència de dos.
+     */
+    private void reservar(int capacitat) {
+        claus = new long[capacitat];
+        valors = new Object[capacitat];
+        llindar = capacitat * 3 / 4;
+    }
+
+    /**
+     * Duplica la capacitat de la taula i hi torna a inserir totes les entrades.
+     */
+    private void redimensionar() {
+        long[] clausAntigues = claus;
+        Object[] valorsAntics = valors;
+        reservar(claus.length << 1);
+
+        int mascara = claus.length - 1;
+        for (int i = 0; i < clausAntigues.length; i++) {
+            if (valorsAntics[i] != null) {
+                int j = posicio(clausAntigues[i], mascara);
+                while (valors[j] != null) {
+                    j = (j + 1) & mascara;
+                }
+                claus[j] = clausAntigues[i];
+                valors[j] = valorsAntics[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package utils;
+
+/**
+ * Defineix els possibles resultats de les validacions del sistema SAPAMERCAT.
+ * Aquest enumerat permet validar dades sense llançar excepcions ni crear objectes:
+ * - OK indica que la dada és vàlida.
+ * - La resta de valors identifiquen el motiu concret de l'error i porten associat el missatge que es mostra a l'usuari.
+ * Els mètodes de validació que llancen excepcions utilitzen aquests mateixos missatges.
+ * 
+ * @author Joan Miralles Carmona
+ */
+public enum ResultatValidacio {
+    /**
+     * La dada és vàlida.
+     */
+    OK(null),
+
+    /**
+     * El preu és negatiu.
+     */
+    PREU_NEGATIU("Error: El preu no pot ser negatiu."),
+
+    /**
+     * El preu és zero.
+     */
+    PREU_ZERO("Error: El preu no pot ser gratuït (0)."),
+
+    /**
+     * El codi de barres té més de 13 caràcters.
+     */
+    CODI_MASSA_LLARG("Error: El codi de barres no pot tenir més de 13 caràcters."),
+
+    /**
+     * El codi de barres conté caràcters que no són números o està buit.
+     */
+    CODI_NO_NUMERIC("Error: El codi de barres només pot contenir números."),
+
+    /**
+     * La composició tèxtil té més de 100 caràcters.
+     */
+    COMPOSICIO_MASSA_LLARGA("Error: La composició tèxtil no pot tenir més de 100 caràcters."),
+
+    /**
+     * La composició tèxtil no és cap de les vàlides.
+     */
+    COMPOSICIO_NO_VALIDA("Error: La composició tèxtil no és vàlida. Opcions vàlides: cotó, llana, seda"),
+
+    /**
+     * La data de caducitat és anterior a la data actual.
+     */
+    DATA_CADUCADA("Error: La data de caducitat no pot ser anterior a avui."),
+
+    /**
+     * El nom conté caràcters que no són lletres o espais.
+     */
+    NOM_NO_VALID("Error: El nom només pot contenir lletres.");
+
+    private final String missatge;
+
+    /**
+     * Construeix un resultat de validació amb el missatge d'error associat.
+     *
+     * @param missatge El missatge d'error, o null si el resultat és vàlid.
+     */
+    ResultatValidacio(String missatge) {
+        this.missatge = missatge;
+    }
+
+    /**
+     * Indica si el resultat correspon a una dada vàlida.
+     *
+     * @return true si el resultat és OK.
+     */
+    public boolean esValid() {
+        return this == OK;
+    }
+
+    /**
+     * Retorna el missatge d'error associat al resultat.
+     *
+     * @return El missatge d'error, o null si el resultat és vàlid.
+     */
+    public String getMissatge() {
+        return missatge;
+    }
+}
@@ -0,0 +1,221 @@
+package utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Roda de temporitzadors amb dispersió (hashed timing wheel) per executar tasques programades amb un retard.
+ * - El temps es divideix en tics d'una durada fixa, i la roda té un nombre d'intervals que és potència de dos.
+ * - Cada temporitzador es penja a l'interval del tic en què venç, i es guarda quantes voltes de la roda falten perquè
+ *   venci: programar i cancel·lar un temporitzador és de cost constant, sigui quin sigui el retard.
+ * - Un sol fil avança la roda un interval per tic, dormint fins al tic següent, i executa els temporitzadors vençuts.
+ * Les tasques no s'executen mai abans del seu moment, però poden executar-se fins a un tic després. S'executen al fil
+ * de la roda, de manera que han de ser curtes: una tasca llarga ha d'iniciar el seu propi fil.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class RodaTemporitzadors implements AutoCloseable {
+    private final long duradaTic;
+    private final Temporitzador[] intervals;
+    private final int mascara;
+    private final Queue<Temporitzador> nous;
+    private final long inici;
+    private final Thread fil;
+    private volatile boolean tancada;
+
+    /**
+     * Construeix una roda i n'arrenca el fil.
+     *
+     * @param duradaTic La durada d'un tic, que és la resolució dels temporitzadors.
+     * @param unitat La unitat de la durada.
+     * @param nombreIntervals El nombre d'intervals de la roda, que s'arrodoneix a la potència de dos superior.
+     * @throws IllegalArgumentException Si la durada o el nombre d'intervals no són positius.
+     */
+    public RodaTemporitzadors(long duradaTic, TimeUnit unitat, int nombreIntervals) {
+        if (duradaTic <= 0 || nombreIntervals <= 0 || nombreIntervals > 1 << 30) {
+            throw new IllegalArgumentException("Error: La roda de temporitzadors no és vàlida.");
+        }
+        int mida = Integer.highestOneBit(nombreIntervals - 1) << 1;
+        this.duradaTic = unitat.toNanos(duradaTic);
+        this.intervals = new Temporitzador[Math.max(mida, 1)];
+        this.mascara = intervals.length - 1;
+        this.nous = new ConcurrentLinkedQueue<>();
+        this.inici = System.nanoTime();
+        this.fil = Thread.ofPlatform().name("roda-temporitzadors").daemon().start(this::girar);
+    }
+
+    /**
+     * Programa una tasca perquè s'executi al fil de la roda un cop passat el retard indicat.
+     *
+     * @param tasca La tasca a executar.
+     * @param retard El retard; si no és positiu, la tasca s'executa al tic següent.
+     * @param unitat La unitat del retard.
+     * @return El temporitzador, que permet cancel·lar la tasca.
+     * @throws IllegalStateException Si la roda està tancada.
+     */
+    public Temporitzador programar(Runnable tasca, long retard, TimeUnit unitat) {
+        if (tancada) {
+            throw new IllegalStateException("Error: La roda de temporitzadors està tancada.");
+        }
+        long venciment = System.nanoTime() - inici + Math.max(unitat.toNanos(retard), 0);
+        Temporitzador temporitzador = new Temporitzador(tasca, venciment);
+        nous.add(temporitzador);
+        return temporitzador;
+    }
+
+    /**
+     * Atura el fil de la roda. Les tasques pendents ja no s'executen.
+     */
+    @Override
+    public void close() {
+        tancada = true;
+        LockSupport.unpark(fil);
+        try {
+            fil.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Bucle del fil de la roda: a cada tic, penja els temporitzadors nous i executa els de l'interval del tic.
+     */
+    private void girar() {
+        long tic = 0;
+        while (!tancada) {
+            esperar(tic + 1);
+            if (tancada) {
+                return;
+            }
+            penjarNous(tic);
+            executarInterval(tic);
+            tic++;
+        }
+    }
+
+    /**
+     * Dorm fins al final d'un tic.
+     *
+     * @param tic El nombre de tics des de l'inici de la roda.
+     */
+    private void esperar(long tic) {
+        long limit = inici + tic * duradaTic;
+        long resta;
+        while (!tancada && (resta = limit - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, resta);
+        }
+    }
+
+    /**
+     * Penja a la roda els temporitzadors programats des del tic anterior.
+     * Els que ja han vençut es pengen a l'interval del tic actual.
+     *
+     * @param tic El tic actual.
+     */
+    private void penjarNous(long tic) {
+        Temporitzador temporitzador;
+        while ((temporitzador = nous.poll()) != null) {
+            if (temporitzador.cancelat()) {
+                continue;
+            }
+            long ticVenciment = Math.max((temporitzador.venciment + duradaTic - 1) / duradaTic - 1, tic);
+            temporitzador.voltes = (ticVenciment - tic) / intervals.length;
+            int posicio = (int) (ticVenciment & mascara);
+            temporitzador.seguent = intervals[posicio];
+            intervals[posicio] = temporitzador;
+        }
+    }
+
+    /**
+     * Recorre l'interval d'un tic: executa els temporitzadors que vencen en aquesta volta, treu els cancel·lats i
+     * descompta una volta a la resta.
+     *
+     * @param tic El tic actual.
+     */
+    private void executarInterval(long tic) {
+        int posicio = (int) (tic & mascara);
+        Temporitzador anterior = null;
+        Temporitzador temporitzador = intervals[posicio];
+        while (temporitzador != null) {
+            Temporitzador seguent = temporitzador.seguent;
+            boolean treure = temporitzador.cancelat() || temporitzador.voltes == 0;
+            if (treure) {
+                if (anterior == null) {
+                    intervals[posicio] = seguent;
+                } else {
+                    anterior.seguent = seguent;
+                }
+                temporitzador.seguent = null;
+                temporitzador.executar();
+            } else {
+                temporitzador.voltes--;
+                anterior = temporitzador;
+            }
+            temporitzador = seguent;
+        }
+    }
+
+    /**
+     * Tasca programada a la roda.
+     * Cada temporitzador s'enllaça a la llista del seu interval, de manera que penjar-lo i treure'l no crea cap node.
+     */
+    public static final class Temporitzador {
+        private static final int PENDENT = 0;
+        private static final int EXECUTAT = 1;
+        private static final int CANCELAT = 2;
+
+        private final Runnable tasca;
+        private final long venciment;
+        private final AtomicInteger estat;
+        private long voltes;
+        private Temporitzador seguent;
+
+        /**
+         * Construeix un temporitzador pendent.
+         *
+         * @param tasca La tasca a executar.
+         * @param venciment El moment de venciment en nanosegons des de l'inici de la roda.
+         */
+        private Temporitzador(Runnable tasca, long venciment) {
+            this.tasca = tasca;
+            this.venciment = venciment;
+            this.estat = new AtomicInteger(PENDENT);
+        }
+
+        /**
+         * Cancel·la la tasca si encara no s'ha executat. El temporitzador es treu de la roda quan s'arriba al seu
+         * interval.
+         *
+         * @return true si s'ha cancel·lat, o false si ja s'havia executat o cancel·lat.
+         */
+        public boolean cancelar() {
+            return estat.compareAndSet(PENDENT, CANCELAT);
+        }
+
+        /**
+         * Indica si el temporitzador s'ha cancel·lat.
+         *
+         * @return true si s'ha cancel·lat.
+         */
+        private boolean cancelat() {
+            return estat.get() == CANCELAT;
+        }
+
+        /**
+         * Executa la tasca si no s'ha cancel·lat. Els errors de la tasca s'informen i no aturen la roda.
+         */
+        private void executar() {
+            if (!estat.compareAndSet(PENDENT, EXECUTAT)) {
+                return;
+            }
+            try {
+                tasca.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error: Una tasca programada ha fallat: " + e.getMessage());
+            }
+        }
+    }
+}
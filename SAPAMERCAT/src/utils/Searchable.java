@@ -1,5 +1,7 @@
 package utils;
 
+import model.CodiBarres;
+
 /**
  * Interfície que defineix la capacitat de cercar i recuperar elements.
  * Aquesta interfície genèrica és implementada per classes que necessiten proporcionar funcionalitat de cerca, com ara el carret de compra.
@@ -19,5 +21,28 @@ public interface Searchable<T> {
      * @param codiBarres El codi de barres de l'element a cercar.
      * @return L'element trobat del tipus T, o null si no es troba cap element amb aquest codi.
      */
-    T buscar(String codiBarres);
-}
\ No newline at end of file
+    T buscar(CodiBarres codiBarres);
+
+    /**
+     * Cerca un element per la clau empaquetada del seu codi de barres.
+     * Les implementacions indexades per la clau ho poden sobreescriure per no crear cap objecte CodiBarres.
+     *
+     * @param clau La clau del codi de barres, obtinguda amb CodiBarres.clau().
+     * @return L'element trobat del tipus T, o null si no es troba cap element amb aquest codi.
+     */
+    default T buscar(long clau) {
+        return buscar(CodiBarres.deClau(clau));
+    }
+
+    /**
+     * Cerca un element pel seu codi de barres en format text.
+     * Si el text no és un codi de barres vàlid, cap element hi pot coincidir i es retorna null.
+     * 
+     * @param codiBarres El codi de barres de l'element a cercar en format text.
+     * @return L'element trobat del tipus T, o null si no es troba cap element amb aquest codi.
+     */
+    default T buscar(String codiBarres) {
+        long clau = CodiBarres.clauDe(codiBarres);
+        return clau < 0 ? null : buscar(clau);
+    }
+}
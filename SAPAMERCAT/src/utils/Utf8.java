@@ -0,0 +1,55 @@
+package utils;
+
+/**
+ * Classe d'utilitat per codificar text en UTF-8 dins buffers reutilitzables.
+ * A diferència de String.getBytes(), la codificació es fa directament des de qualsevol CharSequence (per exemple, un
+ * StringBuilder reutilitzat) cap a un array de bytes existent, sense crear cap objecte intermedi.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class Utf8 {
+    /**
+     * Nombre màxim de bytes que pot ocupar un caràcter del text en UTF-8.
+     * Els caràcters fora del pla bàsic ocupen 4 bytes, però són dos caràcters (un parell subrogat) del text.
+     */
+    public static final int MAX_BYTES_PER_CARACTER = 3;
+
+    private Utf8() {
+    }
+
+    /**
+     * Codifica un text en UTF-8 al principi d'un array de bytes.
+     * Els subrogats desaparellats es codifiquen com a '?'.
+     *
+     * @param text El text a codificar.
+     * @param desti On s'escriuen els bytes. Ha de tenir almenys MAX_BYTES_PER_CARACTER bytes per caràcter del text.
+     * @return El nombre de bytes escrits.
+     */
+    public static int codificar(CharSequence text, byte[] desti) {
+        int longitud = text.length();
+        int pos = 0;
+        for (int i = 0; i < longitud; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                desti[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                desti[pos++] = (byte) (0xC0 | (c >> 6));
+                desti[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < longitud
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codi = Character.toCodePoint(c, text.charAt(++i));
+                desti[pos++] = (byte) (0xF0 | (codi >> 18));
+                desti[pos++] = (byte) (0x80 | ((codi >> 12) & 0x3F));
+                desti[pos++] = (byte) (0x80 | ((codi >> 6) & 0x3F));
+                desti[pos++] = (byte) (0x80 | (codi & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                desti[pos++] = '?';
+            } else {
+                desti[pos++] = (byte) (0xE0 | (c >> 12));
+                desti[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                desti[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+}
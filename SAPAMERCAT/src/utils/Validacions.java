@@ -3,10 +3,13 @@ package utils;
 import exceptions.NegatiuException;
 import exceptions.LimitCaracteresException;
 import exceptions.DataCaducitatException;
+import model.Composicio;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Classe d'utilitat que proporciona mètodes de validació per als diferents atributs dels productes.
@@ -17,29 +20,129 @@ import java.util.List;
  * - Dates de caducitat (no pot ser anterior a la data actual).
  * - Noms (només lletres).
  * 
+ * Cada validació té dues versions:
+ * - comprovarX(): retorna un ResultatValidacio sense llançar excepcions ni crear objectes.
+ * - validarX(): llança l'excepció corresponent si el resultat no és vàlid.
+ * 
  * @author Joan Miralles Carmona
  */
 public class Validacions {
 
     /**
-     * Llista de composicions tèxtils vàlides per als productes tèxtils.
+     * Llista dels noms de les composicions tèxtils vàlides per als productes tèxtils.
      * Actualment inclou: cotó, llana i seda.
      */
-    private static final List<String> VALID_COMPOSITIONS = Arrays.asList(
-            "cotó", "llana", "seda");
+    private static final List<String> VALID_COMPOSITIONS = Collections.unmodifiableList(
+            Arrays.stream(Composicio.values()).map(Composicio::getNom).collect(Collectors.toList()));
 
     /**
-     * Valida que el preu no sigui negatiu ni zero.
+     * Comprova que el preu no sigui negatiu ni zero.
      *
-     * @param preu El preu a validar.
-     * @throws NegatiuException Si el preu és negatiu o zero.
+     * @param preu El preu a comprovar, en cèntims.
+     * @return OK si el preu és vàlid, o el motiu de l'error.
      */
-    public static void validarPreu(double preu) throws NegatiuException {
+    public static ResultatValidacio comprovarPreu(long preu) {
         if (preu < 0) {
-            throw new NegatiuException("Error: El preu no pot ser negatiu.");
+            return ResultatValidacio.PREU_NEGATIU;
         }
         if (preu == 0) {
-            throw new NegatiuException("Error: El preu no pot ser gratuït (0).");
+            return ResultatValidacio.PREU_ZERO;
+        }
+        return ResultatValidacio.OK;
+    }
+
+    /**
+     * Comprova que el codi de barres tingui com a màxim 13 caràcters i només contingui números.
+     * La comprovació es fa caràcter a caràcter, sense expressions regulars.
+     *
+     * @param codiBarres El codi de barres a comprovar.
+     * @return OK si el codi de barres és vàlid, o el motiu de l'error.
+     */
+    public static ResultatValidacio comprovarCodiBarres(String codiBarres) {
+        int longitud = codiBarres.length();
+        if (longitud > 13) {
+            return ResultatValidacio.CODI_MASSA_LLARG;
+        }
+        if (longitud == 0) {
+            return ResultatValidacio.CODI_NO_NUMERIC;
+        }
+        for (int i = 0; i < longitud; i++) {
+            char c = codiBarres.charAt(i);
+            if (c < '0' || c > '9') {
+                return ResultatValidacio.CODI_NO_NUMERIC;
+            }
+        }
+        return ResultatValidacio.OK;
+    }
+
+    /**
+     * Comprova que la composició tèxtil no superi els 100 caràcters i sigui una de les de l'enumerat Composicio.
+     *
+     * @param composicio La composició tèxtil a comprovar.
+     * @return OK si la composició és vàlida, o el motiu de l'error.
+     */
+    public static ResultatValidacio comprovarComposicio(String composicio) {
+        if (composicio.length() > 100) {
+            return ResultatValidacio.COMPOSICIO_MASSA_LLARGA;
+        }
+        return Composicio.deNom(composicio) != null ? ResultatValidacio.OK : ResultatValidacio.COMPOSICIO_NO_VALIDA;
+    }
+
+    /**
+     * Comprova que la data de caducitat no sigui anterior al dia indicat.
+     * El dia el dona qui crida, a partir del seu rellotge o del seu context de preus, de manera que la validació no
+     * depèn mai del rellotge del sistema.
+     *
+     * @param dataCaducitat La data de caducitat a comprovar.
+     * @param diaAvui El dia actual en dies des de l'època.
+     * @return OK si la data és vàlida, o el motiu de l'error.
+     */
+    public static ResultatValidacio comprovarDataCaducitat(LocalDate dataCaducitat, long diaAvui) {
+        return dataCaducitat.toEpochDay() < diaAvui ? ResultatValidacio.DATA_CADUCADA : ResultatValidacio.OK;
+    }
+
+    /**
+     * Comprova que el nom només contingui lletres (incloses les accentuades) i espais.
+     * La comprovació es fa caràcter a caràcter, sense expressions regulars.
+     *
+     * @param nom El nom a comprovar.
+     * @return OK si el nom és vàlid, o el motiu de l'error.
+     */
+    public static ResultatValidacio comprovarNom(String nom) {
+        int longitud = nom.length();
+        if (longitud == 0) {
+            return ResultatValidacio.NOM_NO_VALID;
+        }
+        for (int i = 0; i < longitud; i++) {
+            if (!esCaracterNom(nom.charAt(i))) {
+                return ResultatValidacio.NOM_NO_VALID;
+            }
+        }
+        return ResultatValidacio.OK;
+    }
+
+    /**
+     * Indica si un caràcter es pot utilitzar en un nom.
+     * Accepta les lletres a-z i A-Z, els caràcters entre À i ÿ i els espais en blanc.
+     *
+     * @param c El caràcter a comprovar.
+     * @return true si el caràcter és vàlid.
+     */
+    private static boolean esCaracterNom(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '\u00C0' && c <= '\u00FF')
+                || c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Valida que el preu no sigui negatiu ni zero.
+     *
+     * @param preu El preu a validar, en cèntims.
+     * @throws NegatiuException Si el preu és negatiu o zero.
+     */
+    public static void validarPreu(long preu) throws NegatiuException {
+        ResultatValidacio resultat = comprovarPreu(preu);
+        if (!resultat.esValid()) {
+            throw new NegatiuException(resultat.getMissatge());
         }
     }
 
@@ -52,11 +155,9 @@ public class Validacions {
      * @throws LimitCaracteresException Si el codi de barres no compleix els requisits.
      */
     public static void validarCodiBarres(String codiBarres) throws LimitCaracteresException {
-        if (codiBarres.length() > 13) {
-            throw new LimitCaracteresException("Error: El codi de barres no pot tenir més de 13 caràcters.");
-        }
-        if (!codiBarres.matches("[0-9]+")) {
-            throw new LimitCaracteresException("Error: El codi de barres només pot contenir números.");
+        ResultatValidacio resultat = comprovarCodiBarres(codiBarres);
+        if (!resultat.esValid()) {
+            throw new LimitCaracteresException(resultat.getMissatge());
         }
     }
 
@@ -68,29 +169,23 @@ public class Validacions {
      * @throws LimitCaracteresException Si la composició no és vàlida o supera els 100 caràcters.
      */
     public static void validarComposicio(String composicio) throws LimitCaracteresException {
-        if (composicio.length() > 100) {
-            throw new LimitCaracteresException("Error: La composició tèxtil no pot tenir més de 100 caràcters.");
-        }
-
-
-        if (!VALID_COMPOSITIONS.stream().anyMatch(comp -> comp.equalsIgnoreCase(composicio))) {
-            StringBuilder errorMessage = new StringBuilder();
-            errorMessage.append("Error: La composició tèxtil no és vàlida. ");
-            errorMessage.append("Opcions vàlides: ");
-            errorMessage.append(String.join(", ", VALID_COMPOSITIONS));
-            throw new LimitCaracteresException(errorMessage.toString());
+        ResultatValidacio resultat = comprovarComposicio(composicio);
+        if (!resultat.esValid()) {
+            throw new LimitCaracteresException(resultat.getMissatge());
         }
     }
 
     /**
-     * Valida que la data de caducitat no sigui anterior a la data actual.
+     * Valida que la data de caducitat no sigui anterior al dia indicat.
      *
      * @param dataCaducitat La data de caducitat a validar.
-     * @throws DataCaducitatException Si la data de caducitat és anterior a la data actual.
+     * @param diaAvui El dia actual en dies des de l'època.
+     * @throws DataCaducitatException Si la data de caducitat és anterior al dia indicat.
      */
-    public static void validarDataCaducitat(LocalDate dataCaducitat) throws DataCaducitatException {
-        if (dataCaducitat.isBefore(LocalDate.now())) {
-            throw new DataCaducitatException("Error: La data de caducitat no pot ser anterior a avui.");
+    public static void validarDataCaducitat(LocalDate dataCaducitat, long diaAvui) throws DataCaducitatException {
+        ResultatValidacio resultat = comprovarDataCaducitat(dataCaducitat, diaAvui);
+        if (!resultat.esValid()) {
+            throw new DataCaducitatException(resultat.getMissatge());
         }
     }
 
@@ -101,8 +196,9 @@ public class Validacions {
      * @throws LimitCaracteresException Si el nom conté caràcters que no són lletres o espais.
      */
     public static void validarNom(String nom) throws LimitCaracteresException {
-        if (!nom.matches("[a-zA-ZÀ-ÿ\\s]+")) {
-            throw new LimitCaracteresException("Error: El nom només pot contenir lletres.");
+        ResultatValidacio resultat = comprovarNom(nom);
+        if (!resultat.esValid()) {
+            throw new LimitCaracteresException(resultat.getMissatge());
         }
     }
 
@@ -0,0 +1,116 @@
+package vendes;
+
+import model.CodiBarres;
+
+import java.time.Instant;
+
+/**
+ * Representa una anul·lació: unitats d'un producte tretes d'un carret abans de passar per caixa.
+ * Les anul·lacions es desen al registre d'anul·lacions perquè un supervisor les pugui revisar.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class Anulacio {
+    private final long numero;
+    private final long instant;
+    private final long idCarret;
+    private final CodiBarres codiBarres;
+    private final String nom;
+    private final int quantitat;
+    private final long preu;
+
+    /**
+     * Construeix una nova anul·lació.
+     *
+     * @param numero El número d'ordre de l'anul·lació al registre, començant per zero.
+     * @param instant L'instant de l'anul·lació en mil·lisegons des de l'època.
+     * @param idCarret L'identificador del carret o de la caixa.
+     * @param codiBarres El codi de barres del producte.
+     * @param nom El nom del producte.
+     * @param quantitat El nombre d'unitats tretes.
+     * @param preu El preu base del producte en cèntims.
+     */
+    Anulacio(long numero, long instant, long idCarret, CodiBarres codiBarres, String nom, int quantitat, long preu) {
+        this.numero = numero;
+        this.instant = instant;
+        this.idCarret = idCarret;
+        this.codiBarres = codiBarres;
+        this.nom = nom;
+        this.quantitat = quantitat;
+        this.preu = preu;
+    }
+
+    /**
+     * Retorna el número d'ordre de l'anul·lació al registre. Els números són consecutius, de manera que un salt indica
+     * anul·lacions que ja s'han descartat del registre.
+     *
+     * @return El número d'ordre, començant per zero.
+     */
+    public long getNumero() {
+        return numero;
+    }
+
+    /**
+     * Retorna l'instant de l'anul·lació.
+     *
+     * @return L'instant de l'anul·lació.
+     */
+    public Instant getInstant() {
+        return Instant.ofEpochMilli(instant);
+    }
+
+    /**
+     * Retorna l'identificador del carret on s'ha fet l'anul·lació.
+     *
+     * @return L'identificador del carret.
+     */
+    public long getIdCarret() {
+        return idCarret;
+    }
+
+    /**
+     * Retorna el codi de barres del producte tret.
+     *
+     * @return El codi de barres.
+     */
+    public CodiBarres getCodiBarres() {
+        return codiBarres;
+    }
+
+    /**
+     * Retorna el nom del producte tret.
+     *
+     * @return El nom del producte.
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * Retorna el nombre d'unitats tretes.
+     *
+     * @return El nombre d'unitats.
+     */
+    public int getQuantitat() {
+        return quantitat;
+    }
+
+    /**
+     * Retorna el preu base del producte tret.
+     *
+     * @return El preu base en cèntims.
+     */
+    public long getPreu() {
+        return preu;
+    }
+
+    /**
+     * Retorna una representació en format text de l'anul·lació.
+     *
+     * @return Representació de l'anul·lació en format text.
+     */
+    @Override
+    public String toString() {
+        return getInstant() + " carret " + idCarret + ": " + nom + " (" + codiBarres + ") - " + quantitat + " unitats";
+    }
+}
@@ -0,0 +1,157 @@
+package vendes;
+
+import model.ObservadorCarret;
+import model.Product;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registre de les anul·lacions de tots els carrets, perquè un supervisor pugui revisar quins productes s'han tret.
+ * Cada carret hi afegeix les seves anul·lacions a través d'un observador, i el registre és segur des de diversos fils:
+ * - Les anul·lacions es desen en un buffer circular de mida fixa, de manera que la memòria no creix encara que el
+ *   servidor estigui obert molts dies: quan és ple, cada anul·lació nova substitueix la més antiga.
+ * - Registrar una anul·lació no pren cap bloqueig: només reserva el seu número amb un increment atòmic i la desa a la
+ *   seva posició, de manera que les caixes no s'esperen entre elles.
+ * - Cada anul·lació porta el seu número, de manera que les lectures descarten les posicions que encara s'estan
+ *   escrivint o que ja s'han sobreescrit.
+ *
+ * @author Joan Miralles Carmona
+ */
+public class RegistreAnulacions {
+    /**
+     * Nombre d'anul·lacions que es conserven per defecte.
+     */
+    public static final int CAPACITAT_PER_DEFECTE = 1 << 16;
+
+    private final Clock rellotge;
+    private final AtomicReferenceArray<Anulacio> anulacions;
+    private final int mascara;
+    private final AtomicLong seguent;
+
+    /**
+     * Construeix un registre buit que data les anul·lacions amb el rellotge del sistema.
+     */
+    public RegistreAnulacions() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Construeix un registre buit que data les anul·lacions amb el rellotge indicat.
+     *
+     * @param rellotge El rellotge amb què es data cada anul·lació.
+     */
+    public RegistreAnulacions(Clock rellotge) {
+        this(rellotge, CAPACITAT_PER_DEFECTE);
+    }
+
+    /**
+     * Construeix un registre buit que conserva com a màxim les darreres anul·lacions indicades.
+     *
+     * @param rellotge El rellotge amb què es data cada anul·lació.
+     * @param capacitat El nombre d'anul·lacions que es conserven. S'arrodoneix a la potència de dos següent.
+     */
+    public RegistreAnulacions(Clock rellotge, int capacitat) {
+        if (capacitat <= 0 || capacitat > 1 << 30) {
+            throw new IllegalArgumentException("Error: La capacitat del registre d'anul·lacions no és vàlida.");
+        }
+        int mida = Integer.highestOneBit(capacitat);
+        if (mida < capacitat) {
+            mida <<= 1;
+        }
+        this.rellotge = rellotge;
+        this.anulacions = new AtomicReferenceArray<>(mida);
+        this.mascara = mida - 1;
+        this.seguent = new AtomicLong();
+    }
+
+    /**
+     * Retorna un observador que registra les anul·lacions d'un carret.
+     *
+     * @param idCarret L'identificador amb què es registren les anul·lacions del carret.
+     * @return L'observador a afegir al carret.
+     */
+    public ObservadorCarret observador(long idCarret) {
+        return new ObservadorCarret() {
+            @Override
+            public void producteTret(Product producte, int quantitat) {
+                registrar(idCarret, producte, quantitat);
+            }
+        };
+    }
+
+    /**
+     * Afegeix una anul·lació al registre, substituint la més antiga si és ple.
+     *
+     * @param idCarret L'identificador del carret.
+     * @param producte El producte tret.
+     * @param quantitat El nombre d'unitats tretes.
+     */
+    private void registrar(long idCarret, Product producte, int quantitat) {
+        long numero = seguent.getAndIncrement();
+        anulacions.set((int) (numero & mascara), new Anulacio(numero, rellotge.millis(), idCarret,
+                producte.getCodiBarres(), producte.getNom(), quantitat, producte.getPreu()));
+    }
+
+    /**
+     * Retorna les anul·lacions que conserva el registre, en l'ordre en què s'han registrat.
+     *
+     * @return Una còpia de les anul·lacions.
+     */
+    public List<Anulacio> getAnulacions() {
+        return seleccionar(true, 0);
+    }
+
+    /**
+     * Retorna les anul·lacions d'un carret que conserva el registre, en l'ordre en què s'han registrat.
+     *
+     * @param idCarret L'identificador del carret.
+     * @return Les anul·lacions del carret.
+     */
+    public List<Anulacio> getAnulacions(long idCarret) {
+        return seleccionar(false, idCarret);
+    }
+
+    /**
+     * Recorre les posicions del buffer des de l'anul·lació més antiga que es conserva fins a la darrera i retorna les
+     * que són completes i del carret indicat.
+     *
+     * @param totes Si s'han de retornar les anul·lacions de tots els carrets.
+     * @param idCarret L'identificador del carret, si no s'han de retornar totes.
+     * @return Les anul·lacions seleccionades.
+     */
+    private List<Anulacio> seleccionar(boolean totes, long idCarret) {
+        long fi = seguent.get();
+        long inici = Math.max(0, fi - anulacions.length());
+        List<Anulacio> resultat = new ArrayList<>();
+        for (long numero = inici; numero < fi; numero++) {
+            Anulacio anulacio = anulacions.get((int) (numero & mascara));
+            if (anulacio != null && anulacio.getNumero() == numero && (totes || anulacio.getIdCarret() == idCarret)) {
+                resultat.add(anulacio);
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Retorna el nombre d'anul·lacions registrades des que es va crear el registre, incloses les que ja s'han
+     * substituït per altres de més noves.
+     *
+     * @return El nombre d'anul·lacions.
+     */
+    public long getNombreAnulacions() {
+        return seguent.get();
+    }
+
+    /**
+     * Retorna el nombre màxim d'anul·lacions que conserva el registre.
+     *
+     * @return La capacitat del registre.
+     */
+    public int getCapacitat() {
+        return anulacions.length();
+    }
+}
@@ -0,0 +1,505 @@
+package vendes;
+
+import model.ObservadorCarret;
+import model.Product;
+import model.TipusProducte;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Registre en memòria de totes les línies dels tiquets cobrats, organitzat per columnes.
+ * Cada línia de tiquet es desa com una fila i cada camp en un array primitiu propi:
+ * - Clau del codi de barres, tipus de producte, quantitat, preu unitari en cèntims i instant del cobrament.
+ * - Els ingressos es sumen en cèntims enters, de manera que el resultat de les consultes no depèn de l'ordre en què es reparteixen els blocs.
+ * - Una fila ocupa 29 bytes, de manera que un dia d'una botiga gran (milions de línies) cap en poques desenes de MB.
+ * - Les files es desen en blocs de mida fixa, de manera que el registre creix sense copiar les dades existents.
+ * - Els descomptes de les promocions es desen a part, un per tiquet amb descompte, amb l'instant del cobrament: els
+ *   ingressos de les línies són bruts, i restant-hi els descomptes s'obté el que s'ha cobrat.
+ *
+ * Les consultes recorren només les columnes que necessiten i es reparteixen els blocs entre tots els nuclis.
+ * Afegir tiquets és segur des de diversos fils, i les consultes veuen una instantània coherent de tiquets complets
+ * sense bloquejar les caixes.
+ *
+ * @author Joan Miralles Carmona
+ */
+public class RegistreVendes {
+    /**
+     * Nombre de files de cada bloc.
+     */
+    public static final int FILES_PER_BLOC = 1 << 16;
+
+    private static final long MILIS_PER_HORA = 3_600_000L;
+    private static final TipusProducte[] TIPUS = TipusProducte.values();
+
+    private final Clock rellotge;
+    private volatile Instantania instantania;
+
+    /**
+     * Construeix un registre buit que data els tiquets amb el rellotge del sistema.
+     */
+    public RegistreVendes() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Construeix un registre buit que data els tiquets amb el rellotge indicat.
+     *
+     * @param rellotge El rellotge amb què es data cada tiquet.
+     */
+    public RegistreVendes(Clock rellotge) {
+        this.rellotge = rellotge;
+        this.instantania = new Instantania(new Bloc[0], 0, 0, new long[0], new long[0], 0);
+    }
+
+    /**
+     * Retorna un observador que desa al registre cada tiquet cobrat d'un carret.
+     * Cada carret necessita el seu propi observador.
+     *
+     * @return L'observador a afegir al carret.
+     */
+    public ObservadorCarret observador() {
+        return new ObservadorTiquets();
+    }
+
+    /**
+     * Afegeix un tiquet complet al registre.
+     *
+     * @param claus Les claus dels codis de barres de les línies.
+     * @param tipus Els ordinals dels tipus de producte de les línies.
+     * @param quantitats Les quantitats de les línies.
+     * @param preus Els preus unitaris de les línies, en cèntims.
+     * @param linies El nombre de línies del tiquet.
+     * @param descompte L'import total descomptat per les promocions al tiquet, en cèntims.
+     * @param instant L'instant del cobrament en mil·lisegons des de l'època.
+     */
+    public synchronized void afegirTiquet(long[] claus, byte[] tipus, int[] quantitats, long[] preus, int linies,
+                                          long descompte, long instant) {
+        Instantania actual = instantania;
+        Bloc[] blocs = actual.blocs;
+        long files = actual.files;
+        for (int i = 0; i < linies; i++, files++) {
+            int bloc = (int) (files / FILES_PER_BLOC);
+            int fila = (int) (files % FILES_PER_BLOC);
+            if (bloc == blocs.length) {
+                blocs = Arrays.copyOf(blocs, bloc + 1);
+                blocs[bloc] = new Bloc();
+            }
+            Bloc b = blocs[bloc];
+            b.claus[fila] = claus[i];
+            b.tipus[fila] = tipus[i];
+            b.quantitats[fila] = quantitats[i];
+            b.preus[fila] = preus[i];
+            b.instants[fila] = instant;
+        }
+
+        long[] instantsDescomptes = actual.instantsDescomptes;
+        long[] descomptes = actual.descomptes;
+        int nombreDescomptes = actual.nombreDescomptes;
+        if (descompte != 0) {
+            if (nombreDescomptes == descomptes.length) {
+                int capacitat = Math.max(16, nombreDescomptes * 2);
+                instantsDescomptes = Arrays.copyOf(instantsDescomptes, capacitat);
+                descomptes = Arrays.copyOf(descomptes, capacitat);
+            }
+            instantsDescomptes[nombreDescomptes] = instant;
+            descomptes[nombreDescomptes] = descompte;
+            nombreDescomptes++;
+        }
+        instantania = new Instantania(blocs, files, actual.tiquets + 1, instantsDescomptes, descomptes,
+                nombreDescomptes);
+    }
+
+    /**
+     * Retorna el nombre de tiquets registrats.
+     *
+     * @return El nombre de tiquets.
+     */
+    public long getNombreTiquets() {
+        return instantania.tiquets;
+    }
+
+    /**
+     * Retorna el nombre de línies registrades.
+     *
+     * @return El nombre de línies.
+     */
+    public long getNombreLinies() {
+        return instantania.files;
+    }
+
+    /**
+     * Retorna l'import total descomptat per les promocions a tots els tiquets registrats.
+     *
+     * @return El total dels descomptes, en cèntims.
+     */
+    public long getTotalDescomptes() {
+        Instantania actual = instantania;
+        long total = 0;
+        for (int i = 0; i < actual.nombreDescomptes; i++) {
+            total += actual.descomptes[i];
+        }
+        return total;
+    }
+
+    /**
+     * Calcula l'import descomptat per les promocions per hora a partir d'un instant.
+     * Els descomptes no es reparteixen per tipus de producte, perquè una promoció pot combinar productes de tipus
+     * diferents: els ingressos cobrats d'una hora són la suma dels ingressos de tots els tipus menys els descomptes.
+     *
+     * @param desDe L'instant inicial de la primera hora, en mil·lisegons des de l'època.
+     * @param hores El nombre d'hores a calcular.
+     * @return Els descomptes en cèntims, indexats per l'hora (0 és la primera).
+     */
+    public long[] descomptesPerHora(long desDe, int hores) {
+        Instantania actual = instantania;
+        long[] resultat = new long[hores];
+        for (int i = 0; i < actual.nombreDescomptes; i++) {
+            long hora = Math.floorDiv(actual.instantsDescomptes[i] - desDe, MILIS_PER_HORA);
+            if (hora >= 0 && hora < hores) {
+                resultat[(int) hora] += actual.descomptes[i];
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Calcula els ingressos per tipus de producte i per hora a partir d'un instant.
+     *
+     * @param desDe L'instant inicial de la primera hora, en mil·lisegons des de l'època.
+     * @param hores El nombre d'hores a calcular.
+     * @return Una taula d'ingressos en cèntims, indexada per l'ordinal del tipus de producte i per l'hora (0 és la primera).
+     */
+    public long[][] ingressosPerTipusIHora(long desDe, int hores) {
+        Instantania actual = instantania;
+        long[] total = IntStream.range(0, actual.nombreBlocs()).parallel()
+                .mapToObj(bloc -> {
+                    long[] parcial = new long[TIPUS.length * hores];
+                    Bloc b = actual.blocs[bloc];
+                    for (int fila = 0, fi = actual.filesDelBloc(bloc); fila < fi; fila++) {
+                        long hora = Math.floorDiv(b.instants[fila] - desDe, MILIS_PER_HORA);
+                        if (hora >= 0 && hora < hores) {
+                            parcial[b.tipus[fila] * hores + (int) hora] += b.quantitats[fila] * b.preus[fila];
+                        }
+                    }
+                    return parcial;
+                })
+                .reduce(new long[TIPUS.length * hores], RegistreVendes::sumar);
+
+        long[][] resultat = new long[TIPUS.length][];
+        for (int tipus = 0; tipus < TIPUS.length; tipus++) {
+            resultat[tipus] = Arrays.copyOfRange(total, tipus * hores, (tipus + 1) * hores);
+        }
+        return resultat;
+    }
+
+    /**
+     * Retorna els productes amb més unitats venudes, de més a menys, i a igualtat d'unitats per codi de barres.
+     * Els blocs es reparteixen en trams consecutius, un per nucli, i cada fila es llegeix una sola vegada: cada tram
+     * s'agrega en paral·lel sobre una taula parcial pròpia i després es fusionen les taules parcials.
+     *
+     * @param n El nombre màxim de productes a retornar.
+     * @return Les vendes dels n productes més venuts.
+     */
+    public List<VendaProducte> productesMesVenuts(int n) {
+        Instantania actual = instantania;
+        int blocs = actual.nombreBlocs();
+        int trams = Math.max(1, Math.min(blocs, ForkJoinPool.getCommonPoolParallelism()));
+        return IntStream.range(0, trams).parallel()
+                .mapToObj(tram -> {
+                    Acumulador vendes = new Acumulador();
+                    for (int bloc = tram * blocs / trams, fiTram = (tram + 1) * blocs / trams; bloc < fiTram; bloc++) {
+                        Bloc b = actual.blocs[bloc];
+                        for (int fila = 0, fi = actual.filesDelBloc(bloc); fila < fi; fila++) {
+                            vendes.acumular(b.claus[fila], b.tipus[fila], b.quantitats[fila],
+                                    b.quantitats[fila] * b.preus[fila]);
+                        }
+                    }
+                    return vendes;
+                })
+                .reduce(Acumulador::fusionar)
+                .orElseGet(Acumulador::new)
+                .millors(n);
+    }
+
+    /**
+     * Calcula la mitjana d'unitats per tiquet.
+     *
+     * @return La mitjana d'unitats per tiquet, o 0 si no hi ha cap tiquet.
+     */
+    public double mitjanaUnitatsPerTiquet() {
+        Instantania actual = instantania;
+        if (actual.tiquets == 0) {
+            return 0;
+        }
+        long unitats = IntStream.range(0, actual.nombreBlocs()).parallel()
+                .mapToLong(bloc -> {
+                    int[] quantitats = actual.blocs[bloc].quantitats;
+                    long suma = 0;
+                    for (int fila = 0, fi = actual.filesDelBloc(bloc); fila < fi; fila++) {
+                        suma += quantitats[fila];
+                    }
+                    return suma;
+                })
+                .sum();
+        return (double) unitats / actual.tiquets;
+    }
+
+    /**
+     * Suma dues taules parcials d'ingressos.
+     *
+     * @param a La primera taula.
+     * @param b La segona taula.
+     * @return Una taula nova amb la suma de les dues.
+     */
+    private static long[] sumar(long[] a, long[] b) {
+        long[] suma = new long[a.length];
+        for (int i = 0; i < a.length; i++) {
+            suma[i] = a[i] + b[i];
+        }
+        return suma;
+    }
+
+    /**
+     * Bloc de files del registre, amb un array primitiu per a cada columna.
+     */
+    private static final class Bloc {
+        private final long[] claus = new long[FILES_PER_BLOC];
+        private final byte[] tipus = new byte[FILES_PER_BLOC];
+        private final int[] quantitats = new int[FILES_PER_BLOC];
+        private final long[] preus = new long[FILES_PER_BLOC];
+        private final long[] instants = new long[FILES_PER_BLOC];
+    }
+
+    /**
+     * Estat publicat del registre: els blocs i el nombre de files i tiquets complets que contenen, i els descomptes
+     * d'aquests tiquets.
+     * Les files anteriors a files i els descomptes anteriors a nombreDescomptes no es modifiquen mai més, de manera que
+     * es poden llegir sense bloqueig.
+     */
+    private static final class Instantania {
+        private final Bloc[] blocs;
+        private final long files;
+        private final long tiquets;
+        private final long[] instantsDescomptes;
+        private final long[] descomptes;
+        private final int nombreDescomptes;
+
+        /**
+         * Construeix una nova instantània.
+         *
+         * @param blocs Els blocs del registre.
+         * @param files El nombre de files publicades.
+         * @param tiquets El nombre de tiquets publicats.
+         * @param instantsDescomptes Els instants dels tiquets amb descompte.
+         * @param descomptes Els descomptes dels tiquets amb descompte, en cèntims.
+         * @param nombreDescomptes El nombre de descomptes publicats.
+         */
+        Instantania(Bloc[] blocs, long files, long tiquets, long[] instantsDescomptes, long[] descomptes,
+                    int nombreDescomptes) {
+            this.blocs = blocs;
+            this.files = files;
+            this.tiquets = tiquets;
+            this.instantsDescomptes = instantsDescomptes;
+            this.descomptes = descomptes;
+            this.nombreDescomptes = nombreDescomptes;
+        }
+
+        /**
+         * Retorna el nombre de blocs amb alguna fila publicada.
+         *
+         * @return El nombre de blocs.
+         */
+        int nombreBlocs() {
+            return (int) ((files + FILES_PER_BLOC - 1) / FILES_PER_BLOC);
+        }
+
+        /**
+         * Retorna el nombre de files publicades d'un bloc.
+         *
+         * @param bloc L'índex del bloc.
+         * @return El nombre de files del bloc.
+         */
+        int filesDelBloc(int bloc) {
+            return (int) Math.min(FILES_PER_BLOC, files - (long) bloc * FILES_PER_BLOC);
+        }
+    }
+
+    /**
+     * Taula de dispersió amb adreçament obert que acumula les unitats i els ingressos per codi de barres
+     * en arrays primitius, sense crear cap objecte per producte.
+     */
+    private static final class Acumulador {
+        private long[] claus = new long[1024];
+        private byte[] tipus = new byte[1024];
+        private long[] unitats = new long[1024];
+        private long[] ingressos = new long[1024];
+        private int mida;
+
+        /**
+         * Acumula una venda d'un producte.
+         *
+         * @param clau La clau del codi de barres del producte.
+         * @param tipusProducte L'ordinal del tipus del producte.
+         * @param quantitat Les unitats venudes.
+         * @param ingressosVenda Els ingressos de la venda, en cèntims.
+         */
+        void acumular(long clau, byte tipusProducte, long quantitat, long ingressosVenda) {
+            int mascara = claus.length - 1;
+            int i = posicio(clau, mascara);
+            while (tipus[i] != 0 && claus[i] != clau) {
+                i = (i + 1) & mascara;
+            }
+            if (tipus[i] == 0) {
+                claus[i] = clau;
+                tipus[i] = (byte) (tipusProducte + 1);
+                if (++mida > claus.length * 3 / 4) {
+                    redimensionar();
+                    acumular(clau, tipusProducte, quantitat, ingressosVenda);
+                    return;
+                }
+            }
+            unitats[i] += quantitat;
+            ingressos[i] += ingressosVenda;
+        }
+
+        /**
+         * Afegeix a la taula més gran les entrades de l'altra.
+         *
+         * @param altre L'altra taula parcial.
+         * @return La taula amb la suma de les dues.
+         */
+        Acumulador fusionar(Acumulador altre) {
+            Acumulador desti = mida >= altre.mida ? this : altre;
+            Acumulador origen = desti == this ? altre : this;
+            for (int i = 0; i < origen.claus.length; i++) {
+                if (origen.tipus[i] != 0) {
+                    desti.acumular(origen.claus[i], (byte) (origen.tipus[i] - 1), origen.unitats[i],
+                            origen.ingressos[i]);
+                }
+            }
+            return desti;
+        }
+
+        /**
+         * Retorna els n productes amb més unitats venudes, de més a menys, i a igualtat d'unitats per codi de barres.
+         *
+         * @param n El nombre màxim de productes.
+         * @return Les vendes dels productes.
+         */
+        List<VendaProducte> millors(int n) {
+            Comparator<Integer> ordre = Comparator.<Integer>comparingLong(i -> unitats[i])
+                    .thenComparing(Comparator.<Integer>comparingLong(i -> claus[i]).reversed());
+            PriorityQueue<Integer> millors = new PriorityQueue<>(ordre);
+            for (int i = 0; i < claus.length; i++) {
+                if (tipus[i] == 0) {
+                    continue;
+                }
+                if (millors.size() < n) {
+                    millors.add(i);
+                } else if (n > 0 && ordre.compare(i, millors.peek()) > 0) {
+                    millors.poll();
+                    millors.add(i);
+                }
+            }
+            List<VendaProducte> resultat = new ArrayList<>(millors.size());
+            for (int i : millors) {
+                resultat.add(new VendaProducte(claus[i], TIPUS[tipus[i] - 1], unitats[i], ingressos[i]));
+            }
+            resultat.sort(Comparator.comparingLong(VendaProducte::getUnitats).reversed()
+                    .thenComparingLong(VendaProducte::getClau));
+            return resultat;
+        }
+
+        /**
+         * Duplica la capacitat de la taula i hi torna a inserir les entrades.
+         */
+        private void redimensionar() {
+            long[] antiguesClaus = claus;
+            byte[] antics = tipus;
+            long[] antiguesUnitats = unitats;
+            long[] anticsIngressos = ingressos;
+            int capacitat = antiguesClaus.length * 2;
+            claus = new long[capacitat];
+            tipus = new byte[capacitat];
+            unitats = new long[capacitat];
+            ingressos = new long[capacitat];
+            mida = 0;
+            for (int i = 0; i < antiguesClaus.length; i++) {
+                if (antics[i] != 0) {
+                    acumular(antiguesClaus[i], (byte) (antics[i] - 1), antiguesUnitats[i], anticsIngressos[i]);
+                }
+            }
+        }
+
+        /**
+         * Calcula la posició inicial d'una clau dins la taula.
+         *
+         * @param clau La clau.
+         * @param mascara La màscara de la mida de la taula.
+         * @return La posició inicial de sondeig.
+         */
+        private static int posicio(long clau, int mascara) {
+            return dispersio(clau) & mascara;
+        }
+
+        /**
+         * Calcula la dispersió d'una clau.
+         *
+         * @param clau La clau.
+         * @return La dispersió de la clau.
+         */
+        private static int dispersio(long clau) {
+            long h = clau * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * Observador que acumula les línies i els descomptes d'un tiquet i l'afegeix al registre en passar per caixa.
+     */
+    private final class ObservadorTiquets implements ObservadorCarret {
+        private long[] claus = new long[16];
+        private byte[] tipus = new byte[16];
+        private int[] quantitats = new int[16];
+        private long[] preus = new long[16];
+        private int linies;
+        private long descompte;
+
+        @Override
+        public void liniaVenuda(Product producte, int quantitat, long preuUnitari) {
+            if (linies == claus.length) {
+                int capacitat = linies * 2;
+                claus = Arrays.copyOf(claus, capacitat);
+                tipus = Arrays.copyOf(tipus, capacitat);
+                quantitats = Arrays.copyOf(quantitats, capacitat);
+                preus = Arrays.copyOf(preus, capacitat);
+            }
+            claus[linies] = producte.getCodiBarres().clau();
+            tipus[linies] = (byte) producte.getTipus().ordinal();
+            quantitats[linies] = quantitat;
+            preus[linies] = preuUnitari;
+            linies++;
+        }
+
+        @Override
+        public void descompteAplicat(String promocio, long descompte) {
+            this.descompte += descompte;
+        }
+
+        @Override
+        public void caixa() {
+            if (linies > 0) {
+                afegirTiquet(claus, tipus, quantitats, preus, linies, descompte, rellotge.millis());
+            }
+            linies = 0;
+            descompte = 0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package vendes;
+
+import model.CodiBarres;
+import model.TipusProducte;
+import utils.Diners;
+
+/**
+ * Representa les vendes acumulades d'un producte dins el registre de vendes.
+ * Les consultes del registre retornen objectes d'aquesta classe, per exemple per obtenir els productes més venuts.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class VendaProducte {
+    private final long clau;
+    private final TipusProducte tipus;
+    private final long unitats;
+    private final long ingressos;
+
+    /**
+     * Construeix les vendes acumulades d'un producte.
+     *
+     * @param clau La clau empaquetada del codi de barres del producte.
+     * @param tipus El tipus del producte.
+     * @param unitats Les unitats venudes.
+     * @param ingressos Els ingressos del producte en cèntims.
+     */
+    VendaProducte(long clau, TipusProducte tipus, long unitats, long ingressos) {
+        this.clau = clau;
+        this.tipus = tipus;
+        this.unitats = unitats;
+        this.ingressos = ingressos;
+    }
+
+    /**
+     * Retorna el codi de barres del producte.
+     *
+     * @return El codi de barres.
+     */
+    public CodiBarres getCodiBarres() {
+        return CodiBarres.deClau(clau);
+    }
+
+    /**
+     * Retorna la clau empaquetada del codi de barres del producte.
+     *
+     * @return La clau del codi de barres.
+     */
+    public long getClau() {
+        return clau;
+    }
+
+    /**
+     * Retorna el tipus del producte.
+     *
+     * @return El tipus del producte.
+     */
+    public TipusProducte getTipus() {
+        return tipus;
+    }
+
+    /**
+     * Retorna el nombre d'unitats venudes.
+     *
+     * @return Les unitats venudes.
+     */
+    public long getUnitats() {
+        return unitats;
+    }
+
+    /**
+     * Retorna els ingressos del producte.
+     *
+     * @return Els ingressos en cèntims.
+     */
+    public long getIngressos() {
+        return ingressos;
+    }
+
+    /**
+     * Retorna una representació en format text de les vendes del producte.
+     *
+     * @return Representació de les vendes en format text.
+     */
+    @Override
+    public String toString() {
+        return getCodiBarres() + " (" + tipus + ") - " + unitats + " unitats, " + Diners.format(ingressos) + " EUR";
+    }
+}
@@ -0,0 +1,175 @@
+package view;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Consola amb memòria intermèdia per a la interfície d'usuari.
+ * En lloc d'escriure cada línia per separat a System.out (que està sincronitzat i buida la sortida a cada línia),
+ * la consola construeix cada pantalla en memòria i l'envia a la sortida amb una sola escriptura:
+ * - El text s'acumula en un StringBuilder que es reutilitza entre pantalles.
+ * - Les pantalles fixes (vegeu Pantalla) es codifiquen una sola vegada i després només se'n copien els bytes.
+ * - La sortida es buida automàticament abans de llegir cada resposta de l'usuari, de manera que l'usuari sempre veu
+ *   la pantalla completa abans d'escriure.
+ * Tant l'entrada com la sortida poden ser qualsevol parell de fluxos, per exemple un terminal remot o fitxers de prova.
+ *
+ * Aquesta classe no és segura per a l'accés concurrent.
+ *
+ * @author Joan Miralles Carmona
+ */
+public class Consola {
+    private static final int CAPACITAT_INICIAL = 4096;
+
+    private final BufferedReader entrada;
+    private final OutputStream sortida;
+    private final Charset charset;
+    private final StringBuilder text = new StringBuilder(CAPACITAT_INICIAL);
+    private final byte[][] pantalles = new byte[Pantalla.values().length][];
+    private byte[] bytes = new byte[CAPACITAT_INICIAL];
+    private int mida;
+
+    /**
+     * Construeix una consola sobre el parell de fluxos indicat.
+     *
+     * @param entrada El flux d'on es llegeixen les respostes de l'usuari.
+     * @param sortida El flux on s'escriuen les pantalles.
+     * @param charset La codificació de caràcters dels dos fluxos.
+     */
+    public Consola(InputStream entrada, OutputStream sortida, Charset charset) {
+        this.entrada = new BufferedReader(new InputStreamReader(entrada, charset));
+        this.sortida = sortida;
+        this.charset = charset;
+    }
+
+    /**
+     * Crea una consola sobre l'entrada i la sortida estàndard, amb les seves codificacions.
+     * Cada pantalla s'escriu a System.out amb una sola escriptura.
+     *
+     * @return La consola del sistema.
+     */
+    public static Consola sistema() {
+        return new Consola(System.in, System.out, System.out.charset());
+    }
+
+    /**
+     * Afegeix text a la pantalla en construcció.
+     *
+     * @param text El text a afegir.
+     */
+    public void escriure(CharSequence text) {
+        this.text.append(text);
+    }
+
+    /**
+     * Afegeix text i un salt de línia a la pantalla en construcció.
+     *
+     * @param text El text a afegir.
+     */
+    public void linia(CharSequence text) {
+        this.text.append(text).append('\n');
+    }
+
+    /**
+     * Afegeix un salt de línia a la pantalla en construcció.
+     */
+    public void linia() {
+        text.append('\n');
+    }
+
+    /**
+     * Afegeix una pantalla fixa a la pantalla en construcció.
+     * La primera vegada que es mostra, la pantalla es codifica i es guarda; les següents només se'n copien els bytes.
+     *
+     * @param pantalla La pantalla a afegir.
+     */
+    public void pantalla(Pantalla pantalla) {
+        byte[] codificada = pantalles[pantalla.ordinal()];
+        if (codificada == null) {
+            codificada = pantalla.getText().getBytes(charset);
+            pantalles[pantalla.ordinal()] = codificada;
+        }
+        codificarText();
+        afegirBytes(codificada);
+    }
+
+    /**
+     * Envia la pantalla en construcció a la sortida amb una sola escriptura.
+     *
+     * @throws UncheckedIOException Si hi ha un error d'escriptura.
+     */
+    public void buidar() {
+        codificarText();
+        if (mida == 0) {
+            return;
+        }
+        try {
+            sortida.write(bytes, 0, mida);
+            sortida.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            mida = 0;
+        }
+    }
+
+    /**
+     * Envia la pantalla en construcció a la sortida i llegeix una línia de l'entrada.
+     *
+     * @return La línia llegida, sense el salt de línia.
+     * @throws NoSuchElementException Si l'entrada s'ha acabat.
+     * @throws UncheckedIOException Si hi ha un error de lectura o escriptura.
+     */
+    public String llegirLinia() {
+        buidar();
+        String linia;
+        try {
+            linia = entrada.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (linia == null) {
+            throw new NoSuchElementException("No hi ha més línies a l'entrada.");
+        }
+        return linia;
+    }
+
+    /**
+     * Retorna el flux de sortida de la consola, per escriure-hi directament (per exemple, els tiquets).
+     * Abans d'escriure-hi s'ha de cridar buidar() perquè el text pendent surti primer.
+     *
+     * @return El flux de sortida.
+     */
+    public OutputStream getSortida() {
+        return sortida;
+    }
+
+    /**
+     * Codifica el text pendent i l'afegeix als bytes pendents d'enviar.
+     */
+    private void codificarText() {
+        if (text.length() > 0) {
+            afegirBytes(text.toString().getBytes(charset));
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * Afegeix bytes al final dels bytes pendents d'enviar. El buffer només creix si no hi caben.
+     *
+     * @param dades Els bytes a afegir.
+     */
+    private void afegirBytes(byte[] dades) {
+        if (mida + dades.length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, mida + dades.length));
+        }
+        System.arraycopy(dades, 0, bytes, mida, dades.length);
+        mida += dades.length;
+    }
+}
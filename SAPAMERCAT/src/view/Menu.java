@@ -1,11 +1,19 @@
 package view;
 
 import model.*;
+import utils.Diners;
+import utils.ResultatValidacio;
 import utils.Validacions;
 import exceptions.*;
+import tiquet.SortidaFlux;
+import vendes.Anulacio;
+import vendes.RegistreAnulacions;
 
-import java.util.Scanner;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -16,23 +24,75 @@ import java.util.NoSuchElementException;
  * - Mostrar el contingut del carret de compra.
  * - Generar tiquets de compra.
  * - Cercar productes per codi de barres.
+ * - Afegir productes d'un catàleg només amb el codi de barres.
+ * - Treure productes del carret i revisar-ne les anul·lacions com a supervisor.
  * Proporciona validació de totes les entrades d'usuari i gestió d'errors amb
  * missatges descriptius.
+ * Tota l'entrada i la sortida passen per una Consola, que envia cada pantalla
+ * amb una sola escriptura en el moment de demanar la resposta a l'usuari.
  * 
  * @author Joan Miralles Carmona
  */
 public class Menu {
-    private Scanner scanner;
+    /**
+     * Identificador amb què es registren les anul·lacions del carret del menú.
+     */
+    private static final long CAIXA = 1;
+
+    private static final DateTimeFormatter FORMAT_HORA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    private Consola consola;
     private CarretCompra carret;
+    private ProductCatalog cataleg;
+    private RegistreProductes productes;
+    private RegistreAnulacions anulacions;
 
     /**
-     * Construeix un nou menú del sistema SAPAMERCAT.
-     * Inicialitza l'escàner per a l'entrada d'usuari i crea un carret de compra
-     * buit.
+     * Construeix un nou menú del sistema SAPAMERCAT sense catàleg de productes.
+     * Utilitza la consola del sistema per a l'entrada d'usuari i crea un carret de
+     * compra buit.
      */
     public Menu() {
-        scanner = new Scanner(System.in);
+        this(null);
+    }
+
+    /**
+     * Construeix un nou menú del sistema SAPAMERCAT amb un catàleg de productes.
+     * Els productes del catàleg es poden afegir al carret només amb el codi de
+     * barres, i els productes introduïts manualment s'hi desen.
+     *
+     * @param cataleg El catàleg de productes, o null si no se n'utilitza cap.
+     */
+    public Menu(ProductCatalog cataleg) {
+        this(cataleg, Consola.sistema());
+    }
+
+    /**
+     * Construeix un nou menú del sistema SAPAMERCAT sobre la consola indicada.
+     * Les pantalles, els missatges i els tiquets s'escriuen a la sortida de la
+     * consola, i les respostes de l'usuari es llegeixen de la seva entrada.
+     *
+     * @param cataleg El catàleg de productes, o null si no se n'utilitza cap.
+     * @param consola La consola on es mostra el menú.
+     */
+    public Menu(ProductCatalog cataleg, Consola consola) {
+        this.consola = consola;
         carret = new CarretCompra();
+        carret.setSortida(new SortidaFlux(consola.getSortida(), false));
+        anulacions = new RegistreAnulacions();
+        carret.afegirObservador(anulacions.observador(CAIXA));
+        productes = new RegistreProductes();
+        this.cataleg = cataleg;
+    }
+
+    /**
+     * Estableix les promocions que s'apliquen als tiquets del carret del menú.
+     *
+     * @param promocions Les promocions, o null per no aplicar-ne cap.
+     */
+    public void setPromocions(Promocions promocions) {
+        carret.setPromocions(promocions);
     }
 
     /**
@@ -47,26 +107,17 @@ public class Menu {
             opcio = llegirEnter();
             gestionarOpcio(opcio);
         } while (opcio != 0);
+        consola.buidar();
     }
 
     /**
      * Mostra les opcions disponibles del menú principal.
      * Inclou una capçalera de benvinguda i les diferents accions que pot
-     * seleccionar l'usuari.
+     * seleccionar l'usuari. La pantalla és fixa i la consola la guarda ja
+     * codificada.
      */
     private void mostrarOpcions() {
-        // Welcome message now appears every time the menu is displayed
-        System.out.println("*************************************************");
-        System.out.println("*             BENVINGUT A SAPAMERCAT            *");
-        System.out.println("*************************************************");
-
-        System.out.println("\n--- MENÚ PRINCIPAL ---");
-        System.out.println("1. Afegir producte");
-        System.out.println("2. Mostrar carret");
-        System.out.println("3. Passar per caixa");
-        System.out.println("4. Cercar producte per codi de barres");
-        System.out.println("0. Sortir");
-        System.out.print("Opció: ");
+        consola.pantalla(Pantalla.PRINCIPAL);
     }
 
     /**
@@ -78,21 +129,22 @@ public class Menu {
      */
     private int llegirEnter() {
         try {
-            String input = scanner.nextLine().trim();
+            String input = consola.llegirLinia().trim();
 
             if (input.isEmpty()) {
-                System.out.println("Error: No has introduït cap valor. Si us plau, introdueix una opció vàlida.");
+                consola.linia("Error: No has introduït cap valor. Si us plau, introdueix una opció vàlida.");
                 return -1;
             }
 
             try {
                 return Integer.parseInt(input);
             } catch (NumberFormatException e) {
-                System.out.println("Error: Has d'introduir un número.");
+                consola.linia("Error: Has d'introduir un número.");
                 return -1;
             }
         } catch (NoSuchElementException | IllegalStateException e) {
-            System.out.println("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+            consola.linia("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+            consola.buidar();
             System.exit(0);
             return 0;
         }
@@ -110,20 +162,32 @@ public class Menu {
                 afegirProducte();
                 break;
             case 2:
-                carret.mostrarCarret();
+                StringBuilder contingut = new StringBuilder();
+                carret.mostrarCarret(contingut);
+                consola.escriure(contingut);
                 break;
             case 3:
+                consola.buidar();
                 carret.imprimir();
                 break;
             case 4:
                 cercarProducte();
                 break;
+            case 5:
+                afegirDesDelCataleg();
+                break;
+            case 6:
+                treureProducte();
+                break;
+            case 7:
+                mostrarAnulacions();
+                break;
             case 0:
-                System.out.println("Sortint...");
+                consola.linia("Sortint...");
                 break;
             default:
-                System.out.println("Opció no vàlida. Torna a intentar.");
-                System.out.println();
+                consola.linia("Opció no vàlida. Torna a intentar.");
+                consola.linia();
         }
     }
 
@@ -138,25 +202,20 @@ public class Menu {
 
         while (continuar) {
             try {
-                System.out.println("\n--- AFEGIR PRODUCTE ---");
+                consola.linia("\n--- AFEGIR PRODUCTE ---");
 
                 TipusProducte tipus = null;
                 int tipusOpcio = -1;
 
                 do {
                     try {
-                        System.out.println("Selecciona el tipus de producte:");
-                        System.out.println("1. Alimentació");
-                        System.out.println("2. Tèxtil");
-                        System.out.println("3. Electrònica");
-                        System.out.println("0. Tornar al menú principal");
-                        System.out.print("Opció: ");
+                        consola.pantalla(Pantalla.TIPUS_PRODUCTE);
 
-                        String input = scanner.nextLine().trim();
+                        String input = consola.llegirLinia().trim();
 
                         if (input.isEmpty()) {
-                            System.out.println("Error: No has introduït cap valor.");
-                            System.out.println();
+                            consola.linia("Error: No has introduït cap valor.");
+                            consola.linia();
                             continue;
                         }
 
@@ -174,19 +233,20 @@ public class Menu {
                                     tipus = TipusProducte.ELECTRONICA;
                                     break;
                                 case 0:
-                                    System.out.println();
+                                    consola.linia();
                                     return;
                                 default:
-                                    System.out.println("Error: Opció no vàlida.");
-                                    System.out.println();
+                                    consola.linia("Error: Opció no vàlida.");
+                                    consola.linia();
                                     break;
                             }
                         } catch (NumberFormatException e) {
-                            System.out.println("Error: Has d'introduir un número.");
-                            System.out.println();
+                            consola.linia("Error: Has d'introduir un número.");
+                            consola.linia();
                         }
                     } catch (NoSuchElementException | IllegalStateException e) {
-                        System.out.println("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+                        consola.linia("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+                        consola.buidar();
                         System.exit(0);
                     }
                 } while (tipus == null);
@@ -195,79 +255,79 @@ public class Menu {
                     String nom = "";
                     boolean nomValid = false;
                     while (!nomValid) {
-                        System.out.print("Nom: ");
-                        nom = scanner.nextLine().trim();
+                        consola.escriure("Nom: ");
+                        nom = consola.llegirLinia().trim();
 
                         if (nom.equalsIgnoreCase("sortir")) {
                             return;
                         }
 
                         if (nom.isEmpty()) {
-                            System.out.println("Error: El nom no pot estar buit.");
+                            consola.linia("Error: El nom no pot estar buit.");
                             continue;
                         }
 
-                        try {
-                            Validacions.validarNom(nom);
+                        ResultatValidacio resultatNom = Validacions.comprovarNom(nom);
+                        if (resultatNom.esValid()) {
                             nomValid = true;
-                        } catch (LimitCaracteresException e) {
-                            System.out.println(e.getMessage());
+                        } else {
+                            consola.linia(resultatNom.getMissatge());
                         }
                     }
 
                     try {
                         Validacions.validarPreu(nom.length());
                     } catch (NegatiuException e) {
-                        System.out.println(e.getMessage());
+                        consola.linia(e.getMessage());
                         continue;
                     }
 
-                    double preu = 0;
+                    long preu = 0;
                     boolean preuValid = false;
                     while (!preuValid) {
-                        System.out.print("Preu: ");
-                        String preuInput = scanner.nextLine().trim();
+                        consola.escriure("Preu: ");
+                        String preuInput = consola.llegirLinia().trim();
 
                         if (preuInput.equalsIgnoreCase("sortir")) {
                             return;
                         }
 
                         if (preuInput.isEmpty()) {
-                            System.out.println("Error: El preu no pot estar buit.");
+                            consola.linia("Error: El preu no pot estar buit.");
                             continue;
                         }
 
                         try {
-                            preu = Double.parseDouble(preuInput);
+                            preu = Diners.parse(preuInput);
                             Validacions.validarPreu(preu);
                             preuValid = true;
                         } catch (NumberFormatException e) {
-                            System.out.println("Error: El preu ha de ser un valor numèric.");
+                            consola.linia("Error: El preu ha de ser un valor numèric.");
                         } catch (NegatiuException e) {
-                            System.out.println(e.getMessage());
+                            consola.linia(e.getMessage());
                         }
                     }
 
                     String codiBarres = "";
                     boolean codiValid = false;
                     while (!codiValid) {
-                        System.out.print("Codi de barres: ");
-                        codiBarres = scanner.nextLine().trim();
+                        consola.escriure("Codi de barres: ");
+                        codiBarres = consola.llegirLinia().trim();
 
                         if (codiBarres.equalsIgnoreCase("sortir")) {
                             return;
                         }
 
                         if (codiBarres.isEmpty()) {
-                            System.out.println("Error: El codi de barres no pot estar buit.");
+                            consola.linia("Error: El codi de barres no pot estar buit.");
                             continue;
                         }
 
-                        try {
-                            Validacions.validarCodiBarres(codiBarres);
+                        ResultatValidacio resultatCodi = Validacions.comprovarCodiBarres(codiBarres);
+                        if (resultatCodi.esValid()) {
                             codiValid = true;
-                        } catch (LimitCaracteresException e) {
-                            System.out.println(e.getMessage());
+                        } else {
+                            consola.linia(resultatCodi.getMissatge());
                         }
                     }
 
@@ -275,15 +335,15 @@ public class Menu {
                         case ALIMENTACIO:
                             boolean dataValid = false;
                             while (!dataValid) {
-                                System.out.print("Data de caducitat (DD/MM/YYYY): ");
-                                String dataInput = scanner.nextLine().trim();
+                                consola.escriure("Data de caducitat (DD/MM/YYYY): ");
+                                String dataInput = consola.llegirLinia().trim();
 
                                 if (dataInput.equalsIgnoreCase("sortir")) {
                                     return;
                                 }
 
                                 if (dataInput.isEmpty()) {
-                                    System.out.println("Error: La data de caducitat no pot estar buida.");
+                                    consola.linia("Error: La data de caducitat no pot estar buida.");
                                     continue;
                                 }
 
@@ -304,37 +364,31 @@ public class Menu {
                                         dataCaducitat = LocalDate.parse(dataInput);
                                     }
 
-                                    Validacions.validarDataCaducitat(dataCaducitat);
-                                    carret.afegirProducte(new Alimentacio(nom, preu, codiBarres, dataCaducitat));
+                                    afegirAlCarret(productes.alimentacio(nom, preu, codiBarres, dataCaducitat));
                                     dataValid = true;
                                     continuar = false;
-                                    System.out.println();
+                                    consola.linia();
                                 } catch (java.time.format.DateTimeParseException | NumberFormatException e) {
-                                    System.out.println("Error: Format de data incorrecte. Usa DD/MM/YYYY.");
+                                    consola.linia("Error: Format de data incorrecte. Usa DD/MM/YYYY.");
                                 } catch (DataCaducitatException e) {
-                                    System.out.println(e.getMessage());
+                                    consola.linia(e.getMessage());
                                 } catch (Exception e) {
-                                    System.out.println("Error: " + e.getMessage());
+                                    consola.linia("Error: " + e.getMessage());
                                 }
                             }
                             break;
                         case TEXTIL:
                             boolean composicioValid = false;
-                            String composicio = "";
+                            Composicio composicio = null;
 
                             do {
                                 try {
-                                    System.out.println("\nSelecciona la composició tèxtil:");
-                                    System.out.println("1. Cotó");
-                                    System.out.println("2. Llana");
-                                    System.out.println("3. Seda");
-                                    System.out.println("0. Tornar al menú principal");
-                                    System.out.print("Opció: ");
+                                    consola.pantalla(Pantalla.COMPOSICIO);
 
-                                    String composicioInput = scanner.nextLine().trim();
+                                    String composicioInput = consola.llegirLinia().trim();
 
                                     if (composicioInput.isEmpty()) {
-                                        System.out.println("Error: No has introduït cap valor.");
+                                        consola.linia("Error: No has introduït cap valor.");
                                         continue;
                                     }
 
@@ -343,40 +397,41 @@ public class Menu {
 
                                         switch (composicioOpcio) {
                                             case 1:
-                                                composicio = "cotó";
+                                                composicio = Composicio.COTO;
                                                 composicioValid = true;
                                                 break;
                                             case 2:
-                                                composicio = "llana";
+                                                composicio = Composicio.LLANA;
                                                 composicioValid = true;
                                                 break;
                                             case 3:
-                                                composicio = "seda";
+                                                composicio = Composicio.SEDA;
                                                 composicioValid = true;
                                                 break;
                                             case 0:
                                                 return;
                                             default:
-                                                System.out.println("Error: Opció no vàlida.");
-                                                System.out.println();
+                                                consola.linia("Error: Opció no vàlida.");
+                                                consola.linia();
                                                 break;
                                         }
-                                        System.out.println();
+                                        consola.linia();
 
                                         if (composicioValid) {
-                                            carret.afegirProducte(new Textil(nom, preu, codiBarres, composicio));
+                                            afegirAlCarret(productes.textil(nom, preu, codiBarres, composicio));
                                             continuar = false;
-                                            System.out.println();
+                                            consola.linia();
                                         }
                                     } catch (NumberFormatException e) {
-                                        System.out.println("Error: Has d'introduir un número.");
+                                        consola.linia("Error: Has d'introduir un número.");
                                     } catch (LimitCaracteresException | LimitProductesException e) {
-                                        System.out.println(e.getMessage());
+                                        consola.linia(e.getMessage());
                                     } catch (Exception e) {
-                                        System.out.println("Error: " + e.getMessage());
+                                        consola.linia("Error: " + e.getMessage());
                                     }
                                 } catch (NoSuchElementException | IllegalStateException e) {
-                                    System.out.println("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+                                    consola.linia("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+                                    consola.buidar();
                                     System.exit(0);
                                 }
                             } while (!composicioValid);
@@ -384,50 +439,208 @@ public class Menu {
                         case ELECTRONICA:
                             boolean garantiaValid = false;
                             while (!garantiaValid) {
-                                System.out.print("Dies de garantia: ");
-                                String garantiaInput = scanner.nextLine().trim();
-                                System.out.println();
+                                consola.escriure("Dies de garantia: ");
+                                String garantiaInput = consola.llegirLinia().trim();
+                                consola.linia();
 
                                 if (garantiaInput.equalsIgnoreCase("sortir")) {
                                     return;
                                 }
 
                                 if (garantiaInput.isEmpty()) {
-                                    System.out.println("Error: Els dies de garantia no poden estar buits.");
+                                    consola.linia("Error: Els dies de garantia no poden estar buits.");
                                     continue;
                                 }
 
                                 try {
                                     int garantia = Integer.parseInt(garantiaInput);
                                     Validacions.validarPreu(garantia);
-                                    carret.afegirProducte(new Electronica(nom, preu, codiBarres, garantia));
+                                    afegirAlCarret(productes.electronica(nom, preu, codiBarres, garantia));
                                     garantiaValid = true;
                                     continuar = false;
-                                    System.out.println();
+                                    consola.linia();
                                 } catch (NumberFormatException e) {
-                                    System.out.println("Error: Els dies de garantia han de ser un valor numèric.");
+                                    consola.linia("Error: Els dies de garantia han de ser un valor numèric.");
                                 } catch (NegatiuException e) {
-                                    System.out.println(e.getMessage());
+                                    consola.linia(e.getMessage());
                                 } catch (Exception e) {
-                                    System.out.println("Error: " + e.getMessage());
+                                    consola.linia("Error: " + e.getMessage());
                                 }
                             }
                             break;
                     }
                 } catch (NoSuchElementException | IllegalStateException e) {
-                    System.out.println("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+                    consola.linia("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+                    consola.buidar();
                     System.exit(0);
                 }
 
             } catch (NoSuchElementException | IllegalStateException e) {
-                System.out.println("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+                consola.linia("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+                consola.buidar();
                 System.exit(0);
             } catch (Exception e) {
-                System.out.println("Error inesperat: " + e.getMessage());
+                consola.linia("Error inesperat: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Afegeix un producte introduït manualment al carret i, si hi ha catàleg, el
+     * desa també al catàleg perquè es pugui tornar a afegir només amb el codi de
+     * barres.
+     *
+     * @param producte El producte a afegir.
+     * @throws LimitProductesException Si el carret ja té el màxim de productes.
+     */
+    private void afegirAlCarret(Product producte) throws LimitProductesException {
+        carret.afegirProducte(producte);
+        if (cataleg != null) {
+            try {
+                cataleg.desar(producte);
+            } catch (LimitCaracteresException | LimitProductesException e) {
+                consola.linia("Avís: El producte no s'ha desat al catàleg. " + e.getMessage());
             }
         }
     }
 
+    /**
+     * Gestiona l'addició de productes del catàleg al carret.
+     * L'usuari només ha d'introduir el codi de barres de cada producte; les
+     * dades es recuperen del catàleg. Es poden afegir productes fins que
+     * l'usuari escrigui "sortir".
+     */
+    private void afegirDesDelCataleg() {
+        if (cataleg == null) {
+            consola.linia("No hi ha cap catàleg de productes carregat.");
+            consola.linia();
+            return;
+        }
+
+        consola.linia("\n--- AFEGIR PRODUCTE DEL CATÀLEG ---");
+        try {
+            while (true) {
+                consola.escriure("Codi de barres (sortir per acabar): ");
+                String codiBarres = consola.llegirLinia().trim();
+
+                if (codiBarres.equalsIgnoreCase("sortir")) {
+                    consola.linia();
+                    return;
+                }
+
+                if (codiBarres.isEmpty()) {
+                    consola.linia("Error: El codi de barres no pot estar buit.");
+                    continue;
+                }
+
+                ResultatValidacio resultatCodi = Validacions.comprovarCodiBarres(codiBarres);
+                if (!resultatCodi.esValid()) {
+                    consola.linia(resultatCodi.getMissatge());
+                    continue;
+                }
+
+                try {
+                    CodiBarres codi = CodiBarres.deClau(CodiBarres.clauDe(codiBarres));
+                    if (carret.afegirProducte(codi, cataleg)) {
+                        consola.linia("Producte afegit: " + carret.buscar(codi).getNom());
+                    } else {
+                        consola.linia("No s'ha trobat cap producte amb aquest codi al catàleg.");
+                    }
+                } catch (LimitProductesException | DataCaducitatException | UncheckedIOException e) {
+                    consola.linia(e.getMessage());
+                }
+            }
+        } catch (NoSuchElementException | IllegalStateException e) {
+            consola.linia("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+            consola.buidar();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Gestiona la retirada de productes del carret, per exemple després d'un escaneig erroni.
+     * L'usuari introdueix el codi de barres i el nombre d'unitats a treure; si no indica
+     * cap nombre, es treuen totes les unitats del producte.
+     */
+    private void treureProducte() {
+        consola.linia("\n--- TREURE PRODUCTE ---");
+        try {
+            consola.escriure("Codi de barres: ");
+            String codiBarres = consola.llegirLinia().trim();
+
+            ResultatValidacio resultatCodi = Validacions.comprovarCodiBarres(codiBarres);
+            if (!resultatCodi.esValid()) {
+                consola.linia(resultatCodi.getMissatge());
+                consola.linia();
+                return;
+            }
+            CodiBarres codi = CodiBarres.deClau(CodiBarres.clauDe(codiBarres));
+            if (carret.buscar(codi) == null) {
+                consola.linia("No s'ha trobat cap producte amb aquest codi al carret.");
+                consola.linia();
+                return;
+            }
+
+            consola.escriure("Unitats a treure (en blanc per treure-les totes): ");
+            String unitats = consola.llegirLinia().trim();
+            int tretes;
+            if (unitats.isEmpty()) {
+                tretes = carret.treureProducte(codi);
+            } else {
+                try {
+                    int quantitat = Integer.parseInt(unitats);
+                    if (quantitat <= 0) {
+                        consola.linia("Error: La quantitat ha de ser positiva.");
+                        consola.linia();
+                        return;
+                    }
+                    tretes = carret.decrementar(codi, quantitat);
+                } catch (NumberFormatException e) {
+                    consola.linia("Error: Has d'introduir un número.");
+                    consola.linia();
+                    return;
+                }
+            }
+            consola.linia("S'han tret " + tretes + " unitat" + (tretes > 1 ? "s" : "") + " del carret.");
+            consola.linia();
+        } catch (NoSuchElementException | IllegalStateException e) {
+            consola.linia("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+            consola.buidar();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Mostra al supervisor les anul·lacions registrades del carret, amb l'hora, el producte, les unitats tretes i
+     * el seu import, i l'import total anul·lat.
+     */
+    private void mostrarAnulacions() {
+        consola.linia("\n--- ANUL·LACIONS ---");
+        List<Anulacio> llista = anulacions.getAnulacions(CAIXA);
+        if (llista.isEmpty()) {
+            consola.linia("No s'ha anul·lat cap producte.");
+            consola.linia();
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        long total = 0;
+        for (Anulacio anulacio : llista) {
+            long importAnulat = anulacio.getPreu() * anulacio.getQuantitat();
+            total += importAnulat;
+            text.append(FORMAT_HORA.format(anulacio.getInstant())).append("  ").append(anulacio.getNom())
+                    .append(" (").append(anulacio.getCodiBarres()).append(") - ").append(anulacio.getQuantitat())
+                    .append(" x ");
+            Diners.afegir(text, anulacio.getPreu());
+            text.append(" = ");
+            Diners.afegir(text, importAnulat);
+            text.append(" EUR\n");
+        }
+        text.append("Total anul·lat: ");
+        Diners.afegir(text, total);
+        text.append(" EUR\n\n");
+        consola.escriure(text);
+    }
+
     /**
      * Gestiona el submenú de cerca de productes.
      * Permet a l'usuari cercar productes per codi de barres i mostrar els seus
@@ -438,15 +651,12 @@ public class Menu {
 
         while (continuar) {
             try {
-                System.out.println("\n--- CERCAR PRODUCTE ---");
-                System.out.println("1. Buscar per codi de barres");
-                System.out.println("0. Tornar al menú principal");
-                System.out.print("Opció: ");
+                consola.pantalla(Pantalla.CERCA);
 
-                String input = scanner.nextLine().trim();
+                String input = consola.llegirLinia().trim();
 
                 if (input.isEmpty()) {
-                    System.out.println("Error: No has introduït cap valor.");
+                    consola.linia("Error: No has introduït cap valor.");
                     continue;
                 }
 
@@ -455,57 +665,57 @@ public class Menu {
 
                     switch (opcio) {
                         case 0:
-                            System.out.println();
+                            consola.linia();
                             return;
 
                         case 1:
 
                             boolean cercaValid = false;
                             while (!cercaValid) {
-                                System.out.print("Introdueix el codi de barres: ");
-                                String codiBarres = scanner.nextLine().trim();
+                                consola.escriure("Introdueix el codi de barres: ");
+                                String codiBarres = consola.llegirLinia().trim();
 
                                 if (codiBarres.equalsIgnoreCase("sortir")) {
                                     break;
                                 }
 
                                 if (codiBarres.isEmpty()) {
-                                    System.out.println("Error: El codi de barres no pot estar buit.");
+                                    consola.linia("Error: El codi de barres no pot estar buit.");
                                     continue;
                                 }
 
-                                try {
-                                    Validacions.validarCodiBarres(codiBarres);
-
+                                ResultatValidacio resultatCodi = Validacions.comprovarCodiBarres(codiBarres);
+                                if (!resultatCodi.esValid()) {
+                                    consola.linia(resultatCodi.getMissatge());
+                                } else {
                                     Product trobat = carret.buscar(codiBarres);
                                     if (trobat != null) {
-                                        System.out.println("Producte trobat: " + trobat);
+                                        consola.linia("Producte trobat: " + trobat);
                                     } else {
-                                        System.out.println("No s'ha trobat cap producte amb aquest codi.");
+                                        consola.linia("No s'ha trobat cap producte amb aquest codi.");
                                     }
 
-                                    System.out.print("Vols cercar un altre producte? (s/n): ");
-                                    String resposta = scanner.nextLine().trim().toLowerCase();
+                                    consola.escriure("Vols cercar un altre producte? (s/n): ");
+                                    String resposta = consola.llegirLinia().trim().toLowerCase();
                                     if (!resposta.equals("s") && !resposta.equals("si")) {
                                         cercaValid = true;
                                     }
-                                } catch (LimitCaracteresException e) {
-                                    System.out.println(e.getMessage());
                                 }
                             }
                             break;
 
                         default:
-                            System.out.println("Error: Opció no vàlida.");
-                            System.out.println();
+                            consola.linia("Error: Opció no vàlida.");
+                            consola.linia();
                             break;
                     }
                 } catch (NumberFormatException e) {
-                    System.out.println("Error: Has d'introduir un número.");
-                    System.out.println();
+                    consola.linia("Error: Has d'introduir un número.");
+                    consola.linia();
                 }
             } catch (NoSuchElementException | IllegalStateException e) {
-                System.out.println("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+                consola.linia("\nPrograma finalitzat. Gràcies per utilitzar SAPAMERCAT.");
+                consola.buidar();
                 System.exit(0);
             }
         }
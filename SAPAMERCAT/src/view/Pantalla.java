@@ -0,0 +1,75 @@
+package view;
+
+/**
+ * Defineix les pantalles fixes del menú, que sempre tenen el mateix text.
+ * Cada pantalla inclou el missatge de petició d'opció final, de manera que es mostra sencera amb una sola crida.
+ * Com que el text no canvia mai, la consola el codifica una sola vegada i després només en copia els bytes.
+ *
+ * @author Joan Miralles Carmona
+ */
+public enum Pantalla {
+    /**
+     * Capçalera de benvinguda i opcions del menú principal.
+     */
+    PRINCIPAL("*************************************************\n"
+            + "*             BENVINGUT A SAPAMERCAT            *\n"
+            + "*************************************************\n"
+            + "\n--- MENÚ PRINCIPAL ---\n"
+            + "1. Afegir producte\n"
+            + "2. Mostrar carret\n"
+            + "3. Passar per caixa\n"
+            + "4. Cercar producte per codi de barres\n"
+            + "5. Afegir producte del catàleg\n"
+            + "6. Treure producte del carret\n"
+            + "7. Revisar anul·lacions (supervisor)\n"
+            + "0. Sortir\n"
+            + "Opció: "),
+
+    /**
+     * Selecció del tipus de producte a afegir.
+     */
+    TIPUS_PRODUCTE("Selecciona el tipus de producte:\n"
+            + "1. Alimentació\n"
+            + "2. Tèxtil\n"
+            + "3. Electrònica\n"
+            + "0. Tornar al menú principal\n"
+            + "Opció: "),
+
+    /**
+     * Selecció de la composició d'un producte tèxtil.
+     */
+    COMPOSICIO("\nSelecciona la composició tèxtil:\n"
+            + "1. Cotó\n"
+            + "2. Llana\n"
+            + "3. Seda\n"
+            + "0. Tornar al menú principal\n"
+            + "Opció: "),
+
+    /**
+     * Submenú de cerca de productes.
+     */
+    CERCA("\n--- CERCAR PRODUCTE ---\n"
+            + "1. Buscar per codi de barres\n"
+            + "0. Tornar al menú principal\n"
+            + "Opció: ");
+
+    private final String text;
+
+    /**
+     * Construeix una pantalla amb el text indicat.
+     *
+     * @param text El text complet de la pantalla.
+     */
+    Pantalla(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Retorna el text complet de la pantalla.
+     *
+     * @return El text de la pantalla.
+     */
+    public String getText() {
+        return text;
+    }
+}
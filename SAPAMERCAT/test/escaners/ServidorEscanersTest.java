@@ -0,0 +1,359 @@
+package escaners;
+
+import model.CodiBarres;
+import model.Electronica;
+import model.Product;
+import model.TipusProducte;
+import servei.CheckoutService;
+import utils.MapaLong;
+import utils.Searchable;
+
+import java.io.EOFException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prova del servidor d'escàners sobre la interfície local (loopback), per TCP i per socket de domini Unix.
+ * Comprova que:
+ * - Les trames partides entre escriptures, fins i tot byte a byte, es recomponen i cada trama rep un sol estat, en ordre.
+ * - Cada byte d'estat del protocol es retorna en el cas que li correspon.
+ * - Les trames no vàlides no afecten el carret ni les trames següents de la mateixa connexió.
+ * - Un flux continu de trames s'accepta sencer, i se'n mostra el rendiment.
+ *
+ * No depèn de cap biblioteca de proves: s'executa amb java i acaba amb el codi 1 si alguna comprovació falla.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class ServidorEscanersTest {
+    private static final int MAX_PRODUCTES = 3;
+    private static final int TRAMES_RENDIMENT = 200_000;
+    private static final int TRAMES_PER_LOT = 1000;
+
+    private final CodiBarres radio;
+    private final CodiBarres tele;
+    private final CodiBarres llet;
+    private final CodiBarres desconegut;
+    private final Searchable<Product> font;
+    private int errors;
+
+    /**
+     * Construeix la prova amb una font de productes amb dos productes vàlids i un producte d'alimentació caducat.
+     *
+     * @throws Exception Si no es poden crear els productes.
+     */
+    private ServidorEscanersTest() throws Exception {
+        Electronica producteRadio = new Electronica("Radio", 2_500, "8412345", 365);
+        Electronica producteTele = new Electronica("Tele", 39_900, "8412346", 730);
+        llet = CodiBarres.parse("8412347");
+        long ahir = LocalDate.now(Clock.systemDefaultZone()).toEpochDay() - 1;
+        Product lletCaducada = Product.restaurar(TipusProducte.ALIMENTACIO, "Llet", 95, llet, ahir);
+        radio = producteRadio.getCodiBarres();
+        tele = producteTele.getCodiBarres();
+        desconegut = CodiBarres.parse("9999999");
+
+        MapaLong<Product> index = new MapaLong<>();
+        index.put(radio.clau(), producteRadio);
+        index.put(tele.clau(), producteTele);
+        index.put(llet.clau(), lletCaducada);
+        font = codiBarres -> index.get(codiBarres.clau());
+    }
+
+    /**
+     * Executa totes les comprovacions sobre els dos transports.
+     *
+     * @param args No s'utilitzen.
+     * @throws Exception Si la prova no es pot executar.
+     */
+    public static void main(String[] args) throws Exception {
+        ServidorEscanersTest prova = new ServidorEscanersTest();
+        prova.executar("tcp");
+        prova.executar("unix");
+        if (prova.errors > 0) {
+            System.out.println(prova.errors + " comprovacions han fallat.");
+            System.exit(1);
+        }
+        System.out.println("Totes les comprovacions són correctes.");
+    }
+
+    /**
+     * Arrenca un servidor amb el transport indicat i hi executa totes les comprovacions.
+     *
+     * @param transport "tcp" o "unix".
+     * @throws Exception Si la prova no es pot executar.
+     */
+    private void executar(String transport) throws Exception {
+        Path directori = null;
+        SocketAddress adreca;
+        if (transport.equals("unix")) {
+            directori = Files.createTempDirectory("escaners");
+            adreca = UnixDomainSocketAddress.of(directori.resolve("escaners.sock"));
+        } else {
+            adreca = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        }
+
+        try (CheckoutService servei = new CheckoutService(MAX_PRODUCTES, Clock.systemDefaultZone());
+             ServidorEscaners servidor = new ServidorEscaners(servei, font, adreca)) {
+            servidor.iniciar();
+            System.out.println("--- " + transport + " ---");
+            try (SocketChannel client = connectar(transport, servidor.getAdreca())) {
+                provarEstats(servei, client, transport);
+                provarFragmentacio(servei, client, transport);
+                provarRendiment(servei, client, transport);
+            }
+        } finally {
+            if (directori != null) {
+                Files.deleteIfExists(directori.resolve("escaners.sock"));
+                Files.deleteIfExists(directori);
+            }
+        }
+    }
+
+    /**
+     * Envia un lot amb una trama per a cada byte d'estat del protocol i comprova els estats i el carret.
+     *
+     * @param servei El servei de caixes.
+     * @param client La connexió amb el servidor.
+     * @param transport El nom del transport, per als missatges.
+     * @throws Exception Si hi ha un error de comunicació.
+     */
+    private void provarEstats(CheckoutService servei, SocketChannel client, String transport) throws Exception {
+        long sessio = servei.obrirSessio();
+        long sessioPlena = servei.obrirSessio();
+        ByteBuffer trames = ByteBuffer.allocate(11 * ProtocolEscaners.MIDA_TRAMA);
+        ProtocolEscaners.escriureTrama(trames, sessio, radio, 2);
+        ProtocolEscaners.escriureTrama(trames, sessio, desconegut, 1);
+        ProtocolEscaners.escriureTrama(trames, sessio + 1000, radio, 1);
+        trama(trames, sessio, (short) 0, radio.bcd());
+        trama(trames, sessio, (short) -5, radio.bcd());
+        trama(trames, sessio, (short) 1, 0xFFFF_FFFF_F84A_2345L);
+        trama(trames, sessio, (short) 1, -1L);
+        ProtocolEscaners.escriureTrama(trames, sessio, llet, 1);
+        ProtocolEscaners.escriureTrama(trames, sessioPlena, radio, 1);
+        ProtocolEscaners.escriureTrama(trames, sessioPlena, tele, 1);
+        ProtocolEscaners.escriureTrama(trames, sessio, radio, 3);
+        servei.executar(sessioPlena, carret -> {
+            carret.afegirProducte(new Electronica("Cable", 300, "1", 30));
+            carret.afegirProducte(new Electronica("Piles", 400, "2", 30));
+            return null;
+        }).get(5, TimeUnit.SECONDS);
+
+        byte[] estats = enviar(client, trames.flip());
+        byte[] esperats = {
+                ProtocolEscaners.ACCEPTAT, ProtocolEscaners.NO_TROBAT, ProtocolEscaners.SENSE_SESSIO,
+                ProtocolEscaners.TRAMA_INVALIDA, ProtocolEscaners.TRAMA_INVALIDA, ProtocolEscaners.TRAMA_INVALIDA,
+                ProtocolEscaners.TRAMA_INVALIDA, ProtocolEscaners.CADUCAT, ProtocolEscaners.ACCEPTAT,
+                ProtocolEscaners.CARRET_PLE, ProtocolEscaners.ACCEPTAT
+        };
+        for (int i = 0; i < esperats.length; i++) {
+            comprovar(transport + ": estat de la trama " + i, esperats[i], estats[i]);
+        }
+
+        comprovar(transport + ": unitats acceptades", 5, quantitat(servei, sessio, radio));
+        comprovar(transport + ": línies del carret", 1, linies(servei, sessio));
+        comprovar(transport + ": línies del carret ple", MAX_PRODUCTES, linies(servei, sessioPlena));
+        servei.tancarSessio(sessio);
+        servei.tancarSessio(sessioPlena);
+    }
+
+    /**
+     * Envia trames partides en escriptures de mides que no coincideixen amb la trama, incloses escriptures d'un sol
+     * byte, i comprova que cada trama rep el seu estat un sol cop.
+     *
+     * @param servei El servei de caixes.
+     * @param client La connexió amb el servidor.
+     * @param transport El nom del transport, per als missatges.
+     * @throws Exception Si hi ha un error de comunicació.
+     */
+    private void provarFragmentacio(CheckoutService servei, SocketChannel client, String transport) throws Exception {
+        long sessio = servei.obrirSessio();
+        int nombreTrames = 40;
+        ByteBuffer trames = ByteBuffer.allocate(nombreTrames * ProtocolEscaners.MIDA_TRAMA);
+        for (int i = 0; i < nombreTrames; i++) {
+            ProtocolEscaners.escriureTrama(trames, sessio, i % 2 == 0 ? radio : desconegut, 1);
+        }
+        trames.flip();
+
+        int[] mides = {1, 1, 1, 20, 3, 13, 2, 7, 41, 1};
+        ByteBuffer estats = ByteBuffer.allocate(nombreTrames);
+        for (int i = 0; trames.hasRemaining(); i++) {
+            ByteBuffer tros = trames.slice(trames.position(), Math.min(mides[i % mides.length], trames.remaining()));
+            while (tros.hasRemaining()) {
+                client.write(tros);
+            }
+            trames.position(trames.position() + tros.limit());
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        llegir(client, estats);
+
+        for (int i = 0; i < nombreTrames; i++) {
+            byte esperat = i % 2 == 0 ? ProtocolEscaners.ACCEPTAT : ProtocolEscaners.NO_TROBAT;
+            comprovar(transport + ": estat de la trama fragmentada " + i, esperat, estats.get(i));
+        }
+        comprovar(transport + ": unitats de les trames fragmentades", nombreTrames / 2,
+                quantitat(servei, sessio, radio));
+        comprovar(transport + ": cap estat de més", 0, disponibles(client));
+        servei.tancarSessio(sessio);
+    }
+
+    /**
+     * Envia un flux continu de lots de trames i comprova que totes s'accepten i que el carret en té totes les unitats.
+     * Mostra el nombre de trames per segon, que depèn de la màquina i no es comprova.
+     *
+     * @param servei El servei de caixes.
+     * @param client La connexió amb el servidor.
+     * @param transport El nom del transport, per als missatges.
+     * @throws Exception Si hi ha un error de comunicació.
+     */
+    private void provarRendiment(CheckoutService servei, SocketChannel client, String transport) throws Exception {
+        long sessio = servei.obrirSessio();
+        ByteBuffer trames = ByteBuffer.allocateDirect(TRAMES_PER_LOT * ProtocolEscaners.MIDA_TRAMA);
+        for (int i = 0; i < TRAMES_PER_LOT; i++) {
+            ProtocolEscaners.escriureTrama(trames, sessio, i % 2 == 0 ? radio : tele, 1);
+        }
+
+        int acceptades = 0;
+        long inici = System.nanoTime();
+        for (int lot = 0; lot < TRAMES_RENDIMENT / TRAMES_PER_LOT; lot++) {
+            byte[] estats = enviar(client, trames.flip());
+            for (byte estat : estats) {
+                if (estat == ProtocolEscaners.ACCEPTAT) {
+                    acceptades++;
+                }
+            }
+        }
+        long nanos = System.nanoTime() - inici;
+
+        comprovar(transport + ": trames acceptades", TRAMES_RENDIMENT, acceptades);
+        comprovar(transport + ": unitats del flux", TRAMES_RENDIMENT / 2, quantitat(servei, sessio, tele));
+        System.out.printf("%s: %d trames en %.1f ms (%.0f trames/s)%n", transport, TRAMES_RENDIMENT,
+                nanos / 1e6, TRAMES_RENDIMENT * 1e9 / nanos);
+        servei.tancarSessio(sessio);
+    }
+
+    /**
+     * Obre una connexió bloquejant amb el servidor.
+     *
+     * @param transport "tcp" o "unix".
+     * @param adreca L'adreça del servidor.
+     * @return La connexió.
+     * @throws Exception Si no es pot connectar.
+     */
+    private static SocketChannel connectar(String transport, SocketAddress adreca) throws Exception {
+        SocketChannel client = transport.equals("unix")
+                ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open();
+        client.connect(adreca);
+        return client;
+    }
+
+    /**
+     * Escriu una trama amb camps arbitraris, sense validar-los, per provar les trames no vàlides.
+     *
+     * @param desti El buffer on s'escriu la trama.
+     * @param sessio L'identificador de la sessió.
+     * @param quantitat La quantitat tal com s'envia.
+     * @param bcd El codi de barres en BCD tal com s'envia.
+     */
+    private static void trama(ByteBuffer desti, long sessio, short quantitat, long bcd) {
+        desti.putInt((int) sessio);
+        desti.putShort(quantitat);
+        desti.putLong(bcd);
+    }
+
+    /**
+     * Envia les trames d'un buffer i llegeix un byte d'estat per trama.
+     *
+     * @param client La connexió amb el servidor.
+     * @param trames Les trames a enviar.
+     * @return Els estats de les trames, en ordre.
+     * @throws Exception Si hi ha un error de comunicació.
+     */
+    private static byte[] enviar(SocketChannel client, ByteBuffer trames) throws Exception {
+        ByteBuffer estats = ByteBuffer.allocate(trames.remaining() / ProtocolEscaners.MIDA_TRAMA);
+        while (trames.hasRemaining()) {
+            client.write(trames);
+        }
+        llegir(client, estats);
+        return estats.array();
+    }
+
+    /**
+     * Llegeix de la connexió fins omplir el buffer.
+     *
+     * @param client La connexió amb el servidor.
+     * @param desti El buffer a omplir.
+     * @throws Exception Si hi ha un error de comunicació o el servidor tanca la connexió.
+     */
+    private static void llegir(SocketChannel client, ByteBuffer desti) throws Exception {
+        while (desti.hasRemaining()) {
+            if (client.read(desti) < 0) {
+                throw new EOFException("El servidor ha tancat la connexió.");
+            }
+        }
+    }
+
+    /**
+     * Compta els bytes que el servidor ha enviat i encara no s'han llegit, esperant un moment perquè arribin.
+     *
+     * @param client La connexió amb el servidor.
+     * @return El nombre de bytes disponibles.
+     * @throws Exception Si hi ha un error de comunicació.
+     */
+    private static int disponibles(SocketChannel client) throws Exception {
+        TimeUnit.MILLISECONDS.sleep(50);
+        client.configureBlocking(false);
+        try {
+            return Math.max(client.read(ByteBuffer.allocate(64)), 0);
+        } finally {
+            client.configureBlocking(true);
+        }
+    }
+
+    /**
+     * Retorna les unitats d'un producte al carret d'una sessió.
+     *
+     * @param servei El servei de caixes.
+     * @param sessio L'identificador de la sessió.
+     * @param codiBarres El codi de barres del producte.
+     * @return Les unitats del producte.
+     * @throws Exception Si l'operació falla.
+     */
+    private static int quantitat(CheckoutService servei, long sessio, CodiBarres codiBarres) throws Exception {
+        return servei.executar(sessio, carret -> carret.getQuantitat(codiBarres)).get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Retorna el nombre de línies del carret d'una sessió.
+     *
+     * @param servei El servei de caixes.
+     * @param sessio L'identificador de la sessió.
+     * @return El nombre de línies.
+     * @throws Exception Si l'operació falla.
+     */
+    private static int linies(CheckoutService servei, long sessio) throws Exception {
+        return servei.executar(sessio, carret -> carret.getNombreLinies()).get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Compara un valor obtingut amb l'esperat i n'informa si no coincideixen.
+     *
+     * @param descripcio Què es comprova.
+     * @param esperat El valor esperat.
+     * @param obtingut El valor obtingut.
+     */
+    private void comprovar(String descripcio, long esperat, long obtingut) {
+        if (esperat != obtingut) {
+            errors++;
+            System.out.println("FALLA " + descripcio + ": s'esperava " + esperat + " i s'ha obtingut " + obtingut);
+        }
+    }
+}
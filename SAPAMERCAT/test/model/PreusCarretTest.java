@@ -0,0 +1,221 @@
+package model;
+
+import utils.RodaTemporitzadors;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prova que el càlcul per lots dels preus del carret dona exactament els mateixos imports que calcularPreu(context)
+ * producte per producte.
+ * Comprova, sobre carrets que barregen alimentació (caducada, del dia i de dates futures), tèxtil, electrònica i una
+ * subclasse que redefineix calcularPreu(), que:
+ * - El total de cada línia és el preu unitari de calcularPreu(context) multiplicat per la quantitat.
+ * - El total del carret és la suma d'aquests totals.
+ * - El resultat és el mateix sense la taula de preus d'alimentació i amb la taula precalculada, tant per als productes
+ *   que hi són registrats com per als que no.
+ *
+ * No depèn de cap biblioteca de proves: s'executa amb java i acaba amb el codi 1 si alguna comprovació falla.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class PreusCarretTest {
+    private static final Clock RELLOTGE = Clock.fixed(Instant.parse("2026-03-14T11:00:00Z"), ZoneId.of("Europe/Madrid"));
+    private static final int[] MIDES = {1, 7, 16, 17, 100, 500};
+    private static final long LLAVOR = 20_260_314L;
+
+    private final long avui;
+    private int errors;
+
+    /**
+     * Construeix la prova amb el dia actual del rellotge fix.
+     */
+    private PreusCarretTest() {
+        avui = ContextPreu.diaActual(RELLOTGE);
+    }
+
+    /**
+     * Executa totes les comprovacions.
+     *
+     * @param args No s'utilitzen.
+     * @throws Exception Si la prova no es pot executar.
+     */
+    public static void main(String[] args) throws Exception {
+        PreusCarretTest prova = new PreusCarretTest();
+        prova.provarSenseTaula();
+        prova.provarAmbTaula();
+        if (prova.errors > 0) {
+            System.out.println(prova.errors + " comprovacions han fallat.");
+            System.exit(1);
+        }
+        System.out.println("Totes les comprovacions són correctes.");
+    }
+
+    /**
+     * Compara el càlcul per lots amb el càlcul producte per producte sense cap taula de preus d'alimentació.
+     *
+     * @throws Exception Si la prova no es pot executar.
+     */
+    private void provarSenseTaula() throws Exception {
+        Random aleatori = new Random(LLAVOR);
+        for (int mida : MIDES) {
+            List<Product> productes = generar(aleatori, mida);
+            CarretCompra carret = new CarretCompra(mida, RELLOTGE);
+            omplir(carret, productes, aleatori);
+            comparar("Sense taula, " + mida + " productes", carret, ContextPreu.of(RELLOTGE));
+        }
+    }
+
+    /**
+     * Compara el càlcul per lots amb el càlcul producte per producte amb la taula de preus d'alimentació precalculada.
+     * Només la meitat dels productes d'alimentació es registren a la taula abans de calcular-la, de manera que el
+     * carret n'ha de resoldre la resta amb la fórmula.
+     *
+     * @throws Exception Si la prova no es pot executar.
+     */
+    private void provarAmbTaula() throws Exception {
+        Random aleatori = new Random(LLAVOR + 1);
+        try (RodaTemporitzadors roda = new RodaTemporitzadors(10, TimeUnit.MILLISECONDS, 512);
+             PreusAlimentacio preus = new PreusAlimentacio(RELLOTGE, roda)) {
+            List<List<Product>> carrets = new ArrayList<>();
+            for (int mida : MIDES) {
+                List<Product> productes = generar(aleatori, mida);
+                for (int i = 0; i < productes.size(); i += 2) {
+                    preus.registrar(productes.get(i));
+                }
+                carrets.add(productes);
+            }
+            preus.iniciar();
+            for (List<Product> productes : carrets) {
+                CarretCompra carret = new CarretCompra(productes.size(), RELLOTGE);
+                carret.setPreusAlimentacio(preus);
+                omplir(carret, productes, aleatori);
+                String descripcio = "Amb taula, " + productes.size() + " productes";
+                comparar(descripcio, carret, ContextPreu.of(RELLOTGE));
+                comparar(descripcio + " (context amb taula)", carret, ContextPreu.of(preus));
+            }
+        }
+    }
+
+    /**
+     * Calcula els preus del carret per lots i els compara, línia per línia i en total, amb calcularPreu(context).
+     *
+     * @param descripcio La descripció del carret que es mostra si alguna comprovació falla.
+     * @param carret El carret.
+     * @param context El context amb què es calcula cada producte per separat.
+     */
+    private void comparar(String descripcio, CarretCompra carret, ContextPreu context) {
+        PreusCarret preus = carret.calcularPreus();
+        comprovar(descripcio + ": nombre de línies", carret.getNombreLinies(), preus.getNombreLinies());
+        long total = 0;
+        for (int i = 0; i < preus.getNombreLinies(); i++) {
+            LiniaCarret linia = preus.getLinia(i);
+            Product producte = linia.getProducte();
+            long unitari = producte.calcularPreu(context);
+            long totalLinia = unitari * linia.getQuantitat();
+            comprovar(descripcio + ": preu unitari de " + producte.getNom(), unitari, preus.getPreuUnitari(i));
+            comprovar(descripcio + ": total de " + producte.getNom(), totalLinia, preus.getTotalLinia(i));
+            total += totalLinia;
+        }
+        comprovar(descripcio + ": total del carret", total, preus.getTotal());
+    }
+
+    /**
+     * Genera productes amb codis de barres diferents, repartits entre tots els tipus.
+     * Els d'alimentació caduquen entre tres dies abans i quaranta dies després d'avui.
+     *
+     * @param aleatori El generador de nombres aleatoris.
+     * @param nombre El nombre de productes.
+     * @return Els productes generats.
+     * @throws Exception Si no es pot crear algun producte.
+     */
+    private List<Product> generar(Random aleatori, int nombre) throws Exception {
+        List<Product> productes = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            CodiBarres codi = CodiBarres.of(aleatori.nextInt(1_000_000_000), 13);
+            String nom = "Producte " + codi;
+            long preu = 1 + aleatori.nextInt(100_000);
+            switch (i % 5) {
+                case 0:
+                case 1:
+                    long caducitat = avui - 3 + aleatori.nextInt(44);
+                    productes.add(Product.restaurar(TipusProducte.ALIMENTACIO, nom, preu, codi, caducitat));
+                    break;
+                case 2:
+                    productes.add(Product.restaurar(TipusProducte.TEXTIL, nom, preu, codi, aleatori.nextInt(3)));
+                    break;
+                case 3:
+                    productes.add(Product.restaurar(TipusProducte.ELECTRONICA, nom, preu, codi, aleatori.nextInt(1_500)));
+                    break;
+                default:
+                    productes.add(new Rebaixat(nom, preu, codi.toString(), aleatori.nextInt(1_500)));
+                    break;
+            }
+        }
+        return productes;
+    }
+
+    /**
+     * Afegeix els productes al carret, cadascun amb entre una i nou unitats.
+     *
+     * @param carret El carret.
+     * @param productes Els productes.
+     * @param aleatori El generador de nombres aleatoris.
+     * @throws Exception Si no es pot afegir algun producte.
+     */
+    private static void omplir(CarretCompra carret, List<Product> productes, Random aleatori) throws Exception {
+        for (Product producte : productes) {
+            carret.afegirProducte(producte, 1 + aleatori.nextInt(9));
+        }
+    }
+
+    /**
+     * Compara el valor obtingut amb l'esperat i mostra un missatge si no coincideixen.
+     *
+     * @param descripcio La descripció de la comprovació.
+     * @param esperat El valor esperat.
+     * @param obtingut El valor obtingut.
+     */
+    private void comprovar(String descripcio, long esperat, long obtingut) {
+        if (esperat != obtingut) {
+            System.out.println("FALLA " + descripcio + ": s'esperava " + esperat + " i s'ha obtingut " + obtingut);
+            errors++;
+        }
+    }
+
+    /**
+     * Producte d'electrònica rebaixat a la meitat, que el càlcul per lots ha de resoldre producte per producte.
+     *
+     * @author Joan Miralles Carmona
+     */
+    private static final class Rebaixat extends Electronica {
+        /**
+         * Construeix el producte rebaixat.
+         *
+         * @param nom El nom del producte.
+         * @param preu El preu base en cèntims.
+         * @param codiBarres El codi de barres.
+         * @param garantia Els dies de garantia.
+         * @throws Exception Si les dades no són vàlides.
+         */
+        Rebaixat(String nom, long preu, String codiBarres, int garantia) throws Exception {
+            super(nom, preu, codiBarres, garantia);
+        }
+
+        /**
+         * Calcula el preu de l'electrònica i el rebaixa a la meitat.
+         *
+         * @param context El context de preus.
+         * @return El preu rebaixat en cèntims.
+         */
+        @Override
+        public long calcularPreu(ContextPreu context) {
+            return super.calcularPreu(context) / 2;
+        }
+    }
+}
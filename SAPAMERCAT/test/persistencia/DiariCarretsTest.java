@@ -0,0 +1,357 @@
+package persistencia;
+
+import model.CarretCompra;
+import model.CodiBarres;
+import model.Electronica;
+import model.Product;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prova del diari de carrets sobre un directori temporal.
+ * Comprova que:
+ * - Els carrets oberts es recuperen amb les mateixes unitats, i els que han passat per caixa o s'han descartat no.
+ * - L'identificador més gran utilitzat es conserva després de recuperar, encara que el seu carret ja no hi sigui.
+ * - Un registre escrit a mitges al final del diari es descarta sense perdre els anteriors.
+ * - Un registre corrupte atura la reproducció, també per als segments següents.
+ * - Si el procés cau després de reanomenar la instantània però abans d'esborrar els segments anteriors, o abans de
+ *   reanomenar-la, la recuperació següent no compta dues vegades cap operació.
+ *
+ * No depèn de cap biblioteca de proves: s'executa amb java i acaba amb el codi 1 si alguna comprovació falla.
+ *
+ * @author Joan Miralles Carmona
+ */
+public final class DiariCarretsTest {
+    private static final int MIDA_SEGMENT = 1 << 20;
+    private static final int MAX_PRODUCTES = 10;
+    private static final int REGISTRES_SEGMENTS = 30_000;
+    private static final int REGISTRE_CORRUPTE = 100;
+
+    private final Product radio;
+    private final Product tele;
+    private int errors;
+
+    /**
+     * Construeix la prova amb dos productes.
+     *
+     * @throws Exception Si no es poden crear els productes.
+     */
+    private DiariCarretsTest() throws Exception {
+        radio = new Electronica("Radio", 2_500, "8412345", 365);
+        tele = new Electronica("Tele", 39_900, "8412346", 730);
+    }
+
+    /**
+     * Executa totes les comprovacions.
+     *
+     * @param args No s'utilitzen.
+     * @throws Exception Si la prova no es pot executar.
+     */
+    public static void main(String[] args) throws Exception {
+        DiariCarretsTest prova = new DiariCarretsTest();
+        prova.provarRecuperacio();
+        prova.provarFinalEscritAMitges();
+        prova.provarRegistreCorrupte();
+        prova.provarFallidaEnLaInstantania();
+        if (prova.errors > 0) {
+            System.out.println(prova.errors + " comprovacions han fallat.");
+            System.exit(1);
+        }
+        System.out.println("Totes les comprovacions són correctes.");
+    }
+
+    /**
+     * Registra operacions de diversos carrets, tanca el diari i comprova què se'n recupera, dues vegades seguides.
+     *
+     * @throws Exception Si la prova no es pot executar.
+     */
+    private void provarRecuperacio() throws Exception {
+        Path directori = Files.createTempDirectory("diari");
+        try {
+            try (DiariCarrets diari = obrir(directori)) {
+                comprovar("recuperació: carrets d'un diari nou", 0, recuperar(diari).size());
+                diari.registrarObertura(1);
+                diari.registrarAfegir(1, radio, 3);
+                diari.registrarAfegir(1, tele, 1);
+                diari.registrarTreure(1, radio.getCodiBarres(), 1);
+                diari.registrarObertura(2);
+                diari.registrarAfegir(2, radio, 1);
+                diari.registrarCaixa(2);
+                diari.registrarObertura(3);
+                diari.registrarAfegir(3, tele, 2);
+                diari.registrarTancament(3);
+                diari.registrarObertura(4);
+            }
+
+            try (DiariCarrets diari = obrir(directori)) {
+                Map<Long, CarretCompra> carrets = recuperar(diari);
+                comprovar("recuperació: carrets oberts", 1, carrets.size());
+                comprovar("recuperació: unitats de la ràdio", 2, quantitat(carrets, 1, radio));
+                comprovar("recuperació: unitats de la tele", 1, quantitat(carrets, 1, tele));
+                comprovar("recuperació: identificador més gran", 4, diari.getIdMaxim());
+                diari.registrarAfegir(1, tele, 2);
+            }
+
+            try (DiariCarrets diari = obrir(directori)) {
+                Map<Long, CarretCompra> carrets = recuperar(diari);
+                comprovar("segona recuperació: unitats de la ràdio", 2, quantitat(carrets, 1, radio));
+                comprovar("segona recuperació: unitats de la tele", 3, quantitat(carrets, 1, tele));
+                comprovar("segona recuperació: identificador més gran", 4, diari.getIdMaxim());
+            }
+        } finally {
+            esborrar(directori);
+        }
+    }
+
+    /**
+     * Esborra els darrers bytes del darrer registre, com si el procés hagués caigut mentre s'escrivia, i comprova que
+     * només es perd aquest registre.
+     *
+     * @throws Exception Si la prova no es pot executar.
+     */
+    private void provarFinalEscritAMitges() throws Exception {
+        Path directori = Files.createTempDirectory("diari");
+        try {
+            try (DiariCarrets diari = obrir(directori)) {
+                recuperar(diari);
+                diari.registrarAfegir(1, radio, 1);
+                diari.registrarAfegir(1, radio, 1);
+                diari.registrarAfegir(1, tele, 1);
+            }
+
+            Path segment = segments(directori).get(0);
+            List<Integer> registres = registres(segment);
+            int darrer = registres.get(registres.size() - 1);
+            int longitud = llegirEnter(segment, darrer);
+            escriure(segment, darrer + 8 + longitud - 4, new byte[4]);
+
+            try (DiariCarrets diari = obrir(directori)) {
+                Map<Long, CarretCompra> carrets = recuperar(diari);
+                comprovar("final a mitges: unitats de la ràdio", 2, quantitat(carrets, 1, radio));
+                comprovar("final a mitges: unitats de la tele", 0, quantitat(carrets, 1, tele));
+            }
+        } finally {
+            esborrar(directori);
+        }
+    }
+
+    /**
+     * Escriu prou registres per omplir més d'un segment, en corromp un del primer i comprova que la reproducció
+     * s'atura just abans, sense aplicar cap registre posterior ni dels segments següents.
+     *
+     * @throws Exception Si la prova no es pot executar.
+     */
+    private void provarRegistreCorrupte() throws Exception {
+        Path directori = Files.createTempDirectory("diari");
+        try {
+            try (DiariCarrets diari = obrir(directori)) {
+                recuperar(diari);
+                for (int i = 0; i < REGISTRES_SEGMENTS; i++) {
+                    diari.registrarAfegir(1, radio, 1);
+                }
+            }
+
+            List<Path> segments = segments(directori);
+            List<Integer> registres = registres(segments.get(0));
+            comprovar("registre corrupte: el diari ocupa més d'un segment", 1,
+                    registres.size() < REGISTRES_SEGMENTS ? 1 : 0);
+            int corrupte = registres.get(REGISTRE_CORRUPTE + 1);
+            escriure(segments.get(0), corrupte + 8 + 9, new byte[]{(byte) 0x7F});
+
+            try (DiariCarrets diari = obrir(directori)) {
+                Map<Long, CarretCompra> carrets = recuperar(diari);
+                comprovar("registre corrupte: unitats recuperades", REGISTRE_CORRUPTE, quantitat(carrets, 1, radio));
+            }
+            try (DiariCarrets diari = obrir(directori)) {
+                Map<Long, CarretCompra> carrets = recuperar(diari);
+                comprovar("registre corrupte: unitats de la recuperació següent", REGISTRE_CORRUPTE,
+                        quantitat(carrets, 1, radio));
+            }
+        } finally {
+            esborrar(directori);
+        }
+    }
+
+    /**
+     * Simula una caiguda del procés durant l'escriptura de la instantània:
+     * - Abans de reanomenar-la: queda un fitxer temporal incomplet al costat dels segments anteriors.
+     * - Després de reanomenar-la: els segments anteriors encara hi són al costat de la instantània.
+     * En tots dos casos les unitats recuperades han de ser les registrades.
+     *
+     * @throws Exception Si la prova no es pot executar.
+     */
+    private void provarFallidaEnLaInstantania() throws Exception {
+        Path directori = Files.createTempDirectory("diari");
+        Path copia = Files.createTempDirectory("diari-copia");
+        try {
+            try (DiariCarrets diari = obrir(directori)) {
+                recuperar(diari);
+                diari.registrarAfegir(1, radio, 3);
+            }
+            for (Path segment : segments(directori)) {
+                Files.copy(segment, copia.resolve(segment.getFileName()));
+            }
+
+            Files.write(directori.resolve(String.format("diari-%020d.tmp", 99)), new byte[]{1, 2, 3});
+            try (DiariCarrets diari = obrir(directori)) {
+                Map<Long, CarretCompra> carrets = recuperar(diari);
+                comprovar("caiguda abans de reanomenar: unitats recuperades", 3, quantitat(carrets, 1, radio));
+            }
+
+            for (Path segment : segments(copia)) {
+                Files.copy(segment, directori.resolve(segment.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (DiariCarrets diari = obrir(directori)) {
+                Map<Long, CarretCompra> carrets = recuperar(diari);
+                comprovar("caiguda després de reanomenar: unitats recuperades", 3, quantitat(carrets, 1, radio));
+            }
+        } finally {
+            esborrar(directori);
+            esborrar(copia);
+        }
+    }
+
+    /**
+     * Obre el diari del directori amb segments petits.
+     *
+     * @param directori El directori del diari.
+     * @return El diari obert.
+     * @throws IOException Si no es pot obrir.
+     */
+    private static DiariCarrets obrir(Path directori) throws IOException {
+        return DiariCarrets.obrir(directori, MIDA_SEGMENT, DiariCarrets.MIDA_LOT_PER_DEFECTE,
+                DiariCarrets.INTERVAL_PER_DEFECTE_MICROS);
+    }
+
+    /**
+     * Recupera els carrets del diari.
+     *
+     * @param diari El diari acabat d'obrir.
+     * @return Els carrets oberts indexats pel seu identificador.
+     * @throws IOException Si no es pot recuperar.
+     */
+    private static Map<Long, CarretCompra> recuperar(DiariCarrets diari) throws IOException {
+        return diari.recuperar(() -> new CarretCompra(MAX_PRODUCTES, Clock.systemDefaultZone()));
+    }
+
+    /**
+     * Retorna les unitats d'un producte en un carret recuperat.
+     *
+     * @param carrets Els carrets recuperats.
+     * @param id L'identificador del carret.
+     * @param producte El producte.
+     * @return Les unitats del producte, o zero si el carret no s'ha recuperat.
+     */
+    private static int quantitat(Map<Long, CarretCompra> carrets, long id, Product producte) {
+        CarretCompra carret = carrets.get(id);
+        return carret == null ? 0 : carret.getQuantitat(producte.getCodiBarres());
+    }
+
+    /**
+     * Retorna els segments d'un directori ordenats pel seu número.
+     *
+     * @param directori El directori del diari.
+     * @return Els segments.
+     * @throws IOException Si no es pot llegir el directori.
+     */
+    private static List<Path> segments(Path directori) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> fitxers = Files.newDirectoryStream(directori, "diari-*.log")) {
+            for (Path fitxer : fitxers) {
+                segments.add(fitxer);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Retorna la posició de cada registre d'un segment, seguint les longituds de les capçaleres fins a la primera zero.
+     *
+     * @param segment El segment.
+     * @return Les posicions dels registres.
+     * @throws IOException Si no es pot llegir el segment.
+     */
+    private static List<Integer> registres(Path segment) throws IOException {
+        ByteBuffer dades = ByteBuffer.wrap(Files.readAllBytes(segment)).order(ByteOrder.LITTLE_ENDIAN);
+        List<Integer> posicions = new ArrayList<>();
+        int posicio = 0;
+        while (posicio + 8 <= dades.limit() && dades.getInt(posicio) != 0) {
+            posicions.add(posicio);
+            posicio += 8 + dades.getInt(posicio);
+        }
+        return posicions;
+    }
+
+    /**
+     * Llegeix un enter little-endian d'un fitxer.
+     *
+     * @param fitxer El fitxer.
+     * @param posicio La posició de l'enter.
+     * @return L'enter llegit.
+     * @throws IOException Si no es pot llegir el fitxer.
+     */
+    private static int llegirEnter(Path fitxer, int posicio) throws IOException {
+        try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.READ)) {
+            ByteBuffer enter = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            canal.read(enter, posicio);
+            return enter.getInt(0);
+        }
+    }
+
+    /**
+     * Sobreescriu bytes d'un fitxer a la posició indicada.
+     *
+     * @param fitxer El fitxer.
+     * @param posicio La posició on s'escriu.
+     * @param bytes Els bytes a escriure.
+     * @throws IOException Si no es pot escriure el fitxer.
+     */
+    private static void escriure(Path fitxer, int posicio, byte[] bytes) throws IOException {
+        try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.WRITE)) {
+            canal.write(ByteBuffer.wrap(bytes), posicio);
+        }
+    }
+
+    /**
+     * Esborra un directori temporal i tots els seus fitxers.
+     *
+     * @param directori El directori.
+     * @throws IOException Si no es pot esborrar.
+     */
+    private static void esborrar(Path directori) throws IOException {
+        try (DirectoryStream<Path> fitxers = Files.newDirectoryStream(directori)) {
+            for (Path fitxer : fitxers) {
+                Files.delete(fitxer);
+            }
+        }
+        Files.delete(directori);
+    }
+
+    /**
+     * Compara un valor obtingut amb l'esperat i n'informa si no coincideixen.
+     *
+     * @param descripcio Què es comprova.
+     * @param esperat El valor esperat.
+     * @param obtingut El valor obtingut.
+     */
+    private void comprovar(String descripcio, long esperat, long obtingut) {
+        if (esperat != obtingut) {
+            errors++;
+            System.out.println("FALLA " + descripcio + ": s'esperava " + esperat + " i s'ha obtingut " + obtingut);
+        }
+    }
+}